@@ -0,0 +1,217 @@
+package com.spark.insight.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spark.insight.SparkPerformanceInsightApplication;
+import com.spark.insight.model.ApplicationModel;
+import com.spark.insight.model.dto.IngestionQueueStatus;
+import com.spark.insight.parser.DbWriteQueue;
+import com.spark.insight.service.ApplicationService;
+import com.spark.insight.service.EventLogWatcherService;
+import com.spark.insight.service.IngestionScheduler;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端解析基准：用 {@link SyntheticEventLogGenerator} 生成日志，在临时 DuckDB 上启动完整的应用
+ * (不启动 Web 服务)，由 {@link EventLogWatcherService} 扫描并解析，直到后期预计算完成、App 变为 READY。
+ * <p>
+ * 每次运行使用新的数据库，报告墙钟时间、行/秒、MB/秒、堆内存峰值和数据库文件大小，
+ * 并连同当前提交和生成参数追加到 --out (默认 target/ingest-bench.jsonl)，不同提交的结果可以直接对比。
+ * <p>
+ * 用法: {@code IngestionBenchmark [--runs=3] [--out=FILE] [--keep] [生成参数...]}，生成参数见
+ * {@link SyntheticEventLogGenerator.Spec#parse}。
+ */
+public class IngestionBenchmark {
+
+    private static final long TIMEOUT_MS = 60 * 60 * 1000L;
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = SyntheticEventLogGenerator.parseArgs(argv);
+        SyntheticEventLogGenerator.Spec spec = SyntheticEventLogGenerator.Spec.parse(args);
+        int runs = Integer.parseInt(args.getOrDefault("runs", "3"));
+        Path out = Paths.get(args.getOrDefault("out", "target/ingest-bench.jsonl"));
+        boolean keep = args.containsKey("keep");
+
+        Path work = Files.createTempDirectory("ingest-bench");
+        Path logs = work.resolve("logs");
+        long genStart = System.currentTimeMillis();
+        SyntheticEventLogGenerator.Result generated = SyntheticEventLogGenerator.generate(spec, logs);
+        System.out.printf("Generated %d lines (%d tasks, %.1f MB in %d files) in %d ms%n", generated.lines(),
+                generated.tasks(), mb(generated.bytes()), generated.files().size(), System.currentTimeMillis() - genStart);
+
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            for (int run = 1; run <= runs; run++) {
+                Map<String, Object> result = runOnce(spec, generated, logs, work.resolve("run-" + run));
+                result.put("run", run);
+                System.out.println(mapper.writeValueAsString(result));
+                if (out.getParent() != null) Files.createDirectories(out.getParent());
+                Files.writeString(out, mapper.writeValueAsString(result) + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } finally {
+            if (!keep) deleteTree(work);
+        }
+    }
+
+    private static Map<String, Object> runOnce(SyntheticEventLogGenerator.Spec spec, SyntheticEventLogGenerator.Result generated,
+                                               Path logs, Path runDir) throws Exception {
+        Path watchDir = runDir.resolve("eventlog");
+        Files.createDirectories(watchDir);
+        Path db = runDir.resolve("bench.db");
+
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(SparkPerformanceInsightApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:duckdb:" + db.toAbsolutePath(),
+                        "insight.event-log-path=" + watchDir.toAbsolutePath(),
+                        "insight.parser.parquet-cache-dir=" + runDir.resolve("parquet-cache").toAbsolutePath(),
+                        "insight.scheduler.watch=false",
+                        "insight.scheduler.scan-interval-seconds=86400",
+                        "logging.level.com.spark.insight=WARN")
+                .run();
+        long wallMs;
+        long dbTasks;
+        String status;
+        HeapSampler heap = new HeapSampler();
+        // 日志移动到监听目录之前，启动时的那次扫描只会看到空目录
+        Path moved = watchDir.resolve(logs.getFileName());
+        try {
+            EventLogWatcherService watcher = ctx.getBean(EventLogWatcherService.class);
+            IngestionScheduler scheduler = ctx.getBean(IngestionScheduler.class);
+            DbWriteQueue dbWriter = ctx.getBean(DbWriteQueue.class);
+
+            System.gc();
+            heap.start();
+            long start = System.nanoTime();
+            Files.move(logs, moved, StandardCopyOption.ATOMIC_MOVE);
+            watcher.scan();
+            awaitIdle(scheduler);
+            // 写队列按提交顺序执行，排在最后的空写入完成时后期预计算也已经完成
+            dbWriter.submit(() -> {
+            }).get();
+            wallMs = (System.nanoTime() - start) / 1_000_000;
+            heap.stop();
+
+            ApplicationModel app = ctx.getBean(ApplicationService.class).getById(spec.appId());
+            status = app != null ? app.getParsingStatus() : "MISSING";
+            Long count = ctx.getBean(JdbcTemplate.class).queryForObject("SELECT count(*) FROM tasks", Long.class);
+            dbTasks = count != null ? count : 0;
+        } finally {
+            heap.stop();
+            ctx.close();
+            if (Files.exists(moved)) Files.move(moved, logs, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("commit", gitCommit());
+        result.put("timestamp", Instant.now().toString());
+        result.put("java", System.getProperty("java.version"));
+        result.put("maxHeapMb", Runtime.getRuntime().maxMemory() / 1024 / 1024);
+        result.put("spec", spec);
+        result.put("files", generated.files().size());
+        result.put("lines", generated.lines());
+        result.put("tasks", generated.tasks());
+        result.put("logMb", round(mb(generated.bytes())));
+        result.put("status", status);
+        result.put("dbTasks", dbTasks);
+        result.put("wallMs", wallMs);
+        result.put("linesPerSec", Math.round(generated.lines() * 1000.0 / Math.max(1, wallMs)));
+        result.put("mbPerSec", round(mb(generated.bytes()) * 1000.0 / Math.max(1, wallMs)));
+        result.put("peakHeapMb", round(mb(heap.peak())));
+        result.put("dbSizeMb", round(mb(size(db) + size(Paths.get(db + ".wal")))));
+        return result;
+    }
+
+    private static void awaitIdle(IngestionScheduler scheduler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            IngestionQueueStatus status = scheduler.status();
+            if (status.getRunning().isEmpty() && status.getQueued().isEmpty()) return;
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Ingestion did not finish in time");
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * 定期采样堆使用量，记录峰值
+     */
+    private static class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private volatile boolean running;
+        private Thread thread;
+
+        void start() {
+            running = true;
+            thread = new Thread(() -> {
+                while (running) {
+                    peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "heap-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }
+
+        long peak() {
+            return peak.get();
+        }
+    }
+
+    private static String gitCommit() {
+        try {
+            Process head = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String commit = new String(head.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            Process status = new ProcessBuilder("git", "status", "--porcelain", "--untracked-files=no").start();
+            boolean dirty = status.getInputStream().readAllBytes().length > 0;
+            return head.waitFor() == 0 ? commit + (dirty ? "-dirty" : "") : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private static long size(Path file) throws IOException {
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (var paths = Files.walk(root)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.spark.insight.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 生成结构和体积接近真实日志的 Spark 事件日志，同样的参数 (包括 seed) 总是生成逐字节相同的文件。
+ * <p>
+ * 每个 Job 有若干串行的 Stage，每个 Stage 的 Task 在 Executor 上轮转，按 skew 生成少量长尾 Task；
+ * 部分 Job 挂在 SQL Execution 下。除了解析器处理的事件，也按真实比例写出 TaskStart、
+ * StageExecutorMetrics 等会被过滤的事件。可以写成单个文件或按大小滚动的目录 (eventlog_v2_appId/events_N_appId)，
+ * 可选 zstd 压缩。
+ * <p>
+ * 用法: {@code SyntheticEventLogGenerator --out=DIR [--jobs=20 --stages-per-job=4 --tasks-per-stage=4000 ...]}，
+ * 参数见 {@link Spec#parse}。
+ */
+public class SyntheticEventLogGenerator {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 生成参数
+     *
+     * @param skew          长尾 Task 相对普通 Task 的耗时倍数，1 表示没有倾斜
+     * @param rollingMaxMb  滚动日志单个文件的大小上限，0 表示写成单个文件
+     */
+    public record Spec(int jobs, int stagesPerJob, int tasksPerStage, int executors, double skew,
+                       int sqlExecutions, String sparkVersion, boolean zstd, int rollingMaxMb, long seed) {
+
+        /**
+         * 默认值对应 TODO 中 2GB / 32 万 Task 的日志规模
+         */
+        public static Spec parse(Map<String, String> args) {
+            return new Spec(
+                    Integer.parseInt(args.getOrDefault("jobs", "20")),
+                    Integer.parseInt(args.getOrDefault("stages-per-job", "4")),
+                    Integer.parseInt(args.getOrDefault("tasks-per-stage", "4000")),
+                    Integer.parseInt(args.getOrDefault("executors", "50")),
+                    Double.parseDouble(args.getOrDefault("skew", "8")),
+                    Integer.parseInt(args.getOrDefault("sql-executions", "10")),
+                    args.getOrDefault("spark-version", "3.5.1"),
+                    Boolean.parseBoolean(args.getOrDefault("zstd", "false")),
+                    Integer.parseInt(args.getOrDefault("rolling-max-mb", "0")),
+                    Long.parseLong(args.getOrDefault("seed", "42")));
+        }
+
+        public String appId() {
+            return String.format("spark-%016x", seed);
+        }
+    }
+
+    /**
+     * 生成结果
+     */
+    public record Result(String appId, List<Path> files, long lines, long tasks, long bytes) {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Map<String, String> args = parseArgs(argv);
+        Path out = Paths.get(args.getOrDefault("out", "./workspace/eventlog"));
+        Result result = generate(Spec.parse(args), out);
+        System.out.printf("Generated %s: %d files, %d lines, %d tasks, %.1f MB%n",
+                result.appId(), result.files().size(), result.lines(), result.tasks(), result.bytes() / 1024.0 / 1024.0);
+    }
+
+    static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> args = new LinkedHashMap<>();
+        for (String arg : argv) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            int eq = arg.indexOf('=');
+            args.put(eq > 0 ? arg.substring(2, eq) : arg.substring(2), eq > 0 ? arg.substring(eq + 1) : "true");
+        }
+        return args;
+    }
+
+    public static Result generate(Spec spec, Path outDir) throws IOException {
+        Files.createDirectories(outDir);
+        try (LogWriter writer = new LogWriter(spec, outDir)) {
+            new Events(spec, writer).writeApp();
+            return new Result(spec.appId(), writer.files, writer.lines, writer.tasks, writer.totalBytes);
+        }
+    }
+
+    /**
+     * 按行写出事件，滚动模式下超过大小上限时切换到下一个文件
+     */
+    private static class LogWriter implements Closeable {
+        private final Spec spec;
+        private final Path dir;
+        private final String suffix;
+        final List<Path> files = new ArrayList<>();
+        long lines;
+        long tasks;
+        long totalBytes;
+        private OutputStream out;
+        private long fileBytes;
+
+        LogWriter(Spec spec, Path outDir) throws IOException {
+            this.spec = spec;
+            this.suffix = spec.zstd() ? ".zstd" : "";
+            if (spec.rollingMaxMb() > 0) {
+                this.dir = outDir.resolve("eventlog_v2_" + spec.appId());
+                Files.createDirectories(dir);
+                Files.writeString(dir.resolve("appstatus_" + spec.appId()), "");
+            } else {
+                this.dir = outDir;
+            }
+            nextFile();
+        }
+
+        private void nextFile() throws IOException {
+            if (out != null) out.close();
+            Path file = spec.rollingMaxMb() > 0
+                    ? dir.resolve("events_" + (files.size() + 1) + "_" + spec.appId() + suffix)
+                    : dir.resolve("eventlog_" + spec.appId() + suffix);
+            OutputStream raw = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+            out = spec.zstd() ? new ZstdOutputStream(raw, 1) : raw;
+            files.add(file);
+            fileBytes = 0;
+        }
+
+        void write(Map<String, Object> event) throws IOException {
+            byte[] line = MAPPER.writeValueAsBytes(event);
+            if (spec.rollingMaxMb() > 0 && fileBytes > 0 && fileBytes + line.length + 1 > spec.rollingMaxMb() * 1024L * 1024L) {
+                nextFile();
+            }
+            out.write(line);
+            out.write('\n');
+            fileBytes += line.length + 1;
+            totalBytes += line.length + 1;
+            lines++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.close();
+        }
+    }
+
+    /**
+     * 按时间顺序生成一个 App 的全部事件
+     */
+    private static class Events {
+        private final Spec spec;
+        private final LogWriter w;
+        private final Random random;
+        private long now = BASE_TIME;
+        private long taskId;
+        private int rddId;
+        private int accumulableId = 1000;
+
+        Events(Spec spec, LogWriter writer) {
+            this.spec = spec;
+            this.w = writer;
+            this.random = new Random(spec.seed());
+        }
+
+        void writeApp() throws IOException {
+            w.write(obj("Event", "SparkListenerLogStart", "Spark Version", spec.sparkVersion()));
+            w.write(obj("Event", "SparkListenerResourceProfileAdded", "Resource Profile Id", 0,
+                    "Executor Resource Requests", obj("cores", obj("Resource Name", "cores", "Amount", 4)),
+                    "Task Resource Requests", obj("cpus", obj("Resource Name", "cpus", "Amount", 1.0))));
+            w.write(environmentUpdate());
+            w.write(obj("Event", "SparkListenerApplicationStart", "App Name", "synthetic-etl", "App ID", spec.appId(),
+                    "Timestamp", now, "User", "etl", "Spark Version", spec.sparkVersion()));
+            for (int e = 1; e <= spec.executors(); e++) {
+                now += 50;
+                w.write(obj("Event", "SparkListenerExecutorAdded", "Timestamp", now, "Executor ID", String.valueOf(e),
+                        "Executor Info", obj("Host", host(e), "Total Cores", 4, "Log Urls", obj(
+                                "stdout", "http://" + host(e) + ":8042/node/containerlogs/container_" + e + "/etl/stdout"),
+                                "Attributes", obj(), "Resources", obj(), "Resource Profile Id", 0)));
+                w.write(obj("Event", "SparkListenerBlockManagerAdded", "Block Manager ID",
+                        obj("Executor ID", String.valueOf(e), "Host", host(e), "Port", 40000 + e),
+                        "Maximum Memory", 4_772_593_664L, "Timestamp", now));
+            }
+
+            int stageId = 0;
+            int jobsPerSql = spec.sqlExecutions() > 0 ? Math.max(1, spec.jobs() / spec.sqlExecutions()) : Integer.MAX_VALUE;
+            long sqlId = -1;
+            for (int job = 0; job < spec.jobs(); job++) {
+                boolean newSql = spec.sqlExecutions() > 0 && job % jobsPerSql == 0 && job / jobsPerSql < spec.sqlExecutions();
+                if (newSql) {
+                    if (sqlId >= 0) w.write(sqlEnd(sqlId));
+                    sqlId = job / jobsPerSql;
+                    w.write(sqlStart(sqlId));
+                } else if (sqlId >= 0 && job / jobsPerSql >= spec.sqlExecutions()) {
+                    w.write(sqlEnd(sqlId));
+                    sqlId = -1;
+                }
+                stageId = writeJob(job, stageId, sqlId);
+            }
+            if (sqlId >= 0) w.write(sqlEnd(sqlId));
+
+            now += 1000;
+            w.write(obj("Event", "SparkListenerApplicationEnd", "Timestamp", now));
+        }
+
+        private int writeJob(int jobId, int firstStage, long sqlId) throws IOException {
+            List<Object> stageInfos = new ArrayList<>();
+            for (int s = 0; s < spec.stagesPerJob(); s++) {
+                stageInfos.add(stageInfo(firstStage + s, s, false));
+            }
+            List<Integer> stageIds = new ArrayList<>();
+            for (int s = 0; s < spec.stagesPerJob(); s++) stageIds.add(firstStage + s);
+            Map<String, Object> props = jobProperties(jobId, sqlId);
+            now += 20;
+            w.write(obj("Event", "SparkListenerJobStart", "Job ID", jobId, "Submission Time", now,
+                    "Stage Infos", stageInfos, "Stage IDs", stageIds, "Properties", props));
+            for (int s = 0; s < spec.stagesPerJob(); s++) {
+                writeStage(firstStage + s, s, props);
+            }
+            now += 10;
+            w.write(obj("Event", "SparkListenerJobEnd", "Job ID", jobId, "Completion Time", now,
+                    "Job Result", obj("Result", "JobSucceeded")));
+            return firstStage + spec.stagesPerJob();
+        }
+
+        private void writeStage(int stageId, int indexInJob, Map<String, Object> props) throws IOException {
+            now += 5;
+            Map<String, Object> info = stageInfo(stageId, indexInJob, true);
+            w.write(obj("Event", "SparkListenerStageSubmitted", "Stage Info", info, "Properties", props));
+
+            long stageStart = now;
+            int n = spec.tasksPerStage();
+            int slots = spec.executors() * 4;
+            long[] slotFree = new long[slots];
+            Arrays.fill(slotFree, stageStart);
+            long baseDuration = 800 + random.nextInt(2000);
+            long stageEnd = stageStart;
+            // Task 按启动顺序写 TaskStart，按完成时间顺序写 TaskEnd，和真实日志一样交错
+            PriorityQueue<long[]> running = new PriorityQueue<>(Comparator.comparingLong((long[] t) -> t[1]));
+            for (int index = 0; index < n; index++) {
+                int slot = index % slots;
+                long launch = slotFree[slot];
+                while (!running.isEmpty() && running.peek()[1] <= launch) {
+                    long[] done = running.poll();
+                    w.write(taskEnd(stageId, done));
+                }
+                boolean straggler = spec.skew() > 1 && random.nextInt(100) == 0;
+                double factor = (0.7 + random.nextDouble() * 0.6) * (straggler ? spec.skew() : 1);
+                long duration = (long) (baseDuration * factor);
+                long id = taskId++;
+                int executor = slot / 4 + 1;
+                w.write(obj("Event", "SparkListenerTaskStart", "Stage ID", stageId, "Stage Attempt ID", 0,
+                        "Task Info", taskInfo(id, index, executor, launch, 0, List.of())));
+                // {taskId, finish, index, executor, launch, factor * 1000}
+                running.add(new long[]{id, launch + duration, index, executor, launch, (long) (factor * 1000)});
+                slotFree[slot] = launch + duration + 2;
+                stageEnd = Math.max(stageEnd, launch + duration);
+            }
+            while (!running.isEmpty()) {
+                w.write(taskEnd(stageId, running.poll()));
+            }
+            now = stageEnd + 5;
+            for (int e = 1; e <= spec.executors(); e++) {
+                w.write(obj("Event", "SparkListenerStageExecutorMetrics", "Executor ID", String.valueOf(e),
+                        "Stage ID", stageId, "Stage Attempt ID", 0, "Executor Metrics", executorMetrics(e)));
+            }
+            info.put("Completion Time", now);
+            w.write(obj("Event", "SparkListenerStageCompleted", "Stage Info", info));
+        }
+
+        private Map<String, Object> taskEnd(int stageId, long[] t) {
+            long id = t[0], finish = t[1], launch = t[4];
+            int index = (int) t[2], executor = (int) t[3];
+            double factor = t[5] / 1000.0;
+            long runTime = finish - launch - 15;
+            long shuffleRead = (long) (48_000_000 * factor);
+            long records = (long) (1_100_000 * factor);
+            long shuffleWrite = shuffleRead / 2;
+            long gc = runTime / 40;
+            List<Object> acc = new ArrayList<>();
+            addAcc(acc, "internal.metrics.executorDeserializeTime", 12);
+            addAcc(acc, "internal.metrics.executorDeserializeCpuTime", 10_843_211);
+            addAcc(acc, "internal.metrics.executorRunTime", runTime);
+            addAcc(acc, "internal.metrics.executorCpuTime", runTime * 800_000);
+            addAcc(acc, "internal.metrics.resultSize", 4211);
+            addAcc(acc, "internal.metrics.jvmGCTime", gc);
+            addAcc(acc, "internal.metrics.shuffle.read.remoteBytesRead", shuffleRead);
+            addAcc(acc, "internal.metrics.shuffle.read.recordsRead", records);
+            addAcc(acc, "internal.metrics.shuffle.write.bytesWritten", shuffleWrite);
+            addAcc(acc, "internal.metrics.shuffle.write.recordsWritten", records / 3);
+            addAcc(acc, "internal.metrics.peakExecutionMemory", 268_435_456);
+            w.tasks++;
+            return obj("Event", "SparkListenerTaskEnd", "Stage ID", stageId, "Stage Attempt ID", 0,
+                    "Task Type", "ShuffleMapTask", "Task End Reason", obj("Reason", "Success"),
+                    "Task Info", taskInfo(id, index, executor, launch, finish, acc),
+                    "Task Executor Metrics", executorMetrics(executor),
+                    "Task Metrics", obj("Executor Deserialize Time", 12, "Executor Deserialize CPU Time", 10_843_211,
+                            "Executor Run Time", runTime, "Executor CPU Time", runTime * 800_000,
+                            "Peak Execution Memory", 268_435_456, "Result Size", 4211, "JVM GC Time", gc,
+                            "Result Serialization Time", 1, "Memory Bytes Spilled", factor > 2 ? shuffleRead * 2 : 0,
+                            "Disk Bytes Spilled", factor > 2 ? shuffleRead : 0,
+                            "Shuffle Read Metrics", obj("Remote Blocks Fetched", 198, "Local Blocks Fetched", 2,
+                                    "Fetch Wait Time", runTime / 100, "Remote Bytes Read", shuffleRead,
+                                    "Remote Bytes Read To Disk", 0, "Local Bytes Read", shuffleRead / 100,
+                                    "Total Records Read", records, "Remote Requests Duration", runTime / 6),
+                            "Shuffle Write Metrics", obj("Shuffle Bytes Written", shuffleWrite,
+                                    "Shuffle Write Time", runTime * 40_000, "Shuffle Records Written", records / 3),
+                            "Input Metrics", obj("Bytes Read", 0, "Records Read", 0),
+                            "Output Metrics", obj("Bytes Written", 0, "Records Written", 0),
+                            "Updated Blocks", List.of()));
+        }
+
+        private void addAcc(List<Object> acc, String name, long value) {
+            acc.add(obj("ID", accumulableId++, "Name", name, "Update", value, "Value", value,
+                    "Internal", true, "Count Failed Values", true));
+        }
+
+        private Map<String, Object> taskInfo(long id, int index, int executor, long launch, long finish, List<Object> acc) {
+            return obj("Task ID", id, "Index", index, "Attempt", 0, "Partition ID", index, "Launch Time", launch,
+                    "Executor ID", String.valueOf(executor), "Host", host(executor),
+                    "Locality", index % 7 == 0 ? "RACK_LOCAL" : "NODE_LOCAL", "Speculative", false,
+                    "Getting Result Time", 0, "Finish Time", finish, "Failed", false, "Killed", false,
+                    "Accumulables", acc);
+        }
+
+        private Map<String, Object> executorMetrics(int executor) {
+            return obj("JVMHeapMemory", 2_147_483_648L + executor * 1024L, "JVMOffHeapMemory", 201_326_592,
+                    "OnHeapExecutionMemory", 268_435_456, "OffHeapExecutionMemory", 0, "OnHeapStorageMemory", 52_428_800,
+                    "OffHeapStorageMemory", 0, "OnHeapUnifiedMemory", 320_864_256, "OffHeapUnifiedMemory", 0,
+                    "DirectPoolMemory", 16_777_216, "MappedPoolMemory", 0, "MinorGCCount", 31, "MinorGCTime", 412,
+                    "MajorGCCount", 1, "MajorGCTime", 88);
+        }
+
+        private Map<String, Object> stageInfo(int stageId, int indexInJob, boolean submitted) {
+            List<Object> rdds = new ArrayList<>();
+            int first = rddId;
+            for (int i = 0; i < 3; i++) {
+                int id = rddId++;
+                rdds.add(obj("RDD ID", id, "Name", i == 0 ? "FileScanRDD" : "MapPartitionsRDD",
+                        "Scope", "{\"id\":\"" + (id * 3) + "\",\"name\":\"WholeStageCodegen (" + (i + 1) + ")\"}",
+                        "Callsite", "insertInto at ETLJob.scala:240", "Parent IDs", i == 0 ? List.of() : List.of(id - 1),
+                        "Storage Level", obj("Use Disk", false, "Use Memory", false, "Use Off Heap", false,
+                                "Deserialized", false, "Replication", 1),
+                        "Barrier", false, "DeterministicLevel", "DETERMINATE",
+                        "Number of Partitions", spec.tasksPerStage(), "Number of Cached Partitions", 0,
+                        "Memory Size", 0, "Disk Size", 0));
+            }
+            if (!submitted) rddId = first;
+            Map<String, Object> info = obj("Stage ID", stageId, "Stage Attempt ID", 0,
+                    "Stage Name", (indexInJob == spec.stagesPerJob() - 1 ? "insertInto" : "save") + " at ETLJob.scala:" + (200 + indexInJob),
+                    "Number of Tasks", spec.tasksPerStage(), "RDD Info", rdds,
+                    "Parent IDs", indexInJob == 0 ? List.of() : List.of(stageId - 1),
+                    "Details", "org.apache.spark.sql.Dataset.insertInto(Dataset.scala:3886)\ncom.example.etl.ETLJob$.run(ETLJob.scala:240)",
+                    "Accumulables", List.of(), "Resource Profile Id", 0);
+            if (submitted) info.put("Submission Time", now);
+            return info;
+        }
+
+        private Map<String, Object> jobProperties(int jobId, long sqlId) {
+            Map<String, Object> props = obj("spark.job.description", "synthetic job " + jobId,
+                    "spark.jobGroup.id", "etl-group-" + (jobId / 5), "callSite.short", "insertInto at ETLJob.scala:240",
+                    "spark.rdd.scope", "{\"id\":\"" + jobId + "\",\"name\":\"Exchange\"}");
+            if (sqlId >= 0) props.put("spark.sql.execution.id", String.valueOf(sqlId));
+            return props;
+        }
+
+        private Map<String, Object> sqlStart(long id) {
+            now += 10;
+            Map<String, Object> scan = obj("nodeName", "Scan parquet warehouse.orders", "simpleString", "FileScan parquet",
+                    "children", List.of(), "metadata", obj(), "metrics", List.of(
+                            obj("name", "number of output rows", "accumulatorId", accumulableId++, "metricType", "sum")));
+            Map<String, Object> exchange = obj("nodeName", "Exchange", "simpleString", "Exchange hashpartitioning(order_id#1, 800)",
+                    "children", List.of(scan), "metadata", obj(), "metrics", List.of(
+                            obj("name", "shuffle bytes written", "accumulatorId", accumulableId++, "metricType", "size")));
+            return obj("Event", "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart",
+                    "executionId", id, "rootExecutionId", id, "description", "insert into table warehouse.daily_orders_" + id,
+                    "details", "org.apache.spark.sql.Dataset.insertInto(Dataset.scala:3886)",
+                    "physicalPlanDescription", "== Physical Plan ==\nExecute InsertIntoHadoopFsRelationCommand\n+- Exchange hashpartitioning(order_id#1, 800)\n   +- FileScan parquet warehouse.orders",
+                    "sparkPlanInfo", obj("nodeName", "Execute InsertIntoHadoopFsRelationCommand",
+                            "simpleString", "Execute InsertIntoHadoopFsRelationCommand", "children", List.of(exchange),
+                            "metadata", obj(), "metrics", List.of()),
+                    "time", now, "modifiedConfigs", obj());
+        }
+
+        private Map<String, Object> sqlEnd(long id) {
+            now += 10;
+            return obj("Event", "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd",
+                    "executionId", id, "time", now, "errorMessage", "");
+        }
+
+        private Map<String, Object> environmentUpdate() {
+            Map<String, Object> sparkProps = obj("spark.app.id", spec.appId(), "spark.app.name", "synthetic-etl",
+                    "spark.user.name", "etl", "spark.executor.instances", String.valueOf(spec.executors()),
+                    "spark.executor.memory", "8g", "spark.executor.cores", "4", "spark.driver.memory", "4g",
+                    "spark.sql.shuffle.partitions", String.valueOf(spec.tasksPerStage()),
+                    "spark.eventLog.enabled", "true", "spark.eventLog.rolling.enabled", String.valueOf(spec.rollingMaxMb() > 0));
+            for (int i = 0; i < 60; i++) sparkProps.put("spark.sql.synthetic.conf" + i, "value-" + i);
+            Map<String, Object> hadoop = new LinkedHashMap<>();
+            for (int i = 0; i < 120; i++) hadoop.put("fs.s3a.synthetic.option" + i, String.valueOf(i * 7));
+            Map<String, Object> system = new LinkedHashMap<>();
+            for (int i = 0; i < 50; i++) system.put("synthetic.system.prop" + i, "/opt/spark/conf/value" + i);
+            Map<String, Object> classpath = new LinkedHashMap<>();
+            for (int i = 0; i < 250; i++) classpath.put("/opt/spark/jars/library-" + i + "-" + spec.sparkVersion() + ".jar", "System Classpath");
+            return obj("Event", "SparkListenerEnvironmentUpdate",
+                    "JVM Information", obj("Java Home", "/usr/lib/jvm/java-17-openjdk", "Java Version", "17.0.9 (Eclipse Adoptium)",
+                            "Scala Version", spec.sparkVersion().startsWith("4") ? "version 2.13.14" : "version 2.12.18"),
+                    "Spark Properties", sparkProps, "Hadoop Properties", hadoop, "System Properties", system,
+                    "Metrics Properties", obj("*.sink.servlet.class", "org.apache.spark.metrics.sink.MetricsServlet"),
+                    "Classpath Entries", classpath);
+        }
+
+        private static String host(int executor) {
+            return String.format("worker-%04d.cluster.internal", executor);
+        }
+    }
+
+    private static Map<String, Object> obj(Object... kv) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            map.put((String) kv[i], kv[i + 1]);
+        }
+        return map;
+    }
+}
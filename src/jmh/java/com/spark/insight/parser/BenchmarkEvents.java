@@ -0,0 +1,47 @@
+package com.spark.insight.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的代表性事件 (benchmark-events.jsonl，每种类型一行)，按 Event 类型名索引。
+ * <p>
+ * 行的大小和结构参照真实的 Spark 3.4 日志：TaskEnd 带完整的 Accumulables 和 Task Executor Metrics，
+ * EnvironmentUpdate 带几百项 Hadoop 配置和 Classpath。
+ */
+final class BenchmarkEvents {
+
+    private static final Map<String, byte[]> LINES = load();
+
+    private BenchmarkEvents() {
+    }
+
+    static byte[] line(String eventType) {
+        byte[] line = LINES.get(eventType);
+        if (line == null) {
+            throw new IllegalArgumentException("No sample event for " + eventType);
+        }
+        return line;
+    }
+
+    private static Map<String, byte[]> load() {
+        Map<String, byte[]> lines = new LinkedHashMap<>();
+        try (InputStream in = BenchmarkEvents.class.getResourceAsStream("/benchmark-events.jsonl");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                int start = line.indexOf(":\"") + 2;
+                lines.put(line.substring(start, line.indexOf('"', start)), line.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load benchmark events", e);
+        }
+        return lines;
+    }
+}
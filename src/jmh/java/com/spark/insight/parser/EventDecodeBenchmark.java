@@ -0,0 +1,41 @@
+package com.spark.insight.parser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个事件的预过滤 + 解码耗时 (ns/event)，加 {@code -prof gc} 时 gc.alloc.rate.norm 即每个事件分配的字节数。
+ * <p>
+ * TaskStart 是被预过滤器直接丢弃的行，用来衡量过滤本身的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventDecodeBenchmark {
+
+    @Param({SparkEventDecoder.TASK_END, SparkEventDecoder.STAGE_SUBMITTED,
+            SparkEventDecoder.ENVIRONMENT_UPDATE, "SparkListenerTaskStart"})
+    public String eventType;
+
+    private final SparkEventDecoder decoder = new SparkEventDecoder();
+    private final EventTypeFilter filter = new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS);
+    private byte[] line;
+
+    @Setup
+    public void setUp() {
+        line = BenchmarkEvents.line(eventType);
+    }
+
+    @Benchmark
+    public Object filterAndDecode() throws IOException {
+        if (!filter.shouldDecode(filter.classify(line, 0, line.length))) {
+            return null;
+        }
+        return decoder.decode(line, 0, line.length);
+    }
+}
@@ -0,0 +1,75 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.EnvironmentConfigModel;
+import com.spark.insight.model.TaskModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个事件从解码到 handler 应用进内存状态 / 批次的耗时 (ns/event)，不包括数据库写入。
+ * <p>
+ * 与 {@link EventDecodeBenchmark} 对比即可得到 handler 本身的开销。批次达到解析器的刷新大小时清空，
+ * 和解析时一样不会无限增长。
+ * <p>
+ * streamStageMetrics 为 true 时 TaskEnd 同时累加进 Stage 指标和分位数草图 (从头解析时的情况)。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventHandlerBenchmark {
+
+    private static final String APP_ID = "spark-8f2c1d5e9a7b4c3d";
+
+    private final SparkEventDecoder decoder = new SparkEventDecoder();
+    private final byte[] taskEnd = BenchmarkEvents.line(SparkEventDecoder.TASK_END);
+    private final byte[] stageSubmitted = BenchmarkEvents.line(SparkEventDecoder.STAGE_SUBMITTED);
+    private final byte[] envUpdate = BenchmarkEvents.line(SparkEventDecoder.ENVIRONMENT_UPDATE);
+
+    @Param({"false", "true"})
+    public boolean streamStageMetrics;
+
+    private AppState state;
+    private final List<TaskModel> taskBatch = new ArrayList<>();
+    private final List<EnvironmentConfigModel> envBatch = new ArrayList<>();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        state = new AppState(APP_ID, APP_ID, 1);
+        state.stageToJobMap.put(14, 3);
+        if (streamStageMetrics) state.fileStarted(1, false);
+        taskBatch.clear();
+        envBatch.clear();
+    }
+
+    @Benchmark
+    public int handleTaskEnd() throws IOException {
+        JacksonEventParser.handleTaskEnd((SparkEvent.TaskEnd) decoder.decode(taskEnd, 0, taskEnd.length), state, taskBatch);
+        if (taskBatch.size() >= 5000) {
+            taskBatch.clear();
+        }
+        return taskBatch.size();
+    }
+
+    @Benchmark
+    public AppState handleStageSubmitted() throws IOException {
+        JacksonEventParser.handleStageSubmitted(
+                (SparkEvent.StageSubmitted) decoder.decode(stageSubmitted, 0, stageSubmitted.length), state);
+        return state;
+    }
+
+    @Benchmark
+    public int handleEnvUpdate() throws IOException {
+        JacksonEventParser.handleEnvUpdate(
+                (SparkEvent.EnvironmentUpdate) decoder.decode(envUpdate, 0, envUpdate.length), APP_ID, envBatch);
+        int size = envBatch.size();
+        envBatch.clear();
+        return size;
+    }
+}
@@ -0,0 +1,95 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.EnvironmentConfigModel;
+import com.spark.insight.model.TaskModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析器的端到端 CPU 路径：按块切分 → 并行预过滤 / 解码 → 按顺序把事件应用进内存状态，结果以 ns/event 报告
+ * (每行一个事件，被过滤的 TaskStart 也计入)。
+ * <p>
+ * 日志在内存中按真实比例拼出：一次 EnvironmentUpdate，之后每个 Stage 一个 StageSubmitted
+ * 和 {@value #TASKS_PER_STAGE} 对 TaskStart / TaskEnd。DuckDB 写入不在测量范围内。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParsePipelineBenchmark {
+
+    private static final String APP_ID = "spark-8f2c1d5e9a7b4c3d";
+    private static final int STAGES = 50;
+    private static final int TASKS_PER_STAGE = 200;
+    private static final int EVENTS = 1 + STAGES * (1 + 2 * TASKS_PER_STAGE);
+
+    @Param({"1", "4"})
+    public int decodeWorkers;
+
+    private byte[] log;
+    private ExecutorService executor;
+    private EventDecodePipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        append(out, BenchmarkEvents.line(SparkEventDecoder.ENVIRONMENT_UPDATE));
+        for (int stage = 0; stage < STAGES; stage++) {
+            append(out, BenchmarkEvents.line(SparkEventDecoder.STAGE_SUBMITTED));
+            for (int task = 0; task < TASKS_PER_STAGE; task++) {
+                append(out, BenchmarkEvents.line("SparkListenerTaskStart"));
+                append(out, BenchmarkEvents.line(SparkEventDecoder.TASK_END));
+            }
+        }
+        log = out.toByteArray();
+        executor = Executors.newFixedThreadPool(decodeWorkers);
+        pipeline = new EventDecodePipeline(new SparkEventDecoder(), new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS),
+                executor, decodeWorkers, 1024 * 1024, decodeWorkers * 2);
+    }
+
+    private static void append(ByteArrayOutputStream out, byte[] line) {
+        out.writeBytes(line);
+        out.write('\n');
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long parse() throws Exception {
+        AppState state = new AppState(APP_ID, APP_ID, 1);
+        List<TaskModel> taskBatch = new ArrayList<>();
+        List<EnvironmentConfigModel> envBatch = new ArrayList<>();
+        long[] tasks = {0};
+        pipeline.run(new ByteArrayInputStream(log), "benchmark", chunk -> {
+            for (SparkEvent event : chunk.events()) {
+                switch (event) {
+                    case SparkEvent.TaskEnd e -> {
+                        JacksonEventParser.handleTaskEnd(e, state, taskBatch);
+                        if (taskBatch.size() >= 5000) {
+                            tasks[0] += taskBatch.size();
+                            taskBatch.clear();
+                        }
+                    }
+                    case SparkEvent.StageSubmitted e -> JacksonEventParser.handleStageSubmitted(e, state);
+                    case SparkEvent.EnvironmentUpdate e -> JacksonEventParser.handleEnvUpdate(e, APP_ID, envBatch);
+                    default -> {
+                    }
+                }
+            }
+        });
+        return tasks[0] + taskBatch.size() + envBatch.size();
+    }
+}
@@ -18,6 +18,16 @@ public class InsightProperties {
      */
     private Scheduler scheduler = new Scheduler();
 
+    /**
+     * Event log parsing pipeline configuration.
+     */
+    private Parser parser = new Parser();
+
+    /**
+     * Background database maintenance.
+     */
+    private Maintenance maintenance = new Maintenance();
+
     @Data
     public static class Scheduler {
         /**
@@ -26,8 +36,116 @@ public class InsightProperties {
         private boolean enabled = true;
 
         /**
-         * Interval in seconds between scans.
+         * Interval in seconds between full reconciliation scans of the event log tree.
+         * With the file system watcher enabled this is only a fallback for missed events.
          */
         private long scanIntervalSeconds = 10;
+
+        /**
+         * Watch the event log tree with the file system WatchService so new and growing logs
+         * are picked up within seconds.
+         */
+        private boolean watch = true;
+
+        /**
+         * A changed file is parsed once it has seen no further events for this many milliseconds.
+         */
+        private long debounceMillis = 2000;
+
+        /**
+         * Maximum number of apps parsed at the same time.
+         */
+        private int maxConcurrentApps = 10;
+
+        /**
+         * Budget for the total size (MB) of the logs being parsed at the same time. An app larger than
+         * the budget still runs, but only when nothing else is running.
+         */
+        private long maxBytesInFlightMb = 4096;
+
+        /**
+         * Order of queued apps: SMALLEST_FIRST (shortest job first) or NEWEST_FIRST (most recently modified first).
+         * Apps bumped through the API always go first.
+         */
+        private IngestionPriority priority = IngestionPriority.SMALLEST_FIRST;
+    }
+
+    public enum IngestionPriority {
+        SMALLEST_FIRST,
+        NEWEST_FIRST
+    }
+
+    @Data
+    public static class Parser {
+        /**
+         * Number of threads decoding line chunks in parallel (shared by all files being parsed).
+         * Defaults to the number of available processors.
+         */
+        private int decodeWorkers = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Size in KB of the line-aligned chunks the reader hands to decode workers.
+         */
+        private int chunkSizeKb = 4096;
+
+        /**
+         * Maximum number of chunks per file that may be read or decoded ahead of the applier.
+         * 0 means twice the number of decode workers.
+         */
+        private int maxChunksInFlight = 0;
+
+        /**
+         * Memory-map large uncompressed logs and decode their newline-aligned ranges in parallel,
+         * instead of streaming them through a single reader.
+         */
+        private boolean memoryMapped = true;
+
+        /**
+         * Uncompressed logs at least this large (MB) are memory-mapped.
+         */
+        private long memoryMapMinSizeMb = 64;
+
+        /**
+         * How parsed task rows are written: APPENDER streams them into DuckDB staging tables,
+         * PARQUET spools them into a Parquet shard per log and loads it with a single statement.
+         */
+        private WriteBackend writeBackend = WriteBackend.APPENDER;
+
+        /**
+         * Directory where Parquet task shards are kept. Shards of unchanged logs are reused on re-ingest.
+         */
+        private String parquetCacheDir = "./workspace/parquet-cache";
+
+        /**
+         * How often (seconds) the in-memory job/stage/SQL/executor state and pending batches
+         * are flushed to DuckDB while a file is being parsed. The file end always flushes.
+         */
+        private int checkpointIntervalSeconds = 30;
+
+        /**
+         * Maximum number of pending DuckDB writes. When full, the parse thread waits for the writer
+         * instead of buffering more batches on the heap.
+         */
+        private int writeQueueCapacity = 64;
+
+        /**
+         * Upper bound on the rows of adjacent queued task batches that are appended in a single write.
+         */
+        private int maxCoalescedTaskRows = 50000;
+    }
+
+    @Data
+    public static class Maintenance {
+        /**
+         * Cron expression for rewriting the tasks table in (app, stage, attempt, task index) order, so queries
+         * on one stage skip the row groups of other apps and stages. "-" disables it. The rewrite blocks
+         * other database writes while it runs, so schedule it outside busy ingestion hours.
+         */
+        private String reclusterCron = "-";
+    }
+
+    public enum WriteBackend {
+        APPENDER,
+        PARQUET
     }
 }
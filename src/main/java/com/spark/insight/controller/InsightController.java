@@ -3,11 +3,16 @@ package com.spark.insight.controller;
 import com.spark.insight.model.*;
 import com.spark.insight.model.dto.AppComparisonResult;
 import com.spark.insight.model.dto.ComparisonResult;
+import com.spark.insight.model.dto.IngestionProgress;
+import com.spark.insight.model.dto.IngestionQueueStatus;
 import com.spark.insight.model.dto.PageResponse;
+import com.spark.insight.model.dto.TaskMetricDistribution;
 import com.spark.insight.service.*;
 import com.spark.insight.exception.AppParsingException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -28,15 +33,62 @@ public class InsightController {
     private final SqlExecutionService sqlExecutionService;
     private final StorageService storageService;
     private final LLMDiagnosisService llmDiagnosisService;
+    private final IngestionProgressService progressService;
+    private final IngestionScheduler ingestionScheduler;
+
+    // tasks 表只保存整数 app_key
+    private static final String TASK_APP_KEY = "app_key = (SELECT app_key FROM app_keys WHERE app_id = {0})";
 
     private void checkAppReady(String appId) {
         ApplicationModel app = applicationService.getById(appId);
+        // 已有完整版本时重新解析写在暂存 App 下，替换前继续返回当前版本
+        if (app != null && "READY".equals(app.getParsingStatus())) {
+            return;
+        }
+        IngestionProgress progress = progressService.get(appId);
+        if (progress != null && IngestionProgressService.PARSING.equals(progress.getState())) {
+            throw new AppParsingException(progress.getMessage());
+        }
         if (app != null && "PARSING".equals(app.getParsingStatus())) {
             String msg = app.getParsingProgress() != null ? app.getParsingProgress() : "Processing...";
             throw new AppParsingException(msg);
         }
     }
 
+    /**
+     * 订阅解析进度 (Server-Sent Events，事件名 progress)，解析完成后服务端关闭连接
+     */
+    @GetMapping(value = "/apps/{appId}/progress/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProgress(@PathVariable String appId) {
+        return progressService.subscribe(appId);
+    }
+
+    /**
+     * 获取当前解析进度，App 不在解析中时返回空
+     */
+    @GetMapping("/apps/{appId}/progress")
+    public IngestionProgress getProgress(@PathVariable String appId) {
+        return progressService.get(appId);
+    }
+
+    /**
+     * 解析调度队列：正在解析和排队中的 App (按出队顺序)、字节预算
+     */
+    @GetMapping("/ingestion/queue")
+    public IngestionQueueStatus getIngestionQueue() {
+        return ingestionScheduler.status();
+    }
+
+    /**
+     * 把排队中的 App 移到队首
+     *
+     * @return App 不在排队中 (已在解析或未知) 时返回 false
+     */
+    @PostMapping("/ingestion/queue/{appId}/bump")
+    public boolean bumpIngestion(@PathVariable String appId) {
+        return ingestionScheduler.bump(appId);
+    }
+
     /**
      * 获取 Job 列表
      */
@@ -222,20 +274,21 @@ public class InsightController {
         checkAppReady(appId);
         // 1. 获取总数 (使用独立的 QueryWrapper)
         var countQuery = taskService.lambdaQuery()
-                .eq(TaskModel::getAppId, appId)
+                .apply(TASK_APP_KEY, appId)
                 .eq(TaskModel::getStageId, stageId);
         if (attemptId != null) countQuery.eq(TaskModel::getAttemptId, attemptId);
         long total = countQuery.count();
 
         // 2. 获取列表 (使用新的 QueryWrapper)
         var listQuery = taskService.lambdaQuery()
-                .eq(TaskModel::getAppId, appId)
+                .apply(TASK_APP_KEY, appId)
                 .eq(TaskModel::getStageId, stageId);
         if (attemptId != null) listQuery.eq(TaskModel::getAttemptId, attemptId);
 
         listQuery.last(buildSqlSuffix(sort, page, size, "task_index ASC"));
 
         List<TaskModel> items = listQuery.list();
+        items.forEach(t -> t.setAppId(appId));
         int totalPages = (int) Math.ceil((double) total / size);
         return new PageResponse<>(items, total, page, size, totalPages);
     }
@@ -249,7 +302,8 @@ public class InsightController {
                                                    @RequestParam(required = false) String sort,
                                                    @RequestParam(required = false) String search) {
         // listApps needs to return apps even if parsing, so status can be seen
-        var query = applicationService.lambdaQuery();
+        var query = applicationService.lambdaQuery()
+                .notLikeLeft(ApplicationModel::getAppId, ApplicationService.STAGED_SUFFIX);
         if (search != null && !search.isBlank()) {
             String searchPattern = "%" + search + "%";
             query.and(q -> q.apply("app_name ILIKE {0}", searchPattern)
@@ -388,11 +442,13 @@ public class InsightController {
                                             @RequestParam(required = false) Integer attemptId) {
         checkAppReady(appId);
         var query = taskService.lambdaQuery()
-                .eq(TaskModel::getAppId, appId)
+                .apply(TASK_APP_KEY, appId)
                 .eq(TaskModel::getStageId, stageId);
         if (attemptId != null) query.eq(TaskModel::getAttemptId, attemptId);
 
-        return query.orderByAsc(TaskModel::getLaunchTime).list();
+        List<TaskModel> items = query.orderByAsc(TaskModel::getLaunchTime).list();
+        items.forEach(t -> t.setAppId(appId));
+        return items;
     }
 
     /**
@@ -413,6 +469,27 @@ public class InsightController {
         return stageService.getJobExecutorSummary(appId, jobId);
     }
 
+    /**
+     * 获取 App / Job / SQL 范围内所有 Task 的指标分布 (由各 Stage 的分位数草图合并得到)
+     */
+    @GetMapping("/apps/{appId}/task-distribution")
+    public List<TaskMetricDistribution> getAppTaskDistribution(@PathVariable String appId) {
+        checkAppReady(appId);
+        return stageService.getTaskDistribution(appId, null, null);
+    }
+
+    @GetMapping("/apps/{appId}/jobs/{jobId}/task-distribution")
+    public List<TaskMetricDistribution> getJobTaskDistribution(@PathVariable String appId, @PathVariable Integer jobId) {
+        checkAppReady(appId);
+        return stageService.getTaskDistribution(appId, jobId, null);
+    }
+
+    @GetMapping("/apps/{appId}/sql/{executionId}/task-distribution")
+    public List<TaskMetricDistribution> getSqlTaskDistribution(@PathVariable String appId, @PathVariable Long executionId) {
+        checkAppReady(appId);
+        return stageService.getTaskDistribution(appId, null, executionId);
+    }
+
     @GetMapping("/apps/{appId}/jobs/{jobId}/stages")
     public List<StageModel> getJobStages(@PathVariable String appId, @PathVariable Integer jobId) {
         checkAppReady(appId);
@@ -429,7 +506,12 @@ public class InsightController {
     @GetMapping("/apps/{appId}")
     public ApplicationModel getApp(@PathVariable String appId) {
         // Do NOT checkAppReady here, we need this to check status
-        return applicationService.getById(appId);
+        ApplicationModel app = applicationService.getById(appId);
+        if (app == null || !"READY".equals(app.getParsingStatus())) {
+            // 用户正在等这个 App，还在排队的话提前解析
+            ingestionScheduler.bump(appId);
+        }
+        return app;
     }
 
     private String buildSqlSuffix(String sort, int page, int size, String defaultSort) {
@@ -5,7 +5,9 @@ import com.spark.insight.model.ExecutorModel;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface ExecutorMapper extends BaseMapper<ExecutorModel> {
-    void updateExecutorMetrics(@Param("appId") String appId);
+    void updateExecutorMetrics(@Param("appId") String appId, @Param("executorIds") List<String> executorIds);
 }
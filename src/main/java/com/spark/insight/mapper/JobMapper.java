@@ -5,7 +5,9 @@ import com.spark.insight.model.JobModel;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface JobMapper extends BaseMapper<JobModel> {
-    void calculateJobMetrics(@Param("appId") String appId);
+    void calculateJobMetrics(@Param("appId") String appId, @Param("jobIds") List<Integer> jobIds);
 }
@@ -3,8 +3,12 @@ package com.spark.insight.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.spark.insight.model.SqlExecutionModel;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface SqlExecutionMapper extends BaseMapper<SqlExecutionModel> {
-    void calculateSqlMetrics(String appId);
+    void calculateSqlMetrics(@Param("appId") String appId, @Param("jobIds") List<Integer> jobIds,
+                             @Param("sqlIds") List<Long> sqlIds);
 }
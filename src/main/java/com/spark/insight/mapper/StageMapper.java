@@ -2,6 +2,7 @@ package com.spark.insight.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.spark.insight.model.StageModel;
+import com.spark.insight.model.dto.TaskMetricDistribution;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -10,11 +11,28 @@ import java.util.Map;
 
 @Mapper
 public interface StageMapper extends BaseMapper<StageModel> {
-    void updateStageMetrics(@Param("appId") String appId);
+    void updateStageMetrics(@Param("appId") String appId, @Param("stageIds") List<Integer> stageIds);
 
-    void deleteStageStats(@Param("appId") String appId);
+    void deleteStageStats(@Param("appId") String appId, @Param("stageIds") List<Integer> stageIds);
 
-    void insertTaskStats(@Param("appId") String appId);
+    void insertTaskStats(@Param("appId") String appId, @Param("stageIds") List<Integer> stageIds);
+
+    void applyStageAggregates(@Param("appId") String appId, @Param("loadId") long loadId);
+
+    void upsertStreamedStageStats(@Param("appId") String appId, @Param("loadId") long loadId);
+
+    void upsertStageSketches(@Param("appId") String appId, @Param("loadId") long loadId);
+
+    void deleteStageSketches(@Param("appId") String appId, @Param("stageIds") List<Integer> stageIds);
+
+    long countStagesWithoutSketch(@Param("appId") String appId, @Param("jobId") Integer jobId,
+                                  @Param("executionId") Long executionId);
+
+    List<Map<String, Object>> selectStageSketches(@Param("appId") String appId, @Param("jobId") Integer jobId,
+                                                  @Param("executionId") Long executionId);
+
+    List<TaskMetricDistribution> selectTaskDistribution(@Param("appId") String appId, @Param("jobId") Integer jobId,
+                                                        @Param("executionId") Long executionId);
 
     List<java.util.Map<String, Object>> getExecutorSummary(@Param("appId") String appId,
                                                            @Param("stageId") Integer stageId,
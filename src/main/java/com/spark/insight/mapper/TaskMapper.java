@@ -9,9 +9,11 @@ import org.apache.ibatis.annotations.Select;
 @Mapper
 public interface TaskMapper extends BaseMapper<TaskModel> {
 
-    @Select("SELECT count(DISTINCT executor_id) FROM tasks WHERE app_id = #{appId} AND stage_id = #{stageId}")
+    @Select("SELECT count(DISTINCT executor_id) FROM tasks WHERE app_key = (SELECT app_key FROM app_keys WHERE app_id = #{appId}) AND stage_id = #{stageId}")
     long getExecutorCountForStage(@Param("appId") String appId, @Param("stageId") int stageId);
 
-    @Select("SELECT count(DISTINCT t.executor_id) FROM tasks t JOIN stages s ON t.app_id = s.app_id AND t.stage_id = s.stage_id WHERE t.app_id = #{appId} AND s.job_id = #{jobId}")
+    // 只统计在这个 Job 下实际运行的 Stage (stages.job_id)，不包含 job_stages 中被跳过的 Stage
+    @Select("SELECT count(DISTINCT t.executor_id) FROM tasks t JOIN stages s ON s.app_id = #{appId} AND t.stage_id = s.stage_id " +
+            "WHERE t.app_key = (SELECT app_key FROM app_keys WHERE app_id = #{appId}) AND s.job_id = #{jobId}")
     long getExecutorCountForJob(@Param("appId") String appId, @Param("jobId") int jobId);
 }
@@ -13,7 +13,11 @@ public class ParsedEventLogModel {
     private String filePath;
     private Long lastModified;
     private Long fileSize;
-    private String fileHash;
+    private String fileHash; // 抽样内容指纹 (xxHash64)
+    private String fullHash; // 全文件 xxHash64，后台计算
     private LocalDateTime parsedAt;
-    private String status; // SUCCESS, FAILED
+    private String status; // PROCESSING, SUCCESS, FAILED, DUPLICATE, STALE
+    private String duplicateOf; // DUPLICATE 时为内容相同的已解析路径
+    private Long committedOffset; // 已解析到的字节位置 (行边界)
+    private String parserState; // ParseCheckpoint 的 JSON
 }
@@ -6,8 +6,9 @@ import lombok.Data;
 @Data
 @TableName("tasks")
 public class TaskModel {
-    @com.baomidou.mybatisplus.annotation.TableId
-    private String id;
+    // 主键为 (appKey, stageId, attemptId, taskId)
+    private Integer appKey;
+    @com.baomidou.mybatisplus.annotation.TableField(exist = false)
     private String appId;
     private Integer stageId;
     private Integer attemptId;
@@ -0,0 +1,32 @@
+package com.spark.insight.model.dto;
+
+import lombok.Data;
+
+/**
+ * 单个 App 的解析进度快照 (只保存在内存中，通过 SSE 推送给前端)
+ */
+@Data
+public class IngestionProgress {
+    private String appId;
+    /**
+     * PARSING / POST_PROCESSING / READY / FAILED
+     */
+    private String state;
+    private String fileName;
+    private int fileIndex;
+    private int totalFiles;
+    /**
+     * 当前文件已读取的字节数 (压缩日志按压缩后的字节计)
+     */
+    private long bytesRead;
+    private long totalBytes;
+    private long lineCount;
+    private long eventCount;
+    private double eventsPerSecond;
+    /**
+     * 预计剩余秒数，按当前文件的读取速度估算，剩余文件按与当前文件大小相同估算；无法估算时为 null
+     */
+    private Long etaSeconds;
+    private String message;
+    private long updatedAt;
+}
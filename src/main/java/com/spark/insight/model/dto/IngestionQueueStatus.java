@@ -0,0 +1,38 @@
+package com.spark.insight.model.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析调度队列的快照
+ */
+@Data
+public class IngestionQueueStatus {
+    /**
+     * SMALLEST_FIRST / NEWEST_FIRST
+     */
+    private String priority;
+    private long bytesInFlight;
+    private long maxBytesInFlight;
+    private int maxConcurrentApps;
+    private List<Entry> running = new ArrayList<>();
+    /**
+     * 按出队顺序排列
+     */
+    private List<Entry> queued = new ArrayList<>();
+
+    @Data
+    public static class Entry {
+        /**
+         * App ID，无法推断 App ID 的单个文件为文件路径
+         */
+        private String key;
+        private int fileCount;
+        private long bytes;
+        private boolean bumped;
+        private long submittedAt;
+        private Long startedAt;
+    }
+}
@@ -0,0 +1,18 @@
+package com.spark.insight.model.dto;
+
+import lombok.Data;
+
+/**
+ * 一组 Stage (Job / SQL / 整个 App) 内所有 Task 在某个指标上的分布，由各 Stage 的分位数草图合并得到
+ */
+@Data
+public class TaskMetricDistribution {
+    private String metricName;
+    private long taskCount;
+    private Long minValue;
+    private Long p25;
+    private Long p50;
+    private Long p75;
+    private Long p95;
+    private Long maxValue;
+}
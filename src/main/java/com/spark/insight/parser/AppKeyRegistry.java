@@ -0,0 +1,125 @@
+package com.spark.insight.parser;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * App ID → 整数 app_key 字典 (app_keys 表)。
+ * <p>
+ * tasks 等大表只保存 app_key，不再在每一行上重复 App ID 字符串；
+ * 查询时通过 {@code app_key = (SELECT app_key FROM app_keys WHERE app_id = ?)} 关联。
+ * 已分配的 key 缓存在内存中，每个 App 在进程内只查询一次数据库。
+ * 解析器依赖本组件，旧库中以字符串 id 为主键的 tasks 表会在解析开始前迁移。
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class AppKeyRegistry {
+
+    private final DataSource dataSource;
+    private final Map<String, Integer> keys = new ConcurrentHashMap<>();
+
+    public AppKeyRegistry(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 旧版 tasks 表 (id = appId-stageId-attemptId-taskId) 迁移为 (app_key, stage_id, attempt_id, task_id) 组合主键。
+     * schema.sql 中的 CREATE TABLE IF NOT EXISTS 不会改动已存在的表，所以在这里重建。
+     * <p>
+     * 在 schema.sql 执行之后运行 (app_keys 由它创建)。整个迁移在一个事务中完成，中途失败时保持原样，下次启动重新迁移；
+     * 只重建 tasks，不重新执行整个 schema.sql。
+     */
+    @PostConstruct
+    void migrateLegacyTasks() throws SQLException, IOException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            if (!hasColumn(st, "tasks", "id")) return;
+
+            log.info("Migrating tasks table to integer app_key primary key...");
+            String schema = new ClassPathResource("db/schema.sql").getContentAsString(StandardCharsets.UTF_8);
+            conn.setAutoCommit(false);
+            try {
+                st.execute("ALTER TABLE tasks RENAME TO tasks_legacy");
+                st.execute(tableDdl(schema, "tasks"));
+                st.execute("INSERT INTO app_keys (app_id) SELECT DISTINCT app_id FROM tasks_legacy " +
+                        "WHERE app_id IS NOT NULL ON CONFLICT (app_id) DO NOTHING");
+                int rows = st.executeUpdate("INSERT OR IGNORE INTO tasks BY NAME " +
+                        "SELECT k.app_key, l.* EXCLUDE (id, app_id) FROM tasks_legacy l JOIN app_keys k ON k.app_id = l.app_id");
+                st.execute("DROP TABLE tasks_legacy");
+                conn.commit();
+                log.info("Migrated {} task rows", rows);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static boolean hasColumn(Statement st, String table, String column) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT count(*) FROM information_schema.columns " +
+                "WHERE table_name = '" + table + "' AND column_name = '" + column + "'")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+
+    /**
+     * 从 schema.sql 中取出单个表的 CREATE TABLE IF NOT EXISTS 语句
+     */
+    private static String tableDdl(String schema, String table) {
+        Matcher m = Pattern.compile("CREATE TABLE IF NOT EXISTS " + table + " \\(.*?\\n\\);", Pattern.DOTALL).matcher(schema);
+        if (!m.find()) {
+            throw new IllegalStateException("No definition of " + table + " in schema.sql");
+        }
+        return m.group();
+    }
+
+    /**
+     * @return App 对应的 app_key，不存在时分配一个新的
+     */
+    public int keyOf(String appId) {
+        Integer key = keys.get(appId);
+        if (key != null) return key;
+        synchronized (this) {
+            return keys.computeIfAbsent(appId, this::loadOrCreate);
+        }
+    }
+
+    private Integer loadOrCreate(String appId) {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO app_keys (app_id) VALUES (?) ON CONFLICT (app_id) DO NOTHING")) {
+                ps.setString(1, appId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT app_key FROM app_keys WHERE app_id = ?")) {
+                ps.setString(1, appId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new IllegalStateException("No app_key allocated for " + appId);
+                    }
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to allocate app_key for " + appId, e);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.*;
+import org.springframework.beans.BeanUtils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 单个 App 在解析期间的内存状态。
+ * <p>
+ * Job / Stage / SQL / Executor 的生命周期事件 (开始、结束、移除) 都只修改这里的对象，不再逐条
+ * getById + updateById；被修改过的对象记为脏，在检查点和文件结束时批量写回 DuckDB。
+ * 状态在同一 App 的多个滚动文件之间保留 (Stage → Job 映射跨文件也能对上)，整组文件处理完后丢弃。
+ * 缓存未命中时 (例如之前的解析中已经入库) 通过 loader 从数据库懒加载。
+ * BlockUpdated 也只覆盖内存中的 Block (RDD → Block 名称 → 最新状态)，检查点时每个 Block 只写一行。
+ * <p>
+ * 同时记录自上次后期预计算以来变化过的 Stage / Job / SQL / Executor ({@link #drainPostCalcScope})，
+ * 整组滚动日志处理完后只对这些键重新计算一次，而不是每个文件都全量重算。
+ * <p>
+ * 从第一个文件的开头连续解析时，每个 TaskEnd 还会累加进所属 Stage attempt 的 {@link StageTaskAccumulator}，
+ * 检查点时直接写出 Stage 指标和分布统计，Stage 不再需要后期预计算。中途有文件是断点续传、跳过或 Task 来自缓存分片时
+ * 累加结果不完整，停止累加，改由后期预计算按 SQL 重算。
+ * <p>
+ * 重新解析已经 READY 的 App 时，所有行都写在暂存 App ID ({@link #appId}) 名下，
+ * 解析和后期预计算完成后再整体替换 {@link #liveAppId} 的数据。
+ * <p>
+ * 非线程安全，只在解析线程上使用。
+ */
+class AppState {
+
+    // 写入数据库时使用的 App ID (暂存时为 appId#staged)
+    final String appId;
+    // 日志中的 App ID
+    final String liveAppId;
+    // app_keys 中 appId 对应的整数键，写 tasks 时使用
+    final int appKey;
+    final Map<Integer, Integer> stageToJobMap = new HashMap<>();
+
+    private ApplicationModel app;
+    private boolean appLoaded;
+
+    private final Map<Integer, JobModel> jobs = new HashMap<>();
+    private final Map<Long, StageModel> stages = new HashMap<>();
+    private final Map<Long, SqlExecutionModel> sqls = new HashMap<>();
+    private final Map<String, ExecutorModel> executors = new HashMap<>();
+
+    private final Set<Integer> dirtyJobs = new LinkedHashSet<>();
+    private final Set<Long> dirtyStages = new LinkedHashSet<>();
+    private final Set<Long> dirtySqls = new LinkedHashSet<>();
+    private final Set<String> dirtyExecutors = new LinkedHashSet<>();
+
+    // 超过这个数量时后期预计算直接全量执行，避免过长的 IN 列表
+    static final int MAX_SCOPED_KEYS = 1000;
+
+    // 上次后期预计算之后变化过的键，和 dirty* 不同，它们在检查点时不清空
+    private final Set<Integer> changedStages = new HashSet<>();
+    private final Set<Integer> changedJobs = new HashSet<>();
+    private final Set<Long> changedSqls = new HashSet<>();
+    private final Set<String> changedExecutors = new HashSet<>();
+    private boolean recomputeAll;
+
+    // Stage attempt → Task 累加器，只在 streaming 时使用
+    private final Map<Long, StageTaskAccumulator> accumulators = new HashMap<>();
+    private final Set<Long> touchedAccumulators = new LinkedHashSet<>();
+    private boolean streaming;
+    private int lastFileIndex;
+
+    // 上一个检查点之后 JobStart 中出现的 Job → Stage 列表，写入 job_stages
+    private final Map<Integer, List<Integer>> pendingJobStages = new LinkedHashMap<>();
+
+    // 上一个检查点之后 StageSubmitted 中出现的 RDD 信息，同一 RDD 只保留最后一次
+    private final Map<Integer, StorageRddModel> pendingRdds = new LinkedHashMap<>();
+    // 上一个检查点之后更新过的 Block，同一 Block 只保留最后一次状态
+    private final Map<Integer, Map<String, StorageBlockModel>> pendingBlocks = new LinkedHashMap<>();
+    private final Set<Integer> unpersistedRdds = new LinkedHashSet<>();
+    // RDD ID 在 App 内不会复用，unpersist 之后陆续到达的 Block 移除事件直接忽略
+    private final Set<Integer> removedRdds = new HashSet<>();
+
+    AppState(String appId, String liveAppId, int appKey) {
+        this.appId = appId;
+        this.liveAppId = liveAppId;
+        this.appKey = appKey;
+    }
+
+    boolean staged() {
+        return !appId.equals(liveAppId);
+    }
+
+    static long stageKey(int stageId, int attemptId) {
+        return ((long) stageId << 32) | (attemptId & 0xffffffffL);
+    }
+
+    // ---- Application ----
+
+    /**
+     * @return 缓存的 Application 行，第一次访问时从数据库加载，不存在时返回 null
+     */
+    ApplicationModel app(Supplier<ApplicationModel> loader) {
+        if (!appLoaded) {
+            app = loader.get();
+            appLoaded = true;
+        }
+        return app;
+    }
+
+    void putApp(ApplicationModel app) {
+        this.app = app;
+        this.appLoaded = true;
+    }
+
+    // ---- Job ----
+
+    void putJob(JobModel job) {
+        jobs.put(job.getJobId(), job);
+        dirtyJobs.add(job.getJobId());
+        changedJobs.add(job.getJobId());
+    }
+
+    /**
+     * @return 内存中或从数据库加载的 Job，不存在时返回 null
+     */
+    JobModel job(int jobId, Supplier<JobModel> loader) {
+        return lookup(jobs, jobId, loader);
+    }
+
+    void putJobStages(int jobId, List<Integer> stageIds) {
+        pendingJobStages.put(jobId, stageIds);
+    }
+
+    void markJob(JobModel job) {
+        dirtyJobs.add(job.getJobId());
+        changedJobs.add(job.getJobId());
+    }
+
+    // ---- Stage ----
+
+    void putStage(StageModel stage) {
+        long key = stageKey(stage.getStageId(), stage.getAttemptId());
+        stages.put(key, stage);
+        dirtyStages.add(key);
+        changedStages.add(stage.getStageId());
+    }
+
+    StageModel stage(int stageId, int attemptId, Supplier<StageModel> loader) {
+        return lookup(stages, stageKey(stageId, attemptId), loader);
+    }
+
+    void markStage(StageModel stage) {
+        dirtyStages.add(stageKey(stage.getStageId(), stage.getAttemptId()));
+        changedStages.add(stage.getStageId());
+    }
+
+    // ---- SQL ----
+
+    void putSql(SqlExecutionModel sql) {
+        sqls.put(sql.getExecutionId(), sql);
+        dirtySqls.add(sql.getExecutionId());
+        changedSqls.add(sql.getExecutionId());
+    }
+
+    SqlExecutionModel sql(long executionId, Supplier<SqlExecutionModel> loader) {
+        return lookup(sqls, executionId, loader);
+    }
+
+    void markSql(SqlExecutionModel sql) {
+        dirtySqls.add(sql.getExecutionId());
+        changedSqls.add(sql.getExecutionId());
+    }
+
+    // ---- Executor ----
+
+    void putExecutor(ExecutorModel executor) {
+        executors.put(executor.getExecutorId(), executor);
+        dirtyExecutors.add(executor.getExecutorId());
+        changedExecutors.add(executor.getExecutorId());
+    }
+
+    /**
+     * Executor 未命中时不查库，由调用方创建只含移除信息的对象 (合并时只更新已存在的行)
+     */
+    ExecutorModel executor(String executorId, Function<String, ExecutorModel> factory) {
+        return executors.computeIfAbsent(executorId, factory);
+    }
+
+    void markExecutor(ExecutorModel executor) {
+        dirtyExecutors.add(executor.getExecutorId());
+        changedExecutors.add(executor.getExecutorId());
+    }
+
+    // ---- Task ----
+
+    /**
+     * 记录新到达的 Task 影响到的 Stage 和 Executor，streaming 时累加进 Stage 指标
+     */
+    void taskEnded(TaskModel task) {
+        Integer stageId = task.getStageId();
+        if (stageId != null) changedStages.add(stageId);
+        if (task.getExecutorId() != null) changedExecutors.add(task.getExecutorId());
+        if (streaming && stageId != null) {
+            int attemptId = task.getAttemptId() != null ? task.getAttemptId() : 0;
+            long key = stageKey(stageId, attemptId);
+            accumulators.computeIfAbsent(key, k -> new StageTaskAccumulator(stageId, attemptId)).add(task);
+            touchedAccumulators.add(key);
+        }
+    }
+
+    /**
+     * 每个文件第一次用到本状态时调用，决定 Stage 指标能否在解析时累加得到
+     *
+     * @param partial 本文件不是从头解析，或者 Task 来自缓存分片 (不经过 {@link #taskEnded})
+     */
+    void fileStarted(int fileIndex, boolean partial) {
+        if (fileIndex == 1 && !partial) {
+            accumulators.clear();
+            touchedAccumulators.clear();
+            streaming = true;
+        } else if (streaming && (partial || fileIndex != lastFileIndex + 1)) {
+            accumulators.clear();
+            touchedAccumulators.clear();
+            streaming = false;
+        }
+        lastFileIndex = fileIndex;
+    }
+
+    boolean streaming() {
+        return streaming;
+    }
+
+    // ---- 后期预计算范围 ----
+
+    /**
+     * 下一次后期预计算对整个 App 执行 (从头解析，或 Task 直接从缓存分片加载、没有经过 {@link #taskEnded})
+     */
+    void recomputeAll() {
+        recomputeAll = true;
+    }
+
+    /**
+     * 取出上次后期预计算以来变化过的键并清空。
+     * <p>
+     * Job 除了自身变化的之外，还包括变化过的 Stage 所属的 Job；SQL 由 SQL 自身和这些 Job 共同决定
+     * (Job 所属的 SQL 在数据库中查找)。Stage 找不到所属 Job、或键的数量超过 {@link #MAX_SCOPED_KEYS} 时退回全量。
+     * streaming 时 Stage 已经由累加器写出，不再重算。
+     */
+    PostCalcScope drainPostCalcScope() {
+        PostCalcScope scope;
+        if (recomputeAll) {
+            scope = PostCalcScope.ALL;
+        } else {
+            Set<Integer> jobIds = new HashSet<>(changedJobs);
+            boolean jobsKnown = true;
+            for (Integer stageId : changedStages) {
+                Integer jobId = stageToJobMap.get(stageId);
+                if (jobId == null) {
+                    jobsKnown = false;
+                    break;
+                }
+                jobIds.add(jobId);
+            }
+            scope = new PostCalcScope(scoped(changedStages), jobsKnown ? scoped(jobIds) : null,
+                    scoped(changedSqls), scoped(changedExecutors));
+        }
+        if (streaming) {
+            // Stage 指标已经在检查点由累加器写出
+            scope = new PostCalcScope(List.of(), scope.jobIds(), scope.sqlIds(), scope.executorIds());
+        }
+        recomputeAll = false;
+        changedStages.clear();
+        changedJobs.clear();
+        changedSqls.clear();
+        changedExecutors.clear();
+        return scope;
+    }
+
+    private static <K> List<K> scoped(Set<K> keys) {
+        return keys.size() > MAX_SCOPED_KEYS ? null : new ArrayList<>(keys);
+    }
+
+    // ---- Storage ----
+
+    void putRdd(StorageRddModel rdd) {
+        if (removedRdds.contains(rdd.getRddId())) return;
+        pendingRdds.put(rdd.getRddId(), rdd);
+    }
+
+    void putBlock(StorageBlockModel block) {
+        if (removedRdds.contains(block.getRddId())) return;
+        pendingBlocks.computeIfAbsent(block.getRddId(), k -> new LinkedHashMap<>()).put(block.getBlockName(), block);
+    }
+
+    /**
+     * 丢弃该 RDD 尚未写入的 Block，并记下需要从数据库删除的 RDD
+     */
+    void unpersistRdd(int rddId) {
+        pendingRdds.remove(rddId);
+        pendingBlocks.remove(rddId);
+        unpersistedRdds.add(rddId);
+        removedRdds.add(rddId);
+    }
+
+    private static <K, V> V lookup(Map<K, V> cache, K key, Supplier<V> loader) {
+        V value = cache.get(key);
+        if (value == null && !cache.containsKey(key)) {
+            value = loader.get();
+            // 不存在的也记下来，避免重复查库
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 取出所有脏对象的副本 (副本交给 dbWriter 写入，原对象继续在解析线程上被修改) 并清空脏标记
+     */
+    Dirty drainDirty() {
+        Dirty dirty = new Dirty(
+                appKey,
+                copyAll(dirtyJobs, jobs, JobModel::new),
+                new LinkedHashMap<>(pendingJobStages),
+                drainStageAggregates(),
+                copyAll(dirtyStages, stages, StageModel::new),
+                copyAll(dirtySqls, sqls, SqlExecutionModel::new),
+                copyAll(dirtyExecutors, executors, ExecutorModel::new),
+                new ArrayList<>(pendingRdds.values()),
+                drainBlocks(),
+                new ArrayList<>(unpersistedRdds));
+        pendingJobStages.clear();
+        pendingRdds.clear();
+        unpersistedRdds.clear();
+        dirtyJobs.clear();
+        dirtyStages.clear();
+        dirtySqls.clear();
+        dirtyExecutors.clear();
+        return dirty;
+    }
+
+    private List<StageTaskAccumulator.Snapshot> drainStageAggregates() {
+        List<StageTaskAccumulator.Snapshot> snapshots = new ArrayList<>(touchedAccumulators.size());
+        for (Long key : touchedAccumulators) {
+            snapshots.add(accumulators.get(key).snapshot());
+        }
+        touchedAccumulators.clear();
+        return snapshots;
+    }
+
+    // Block 放进 Dirty 之后不再修改，无需复制
+    private List<StorageBlockModel> drainBlocks() {
+        List<StorageBlockModel> blocks = new ArrayList<>();
+        for (Map<String, StorageBlockModel> rdd : pendingBlocks.values()) {
+            blocks.addAll(rdd.values());
+        }
+        pendingBlocks.clear();
+        return blocks;
+    }
+
+    private static <K, V> List<V> copyAll(Set<K> keys, Map<K, V> source, Supplier<V> factory) {
+        List<V> copies = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            V original = source.get(key);
+            if (original != null) {
+                V copy = factory.get();
+                BeanUtils.copyProperties(original, copy);
+                copies.add(copy);
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * 后期预计算的范围，每个列表为 null 表示全部重算，为空表示跳过
+     */
+    record PostCalcScope(List<Integer> stageIds, List<Integer> jobIds, List<Long> sqlIds, List<String> executorIds) {
+        static final PostCalcScope ALL = new PostCalcScope(null, null, null, null);
+
+        /**
+         * SQL 的分数由所属 Job 汇总得到，SQL 自身和 Job 都没有变化时才跳过
+         */
+        boolean skipSqls() {
+            return jobIds != null && jobIds.isEmpty() && sqlIds != null && sqlIds.isEmpty();
+        }
+    }
+
+    record Dirty(int appKey, List<JobModel> jobs, Map<Integer, List<Integer>> jobStages,
+                 List<StageTaskAccumulator.Snapshot> stageAggregates, List<StageModel> stages, List<SqlExecutionModel> sqls,
+                 List<ExecutorModel> executors, List<StorageRddModel> rdds, List<StorageBlockModel> blocks,
+                 List<Integer> unpersistedRdds) {
+        boolean isEmpty() {
+            return jobs.isEmpty() && jobStages.isEmpty() && stageAggregates.isEmpty() && stages.isEmpty() && sqls.isEmpty() && executors.isEmpty()
+                    && rdds.isEmpty() && blocks.isEmpty() && unpersistedRdds.isEmpty();
+        }
+    }
+}
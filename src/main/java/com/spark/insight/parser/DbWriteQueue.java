@@ -0,0 +1,215 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.config.InsightProperties;
+import com.spark.insight.model.TaskModel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 解析期间所有 DuckDB 写入的有界队列，由唯一的写线程按提交顺序执行 (避免 DuckDB 写锁竞争)。
+ * <p>
+ * 队列满时提交方 (解析线程) 阻塞，DuckDB 跟不上时解析随之变慢，而不是在堆上堆积成千上万个 Task 批次。
+ * 队首连续的同一批次 Task 追加会被合并成一次 Appender 写入 (一个事务)。
+ * 队列深度、提交等待时间和每次写入的耗时注册为 insight.db.write.* 指标 (/actuator/metrics、/actuator/prometheus)，
+ * {@link #stats()} 只用于每个文件解析结束时的日志。
+ */
+@Slf4j
+@Component
+public class DbWriteQueue {
+
+    private final DuckDbBulkLoader bulkLoader;
+    private final BlockingQueue<Write> queue;
+    private final int capacity;
+    private final int maxCoalescedTaskRows;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong blockedEnqueues = new AtomicLong();
+    private final AtomicLong enqueueWaitNanos = new AtomicLong();
+    private final LongAccumulator maxEnqueueWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+    // 以下只由写线程修改
+    private volatile long commits;
+    private volatile long coalescedTaskBatches;
+    private volatile long commitNanos;
+    private volatile long maxCommitNanos;
+
+    private final Timer taskWriteTimer;
+    private final Timer otherWriteTimer;
+    private final Timer enqueueWaitTimer;
+
+    /**
+     * 队列中的一项：普通写入 (work) 或可合并的 Task 追加 (tasks)
+     */
+    private record Write(Callable<?> work, long loadId, List<TaskModel> tasks, CompletableFuture<Object> result) {
+    }
+
+    public DbWriteQueue(DuckDbBulkLoader bulkLoader, InsightProperties insightProperties, MeterRegistry meterRegistry) {
+        this.bulkLoader = bulkLoader;
+        InsightProperties.Parser config = insightProperties.getParser();
+        this.capacity = Math.max(1, config.getWriteQueueCapacity());
+        this.maxCoalescedTaskRows = Math.max(1, config.getMaxCoalescedTaskRows());
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("insight.db.write.queue.depth", queue, BlockingQueue::size)
+                .description("Writes waiting for the DuckDB writer thread").register(meterRegistry);
+        Gauge.builder("insight.db.write.queue.capacity", () -> capacity).register(meterRegistry);
+        this.taskWriteTimer = writeTimer(meterRegistry, "tasks");
+        this.otherWriteTimer = writeTimer(meterRegistry, "other");
+        this.enqueueWaitTimer = Timer.builder("insight.db.write.enqueue.wait")
+                .description("Time parser threads were blocked on a full write queue").register(meterRegistry);
+        this.writer = new Thread(this::drain, "duckdb-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // tasks: Task 批次的 Appender 写入 (可能合并了多个批次); other: 合并、后期预计算等其他写入
+    private static Timer writeTimer(MeterRegistry registry, String kind) {
+        return Timer.builder("insight.db.write")
+                .description("Execution time of writes on the DuckDB writer thread")
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    /**
+     * 提交一次写入，队列满时阻塞直到有空位
+     */
+    public <T> Future<T> submit(Callable<T> work) throws InterruptedException {
+        @SuppressWarnings("unchecked")
+        Future<T> future = (Future<T>) enqueue(new Write(work, 0, null, new CompletableFuture<>()));
+        return future;
+    }
+
+    public Future<?> submit(Runnable work) throws InterruptedException {
+        return submit(Executors.callable(work));
+    }
+
+    /**
+     * 把 Task 批次追加到 tasks_staging，可能与队列中相邻的同一批次的追加合并执行
+     */
+    public Future<?> appendTasks(long loadId, List<TaskModel> tasks) throws InterruptedException {
+        return enqueue(new Write(null, loadId, tasks, new CompletableFuture<>()));
+    }
+
+    private Future<?> enqueue(Write write) throws InterruptedException {
+        if (Thread.currentThread() == writer) {
+            // 写线程内部再提交的写入直接执行，否则队列满时会自己等自己
+            execute(List.of(write));
+            return write.result();
+        }
+        enqueued.incrementAndGet();
+        if (!queue.offer(write)) {
+            long start = System.nanoTime();
+            queue.put(write);
+            long waited = System.nanoTime() - start;
+            blockedEnqueues.incrementAndGet();
+            enqueueWaitNanos.addAndGet(waited);
+            maxEnqueueWaitNanos.accumulate(waited);
+            enqueueWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+        }
+        peakDepth.accumulate(queue.size());
+        return write.result();
+    }
+
+    private void drain() {
+        List<Write> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Write head = queue.poll(1, TimeUnit.SECONDS);
+                if (head == null) continue;
+                group.add(head);
+                if (head.tasks() != null) {
+                    // 只有写线程取队列，peek 到的元素一定还在
+                    int rows = head.tasks().size();
+                    Write next;
+                    while ((next = queue.peek()) != null && next.tasks() != null && next.loadId() == head.loadId()
+                            && rows + next.tasks().size() <= maxCoalescedTaskRows) {
+                        group.add(queue.poll());
+                        rows += next.tasks().size();
+                    }
+                }
+                execute(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void execute(List<Write> group) {
+        long start = System.nanoTime();
+        Write head = group.get(0);
+        try {
+            Object value;
+            if (head.tasks() != null) {
+                List<TaskModel> rows = head.tasks();
+                if (group.size() > 1) {
+                    rows = new ArrayList<>();
+                    for (Write w : group) rows.addAll(w.tasks());
+                    coalescedTaskBatches += group.size() - 1;
+                }
+                bulkLoader.appendTasks(head.loadId(), rows);
+                value = null;
+            } else {
+                value = head.work().call();
+            }
+            for (Write w : group) w.result().complete(value);
+        } catch (Throwable e) {
+            for (Write w : group) w.result().completeExceptionally(e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            commits++;
+            commitNanos += elapsed;
+            if (elapsed > maxCommitNanos) maxCommitNanos = elapsed;
+            (head.tasks() != null ? taskWriteTimer : otherWriteTimer).record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 当前写队列的统计
+     *
+     * @param depth                当前排队的写入数
+     * @param blockedEnqueues      因队列已满而阻塞的提交次数
+     * @param coalescedTaskBatches 被合并进其他写入的 Task 批次数
+     */
+    public record Stats(int depth, int capacity, long peakDepth, long enqueued, long blockedEnqueues,
+                        double enqueueWaitMs, double maxEnqueueWaitMs, long commits, long coalescedTaskBatches,
+                        double avgCommitMs, double maxCommitMs) {
+        @Override
+        public String toString() {
+            return String.format("depth %d/%d (peak %d) | %d enqueued, %d blocked for %.0f ms (max %.1f ms)"
+                            + " | %d commits (%d task batches coalesced), avg %.1f ms, max %.1f ms",
+                    depth, capacity, peakDepth, enqueued, blockedEnqueues, enqueueWaitMs, maxEnqueueWaitMs,
+                    commits, coalescedTaskBatches, avgCommitMs, maxCommitMs);
+        }
+    }
+
+    public Stats stats() {
+        long commitCount = commits;
+        return new Stats(queue.size(), capacity, peakDepth.get(), enqueued.get(), blockedEnqueues.get(),
+                enqueueWaitNanos.get() / 1e6, maxEnqueueWaitNanos.get() / 1e6,
+                commitCount, coalescedTaskBatches,
+                commitCount > 0 ? commitNanos / 1e6 / commitCount : 0, maxCommitNanos / 1e6);
+    }
+
+    /**
+     * 关闭时写完已经排队的写入
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+}
@@ -0,0 +1,757 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.*;
+import lombok.extern.slf4j.Slf4j;
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 DuckDB Appender 的批量写入。
+ * <p>
+ * 解析过程中只做按列追加 (append-only) 到 *_staging 表，不做任何主键检查；
+ * 文件解析结束后由 {@link #merge(long)} 在一个事务中按主键去重 (同一主键以最后追加的为准)，
+ * 一次性合并到正式表并清理暂存数据。
+ * <p>
+ * tasks 没有二级索引，单个 Stage 的查询依赖 DuckDB 每个 row group 的 min/max (zone map) 跳过无关数据，
+ * 所以 Task 总是按 {@link #TASK_ORDER} 排好序后整段写入。排序只决定新插入行追加到表尾的顺序：
+ * INSERT OR REPLACE 命中已有主键时在原位置更新，不会移动，所以重新解析 ({@link #swapIn}) 和增量解析的 App
+ * 仍保持原来的物理位置，需要由 {@link #reclusterTasks()} 整理。
+ * <p>
+ * 非线程安全，调用方需要保证同一时间只有一个线程在写 (DbWriteQueue 的写线程)。
+ */
+@Slf4j
+@Component
+public class DuckDbBulkLoader {
+
+    private static final String[] TASK_COLUMNS = {
+            "app_key", "stage_id", "attempt_id", "task_id", "task_index", "executor_id", "host",
+            "launch_time", "finish_time", "duration", "gc_time", "scheduler_delay", "getting_result_time",
+            "executor_deserialize_time", "executor_run_time", "result_serialization_time", "executor_cpu_time",
+            "peak_execution_memory", "input_bytes", "input_records", "output_bytes", "output_records",
+            "memory_bytes_spilled", "disk_bytes_spilled", "shuffle_read_bytes", "shuffle_read_records",
+            "shuffle_fetch_wait_time", "shuffle_write_bytes", "shuffle_write_time", "shuffle_write_records",
+            "shuffle_remote_read", "speculative", "status", "locality"};
+
+    /**
+     * tasks 的主键 (整数组合键)，其他表的主键都是 id
+     */
+    private static final String TASK_KEY = "app_key, stage_id, attempt_id, task_id";
+
+    /**
+     * tasks 的物理顺序：同一 App、同一 Stage attempt 的 Task 连续存放
+     */
+    static final String TASK_ORDER = "app_key, stage_id, attempt_id, task_index, task_id";
+
+    private static final String[] TASK_COLUMN_TYPES = {
+            "INTEGER", "INT", "INT", "BIGINT", "INT", "VARCHAR", "VARCHAR",
+            "BIGINT", "BIGINT", "BIGINT", "BIGINT", "BIGINT", "BIGINT",
+            "BIGINT", "BIGINT", "BIGINT", "BIGINT",
+            "BIGINT", "BIGINT", "BIGINT", "BIGINT", "BIGINT",
+            "BIGINT", "BIGINT", "BIGINT", "BIGINT",
+            "BIGINT", "BIGINT", "BIGINT", "BIGINT",
+            "BIGINT", "BOOLEAN", "VARCHAR", "VARCHAR"};
+
+    private static final String[] ENV_COLUMNS = {"id", "app_id", "param_key", "param_value", "category"};
+
+    private static final String[] BLOCK_COLUMNS = {
+            "id", "app_id", "rdd_id", "block_name", "storage_level", "memory_size", "disk_size", "executor_id", "host"};
+
+    private static final String[] EXECUTOR_COLUMNS = {
+            "id", "app_id", "executor_id", "host", "add_time", "remove_time", "total_cores", "memory",
+            "is_active", "exec_loss_reason"};
+
+    private static final String[] JOB_COLUMNS = {
+            "id", "app_id", "job_id", "submission_time", "completion_time", "duration", "status", "num_stages",
+            "num_tasks", "stage_ids", "description", "job_group", "sql_execution_id"};
+
+    private static final String[] STAGE_COLUMNS = {
+            "id", "app_id", "stage_id", "job_id", "attempt_id", "stage_name", "num_tasks", "submission_time",
+            "completion_time", "duration", "status", "parent_stage_ids", "rdd_info"};
+
+    private static final String[] SQL_COLUMNS = {
+            "id", "app_id", "execution_id", "description", "details", "physical_plan", "plan_info",
+            "start_time", "end_time", "duration", "status"};
+
+    private final DataSource dataSource;
+    private final AtomicLong loadIds = new AtomicLong(System.currentTimeMillis());
+    private long seq;
+
+    public DuckDbBulkLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 为一次文件解析分配暂存批次号
+     */
+    public long newLoadId() {
+        return loadIds.incrementAndGet();
+    }
+
+    public void appendTasks(long loadId, List<TaskModel> tasks) throws SQLException {
+        if (tasks.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "tasks_staging")) {
+            for (TaskModel t : tasks) {
+                appendTaskRow(appender, loadId, ++seq, t);
+            }
+        }
+    }
+
+    /**
+     * 与 tasks_staging 相同结构的建表语句
+     */
+    static String taskStagingDdl(String table) {
+        StringBuilder sb = new StringBuilder("CREATE TABLE ").append(table).append(" (load_id BIGINT, seq BIGINT");
+        for (int i = 0; i < TASK_COLUMNS.length; i++) {
+            sb.append(", ").append(TASK_COLUMNS[i]).append(' ').append(TASK_COLUMN_TYPES[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 按 tasks_staging 的列顺序追加一行 (Parquet 暂存也复用同样的布局)
+     */
+    static void appendTaskRow(DuckDBAppender appender, long loadId, long seq, TaskModel t) throws SQLException {
+        appender.beginRow();
+        appender.append(loadId);
+        appender.append(seq);
+        appendInt(appender, t.getAppKey());
+        appendInt(appender, t.getStageId());
+        appendInt(appender, t.getAttemptId());
+        appendLong(appender, t.getTaskId());
+        appendInt(appender, t.getTaskIndex());
+        appendString(appender, t.getExecutorId());
+        appendString(appender, t.getHost());
+        appendLong(appender, t.getLaunchTime());
+        appendLong(appender, t.getFinishTime());
+        appendLong(appender, t.getDuration());
+        appendLong(appender, t.getGcTime());
+        appendLong(appender, t.getSchedulerDelay());
+        appendLong(appender, t.getGettingResultTime());
+        appendLong(appender, t.getExecutorDeserializeTime());
+        appendLong(appender, t.getExecutorRunTime());
+        appendLong(appender, t.getResultSerializationTime());
+        appendLong(appender, t.getExecutorCpuTime());
+        appendLong(appender, t.getPeakExecutionMemory());
+        appendLong(appender, t.getInputBytes());
+        appendLong(appender, t.getInputRecords());
+        appendLong(appender, t.getOutputBytes());
+        appendLong(appender, t.getOutputRecords());
+        appendLong(appender, t.getMemoryBytesSpilled());
+        appendLong(appender, t.getDiskBytesSpilled());
+        appendLong(appender, t.getShuffleReadBytes());
+        appendLong(appender, t.getShuffleReadRecords());
+        appendLong(appender, t.getShuffleFetchWaitTime());
+        appendLong(appender, t.getShuffleWriteBytes());
+        appendLong(appender, t.getShuffleWriteTime());
+        appendLong(appender, t.getShuffleWriteRecords());
+        appendLong(appender, t.getShuffleRemoteRead());
+        appendBoolean(appender, t.getSpeculative());
+        appendString(appender, t.getStatus());
+        appendString(appender, t.getLocality());
+        appender.endRow();
+    }
+
+    public void appendEnvConfigs(long loadId, List<EnvironmentConfigModel> configs) throws SQLException {
+        if (configs.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "environment_configs_staging")) {
+            for (EnvironmentConfigModel c : configs) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, c.getId());
+                appendString(appender, c.getAppId());
+                appendString(appender, c.getParamKey());
+                appendString(appender, c.getParamValue());
+                appendString(appender, c.getCategory());
+                appender.endRow();
+            }
+        }
+    }
+
+    public void appendBlocks(long loadId, List<StorageBlockModel> blocks) throws SQLException {
+        if (blocks.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "storage_blocks_staging")) {
+            for (StorageBlockModel b : blocks) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, b.getId());
+                appendString(appender, b.getAppId());
+                appendInt(appender, b.getRddId());
+                appendString(appender, b.getBlockName());
+                appendString(appender, b.getStorageLevel());
+                appendLong(appender, b.getMemorySize());
+                appendLong(appender, b.getDiskSize());
+                appendString(appender, b.getExecutorId());
+                appendString(appender, b.getHost());
+                appender.endRow();
+            }
+        }
+    }
+
+    /**
+     * Executor 只追加生命周期字段；addTime 为空的行 (只有移除事件) 只会更新已存在的 Executor
+     */
+    public void appendExecutors(long loadId, Collection<ExecutorModel> executors) throws SQLException {
+        if (executors.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "executors_staging")) {
+            for (ExecutorModel e : executors) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, e.getId());
+                appendString(appender, e.getAppId());
+                appendString(appender, e.getExecutorId());
+                appendString(appender, e.getHost());
+                appendTimestamp(appender, e.getAddTime());
+                appendTimestamp(appender, e.getRemoveTime());
+                appendInt(appender, e.getTotalCores());
+                appendLong(appender, e.getMemory());
+                appendBoolean(appender, e.getIsActive());
+                appendString(appender, e.getExecLossReason());
+                appender.endRow();
+            }
+        }
+    }
+
+    public void appendJobs(long loadId, Collection<JobModel> jobs) throws SQLException {
+        if (jobs.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "jobs_staging")) {
+            for (JobModel j : jobs) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, j.getId());
+                appendString(appender, j.getAppId());
+                appendInt(appender, j.getJobId());
+                appendTimestamp(appender, j.getSubmissionTime());
+                appendTimestamp(appender, j.getCompletionTime());
+                appendLong(appender, j.getDuration());
+                appendString(appender, j.getStatus());
+                appendInt(appender, j.getNumStages());
+                appendInt(appender, j.getNumTasks());
+                appendString(appender, j.getStageIds());
+                appendString(appender, j.getDescription());
+                appendString(appender, j.getJobGroup());
+                appendLong(appender, j.getSqlExecutionId());
+                appender.endRow();
+            }
+        }
+    }
+
+    /**
+     * Job → Stage 关系按 app_key 保存，Job 汇总和按 Job 过滤 Task 时直接等值连接，不再拆分 stage_ids 字符串
+     */
+    public void appendJobStages(long loadId, int appKey, Map<Integer, List<Integer>> jobStages) throws SQLException {
+        if (jobStages.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "job_stages_staging")) {
+            for (Map.Entry<Integer, List<Integer>> e : jobStages.entrySet()) {
+                for (Integer stageId : e.getValue()) {
+                    appender.beginRow();
+                    appender.append(loadId);
+                    appender.append(++seq);
+                    appender.append(appKey);
+                    appender.append(e.getKey().intValue());
+                    appender.append(stageId.intValue());
+                    appender.endRow();
+                }
+            }
+        }
+    }
+
+    public void appendStages(long loadId, Collection<StageModel> stages) throws SQLException {
+        if (stages.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "stages_staging")) {
+            for (StageModel st : stages) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, st.getId());
+                appendString(appender, st.getAppId());
+                appendInt(appender, st.getStageId());
+                appendInt(appender, st.getJobId());
+                appendInt(appender, st.getAttemptId());
+                appendString(appender, st.getStageName());
+                appendInt(appender, st.getNumTasks());
+                appendTimestamp(appender, st.getSubmissionTime());
+                appendTimestamp(appender, st.getCompletionTime());
+                appendLong(appender, st.getDuration());
+                appendString(appender, st.getStatus());
+                appendString(appender, st.getParentStageIds());
+                appendString(appender, st.getRddInfo());
+                appender.endRow();
+            }
+        }
+    }
+
+    public void appendSqlExecutions(long loadId, Collection<SqlExecutionModel> sqls) throws SQLException {
+        if (sqls.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             DuckDBAppender appender = createAppender(conn, "sql_executions_staging")) {
+            for (SqlExecutionModel q : sqls) {
+                appender.beginRow();
+                appender.append(loadId);
+                appender.append(++seq);
+                appendString(appender, q.getId());
+                appendString(appender, q.getAppId());
+                appendLong(appender, q.getExecutionId());
+                appendString(appender, q.getDescription());
+                appendString(appender, q.getDetails());
+                appendString(appender, q.getPhysicalPlan());
+                appendString(appender, q.getPlanInfo());
+                appendTimestamp(appender, q.getStartTime());
+                appendTimestamp(appender, q.getEndTime());
+                appendLong(appender, q.getDuration());
+                appendString(appender, q.getStatus());
+                appender.endRow();
+            }
+        }
+    }
+
+    /**
+     * 追加解析时累加的 Stage 指标 (stage_aggregates_staging) 和各指标的分布及草图 (stage_sketches_staging)，
+     * 由 StageMapper.applyStageAggregates 写入正式表后用 {@link #clearStageAggregates} 清理
+     */
+    void appendStageAggregates(long loadId, String appId, List<StageTaskAccumulator.Snapshot> snapshots) throws SQLException {
+        if (snapshots.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection()) {
+            try (DuckDBAppender appender = createAppender(conn, "stage_aggregates_staging")) {
+                for (StageTaskAccumulator.Snapshot s : snapshots) {
+                    appender.beginRow();
+                    appender.append(loadId);
+                    appender.append(appId);
+                    appender.append(s.stageId());
+                    appender.append(s.attemptId());
+                    appender.append(s.doneTasks());
+                    appender.append(s.failedTasks());
+                    for (Long sum : s.sums()) {
+                        appendLong(appender, sum);
+                    }
+                    appendLong(appender, s.maxPeakMemory());
+                    appendLong(appender, s.p50());
+                    appendLong(appender, s.p95());
+                    appendLong(appender, s.p99());
+                    appendLong(appender, s.maxDuration());
+                    appendString(appender, s.localitySummary());
+                    appender.endRow();
+                }
+            }
+            try (DuckDBAppender appender = createAppender(conn, "stage_sketches_staging")) {
+                for (StageTaskAccumulator.Snapshot s : snapshots) {
+                    for (StageTaskAccumulator.MetricSummary m : s.metrics()) {
+                        appender.beginRow();
+                        appender.append(loadId);
+                        appender.append(appId + ":" + s.stageId() + ":" + s.attemptId() + ":" + m.name());
+                        appender.append(appId);
+                        appender.append(s.stageId());
+                        appender.append(s.attemptId());
+                        appender.append(m.name());
+                        appender.append(m.count());
+                        appendLong(appender, m.min());
+                        appendLong(appender, m.p25());
+                        appendLong(appender, m.p50());
+                        appendLong(appender, m.p75());
+                        appendLong(appender, m.p95());
+                        appendLong(appender, m.max());
+                        appender.append(m.sketch());
+                        appender.endRow();
+                    }
+                }
+            }
+        }
+    }
+
+    void clearStageAggregates(long loadId) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            execute(conn, "DELETE FROM stage_aggregates_staging WHERE load_id = ?", loadId);
+            execute(conn, "DELETE FROM stage_sketches_staging WHERE load_id = ?", loadId);
+        }
+    }
+
+    /**
+     * 写入 StageSubmitted 中携带的 RDD 信息，一批一个事务
+     */
+    public void upsertRdds(String appId, List<StorageRddModel> rdds) throws SQLException {
+        if (rdds.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "INSERT OR REPLACE INTO storage_rdds (id, app_id, rdd_id, name, storage_level, num_partitions, num_cached_partitions, memory_size, disk_size) " +
+                             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (StorageRddModel rdd : rdds) {
+                ps.setString(1, rdd.getId());
+                ps.setString(2, appId);
+                ps.setInt(3, rdd.getRddId());
+                ps.setString(4, rdd.getName());
+                ps.setString(5, rdd.getStorageLevel());
+                ps.setInt(6, rdd.getNumPartitions());
+                ps.setInt(7, rdd.getNumCached_partitions());
+                ps.setLong(8, rdd.getMemorySize());
+                ps.setLong(9, rdd.getDiskSize());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 删除被 unpersist 的 RDD 及其所有 Block
+     */
+    public void removeRdds(String appId, List<Integer> rddIds) throws SQLException {
+        if (rddIds.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection()) {
+            for (String table : List.of("storage_blocks", "storage_rdds")) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM " + table + " WHERE app_id = ? AND rdd_id = ?")) {
+                    for (Integer rddId : rddIds) {
+                        ps.setString(1, appId);
+                        ps.setInt(2, rddId);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * 用一次 GROUP BY 重新计算该 App 所有 RDD 的缓存分区数和内存 / 磁盘占用，每个文件结束时调用一次
+     */
+    public int refreshRddSummaries(String appId) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE storage_rdds SET num_cached_partitions = b.cached, memory_size = b.mem, disk_size = b.disk " +
+                             "FROM (SELECT rdd_id, count(*) FILTER (WHERE memory_size > 0 OR disk_size > 0) AS cached, " +
+                             "COALESCE(sum(memory_size), 0) AS mem, COALESCE(sum(disk_size), 0) AS disk " +
+                             "FROM storage_blocks WHERE app_id = ? GROUP BY rdd_id) b " +
+                             "WHERE storage_rdds.app_id = ? AND storage_rdds.rdd_id = b.rdd_id")) {
+            ps.setString(1, appId);
+            ps.setString(2, appId);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 在一个事务中把本批次的暂存数据按主键去重后合并进正式表，并清理暂存数据
+     */
+    public void merge(long loadId) throws SQLException {
+        merge(loadId, true, null, "");
+    }
+
+    /**
+     * @param withTasks        是否合并 Task。为 false 时 tasks_staging 保留到文件结束再一次性排序写入，
+     *                         一个文件的 Task 在 tasks 中是连续的一段，不会和其他 App 的批次交错
+     * @param taskShard        不为空时 Task 从该 Parquet 文件一次性加载，而不是从 tasks_staging
+     * @param shardAppIdSuffix 分片中的 App ID 加上该后缀后再换成 app_key (分片总是按正式 App ID 保存)
+     */
+    public void merge(long loadId, boolean withTasks, Path taskShard, String shardAppIdSuffix) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int tasks = withTasks
+                        ? execute(conn, replaceLatest("tasks", TASK_COLUMNS, TASK_KEY) + " ORDER BY " + TASK_ORDER, loadId)
+                        : 0;
+                if (taskShard != null) {
+                    try (PreparedStatement ps = conn.prepareStatement(replaceTasksFromParquet(taskShard))) {
+                        ps.setString(1, shardAppIdSuffix);
+                        tasks += ps.executeUpdate();
+                    }
+                }
+                int envs = execute(conn, replaceLatest("environment_configs", ENV_COLUMNS, "id"), loadId);
+                int blocks = execute(conn, replaceLatest("storage_blocks", BLOCK_COLUMNS, "id"), loadId);
+                int executors = execute(conn, upsertLatest("executors", EXECUTOR_COLUMNS, "add_time"), loadId);
+                int jobs = execute(conn, upsertLatest("jobs", JOB_COLUMNS, null), loadId);
+                // Job 的 Stage 列表不会变化，已存在的关系直接忽略
+                execute(conn, "INSERT OR IGNORE INTO job_stages (app_key, job_id, stage_id) " +
+                        "SELECT DISTINCT app_key, job_id, stage_id FROM job_stages_staging WHERE load_id = ?", loadId);
+                int stages = execute(conn, upsertLatest("stages", STAGE_COLUMNS, null), loadId);
+                int sqls = execute(conn, upsertLatest("sql_executions", SQL_COLUMNS, null), loadId);
+
+                // 确保 storage_rdds 中有 Block 所属的 RDD (默认名称，后续可通过 StageSubmitted 丰富)
+                execute(conn, "INSERT OR IGNORE INTO storage_rdds (id, app_id, rdd_id, name, storage_level, num_partitions, num_cached_partitions) " +
+                        "SELECT app_id || ':' || rdd_id, app_id, rdd_id, 'RDD ' || rdd_id, any_value(storage_level), 0, 0 " +
+                        "FROM storage_blocks_staging WHERE load_id = ? GROUP BY app_id, rdd_id", loadId);
+
+                deleteStaging(conn, loadId, withTasks);
+                conn.commit();
+                log.info("Merged staging batch {}: {} tasks, {} env configs, {} blocks, {} executors, {} jobs, {} stages, {} sql executions in {}ms",
+                        loadId, tasks, envs, blocks, executors, jobs, stages, sqls, System.currentTimeMillis() - start);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 按 app_id 区分 App 的表 (主键 id 都以 "appId:" 开头)；applications 和 tasks 单独处理
+     */
+    private static final List<String> APP_TABLES = List.of("environment_configs", "executors", "jobs", "stages",
+            "stage_statistics", "stage_sketches", "sql_executions", "storage_rdds", "storage_blocks");
+
+    /**
+     * 在一个事务中用暂存 App 的数据替换正式 App 的数据，读请求在提交前一直看到旧版本 (DuckDB MVCC)。
+     * 先删除正式数据中新版本没有的行，再按主键 INSERT OR REPLACE，避免在同一事务中删除后又插入相同主键。
+     * <p>
+     * 两个版本都有的 Task 在原位置被更新，只有新增的 Task 按 {@link #TASK_ORDER} 追加到表尾，
+     * 所以替换后 tasks 的物理顺序不会比替换前更好，重新解析的 App 要等 {@link #reclusterTasks()} 才会连续存放。
+     */
+    public void swapIn(String stagedAppId, String appId) throws SQLException {
+        long start = System.currentTimeMillis();
+        int prefix = stagedAppId.length() + 1;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (String table : APP_TABLES) {
+                    update(conn, "DELETE FROM " + table + " WHERE app_id = ? AND id NOT IN " +
+                            "(SELECT ? || substr(id, ?) FROM " + table + " WHERE app_id = ?)", appId, appId, prefix, stagedAppId);
+                    update(conn, "INSERT OR REPLACE INTO " + table + " SELECT * REPLACE (? AS app_id, ? || substr(id, ?) AS id) " +
+                            "FROM " + table + " WHERE app_id = ?", appId, appId, prefix, stagedAppId);
+                    update(conn, "DELETE FROM " + table + " WHERE app_id = ?", stagedAppId);
+                }
+
+                String liveKey = "(SELECT app_key FROM app_keys WHERE app_id = ?)";
+                update(conn, "DELETE FROM tasks t WHERE app_key = " + liveKey + " AND NOT EXISTS (SELECT 1 FROM tasks s " +
+                        "WHERE s.app_key = " + liveKey + " AND s.stage_id = t.stage_id AND s.attempt_id = t.attempt_id AND s.task_id = t.task_id)",
+                        appId, stagedAppId);
+                update(conn, "INSERT OR REPLACE INTO tasks SELECT * REPLACE (" + liveKey + " AS app_key) " +
+                        "FROM tasks WHERE app_key = " + liveKey + " ORDER BY " + TASK_ORDER, appId, stagedAppId);
+                update(conn, "DELETE FROM tasks WHERE app_key = " + liveKey, stagedAppId);
+
+                update(conn, "DELETE FROM job_stages j WHERE app_key = " + liveKey + " AND NOT EXISTS (SELECT 1 FROM job_stages s " +
+                        "WHERE s.app_key = " + liveKey + " AND s.job_id = j.job_id AND s.stage_id = j.stage_id)",
+                        appId, stagedAppId);
+                update(conn, "INSERT OR IGNORE INTO job_stages SELECT * REPLACE (" + liveKey + " AS app_key) " +
+                        "FROM job_stages WHERE app_key = " + liveKey, appId, stagedAppId);
+                update(conn, "DELETE FROM job_stages WHERE app_key = " + liveKey, stagedAppId);
+
+                update(conn, "INSERT OR REPLACE INTO applications SELECT * REPLACE (? AS app_id) " +
+                        "FROM applications WHERE app_id = ?", appId, stagedAppId);
+                update(conn, "DELETE FROM applications WHERE app_id = ?", stagedAppId);
+                conn.commit();
+                log.info("Swapped staged data of {} into place in {}ms", appId, System.currentTimeMillis() - start);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 按物理顺序扫描 tasks，统计前一行排在后一行之后 (违反 {@link #TASK_ORDER}) 的位置数，0 表示已经有序
+     */
+    public long countUnorderedTaskRuns() throws SQLException {
+        String key = "row(" + TASK_ORDER + ")";
+        try (Connection conn = dataSource.getConnection();
+             java.sql.Statement st = conn.createStatement();
+             java.sql.ResultSet rs = st.executeQuery("SELECT count(*) FROM (SELECT " + key + " AS k, lag(" + key + ") " +
+                     "OVER (ORDER BY rowid) AS prev FROM tasks) WHERE prev > k")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * 按 {@link #TASK_ORDER} 重写整个 tasks 表。
+     * <p>
+     * DuckDB 1.1 不允许在同一事务中删除后再插入相同主键，所以不能按 App 原地重写，
+     * 而是在一个事务中按相同结构建新表、排序写入后改名替换，读请求在提交前一直看到旧表。
+     * 耗时与 tasks 的总行数成正比，期间写线程上的其他写入都要等待。
+     *
+     * @return 重写的行数
+     */
+    public long reclusterTasks() throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection(); java.sql.Statement st = conn.createStatement()) {
+            String ddl;
+            try (java.sql.ResultSet rs = st.executeQuery(
+                    "SELECT sql FROM duckdb_tables() WHERE schema_name = 'main' AND table_name = 'tasks'")) {
+                if (!rs.next()) return 0;
+                ddl = rs.getString(1).replaceFirst("(?i)^CREATE TABLE (main\\.)?\"?tasks\"?", "CREATE TABLE tasks_clustered");
+            }
+            conn.setAutoCommit(false);
+            try {
+                st.execute("DROP TABLE IF EXISTS tasks_clustered");
+                st.execute(ddl);
+                long rows = st.executeUpdate("INSERT INTO tasks_clustered SELECT * FROM tasks ORDER BY " + TASK_ORDER);
+                st.execute("ALTER TABLE tasks RENAME TO tasks_unclustered");
+                st.execute("ALTER TABLE tasks_clustered RENAME TO tasks");
+                st.execute("DROP TABLE tasks_unclustered");
+                conn.commit();
+                log.info("Reclustered {} task rows in {}ms", rows, System.currentTimeMillis() - start);
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 删除一个 App 的全部数据 (用于清理失败或中断的暂存 App)
+     */
+    public void dropApp(String appId) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (String table : APP_TABLES) {
+                    update(conn, "DELETE FROM " + table + " WHERE app_id = ?", appId);
+                }
+                update(conn, "DELETE FROM tasks WHERE app_key = (SELECT app_key FROM app_keys WHERE app_id = ?)", appId);
+                update(conn, "DELETE FROM job_stages WHERE app_key = (SELECT app_key FROM app_keys WHERE app_id = ?)", appId);
+                update(conn, "DELETE FROM applications WHERE app_id = ?", appId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 解析失败时丢弃本批次的暂存数据
+     */
+    public void discard(long loadId) {
+        try (Connection conn = dataSource.getConnection()) {
+            deleteStaging(conn, loadId, true);
+        } catch (SQLException e) {
+            log.error("Failed to discard staging batch {}", loadId, e);
+        }
+    }
+
+    private static void deleteStaging(Connection conn, long loadId, boolean withTasks) throws SQLException {
+        if (withTasks) execute(conn, "DELETE FROM tasks_staging WHERE load_id = ?", loadId);
+        for (String table : List.of("environment_configs_staging", "storage_blocks_staging",
+                "executors_staging", "jobs_staging", "job_stages_staging", "stages_staging", "sql_executions_staging",
+                "stage_aggregates_staging", "stage_sketches_staging")) {
+            execute(conn, "DELETE FROM " + table + " WHERE load_id = ?", loadId);
+        }
+    }
+
+    /**
+     * 同一主键取 seq 最大 (最后追加) 的一行，整体 INSERT OR REPLACE 到正式表
+     */
+    private static String replaceLatest(String table, String[] columns, String key) {
+        String cols = String.join(", ", columns);
+        return "INSERT OR REPLACE INTO " + table + " (" + cols + ") " +
+                "SELECT " + cols + " FROM " + table + "_staging WHERE load_id = ? " +
+                "QUALIFY row_number() OVER (PARTITION BY " + key + " ORDER BY seq DESC) = 1";
+    }
+
+    /**
+     * Executor / Job / Stage / SQL 不能整行替换 (会覆盖后期预计算出的指标)，
+     * 只用非空的生命周期字段更新，与之前 updateById 忽略 null 字段的行为一致
+     *
+     * @param insertRequires 不为空时，该列为空的行只更新已存在的记录，不插入新行
+     */
+    private static String upsertLatest(String table, String[] columns, String insertRequires) {
+        String cols = String.join(", ", columns);
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(cols).append(") ")
+                .append("SELECT ").append(cols).append(" FROM ").append(table).append("_staging s WHERE load_id = ? ");
+        if (insertRequires != null) {
+            sql.append("AND (").append(insertRequires).append(" IS NOT NULL OR EXISTS (SELECT 1 FROM ")
+                    .append(table).append(" t WHERE t.id = s.id)) ");
+        }
+        sql.append("QUALIFY row_number() OVER (PARTITION BY id ORDER BY seq DESC) = 1 ON CONFLICT (id) DO UPDATE SET ");
+        boolean first = true;
+        for (String col : columns) {
+            if (col.equals("id")) continue;
+            if (!first) sql.append(", ");
+            sql.append(col).append(" = COALESCE(excluded.").append(col).append(", ").append(col).append(')');
+            first = false;
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Parquet 分片中保存的是 app_id (分片可能比当前数据库存在得更久，app_key 不能跨库复用)，加载时换成 app_key
+     */
+    private static String replaceTasksFromParquet(Path file) {
+        String path = file.toAbsolutePath().toString().replace("'", "''");
+        StringBuilder select = new StringBuilder("k.app_key");
+        for (String col : TASK_COLUMNS) {
+            if (!col.equals("app_key")) select.append(", p.").append(col);
+        }
+        return "INSERT OR REPLACE INTO tasks (" + String.join(", ", TASK_COLUMNS) + ") " +
+                "SELECT " + select + " FROM read_parquet('" + path + "') p JOIN app_keys k ON k.app_id = p.app_id || ? " +
+                "QUALIFY row_number() OVER (PARTITION BY k.app_key, p.stage_id, p.attempt_id, p.task_id ORDER BY p.seq DESC) = 1 " +
+                "ORDER BY " + TASK_ORDER;
+    }
+
+    private static int execute(Connection conn, String sql) throws SQLException {
+        try (java.sql.Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(sql);
+        }
+    }
+
+    private static int update(Connection conn, String sql, Object... params) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int execute(Connection conn, String sql, long loadId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, loadId);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static DuckDBAppender createAppender(Connection conn, String table) throws SQLException {
+        return conn.unwrap(DuckDBConnection.class).createAppender(DuckDBConnection.DEFAULT_SCHEMA, table);
+    }
+
+    private static void appendString(DuckDBAppender appender, String value) throws SQLException {
+        if (value == null) appender.appendNull();
+        else appender.append(value);
+    }
+
+    private static void appendInt(DuckDBAppender appender, Integer value) throws SQLException {
+        if (value == null) appender.appendNull();
+        else appender.append(value.intValue());
+    }
+
+    private static void appendLong(DuckDBAppender appender, Long value) throws SQLException {
+        if (value == null) appender.appendNull();
+        else appender.append(value.longValue());
+    }
+
+    private static void appendBoolean(DuckDBAppender appender, Boolean value) throws SQLException {
+        if (value == null) appender.appendNull();
+        else appender.append(value.booleanValue());
+    }
+
+    private static void appendTimestamp(DuckDBAppender appender, LocalDateTime value) throws SQLException {
+        if (value == null) appender.appendNull();
+        else appender.appendLocalDateTime(value);
+    }
+}
@@ -0,0 +1,476 @@
+package com.spark.insight.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个日志文件的三段式解析流水线：读取 → 并行解码 → 按序应用。
+ * <ol>
+ *     <li>读取线程：从 (解压后的) 输入流中按块读取，在最后一个换行符处切分，保证每个块只包含完整的行；</li>
+ *     <li>解码线程池：每个块独立地做事件类型预过滤和 JSON 解码，得到 {@link SparkEvent} 列表；</li>
+ *     <li>调用线程：按块的原始顺序依次取出解码结果并应用 (App ID 校正、Stage → Job 映射等有状态逻辑)。</li>
+ * </ol>
+ * 读取线程与应用线程之间是一个有界的有序队列，队列中存放的是各个块的解码 Future，
+ * 解码领先应用太多时读取线程会被阻塞，内存占用不超过 maxChunksInFlight 个块。
+ */
+@Slf4j
+public class EventDecodePipeline {
+
+    /**
+     * 类型预过滤时最多需要看的行首字节数 ({"Event":" 前缀 + 最长的事件类型名)
+     */
+    private static final int TYPE_PROBE_BYTES = 160;
+
+    /**
+     * 每个解码线程复用的行缓冲，只用于把需要解码的行从映射区域中拷出来
+     */
+    private static final ThreadLocal<byte[][]> LINE_SCRATCH = ThreadLocal.withInitial(() -> new byte[][]{new byte[1 << 16]});
+
+    private final SparkEventDecoder decoder;
+    private final EventTypeFilter filter;
+    private final java.util.concurrent.ExecutorService workers;
+    private final int workerCount;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    public EventDecodePipeline(SparkEventDecoder decoder, EventTypeFilter filter,
+                               java.util.concurrent.ExecutorService workers, int workerCount,
+                               int chunkSize, int maxChunksInFlight) {
+        this.decoder = decoder;
+        this.filter = filter;
+        this.workers = workers;
+        this.workerCount = workerCount;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * 一个块的解码结果
+     *
+     * @param events     按行顺序排列的已解码事件
+     * @param lineCount  块内总行数 (包含被过滤掉的行)
+     * @param skipCounts 被预过滤器丢弃的行
+     * @param byteCount  块的字节数 (解压后)
+     */
+    public record DecodedChunk(List<SparkEvent> events, long lineCount, EventTypeFilter.SkipCounts skipCounts, long byteCount) {
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(DecodedChunk chunk) throws Exception;
+    }
+
+    /**
+     * 各阶段耗时与吞吐统计
+     */
+    public static class Stats {
+        int workers;
+        long bytes;
+        long lines;
+        long chunks;
+        long events;
+        long readNanos;
+        long readBlockedNanos;
+        final AtomicLong decodeNanos = new AtomicLong();
+        long applyNanos;
+        long applyWaitNanos;
+        long wallNanos;
+
+        @Override
+        public String toString() {
+            double mb = bytes / (1024.0 * 1024.0);
+            return String.format("%.1f MB, %d lines, %d chunks in %d ms | read %.1f MB/s (blocked %d ms)"
+                            + " | decode %.1f MB/s per worker x%d (busy %d ms) | apply %.0f events/s (waited %d ms)",
+                    mb, lines, chunks, wallNanos / 1_000_000,
+                    rate(mb, readNanos), readBlockedNanos / 1_000_000,
+                    rate(mb, decodeNanos.get()), workers, decodeNanos.get() / 1_000_000,
+                    rate(events, applyNanos), applyWaitNanos / 1_000_000);
+        }
+
+        private static double rate(double amount, long nanos) {
+            return nanos > 0 ? amount * 1e9 / nanos : 0;
+        }
+    }
+
+    /**
+     * 以流的方式运行流水线直到输入流读完，consumer 在调用线程上按块的原始顺序被调用
+     */
+    public Stats run(InputStream in, String fileName, ChunkConsumer consumer) throws Exception {
+        // 出错时关闭输入流，阻塞在 read 上的读取线程才能退出
+        return execute(fileName, consumer, (stats, sink) -> readChunks(in, fileName, stats, sink), in::close);
+    }
+
+    /**
+     * 对未压缩的日志文件做内存映射，按换行符对齐切分成多个区间后并行解码。
+     * <p>
+     * 读取线程只负责确定区间边界，不再搬运数据；各解码线程直接扫描映射区域，
+     * 只有需要解码的行才会被拷贝给 JSON 解析器。
+     */
+    public Stats runMapped(Path file, ChunkConsumer consumer) throws Exception {
+        return runMapped(file, 0, Files.size(file), consumer);
+    }
+
+    /**
+     * 只解析文件中 [from, to) 的字节范围，两端都必须落在行边界上 (用于增量解析)
+     */
+    public Stats runMapped(Path file, long from, long to, ChunkConsumer consumer) throws Exception {
+        String fileName = file.getFileName().toString();
+        // execute 返回时所有解码任务都已结束，之后才关闭 FileChannel；读取线程只读本地文件，出错时不需要打断
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = Math.min(to, channel.size());
+            return execute(fileName, consumer, (stats, sink) -> splitMapped(channel, from, end, fileName, stats, sink), null);
+        }
+    }
+
+    /**
+     * 产生待解码的块，在读取线程上运行
+     */
+    @FunctionalInterface
+    private interface ChunkProducer {
+        void produce(Stats stats, ChunkSink sink) throws Exception;
+    }
+
+    /**
+     * 把一个解码任务交给线程池，并按提交顺序放入有序队列 (队列满时阻塞)
+     */
+    @FunctionalInterface
+    private interface ChunkSink {
+        void submit(java.util.function.Supplier<DecodedChunk> task) throws InterruptedException;
+    }
+
+    /**
+     * @param abort 应用线程出错退出时调用，用来打断阻塞在输入上的读取线程 (可以为 null)
+     */
+    private Stats execute(String fileName, ChunkConsumer consumer, ChunkProducer producer, Closeable abort) throws Exception {
+        Stats stats = new Stats();
+        stats.workers = workerCount;
+        long wallStart = System.nanoTime();
+        BlockingQueue<Future<DecodedChunk>> pending = new ArrayBlockingQueue<>(Math.max(1, maxChunksInFlight));
+        CompletableFuture<DecodedChunk> endOfStream = CompletableFuture.completedFuture(null);
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        ChunkSink sink = task -> {
+            stats.chunks++;
+            CompletableFuture<DecodedChunk> future = CompletableFuture.supplyAsync(task, workers);
+            if (!enqueue(pending, future, stats, cancelled)) {
+                // 应用线程已经退出 (出错)，等这个块解码结束后停止读取
+                awaitQuietly(future);
+                throw new CancellationException();
+            }
+        };
+        Thread reader = new Thread(() -> {
+            try {
+                producer.produce(stats, sink);
+                enqueue(pending, endOfStream, stats, cancelled);
+            } catch (Throwable t) {
+                try {
+                    enqueue(pending, CompletableFuture.failedFuture(t), stats, cancelled);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "eventlog-reader-" + fileName);
+        reader.setDaemon(true);
+        reader.start();
+
+        boolean completed = false;
+        try {
+            while (true) {
+                long waitStart = System.nanoTime();
+                Future<DecodedChunk> next = pending.take();
+                DecodedChunk chunk;
+                try {
+                    chunk = next.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ex ? ex : e;
+                }
+                long applyStart = System.nanoTime();
+                stats.applyWaitNanos += applyStart - waitStart;
+                if (chunk == null) {
+                    break;
+                }
+                consumer.accept(chunk);
+                stats.applyNanos += System.nanoTime() - applyStart;
+                stats.lines += chunk.lineCount();
+                stats.events += chunk.events().size();
+            }
+            completed = true;
+        } finally {
+            cancelled.set(true);
+            List<Future<DecodedChunk>> abandoned = new ArrayList<>();
+            if (!completed) {
+                // 出错时让读取线程尽快退出：腾出队列并关闭输入
+                pending.drainTo(abandoned);
+                try {
+                    if (abort != null) abort.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close input of {}: {}", fileName, e.getMessage());
+                }
+            }
+            awaitReader(reader, fileName);
+            // 读取线程退出前可能又放进了块；返回前等所有解码任务结束 (映射模式随后会关闭 FileChannel)
+            pending.drainTo(abandoned);
+            for (Future<DecodedChunk> future : abandoned) {
+                awaitQuietly(future);
+            }
+        }
+        if (reader.isAlive()) {
+            // 只有等待时被中断才会走到这里，读取线程还在更新 stats
+            throw new InterruptedException("Interrupted while waiting for the reader of " + fileName);
+        }
+        stats.wallNanos = System.nanoTime() - wallStart;
+        return stats;
+    }
+
+    /**
+     * 等待读取线程退出。正常结束时它已经放入了结束标记，出错时输入已关闭、队列已腾空，很快就会退出
+     */
+    private static void awaitReader(Thread reader, String fileName) {
+        try {
+            while (true) {
+                reader.join(TimeUnit.SECONDS.toMillis(30));
+                if (!reader.isAlive()) {
+                    return;
+                }
+                log.warn("Reader thread of {} is still running, waiting for it to exit", fileName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(Future<DecodedChunk> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ignored) {
+            // 结果已经不需要，只等它结束
+        }
+    }
+
+    private void readChunks(InputStream in, String fileName, Stats stats, ChunkSink sink) throws IOException, InterruptedException {
+        byte[] buf = new byte[chunkSize];
+        int end = 0;
+        long readStart = System.nanoTime();
+        while (true) {
+            int n = in.read(buf, end, buf.length - end);
+            if (n > 0) {
+                end += n;
+                stats.bytes += n;
+                if (end < buf.length) {
+                    continue;
+                }
+            }
+            boolean eof = n < 0;
+
+            int cut = end;
+            if (!eof) {
+                // 在最后一个换行符之后切开，剩余的半行留给下一个块
+                cut = lastNewline(buf, end) + 1;
+                if (cut == 0) {
+                    // 单行超过块大小，扩容后继续读
+                    byte[] bigger = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, bigger, 0, end);
+                    buf = bigger;
+                    continue;
+                }
+            }
+
+            if (cut > 0) {
+                byte[] chunk = buf;
+                int chunkLen = cut;
+                byte[] nextBuf = new byte[Math.max(chunkSize, end - cut)];
+                System.arraycopy(buf, cut, nextBuf, 0, end - cut);
+                end -= cut;
+                buf = nextBuf;
+
+                stats.readNanos += System.nanoTime() - readStart;
+                sink.submit(() -> decodeChunk(chunk, chunkLen, fileName, stats));
+                readStart = System.nanoTime();
+            }
+            if (eof) {
+                stats.readNanos += System.nanoTime() - readStart;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按 chunkSize 把映射文件切成以换行符结尾的区间，每个区间单独映射后交给解码线程
+     */
+    private void splitMapped(FileChannel channel, long from, long size, String fileName, Stats stats, ChunkSink sink)
+            throws IOException, InterruptedException {
+        long start = from;
+        while (start < size) {
+            long readStart = System.nanoTime();
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+            long rangeStart = start;
+            int rangeLen = (int) (end - start);
+            stats.bytes += rangeLen;
+            stats.readNanos += System.nanoTime() - readStart;
+            sink.submit(() -> {
+                try {
+                    ByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, rangeStart, rangeLen);
+                    return decodeChunk(range, fileName, stats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            start = end;
+        }
+    }
+
+    /**
+     * 从 pos 开始找到下一个换行符，返回其后一个字节的位置 (找不到则返回文件末尾)
+     */
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(1 << 16);
+        while (pos < size) {
+            window.clear();
+            int n = channel.read(window, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (window.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static boolean enqueue(BlockingQueue<Future<DecodedChunk>> pending, Future<DecodedChunk> future, Stats stats,
+                                   AtomicBoolean cancelled) throws InterruptedException {
+        long blockedStart = System.nanoTime();
+        try {
+            while (!cancelled.get()) {
+                if (pending.offer(future, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            stats.readBlockedNanos += System.nanoTime() - blockedStart;
+        }
+    }
+
+    private static int lastNewline(byte[] buf, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在解码线程上运行：按行预过滤并解码一个块
+     */
+    DecodedChunk decodeChunk(byte[] buf, int len, String fileName, Stats stats) {
+        long start = System.nanoTime();
+        List<SparkEvent> events = new ArrayList<>();
+        EventTypeFilter.SkipCounts skipCounts = filter.newSkipCounts();
+        long lineCount = 0;
+
+        int lineStart = 0;
+        while (lineStart < len) {
+            int newline = lineStart;
+            while (newline < len && buf[newline] != '\n') {
+                newline++;
+            }
+            int lineEnd = newline;
+            if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            lineCount++;
+
+            int lineLen = lineEnd - lineStart;
+            int eventType = filter.classify(buf, lineStart, lineLen);
+            if (!filter.shouldDecode(eventType)) {
+                skipCounts.increment(eventType);
+            } else {
+                try {
+                    SparkEvent event = decoder.decode(buf, lineStart, lineLen);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                } catch (Exception lineEx) {
+                    log.warn("Failed to parse line in {}: {}", fileName, lineEx.getMessage());
+                }
+            }
+            lineStart = newline + 1;
+        }
+
+        stats.decodeNanos.addAndGet(System.nanoTime() - start);
+        return new DecodedChunk(events, lineCount, skipCounts, len);
+    }
+
+    /**
+     * 在解码线程上运行：直接扫描映射区域，只把需要解码的行拷贝出来
+     */
+    DecodedChunk decodeChunk(ByteBuffer buf, String fileName, Stats stats) {
+        long start = System.nanoTime();
+        List<SparkEvent> events = new ArrayList<>();
+        EventTypeFilter.SkipCounts skipCounts = filter.newSkipCounts();
+        byte[][] scratchHolder = LINE_SCRATCH.get();
+        long lineCount = 0;
+
+        int len = buf.limit();
+        int lineStart = 0;
+        while (lineStart < len) {
+            int newline = lineStart;
+            while (newline < len && buf.get(newline) != '\n') {
+                newline++;
+            }
+            int lineEnd = newline;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            lineCount++;
+
+            int lineLen = lineEnd - lineStart;
+            byte[] scratch = scratchHolder[0];
+            int probeLen = Math.min(lineLen, TYPE_PROBE_BYTES);
+            buf.get(lineStart, scratch, 0, probeLen);
+            int eventType = filter.classify(scratch, 0, probeLen);
+            if (!filter.shouldDecode(eventType)) {
+                skipCounts.increment(eventType);
+            } else {
+                if (scratch.length < lineLen) {
+                    scratch = new byte[Integer.highestOneBit(lineLen) << 1];
+                    scratchHolder[0] = scratch;
+                }
+                buf.get(lineStart, scratch, 0, lineLen);
+                try {
+                    SparkEvent event = decoder.decode(scratch, 0, lineLen);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                } catch (Exception lineEx) {
+                    log.warn("Failed to parse line in {}: {}", fileName, lineEx.getMessage());
+                }
+            }
+            lineStart = newline + 1;
+        }
+
+        stats.decodeNanos.addAndGet(System.nanoTime() - start);
+        return new DecodedChunk(events, lineCount, skipCounts, len);
+    }
+}
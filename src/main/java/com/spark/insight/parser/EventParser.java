@@ -1,6 +1,7 @@
 package com.spark.insight.parser;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * EventLog 解析器接口，预留双轨制实现
@@ -24,6 +25,26 @@ public interface EventParser {
         parse(logFile);
     }
 
+    /**
+     * 从断点继续解析只在末尾追加过内容的日志，解析失败时抛出异常
+     *
+     * @param resume 上次解析结束时的断点，null 表示从头解析
+     * @return 本次解析结束时的断点，不支持增量解析 (例如压缩日志) 时返回 null
+     */
+    default ParseCheckpoint parse(File logFile, int currentFileIndex, int totalFiles, ParseCheckpoint resume) {
+        parse(logFile, currentFileIndex, totalFiles);
+        return null;
+    }
+
+    /**
+     * 一组文件 (同一 App 的滚动日志，或单个无法推断 App ID 的日志) 处理完后调用一次，
+     * 执行后期预计算、替换暂存数据并结束进度。组内可能只有一部分文件被解析过 (其余没有变化)，也可能一个都没有
+     *
+     * @param files 这一组的全部文件
+     */
+    default void finishGroup(List<File> files) {
+    }
+
     /**
      * 是否支持该版本的日志解析
      */
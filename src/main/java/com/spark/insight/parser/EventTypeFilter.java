@@ -0,0 +1,211 @@
+package com.spark.insight.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 在 JSON 解码之前按字节识别事件类型的预过滤器。
+ * <p>
+ * Spark 写出的每一行都以 <code>{"Event":"类型名"</code> 开头。这里直接在原始字节上读取类型名，
+ * 用预先构建的开放寻址哈希表 (FNV-1a) 匹配，不做 UTF-8 解码也不创建 JsonParser。
+ * 解析器不处理的类型 (TaskStart、ExecutorMetricsUpdate 等心跳类事件) 可以直接丢弃。
+ * <p>
+ * 表在构造后只读，可以被多个线程共享；计数放在 {@link SkipCounts} 中，由调用方持有。
+ */
+public class EventTypeFilter {
+
+    /**
+     * 行首不是标准的 {"Event":"..." 格式，需要交给解码器完整解析
+     */
+    public static final int UNRECOGNIZED = -1;
+
+    /**
+     * 格式正确但类型不在表中 (既不处理，也不是常见的已知类型)
+     */
+    public static final int OTHER = -2;
+
+    private static final byte[] PREFIX = "{\"Event\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 常见但解析器不关心的事件类型，预先放进表里以便按类型计数
+     */
+    private static final List<String> KNOWN_IGNORED_EVENTS = List.of(
+            "SparkListenerTaskStart",
+            "SparkListenerTaskGettingResult",
+            "SparkListenerExecutorMetricsUpdate",
+            "SparkListenerStageExecutorMetrics",
+            "SparkListenerBlockManagerAdded",
+            "SparkListenerBlockManagerRemoved",
+            "SparkListenerResourceProfileAdded",
+            "SparkListenerSpeculativeTaskSubmitted",
+            "SparkListenerExecutorBlacklisted",
+            "SparkListenerExecutorExcluded",
+            "SparkListenerExecutorUnblacklisted",
+            "SparkListenerExecutorUnexcluded",
+            "SparkListenerNodeBlacklisted",
+            "SparkListenerNodeExcluded",
+            "SparkListenerUnschedulableTaskSetAdded",
+            "SparkListenerUnschedulableTaskSetRemoved",
+            "org.apache.spark.sql.execution.ui.SparkListenerSQLAdaptiveExecutionUpdate",
+            "org.apache.spark.sql.execution.ui.SparkListenerSQLAdaptiveSQLMetricUpdates",
+            "org.apache.spark.sql.execution.ui.SparkListenerDriverAccumUpdates",
+            "org.apache.spark.sql.execution.ui.SparkListenerEffectiveSQLConf",
+            "org.apache.spark.sql.streaming.StreamingQueryListener$QueryStartedEvent",
+            "org.apache.spark.sql.streaming.StreamingQueryListener$QueryProgressEvent",
+            "org.apache.spark.sql.streaming.StreamingQueryListener$QueryTerminatedEvent");
+
+    private final String[] names;
+    private final byte[][] nameBytes;
+    private final boolean[] handled;
+    /**
+     * 开放寻址表，存放 names 的下标 + 1，0 表示空槽
+     */
+    private final int[] slots;
+    private final int[] slotHashes;
+    private final int mask;
+
+    /**
+     * @param handledEvents 需要交给解码器的事件类型，其余类型都会被过滤
+     */
+    public EventTypeFilter(Set<String> handledEvents) {
+        LinkedHashSet<String> all = new LinkedHashSet<>(handledEvents);
+        all.addAll(KNOWN_IGNORED_EVENTS);
+
+        this.names = all.toArray(new String[0]);
+        this.nameBytes = new byte[names.length][];
+        this.handled = new boolean[names.length];
+
+        int capacity = Integer.highestOneBit(names.length * 4 - 1) << 1;
+        this.slots = new int[capacity];
+        this.slotHashes = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = names[i].getBytes(StandardCharsets.UTF_8);
+            nameBytes[i] = bytes;
+            handled[i] = handledEvents.contains(names[i]);
+            int h = hash(bytes, 0, bytes.length);
+            int slot = h & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+            slotHashes[slot] = h;
+        }
+    }
+
+    /**
+     * 识别一行的事件类型
+     *
+     * @return 类型下标 (>= 0)，或 {@link #UNRECOGNIZED} / {@link #OTHER}
+     */
+    public int classify(byte[] buf, int off, int len) {
+        if (len <= PREFIX.length) {
+            return UNRECOGNIZED;
+        }
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (buf[off + i] != PREFIX[i]) {
+                return UNRECOGNIZED;
+            }
+        }
+
+        int start = off + PREFIX.length;
+        int limit = off + len;
+        int h = 0x811c9dc5;
+        int end = start;
+        while (true) {
+            if (end >= limit) {
+                return UNRECOGNIZED;
+            }
+            byte b = buf[end];
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                // 类型名里出现转义时交给解码器处理
+                return UNRECOGNIZED;
+            }
+            h = (h ^ (b & 0xff)) * 0x01000193;
+            end++;
+        }
+
+        int nameLen = end - start;
+        int slot = h & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (slotHashes[slot] == h && Arrays.equals(nameBytes[entry - 1], 0, nameBytes[entry - 1].length, buf, start, end)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return nameLen > 0 ? OTHER : UNRECOGNIZED;
+    }
+
+    /**
+     * 该行是否需要交给解码器 ({@link #UNRECOGNIZED} 时保守地返回 true)
+     */
+    public boolean shouldDecode(int type) {
+        return type == UNRECOGNIZED || (type >= 0 && handled[type]);
+    }
+
+    public String nameOf(int type) {
+        return type >= 0 ? names[type] : "Other";
+    }
+
+    public SkipCounts newSkipCounts() {
+        return new SkipCounts();
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * 按类型统计被过滤掉的行数，非线程安全
+     */
+    public class SkipCounts {
+        private final long[] counts = new long[names.length];
+        private long otherCount;
+
+        public void increment(int type) {
+            if (type >= 0) {
+                counts[type]++;
+            } else {
+                otherCount++;
+            }
+        }
+
+        public void addAll(SkipCounts other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            otherCount += other.otherCount;
+        }
+
+        public long total() {
+            long total = otherCount;
+            for (long c : counts) total += c;
+            return total;
+        }
+
+        /**
+         * @return 按跳过次数倒序排列的 类型 → 行数
+         */
+        public Map<String, Long> byType() {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) entries.add(Map.entry(names[i], counts[i]));
+            }
+            if (otherCount > 0) entries.add(Map.entry("Other", otherCount));
+            entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> e : entries) result.put(e.getKey(), e.getValue());
+            return result;
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package com.spark.insight.parser;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.StreamReadConstraints;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.luben.zstd.ZstdInputStream;
+import com.spark.insight.config.InsightProperties;
 import com.spark.insight.model.*;
 import com.spark.insight.service.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
-import java.time.Instant;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -21,248 +21,766 @@ public class JacksonEventParser implements EventParser {
 
     private static final java.util.regex.Pattern APP_ID_PATTERN = java.util.regex.Pattern.compile("(spark-[a-zA-Z0-9\\-]+)");
 
-    private final ObjectMapper objectMapper;
+    private final SparkEventDecoder decoder = new SparkEventDecoder();
+    private final EventTypeFilter eventFilter = new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS);
+    private final EventDecodePipeline pipeline;
+    // Task 已经有 Parquet 缓存时使用，连 TaskEnd 一起过滤掉
+    private final EventDecodePipeline pipelineWithoutTasks;
+    private final InsightProperties.Parser parserConfig;
     private final ApplicationService applicationService;
     private final StageService stageService;
-    private final TaskService taskService;
     private final EnvironmentConfigService envService;
     private final JobService jobService;
     private final ExecutorService executorService;
     private final SqlExecutionService sqlExecutionService;
     private final StorageService storageService;
     private final javax.sql.DataSource dataSource;
-    // Use a single-threaded executor for ALL database writes to avoid DuckDB lock contention
-    private final java.util.concurrent.ExecutorService dbExecutor = java.util.concurrent.Executors.newSingleThreadExecutor();
+    private final DuckDbBulkLoader bulkLoader;
+    private final ParquetTaskSpool parquetSpool;
+    private final IngestionProgressService progressService;
+    private final AppKeyRegistry appKeys;
+    // 所有数据库写入都经过这个有界队列，由单个写线程执行，避免 DuckDB 写锁竞争
+    private final DbWriteQueue dbWriter;
+    // JSON 解码线程池，所有正在解析的文件共享
+    private final java.util.concurrent.ExecutorService decodeExecutor;
+    // 正在解析的 App 的内存状态，跨同一 App 的多个滚动文件保留
+    private final Map<String, AppState> appStates = new java.util.concurrent.ConcurrentHashMap<>();
+    // 已经解析过文件、还没有 finishGroup 的文件组，key 见 groupKey
+    private final Map<String, Group> groups = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // 解析指标：按事件类型的事件数、解压后的字节数和行数、整个文件和后期预计算的耗时
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, Counter> eventCounters = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Counter bytesCounter;
+    private final Counter linesCounter;
+    private final Timer postCalcTimer;
 
     public JacksonEventParser(ApplicationService applicationService,
                               StageService stageService,
-                              TaskService taskService,
                               EnvironmentConfigService envService,
                               JobService jobService,
                               ExecutorService executorService,
                               SqlExecutionService sqlExecutionService,
                               StorageService storageService,
-                              javax.sql.DataSource dataSource) {
-        JsonFactory factory = JsonFactory.builder()
-                .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(Integer.MAX_VALUE).build())
-                .build();
-        this.objectMapper = new ObjectMapper(factory);
+                              javax.sql.DataSource dataSource,
+                              DuckDbBulkLoader bulkLoader,
+                              ParquetTaskSpool parquetSpool,
+                              IngestionProgressService progressService,
+                              AppKeyRegistry appKeys,
+                              DbWriteQueue dbWriter,
+                              InsightProperties insightProperties,
+                              MeterRegistry meterRegistry) {
         this.applicationService = applicationService;
         this.stageService = stageService;
-        this.taskService = taskService;
         this.envService = envService;
         this.jobService = jobService;
         this.executorService = executorService;
         this.sqlExecutionService = sqlExecutionService;
         this.storageService = storageService;
         this.dataSource = dataSource;
+        this.bulkLoader = bulkLoader;
+        this.parquetSpool = parquetSpool;
+        this.progressService = progressService;
+        this.appKeys = appKeys;
+        this.dbWriter = dbWriter;
+        this.meterRegistry = meterRegistry;
+        this.bytesCounter = Counter.builder("insight.ingest.bytes").baseUnit("bytes")
+                .description("Decompressed event log bytes applied").register(meterRegistry);
+        this.linesCounter = Counter.builder("insight.ingest.lines")
+                .description("Event log lines read").register(meterRegistry);
+        this.postCalcTimer = Timer.builder("insight.ingest.postcalc")
+                .description("Post-calculation of stage, job, SQL and executor metrics per file").register(meterRegistry);
+
+        this.parserConfig = insightProperties.getParser();
+        int workers = Math.max(1, parserConfig.getDecodeWorkers());
+        java.util.concurrent.atomic.AtomicInteger threadSeq = new java.util.concurrent.atomic.AtomicInteger();
+        this.decodeExecutor = java.util.concurrent.Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "eventlog-decoder-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        int inFlight = parserConfig.getMaxChunksInFlight() > 0 ? parserConfig.getMaxChunksInFlight() : workers * 2;
+        int chunkSize = Math.max(64, parserConfig.getChunkSizeKb()) * 1024;
+        this.pipeline = new EventDecodePipeline(decoder, eventFilter, decodeExecutor, workers, chunkSize, inFlight);
+
+        Set<String> withoutTasks = new HashSet<>(SparkEventDecoder.HANDLED_EVENTS);
+        withoutTasks.remove(SparkEventDecoder.TASK_END);
+        this.pipelineWithoutTasks = new EventDecodePipeline(decoder, new EventTypeFilter(withoutTasks),
+                decodeExecutor, workers, chunkSize, inFlight);
+    }
+
+    /**
+     * 一组文件从第一个被解析的文件到 finishGroup 之间累积的收尾信息，只在这一组的解析线程上使用
+     */
+    private static final class Group {
+        // 每个文件结束时的 App ID → 对应的内存状态 (没有状态时为 null，后期预计算全量执行)
+        final Map<String, AppState> apps = new LinkedHashMap<>();
+        // 组内文件涉及到的所有 App 状态，收尾时释放
+        final Set<AppState> states = new LinkedHashSet<>();
+        // 解析失败、之后没有再成功解析过文件的 App
+        final Set<String> failedApps = new LinkedHashSet<>();
+        int parsedFiles;
+    }
+
+    /**
+     * 单个文件解析过程中的可变状态
+     */
+    static class ParseContext {
+        final int fileIndex;
+        final int totalFiles;
+        // 本文件在 *_staging 表中的批次号
+        final long loadId;
+        // Parquet 后端：本文件的 Task 分片写入器 (null 表示使用 Appender 暂存表)
+        ParquetTaskSpool.ShardWriter taskShard;
+        // Parquet 后端：Task 直接从缓存分片加载，忽略本文件中的 TaskEnd
+        boolean tasksFromCache;
+        String currentAppId;
+        // 从头解析滚动日志的第一个文件：已经 READY 的 App 改写到暂存 App ID 下
+        boolean fullParse;
+        // 从断点继续解析，断点之前的 Task 没有经过本次解析
+        boolean resumed;
+        // 本文件中有 App 写在暂存 App ID 下
+        boolean staged;
+        String versionFromLogStart;
+        long lineCount;
+        long eventCount;
+        // 已应用的块的字节数 (解压后)
+        long bytesApplied;
+        final EventTypeFilter.SkipCounts skipCounts;
+        final List<TaskModel> taskBatch = new ArrayList<>();
+        final List<EnvironmentConfigModel> envBatch = new ArrayList<>();
+        // 本文件涉及到的 App 状态 (EnvironmentUpdate 校正 App ID 时可能不止一个)
+        final Set<AppState> states = new LinkedHashSet<>();
+        // 已提交到 dbWriter 的写入和合并
+        final List<java.util.concurrent.Future<?>> merges = new ArrayList<>();
+
+        ParseContext(long loadId, String inferredAppId, int fileIndex, int totalFiles, EventTypeFilter.SkipCounts skipCounts) {
+            this.loadId = loadId;
+            this.currentAppId = inferredAppId;
+            this.skipCounts = skipCounts;
+            this.fileIndex = fileIndex;
+            this.totalFiles = totalFiles;
+        }
     }
 
     @Override
     public void parse(File logFile) {
         parse(logFile, 1, 1);
+        finishGroup(List.of(logFile));
     }
 
     @Override
     public void parse(File logFile, int currentFileIndex, int totalFiles) {
+        try {
+            parse(logFile, currentFileIndex, totalFiles, null);
+        } catch (Exception e) {
+            log.error("Error parsing " + logFile.getPath(), e);
+        }
+    }
+
+    @Override
+    public ParseCheckpoint parse(File logFile, int currentFileIndex, int totalFiles, ParseCheckpoint resume) {
         long startTime = System.currentTimeMillis();
         log.info("Processing log: {} ({}/{})", logFile.getName(), currentFileIndex, totalFiles);
 
         // 尝试从文件名推断 App ID (支持滚动日志)
-        String inferredAppId = null;
-        if (logFile.getName().startsWith("event")) {
-            String[] parts = logFile.getName().split("_", 3);
-            if (parts.length >= 3) {
-                inferredAppId = parts[2];
+        String inferredAppId = inferAppId(logFile.getName());
+        Group group = groups.computeIfAbsent(groupKey(logFile), k -> new Group());
+
+        long loadId = bulkLoader.newLoadId();
+        ParseContext ctx = new ParseContext(loadId, inferredAppId, currentFileIndex, totalFiles, eventFilter.newSkipCounts());
+        try {
+            boolean compressed = logFile.getName().endsWith(".zstd") || logFile.getName().endsWith(".zst");
+            long length = logFile.length();
+            // 压缩日志无法从中间继续，总是从头解析
+            long from = compressed ? 0 : resumeOffset(logFile, length, resume);
+            // 还在写入的日志末尾可能是半行，留到下次
+            long to = compressed ? length : completeLinesEnd(logFile, length);
+            ctx.fullParse = from == 0 && currentFileIndex == 1;
+            ctx.resumed = from > 0;
+            if (from > 0) {
+                log.info("Resuming {} from byte {} ({} new bytes)", logFile.getName(), from, to - from);
+                restore(ctx, resume, appId -> state(ctx, appId));
             }
-        }
-        if (inferredAppId == null) {
-            java.util.regex.Matcher matcher = APP_ID_PATTERN.matcher(logFile.getName());
-            if (matcher.find()) {
-                inferredAppId = matcher.group(1);
+            // 未压缩的大文件直接内存映射，按换行符切分后并行解码
+            boolean mapped = !compressed && parserConfig.isMemoryMapped()
+                    && to - from >= parserConfig.getMemoryMapMinSizeMb() * 1024L * 1024L;
+
+            // Parquet 后端：日志未变化且分片已缓存时直接复用。分片按整个文件缓存，增量解析时改走 Appender
+            boolean useShards = parquetSpool.isEnabled() && from == 0;
+            Path cachedShard = useShards ? parquetSpool.cachedShard(logFile) : null;
+            EventDecodePipeline filePipeline = cachedShard != null ? pipelineWithoutTasks : pipeline;
+
+            // 读取线程按块切分 → 解码线程池并行预过滤/解码 → 当前线程按原始顺序应用事件
+            // 压缩日志按读取的压缩字节计算进度，和文件大小对得上
+            ParseCheckpoint result;
+            CountingInputStream rawIn = mapped ? null : new CountingInputStream(openRange(logFile, from), compressed ? Long.MAX_VALUE : to - from);
+            try (InputStream in = rawIn == null ? null : compressed ? new ZstdInputStream(rawIn) : rawIn;
+                 ParquetTaskSpool.ShardWriter shardWriter = useShards && cachedShard == null ? parquetSpool.open(logFile) : null) {
+                ctx.taskShard = shardWriter;
+                ctx.tasksFromCache = cachedShard != null;
+                if (cachedShard != null) {
+                    log.info("Reusing cached Parquet task shard {} for {}", cachedShard.getFileName(), logFile.getName());
+                }
+                long[] lastCheckpoint = {System.currentTimeMillis()};
+                long checkpointMs = Math.max(1, parserConfig.getCheckpointIntervalSeconds()) * 1000L;
+
+                EventDecodePipeline.ChunkConsumer applier = chunk -> {
+                    ctx.lineCount += chunk.lineCount();
+                    ctx.eventCount += chunk.events().size();
+                    ctx.bytesApplied += chunk.byteCount();
+                    ctx.skipCounts.addAll(chunk.skipCounts());
+                    bytesCounter.increment(chunk.byteCount());
+                    linesCounter.increment(chunk.lineCount());
+                    for (SparkEvent event : chunk.events()) {
+                        eventCounter(event).increment();
+                        try {
+                            apply(event, ctx);
+                        } catch (Exception eventEx) {
+                            log.warn("Failed to apply {} in {}: {}", event.getClass().getSimpleName(), logFile.getName(), eventEx.getMessage());
+                        }
+                    }
+                    // 进度只更新内存中的登记表，由 SSE 推送，不写数据库
+                    if (ctx.currentAppId != null) {
+                        long bytesRead = compressed ? rawIn.count : from + ctx.bytesApplied;
+                        progressService.update(ctx.currentAppId, logFile.getName(), currentFileIndex, totalFiles,
+                                bytesRead, length, ctx.lineCount, ctx.eventCount);
+                    }
+                    // 定期把内存状态和未满的批次写回，长文件解析过程中也能看到 Job / Stage 列表
+                    if (System.currentTimeMillis() - lastCheckpoint[0] > checkpointMs) {
+                        checkpoint(ctx, null, false, logFile.getName());
+                        lastCheckpoint[0] = System.currentTimeMillis();
+                    }
+                };
+                EventDecodePipeline.Stats stats = mapped
+                        ? filePipeline.runMapped(logFile.toPath(), from, to, applier)
+                        : filePipeline.run(in, logFile.getName(), applier);
+                log.info("Pipeline stats for {} ({}): {}", logFile.getName(), mapped ? "mmap" : "stream", stats);
+                // 扫尾：剩余的批次和脏状态追加到暂存表，然后整体去重合并进正式表
+                flushTasks(ctx);
+                Path taskShard = shardWriter != null ? shardWriter.finish() : cachedShard;
+                checkpoint(ctx, taskShard, true, logFile.getName());
+                result = compressed ? null : snapshot(ctx, to);
+                AppState appState = ctx.currentAppId != null ? appStates.get(ctx.currentAppId) : null;
+
+                if (ctx.skipCounts.total() > 0) {
+                    ctx.skipCounts.byType().forEach((type, count) -> Counter.builder("insight.ingest.skipped.lines")
+                            .description("Lines dropped by the byte-prefix filter without decoding")
+                            .tag("type", type).register(meterRegistry).increment(count));
+                    log.info("Skipped {} of {} lines in {} without decoding: {}",
+                            ctx.skipCounts.total(), ctx.lineCount, logFile.getName(), ctx.skipCounts.byType());
+                }
+
+                String currentAppId = ctx.currentAppId;
+                // 暂存解析时进度和后期预计算都作用在暂存 App 上
+                String targetAppId = appState != null ? appState.appId : currentAppId;
+                // 文件切换时才把进度写入数据库
+                if (currentAppId != null) {
+                    updateParsingProgress(targetAppId, currentFileIndex, totalFiles, ctx.lineCount);
+                }
+
+                // 后期预计算、替换暂存数据和释放状态都留到 finishGroup
+                group.states.addAll(ctx.states);
+                group.parsedFiles++;
+                if (currentAppId != null) {
+                    group.apps.put(currentAppId, appState);
+                    group.failedApps.remove(currentAppId);
+                }
             }
+            // 断点只在本文件的数据都已合并之后才返回给调用方提交
+            for (java.util.concurrent.Future<?> merge : ctx.merges) {
+                merge.get();
+            }
+            long durationMs = System.currentTimeMillis() - startTime;
+            fileTimer("success").record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
+            log.info("Finished processing log: {} in {} | DB writes: {}", logFile.getName(), formatDuration(durationMs), dbWriter.stats());
+            return result;
+        } catch (Exception e) {
+            // 内存状态可能只应用了一半，下次从数据库重新加载；暂存的 App 整体丢弃，正式数据保持不变
+            List<String> stagedIds = ctx.states.stream().filter(AppState::staged).map(s -> s.appId).toList();
+            releaseStates(ctx);
+            try {
+                dbWriter.submit(() -> {
+                    bulkLoader.discard(loadId);
+                    stagedIds.forEach(this::dropStaged);
+                });
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            // 已经释放的状态不再参与收尾；没有后续文件成功解析时，finishGroup 把进度结束为失败
+            group.states.removeAll(ctx.states);
+            group.apps.values().removeIf(ctx.states::contains);
+            if (ctx.currentAppId != null) {
+                group.apps.remove(ctx.currentAppId);
+                group.failedApps.add(ctx.currentAppId);
+            }
+            fileTimer("error").record(System.currentTimeMillis() - startTime, java.util.concurrent.TimeUnit.MILLISECONDS);
+            throw new IllegalStateException("Failed to parse " + logFile.getName(), e);
         }
+    }
 
+    /**
+     * 组内所有文件处理完后执行一次：释放内存状态，对每个 App 的整组变化做后期预计算，暂存解析的 App 替换正式数据。
+     * 最后一个文件没有变化、只重新解析了前面的文件时同样在这里收尾
+     */
+    @Override
+    public void finishGroup(List<File> files) {
+        if (files.isEmpty()) return;
+        Group group = groups.remove(groupKey(files.get(0)));
+        if (group == null) return;
+        for (AppState state : group.states) {
+            appStates.remove(state.liveAppId, state);
+        }
         try {
-            InputStream is = new FileInputStream(logFile);
-            if (logFile.getName().endsWith(".zstd") || logFile.getName().endsWith(".zst")) {
-                is = new ZstdInputStream(is);
-            }
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-                String line;
-                String currentAppId = inferredAppId;
-                String versionFromLogStart = null;
-                List<TaskModel> taskBatch = new ArrayList<>();
-                List<EnvironmentConfigModel> envBatch = new ArrayList<>();
-                List<ExecutorModel> executorBatch = new ArrayList<>();
-                Map<Integer, Integer> stageToJobMap = new HashMap<>();
-
-                long lineCount = 0;
-                long lastUpdate = System.currentTimeMillis();
-
-                while ((line = reader.readLine()) != null) {
-                    lineCount++;
-                    // Update progress every 2 seconds
-                    if (currentAppId != null && System.currentTimeMillis() - lastUpdate > 2000) {
-                        updateParsingProgress(currentAppId, currentFileIndex, totalFiles, lineCount);
-                        lastUpdate = System.currentTimeMillis();
-                    }
+            for (Map.Entry<String, AppState> app : group.apps.entrySet()) {
+                postCalculate(app.getKey(), app.getValue(), group.parsedFiles);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String appId : group.failedApps) {
+            progressService.finish(appId, true);
+        }
+    }
 
-                    try {
-                        JsonNode node = objectMapper.readTree(line);
-                        if (!node.has("Event")){
-                            continue;
-                        }
-                        String eventType = node.get("Event").asText();
-
-                        // 尝试从环境更新中提取/校正 App ID
-                        if (eventType.equals("SparkListenerEnvironmentUpdate")) {
-                            JsonNode sparkProps = node.get("Spark Properties");
-                            if (sparkProps != null && sparkProps.has("spark.app.id")) {
-                                String realAppId = sparkProps.get("spark.app.id").asText();
-                                if (currentAppId == null || !currentAppId.equals(realAppId)) {
-                                    log.info("Detected/Corrected App ID from EnvironmentUpdate: {} (previously: {})", realAppId, currentAppId);
-                                    currentAppId = realAppId;
-                                }
-
-                                ApplicationModel app = applicationService.getById(currentAppId);
-                                if (app == null) {
-                                    app = new ApplicationModel();
-                                    app.setAppId(currentAppId);
-                                    app.setAppName(sparkProps.has("spark.app.name") ? sparkProps.get("spark.app.name").asText() : "Unknown App");
-                                    app.setUserName(sparkProps.has("spark.user.name") ? sparkProps.get("spark.user.name").asText() : "unknown");
-                                    app.setStartTime(parseTimestamp(System.currentTimeMillis()));
-                                    app.setSparkVersion(versionFromLogStart != null ? versionFromLogStart : "unknown");
-                                    app.setParsingStatus("PARSING");
-                                    updateParsingProgress(app, currentFileIndex, totalFiles, lineCount);
-                                    applicationService.saveOrUpdate(app);
-                                } else if (versionFromLogStart != null && (app.getSparkVersion() == null || app.getSparkVersion().equals("unknown"))) {
-                                    app.setSparkVersion(versionFromLogStart);
-                                    applicationService.updateById(app);
-                                }
-                            }
-                        }
+    /**
+     * 后期预计算的范围是整组文件中变化过的 Stage / Job / SQL / Executor
+     *
+     * @param appState 为 null 时全量计算
+     */
+    private void postCalculate(String currentAppId, AppState appState, int parsedFiles) throws InterruptedException {
+        // 暂存解析时后期预计算作用在暂存 App 上
+        final String appIdFinal = appState != null ? appState.appId : currentAppId;
+        final boolean swap = appState != null && appState.staged();
+        final AppState.PostCalcScope scope = appState != null ? appState.drainPostCalcScope() : AppState.PostCalcScope.ALL;
+        progressService.postProcessing(currentAppId);
+
+        dbWriter.submit(() -> {
+            Timer.Sample postCalc = Timer.start(meterRegistry);
+            boolean failed = false;
+            try {
+                log.info("Starting post-calculation for App: {} ({} files parsed, {})", appIdFinal, parsedFiles, describe(scope));
+
+                // Optimization: Mark as READY *before* calculating complex metrics,
+                // so user can at least see the basic Job/Stage lists.
+                finalizeAppQuality(appIdFinal);
+
+                long t0 = System.currentTimeMillis();
+                if (!isEmpty(scope.stageIds())) {
+                    stageService.calculateStageMetrics(appIdFinal, scope.stageIds());
+                }
+                long t1 = System.currentTimeMillis();
+                if (!isEmpty(scope.jobIds())) {
+                    jobService.calculateJobMetrics(appIdFinal, scope.jobIds());
+                }
+                long t2 = System.currentTimeMillis();
+                if (!scope.skipSqls()) {
+                    sqlExecutionService.calculateSqlMetrics(appIdFinal, scope.jobIds(), scope.sqlIds());
+                }
+                long t3 = System.currentTimeMillis();
+                if (!isEmpty(scope.executorIds())) {
+                    executorService.calculateExecutorMetrics(appIdFinal, scope.executorIds());
+                }
+                long t4 = System.currentTimeMillis();
+                log.info("Post-calculation for App: {} took {} (stages {}ms, jobs {}ms, SQL {}ms, executors {}ms)",
+                        appIdFinal, formatDuration(t4 - t0), t1 - t0, t2 - t1, t3 - t2, t4 - t3);
+            } catch (Exception ex) {
+                log.error("Failed to complete post-calculation for App: " + appIdFinal, ex);
+                if (swap) {
+                    // 指标只算了一部分的暂存版本不能替换正式数据，读请求继续看到上一个版本
+                    dropStaged(appIdFinal);
+                    failed = true;
+                } else {
+                    forceMarkReady(appIdFinal);
+                }
+            } finally {
+                postCalc.stop(postCalcTimer);
+            }
+            if (swap && !failed) {
+                // 新版本完整可用后一次性替换，在此之前读请求一直看到上一个版本
+                try {
+                    bulkLoader.swapIn(appIdFinal, currentAppId);
+                } catch (Exception ex) {
+                    log.error("Failed to swap in reparsed data of App: " + currentAppId, ex);
+                    dropStaged(appIdFinal);
+                    failed = true;
+                }
+            }
+            progressService.finish(currentAppId, failed);
+        });
+    }
 
-                        switch (eventType) {
-                            case "SparkListenerLogStart":
-                                if (node.has("Spark Version")) {
-                                    versionFromLogStart = node.get("Spark Version").asText();
-                                    if (currentAppId != null) {
-                                        ApplicationModel app = applicationService.getById(currentAppId);
-                                        if (app != null) {
-                                            app.setSparkVersion(versionFromLogStart);
-                                            applicationService.updateById(app);
-                                        }
-                                    }
-                                }
-                                break;
-                            case "SparkListenerApplicationStart":
-                                currentAppId = node.get("App ID").asText();
-                                handleAppStart(node, currentAppId, currentFileIndex, totalFiles, versionFromLogStart);
-                                break;
-                            case "SparkListenerEnvironmentUpdate":
-                                if (currentAppId != null) {
-                                    handleEnvUpdate(node, currentAppId, envBatch);
-                                    if (envBatch.size() > 500) {
-                                        List<EnvironmentConfigModel> batchToSave = new ArrayList<>(envBatch);
-                                        envBatch.clear();
-                                        dbExecutor.submit(() -> saveDeduplicatedEnv(batchToSave));
-                                    }
-                                }
-                                break;
-                            case "SparkListenerJobStart":
-                                if (currentAppId != null) handleJobStart(node, currentAppId, stageToJobMap);
-                                break;
-                            case "SparkListenerJobEnd":
-                                if (currentAppId != null) handleJobEnd(node, currentAppId);
-                                break;
-                            case "SparkListenerExecutorAdded":
-                                if (currentAppId != null) handleExecutorAdded(node, currentAppId, executorBatch);
-                                break;
-                            case "SparkListenerExecutorRemoved":
-                                if (currentAppId != null) handleExecutorRemoved(node, currentAppId);
-                                break;
-                            case "SparkListenerStageSubmitted":
-                                if (currentAppId != null) handleStageSubmitted(node, currentAppId, stageToJobMap);
-                                break;
-                            case "SparkListenerStageCompleted":
-                                if (currentAppId != null) handleStageCompleted(node, currentAppId);
-                                break;
-                            case "SparkListenerTaskEnd":
-                                if (currentAppId != null) {
-                                    handleTaskEnd(node, currentAppId, taskBatch);
-                                    if (taskBatch.size() >= 1000) {
-                                        List<TaskModel> batchToSave = new ArrayList<>(taskBatch);
-                                        taskBatch.clear();
-                                        dbExecutor.submit(() -> saveDeduplicatedTasks(batchToSave));
-                                    }
-                                }
-                                break;
-                            case "SparkListenerApplicationEnd":
-                                if (currentAppId != null) handleAppEnd(node, currentAppId);
-                                break;
-                            case "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart":
-                                if (currentAppId != null) handleSqlStart(node, currentAppId);
-                                break;
-                            case "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd":
-                                if (currentAppId != null) handleSqlEnd(node, currentAppId);
-                                break;
-                            case "SparkListenerBlockUpdated":
-                                if (currentAppId != null) handleBlockUpdated(node, currentAppId);
-                                break;
-                            case "SparkListenerUnpersistRDD":
-                                if (currentAppId != null) handleUnpersistRDD(node, currentAppId);
-                                break;
-                        }
-                    } catch (Exception lineEx) {
-                        log.warn("Failed to parse line in {}: {}", logFile.getName(), lineEx.getMessage());
-                    }
+    /**
+     * 把未满的批次和所有 App 的脏状态追加到暂存表，并在 dbWriter 上合并一次
+     *
+     * @param taskShard Parquet 后端的 Task 分片，只在文件结束时传入
+     * @param endOfFile 文件结束时额外刷新一次 storage_rdds 汇总
+     */
+    private void checkpoint(ParseContext ctx, Path taskShard, boolean endOfFile, String fileName)
+            throws java.sql.SQLException, InterruptedException {
+        flushTasks(ctx);
+        flushEnv(ctx);
+        Map<String, AppState.Dirty> dirty = new LinkedHashMap<>();
+        for (AppState state : ctx.states) {
+            AppState.Dirty d = state.drainDirty();
+            if (!d.isEmpty() || endOfFile) dirty.put(state.appId, d);
+        }
+        long loadId = ctx.loadId;
+        String shardAppIdSuffix = ctx.staged ? ApplicationService.STAGED_SUFFIX : "";
+        ctx.merges.add(dbWriter.submit(() -> {
+            try {
+                for (Map.Entry<String, AppState.Dirty> e : dirty.entrySet()) {
+                    bulkLoader.upsertRdds(e.getKey(), e.getValue().rdds());
                 }
-                // 扫尾
-                if (!taskBatch.isEmpty()) {
-                    List<TaskModel> batchToSave = new ArrayList<>(taskBatch);
-                    dbExecutor.submit(() -> saveDeduplicatedTasks(batchToSave));
+                for (AppState.Dirty d : dirty.values()) {
+                    bulkLoader.appendJobs(loadId, d.jobs());
+                    bulkLoader.appendJobStages(loadId, d.appKey(), d.jobStages());
+                    bulkLoader.appendStages(loadId, d.stages());
+                    bulkLoader.appendSqlExecutions(loadId, d.sqls());
+                    bulkLoader.appendExecutors(loadId, d.executors());
+                    bulkLoader.appendBlocks(loadId, d.blocks());
                 }
-                if (!envBatch.isEmpty()) {
-                    List<EnvironmentConfigModel> batchToSave = new ArrayList<>(envBatch);
-                    dbExecutor.submit(() -> saveDeduplicatedEnv(batchToSave));
+                // Task 只在文件结束时排序后整段合并，中途的检查点只合并 Job / Stage 等状态
+                bulkLoader.merge(loadId, endOfFile, taskShard, shardAppIdSuffix);
+                for (Map.Entry<String, AppState.Dirty> e : dirty.entrySet()) {
+                    bulkLoader.removeRdds(e.getKey(), e.getValue().unpersistedRdds());
+                    if (endOfFile) bulkLoader.refreshRddSummaries(e.getKey());
+                    // 解析时累加的 Stage 指标，Stage 行在上面的合并中已经存在
+                    if (!e.getValue().stageAggregates().isEmpty()) {
+                        bulkLoader.appendStageAggregates(loadId, e.getKey(), e.getValue().stageAggregates());
+                        stageService.applyStageAggregates(e.getKey(), loadId);
+                        bulkLoader.clearStageAggregates(loadId);
+                    }
                 }
+            } catch (Exception ex) {
+                log.error("Failed to merge staged rows of " + fileName, ex);
+                bulkLoader.discard(loadId);
+                throw ex;
+            }
+            return null;
+        }));
+    }
 
-                // Update final progress for this specific file
-                updateParsingProgress(currentAppId, currentFileIndex, totalFiles, lineCount);
+    /**
+     * 断点必须落在行边界上，且文件在断点之前的内容没有被替换，否则从头解析
+     */
+    static long resumeOffset(File logFile, long length, ParseCheckpoint resume) throws IOException {
+        if (resume == null || resume.offset() <= 0) return 0;
+        if (resume.offset() > length) {
+            log.info("{} is shorter than its checkpoint, reparsing from the start", logFile.getName());
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "r")) {
+            raf.seek(resume.offset() - 1);
+            if (raf.read() != '\n') {
+                log.info("{} no longer has a line break at its checkpoint, reparsing from the start", logFile.getName());
+                return 0;
+            }
+        }
+        return resume.offset();
+    }
 
-                // 触发后期预计算 - 只在最后一个文件处理完后，或者每个文件都触发但标记 READY 要谨慎
-                if (currentAppId != null) {
-                    final String appIdFinal = currentAppId;
-                    final boolean isLastFile = currentFileIndex >= totalFiles;
-                    
-                    dbExecutor.submit(() -> {
-                        try {
-                            log.info("Starting post-calculation for App: {} (File {}/{})", appIdFinal, currentFileIndex, totalFiles);
-                            
-                            // Optimization: Mark as READY *before* calculating complex metrics if it's the last file,
-                            // so user can at least see the basic Job/Stage lists.
-                            if (isLastFile) {
-                                finalizeAppQuality(appIdFinal);
-                            }
-
-                            stageService.calculateStageMetrics(appIdFinal);
-                            jobService.calculateJobMetrics(appIdFinal);
-                            sqlExecutionService.calculateSqlMetrics(appIdFinal);
-                            executorService.calculateExecutorMetrics(appIdFinal);
-                        } catch (Exception ex) {
-                            log.error("Failed to complete post-calculation for App: " + appIdFinal, ex);
-                            if (isLastFile) {
-                                forceMarkReady(appIdFinal);
-                            }
-                        }
-                    });
+    /**
+     * .inprogress 日志还在写入，只解析到最后一个换行符为止；其他日志解析到文件末尾
+     */
+    static long completeLinesEnd(File logFile, long length) throws IOException {
+        if (!logFile.getName().endsWith(".inprogress")) return length;
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "r")) {
+            byte[] buf = new byte[8192];
+            long pos = length;
+            while (pos > 0) {
+                int n = (int) Math.min(buf.length, pos);
+                pos -= n;
+                raf.seek(pos);
+                raf.readFully(buf, 0, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buf[i] == '\n') {
+                        return pos + i + 1;
+                    }
                 }
             }
-            long durationMs = System.currentTimeMillis() - startTime;
-            log.info("Finished processing log: {} in {}", logFile.getName(), formatDuration(durationMs));
+        }
+        return 0;
+    }
+
+    private InputStream openRange(File logFile, long from) throws IOException {
+        FileInputStream in = new FileInputStream(logFile);
+        if (from > 0) {
+            in.getChannel().position(from);
+        }
+        return in;
+    }
+
+    /**
+     * 把断点中的解析器状态恢复到本文件的上下文
+     *
+     * @param stateOf 按 App ID 取得 (必要时创建) 内存状态
+     */
+    static void restore(ParseContext ctx, ParseCheckpoint resume, java.util.function.Function<String, AppState> stateOf) {
+        ctx.lineCount = resume.lineCount();
+        ctx.versionFromLogStart = resume.sparkVersion();
+        if (resume.appId() != null) {
+            ctx.currentAppId = resume.appId();
+            if (resume.stageToJobMap() != null) {
+                stateOf.apply(resume.appId()).stageToJobMap.putAll(resume.stageToJobMap());
+            }
+        }
+    }
+
+    private ParseCheckpoint snapshot(ParseContext ctx, long offset) {
+        AppState state = ctx.currentAppId != null ? appStates.get(ctx.currentAppId) : null;
+        Map<Integer, Integer> stageToJob = state != null ? new HashMap<>(state.stageToJobMap) : Map.of();
+        return new ParseCheckpoint(offset, ctx.currentAppId, ctx.versionFromLogStart, ctx.lineCount, stageToJob);
+    }
+
+    private AppState state(ParseContext ctx, String appId) {
+        AppState state = appStates.get(appId);
+        if (state == null) {
+            state = newState(ctx, appId);
+            AppState existing = appStates.putIfAbsent(appId, state);
+            if (existing != null) state = existing;
+        }
+        if (ctx.states.add(state)) {
+            if (state.staged()) ctx.staged = true;
+            // 从头解析时所有键都是新的；缓存分片中的 Task 不经过 handleTaskEnd，无法知道影响了哪些 Stage
+            if (ctx.fullParse || ctx.tasksFromCache) state.recomputeAll();
+            state.fileStarted(ctx.fileIndex, ctx.resumed || ctx.tasksFromCache);
+        }
+        return state;
+    }
+
+    /**
+     * 从头重新解析一个已经 READY 的 App 时写到暂存 App ID 下，正式数据在替换前保持可读
+     */
+    private AppState newState(ParseContext ctx, String appId) {
+        String target = appId;
+        if (ctx.fullParse) {
+            ApplicationModel live = applicationService.getById(appId);
+            if (live != null && "READY".equals(live.getParsingStatus())) {
+                target = ApplicationService.stagedId(appId);
+                String leftover = target;
+                // 上次中断的暂存数据先清掉，必须在本次的任何写入之前完成
+                try {
+                    dbWriter.submit(() -> {
+                        bulkLoader.dropApp(leftover);
+                        return null;
+                    }).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while preparing staged App " + target, e);
+                } catch (java.util.concurrent.ExecutionException e) {
+                    throw new IllegalStateException("Failed to prepare staged App " + target, e.getCause());
+                }
+                log.info("Reparsing READY App {} into {}, the current data stays readable until the swap", appId, target);
+            }
+        }
+        return new AppState(target, appId, appKeys.keyOf(target));
+    }
+
+    private static boolean isEmpty(List<?> keys) {
+        return keys != null && keys.isEmpty();
+    }
+
+    private static String describe(AppState.PostCalcScope scope) {
+        if (scope.stageIds() == null && scope.jobIds() == null && scope.sqlIds() == null && scope.executorIds() == null) {
+            return "full";
+        }
+        return "stages " + count(scope.stageIds()) + ", jobs " + count(scope.jobIds())
+                + ", SQL " + count(scope.sqlIds()) + ", executors " + count(scope.executorIds());
+    }
+
+    private static String count(List<?> keys) {
+        return keys == null ? "all" : String.valueOf(keys.size());
+    }
+
+    private void dropStaged(String stagedAppId) {
+        try {
+            bulkLoader.dropApp(stagedAppId);
         } catch (Exception e) {
-            log.error("Error parsing " + logFile.getPath(), e);
+            log.error("Failed to drop staged App " + stagedAppId, e);
+        }
+    }
+
+    private static String inferAppId(String fileName) {
+        if (fileName.startsWith("event")) {
+            String[] parts = fileName.split("_", 3);
+            if (parts.length >= 3) {
+                return parts[2];
+            }
+        }
+        java.util.regex.Matcher matcher = APP_ID_PATTERN.matcher(fileName);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 文件所属的组：从文件名推断的 App ID，无法推断时文件单独成组
+     */
+    private static String groupKey(File logFile) {
+        String appId = inferAppId(logFile.getName());
+        return appId != null ? appId : logFile.getAbsolutePath();
+    }
+
+    private void releaseStates(ParseContext ctx) {
+        for (AppState state : ctx.states) {
+            appStates.remove(state.liveAppId, state);
+        }
+    }
+
+    private ApplicationModel loadApp(AppState state) {
+        return state.app(() -> applicationService.getById(state.appId));
+    }
+
+    /**
+     * 统计从文件中读出的原始字节数，由读取线程写、解析线程读
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        // 最多读取的字节数，之后视为流结束
+        private final long limit;
+        volatile long count;
+
+        CountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (count >= limit) return -1;
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (count >= limit) return -1;
+            int n = super.read(b, off, (int) Math.min(len, limit - count));
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    private Counter eventCounter(SparkEvent event) {
+        return eventCounters.computeIfAbsent(event.getClass(), type -> Counter.builder("insight.ingest.events")
+                .description("Decoded events applied, by event type")
+                .tag("type", type.getSimpleName())
+                .register(meterRegistry));
+    }
+
+    private Timer fileTimer(String outcome) {
+        return Timer.builder("insight.ingest.file")
+                .description("Time to parse one event log file, excluding post-calculation")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按日志顺序应用一个已解码的事件
+     */
+    private void apply(SparkEvent event, ParseContext ctx) throws java.sql.SQLException, InterruptedException {
+        if (event instanceof SparkEvent.EnvironmentUpdate e) {
+            // 尝试从环境更新中提取/校正 App ID
+            correctAppId(e, ctx);
+        }
+        String appId = ctx.currentAppId;
+        AppState state = appId != null ? state(ctx, appId) : null;
+
+        switch (event) {
+            case SparkEvent.LogStart e -> handleLogStart(e, ctx);
+            case SparkEvent.ApplicationStart e -> {
+                if (e.appId() != null) {
+                    ctx.currentAppId = e.appId();
+                    handleAppStart(e, state(ctx, ctx.currentAppId), ctx.fileIndex, ctx.totalFiles, ctx.versionFromLogStart);
+                }
+            }
+            case SparkEvent.EnvironmentUpdate e -> {
+                if (appId != null) {
+                    handleEnvUpdate(e, state.appId, ctx.envBatch);
+                    if (ctx.envBatch.size() > 500) {
+                        flushEnv(ctx);
+                    }
+                }
+            }
+            case SparkEvent.JobStart e -> {
+                if (appId != null) handleJobStart(e, state);
+            }
+            case SparkEvent.JobEnd e -> {
+                if (appId != null) handleJobEnd(e, state);
+            }
+            case SparkEvent.ExecutorAdded e -> {
+                if (appId != null) handleExecutorAdded(e, state);
+            }
+            case SparkEvent.ExecutorRemoved e -> {
+                if (appId != null) handleExecutorRemoved(e, state);
+            }
+            case SparkEvent.StageSubmitted e -> {
+                if (appId != null) handleStageSubmitted(e, state);
+            }
+            case SparkEvent.StageCompleted e -> {
+                if (appId != null) handleStageCompleted(e, state);
+            }
+            case SparkEvent.TaskEnd e -> {
+                if (appId != null && !ctx.tasksFromCache) {
+                    handleTaskEnd(e, state, ctx.taskBatch);
+                    if (ctx.taskBatch.size() >= 5000) {
+                        flushTasks(ctx);
+                    }
+                }
+            }
+            case SparkEvent.ApplicationEnd e -> {
+                if (appId != null) handleAppEnd(e, state);
+            }
+            case SparkEvent.SqlStart e -> {
+                if (appId != null) handleSqlStart(e, state);
+            }
+            case SparkEvent.SqlEnd e -> {
+                if (appId != null) handleSqlEnd(e, state);
+            }
+            case SparkEvent.BlockUpdated e -> {
+                if (appId != null) handleBlockUpdated(e, state);
+            }
+            case SparkEvent.UnpersistRdd e -> {
+                if (appId != null) state.unpersistRdd(e.rddId());
+            }
+        }
+    }
+
+    private void handleLogStart(SparkEvent.LogStart event, ParseContext ctx) {
+        if (event.sparkVersion() == null) return;
+        ctx.versionFromLogStart = event.sparkVersion();
+        if (ctx.currentAppId != null) {
+            ApplicationModel app = loadApp(state(ctx, ctx.currentAppId));
+            if (app != null) {
+                app.setSparkVersion(ctx.versionFromLogStart);
+                applicationService.updateById(app);
+            }
+        }
+    }
+
+    private void correctAppId(SparkEvent.EnvironmentUpdate event, ParseContext ctx) {
+        String realAppId = event.sparkAppId();
+        if (realAppId == null) return;
+        if (ctx.currentAppId == null || !ctx.currentAppId.equals(realAppId)) {
+            log.info("Detected/Corrected App ID from EnvironmentUpdate: {} (previously: {})", realAppId, ctx.currentAppId);
+            ctx.currentAppId = realAppId;
+        }
+
+        AppState state = state(ctx, ctx.currentAppId);
+        ApplicationModel app = loadApp(state);
+        if (app == null) {
+            app = new ApplicationModel();
+            app.setAppId(state.appId);
+            app.setAppName(event.sparkAppName() != null ? event.sparkAppName() : "Unknown App");
+            app.setUserName(event.sparkUser() != null ? event.sparkUser() : "unknown");
+            app.setStartTime(parseTimestamp(System.currentTimeMillis()));
+            app.setSparkVersion(ctx.versionFromLogStart != null ? ctx.versionFromLogStart : "unknown");
+            app.setParsingStatus("PARSING");
+            updateParsingProgress(app, ctx.fileIndex, ctx.totalFiles, ctx.lineCount);
+            applicationService.saveOrUpdate(app);
+            state.putApp(app);
+        } else if (ctx.versionFromLogStart != null && (app.getSparkVersion() == null || app.getSparkVersion().equals("unknown"))) {
+            app.setSparkVersion(ctx.versionFromLogStart);
+            applicationService.updateById(app);
         }
     }
 
@@ -305,10 +823,15 @@ public class JacksonEventParser implements EventParser {
     }
 
     private void updateParsingProgress(String appId, int fileIdx, int totalFiles, long lineCount) {
-        ApplicationModel app = applicationService.getById(appId);
+        AppState state = appStates.get(appId);
+        ApplicationModel app = state != null ? loadApp(state) : applicationService.getById(appId);
         if (app != null) {
             updateParsingProgress(app, fileIdx, totalFiles, lineCount);
-            applicationService.updateById(app);
+            // 只更新进度列，不整行写回
+            applicationService.lambdaUpdate()
+                    .set(ApplicationModel::getParsingProgress, app.getParsingProgress())
+                    .eq(ApplicationModel::getAppId, appId)
+                    .update();
         }
     }
 
@@ -317,604 +840,227 @@ public class JacksonEventParser implements EventParser {
         app.setParsingProgress(msg);
     }
 
-    private void saveDeduplicatedTasks(List<TaskModel> batch) {
-        Map<String, TaskModel> unique = new HashMap<>();
-        for (TaskModel t : batch) unique.put(t.getId(), t);
-        
-        try {
-            fastBatchInsertTasks(new ArrayList<>(unique.values()));
-        } catch (Exception e) {
-            log.error("Fast batch insert failed, falling back to Service saveBatch. Error: {}", e.getMessage());
-            taskService.saveOrUpdateBatch(unique.values());
-        }
-    }
-
-    private void fastBatchInsertTasks(List<TaskModel> tasks) throws java.sql.SQLException {
-        if (tasks.isEmpty()) return;
-
-        String sql = "INSERT OR REPLACE INTO tasks (" +
-                "id, app_id, stage_id, attempt_id, task_id, task_index, executor_id, host, " +
-                "launch_time, finish_time, duration, gc_time, scheduler_delay, getting_result_time, " +
-                "executor_deserialize_time, executor_run_time, result_serialization_time, executor_cpu_time, " +
-                "peak_execution_memory, input_bytes, input_records, output_bytes, output_records, " +
-                "memory_bytes_spilled, disk_bytes_spilled, shuffle_read_bytes, shuffle_read_records, " +
-                "shuffle_fetch_wait_time, shuffle_write_bytes, shuffle_write_time, shuffle_write_records, " +
-                "shuffle_remote_read, speculative, status, locality" +
-                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (java.sql.Connection conn = dataSource.getConnection();
-             java.sql.PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            conn.setAutoCommit(false); // Optimize for batch
-
-            for (TaskModel t : tasks) {
-                int idx = 1;
-                ps.setString(idx++, t.getId());
-                ps.setString(idx++, t.getAppId());
-                ps.setInt(idx++, t.getStageId());
-                ps.setInt(idx++, t.getAttemptId());
-                ps.setLong(idx++, t.getTaskId());
-                ps.setInt(idx++, t.getTaskIndex());
-                ps.setString(idx++, t.getExecutorId());
-                ps.setString(idx++, t.getHost());
-                ps.setLong(idx++, t.getLaunchTime());
-                ps.setLong(idx++, t.getFinishTime());
-                ps.setLong(idx++, t.getDuration());
-                ps.setLong(idx++, t.getGcTime());
-                ps.setLong(idx++, t.getSchedulerDelay());
-                ps.setLong(idx++, t.getGettingResultTime());
-                ps.setLong(idx++, t.getExecutorDeserializeTime());
-                ps.setLong(idx++, t.getExecutorRunTime());
-                ps.setLong(idx++, t.getResultSerializationTime());
-                ps.setLong(idx++, t.getExecutorCpuTime());
-                ps.setLong(idx++, t.getPeakExecutionMemory());
-                ps.setLong(idx++, t.getInputBytes());
-                ps.setLong(idx++, t.getInputRecords());
-                ps.setLong(idx++, t.getOutputBytes());
-                ps.setLong(idx++, t.getOutputRecords());
-                ps.setLong(idx++, t.getMemoryBytesSpilled());
-                ps.setLong(idx++, t.getDiskBytesSpilled());
-                ps.setLong(idx++, t.getShuffleReadBytes());
-                ps.setLong(idx++, t.getShuffleReadRecords());
-                ps.setLong(idx++, t.getShuffleFetchWaitTime());
-                ps.setLong(idx++, t.getShuffleWriteBytes());
-                ps.setLong(idx++, t.getShuffleWriteTime());
-                ps.setLong(idx++, t.getShuffleWriteRecords());
-                ps.setLong(idx++, t.getShuffleRemoteRead());
-                ps.setBoolean(idx++, t.getSpeculative());
-                ps.setString(idx++, t.getStatus());
-                ps.setString(idx++, t.getLocality());
-                
-                ps.addBatch();
-            }
-
-            ps.executeBatch();
-            conn.commit();
-        }
-    }
-
-    private void saveDeduplicatedEnv(List<EnvironmentConfigModel> batch) {
-        Map<String, EnvironmentConfigModel> unique = new HashMap<>();
-        for (EnvironmentConfigModel e : batch) unique.put(e.getId(), e);
-        envService.upsertBatch(new ArrayList<>(unique.values()));
-    }
-
-    private void handleAppStart(JsonNode node, String appId, int fileIdx, int totalFiles, String versionFromLogStart) {
-        ApplicationModel app = applicationService.getById(appId);
+    private void flushTasks(ParseContext ctx) throws java.sql.SQLException, InterruptedException {
+        if (ctx.taskBatch.isEmpty()) return;
+        if (ctx.taskShard != null) {
+            // Parquet 后端在解析线程上直接写分片，不经过 dbWriter
+            ctx.taskShard.append(ctx.taskBatch);
+            ctx.taskBatch.clear();
+            return;
+        }
+        List<TaskModel> batchToSave = new ArrayList<>(ctx.taskBatch);
+        ctx.taskBatch.clear();
+        // tasks 没有单列主键，无法回退到 saveOrUpdateBatch；追加失败时合并前的 merge.get() 会让本文件的解析失败
+        ctx.merges.add(dbWriter.appendTasks(ctx.loadId, batchToSave));
+    }
+
+    private void flushEnv(ParseContext ctx) throws InterruptedException {
+        if (ctx.envBatch.isEmpty()) return;
+        List<EnvironmentConfigModel> batchToSave = new ArrayList<>(ctx.envBatch);
+        ctx.envBatch.clear();
+        long loadId = ctx.loadId;
+        dbWriter.submit(() -> {
+            try {
+                bulkLoader.appendEnvConfigs(loadId, batchToSave);
+            } catch (Exception e) {
+                log.error("Appender insert failed, falling back to upsertBatch. Error: {}", e.getMessage());
+                Map<String, EnvironmentConfigModel> unique = new LinkedHashMap<>();
+                for (EnvironmentConfigModel c : batchToSave) unique.put(c.getId(), c);
+                envService.upsertBatch(new ArrayList<>(unique.values()));
+            }
+        });
+    }
+
+    private void handleAppStart(SparkEvent.ApplicationStart event, AppState state, int fileIdx, int totalFiles, String versionFromLogStart) {
+        ApplicationModel app = loadApp(state);
         if (app == null) {
             app = new ApplicationModel();
-            app.setAppId(appId);
+            app.setAppId(state.appId);
+            state.putApp(app);
         }
         if (!"READY".equals(app.getParsingStatus())) {
             app.setParsingStatus("PARSING");
             updateParsingProgress(app, fileIdx, totalFiles, 0);
         }
-        app.setAppName(node.get("App Name").asText());
-        app.setUserName(node.get("User").asText());
-        app.setStartTime(parseTimestamp(node.get("Timestamp").asLong()));
+        app.setAppName(event.appName());
+        app.setUserName(event.user());
+        app.setStartTime(parseTimestamp(event.timestamp()));
 
         if (app.getSparkVersion() == null || app.getSparkVersion().equals("unknown")) {
-            String version = node.has("Spark Version") ? node.get("Spark Version").asText() : versionFromLogStart;
+            String version = event.sparkVersion() != null ? event.sparkVersion() : versionFromLogStart;
             app.setSparkVersion(version != null ? version : "unknown");
         }
 
         applicationService.saveOrUpdate(app);
     }
 
-    private void handleJobStart(JsonNode node, String appId, Map<Integer, Integer> stageToJobMap) {
-        int jobId = node.get("Job ID").asInt();
+    private void handleJobStart(SparkEvent.JobStart event, AppState state) {
+        String appId = state.appId;
+        int jobId = event.jobId();
         JobModel job = new JobModel();
         job.setId(appId + ":" + jobId);
         job.setAppId(appId);
         job.setJobId(jobId);
-        job.setSubmissionTime(parseTimestamp(node.get("Submission Time").asLong()));
+        job.setSubmissionTime(parseTimestamp(event.submissionTime()));
         job.setStatus("RUNNING");
-
-        String description = null;
-        if (node.has("Properties")) {
-            JsonNode props = node.get("Properties");
-            if (props.has("spark.job.description")) {
-                description = props.get("spark.job.description").asText();
-            } else if (props.has("spark.job.callSite")) {
-                description = props.get("spark.job.callSite").asText();
-            }
-
-            if (props.has("spark.jobGroup.id")) {
-                job.setJobGroup(props.get("spark.jobGroup.id").asText());
-            }
-
-            if (props.has("spark.sql.execution.id")) {
-                job.setSqlExecutionId(props.get("spark.sql.execution.id").asLong());
-            }
-        }
-
-        if (description == null || description.isEmpty()) {
-            JsonNode stageInfos = node.get("Stage Infos");
-            if (stageInfos != null && stageInfos.isArray() && stageInfos.size() > 0) {
-                JsonNode firstStage = stageInfos.get(0);
-                if (firstStage.has("Stage Name")) {
-                    description = firstStage.get("Stage Name").asText();
-                }
-            }
-        }
-
-        if (description != null && description.contains("\n")) {
-            description = description.split("\\n")[0];
-        }
-
-        if (description != null && description.length() > 250) {
-            description = description.substring(0, 247) + "...";
-        }
-
-        job.setDescription(description);
-
-        JsonNode stageInfos = node.get("Stage Infos");
-        if (stageInfos != null && stageInfos.isArray()) {
-            job.setNumStages(stageInfos.size());
-            List<String> sids = new ArrayList<>();
-            int totalTasks = 0;
-            for (JsonNode s : stageInfos) {
-                int sid = s.get("Stage ID").asInt();
+        job.setDescription(event.description());
+        job.setJobGroup(event.jobGroup());
+        job.setSqlExecutionId(event.sqlExecutionId());
+
+        List<Integer> stageIds = event.stageIds();
+        if (stageIds != null) {
+            job.setNumStages(stageIds.size());
+            List<String> sids = new ArrayList<>(stageIds.size());
+            for (int sid : stageIds) {
                 sids.add(String.valueOf(sid));
-                stageToJobMap.put(sid, jobId);
-                if (s.has("Number of Tasks")) {
-                    totalTasks += s.get("Number of Tasks").asInt();
-                }
+                state.stageToJobMap.put(sid, jobId);
             }
             job.setStageIds(String.join(",", sids));
-            job.setNumTasks(totalTasks);
+            job.setNumTasks(event.numTasks());
+            state.putJobStages(jobId, stageIds);
         }
-        jobService.saveOrUpdate(job);
+        state.putJob(job);
     }
 
-    private void handleJobEnd(JsonNode node, String appId) {
-        int jobId = node.get("Job ID").asInt();
-        JobModel job = jobService.getById(appId + ":" + jobId);
+    private void handleJobEnd(SparkEvent.JobEnd event, AppState state) {
+        JobModel job = state.job(event.jobId(), () -> jobService.getById(state.appId + ":" + event.jobId()));
         if (job != null) {
-            LocalDateTime completionTime = parseTimestamp(node.get("Completion Time").asLong());
+            LocalDateTime completionTime = parseTimestamp(event.completionTime());
             job.setCompletionTime(completionTime);
-            job.setStatus(node.get("Job Result").get("Result").asText().equals("JobSucceeded") ? "SUCCEEDED" : "FAILED");
+            job.setStatus(event.succeeded() ? "SUCCEEDED" : "FAILED");
 
             if (job.getSubmissionTime() != null && completionTime != null) {
                 job.setDuration(java.time.Duration.between(job.getSubmissionTime(), completionTime).toMillis());
             }
 
-            jobService.updateById(job);
+            state.markJob(job);
         }
     }
 
-    private void handleExecutorAdded(JsonNode node, String appId, List<ExecutorModel> batch) {
-        String execId = node.get("Executor ID").asText();
-        JsonNode info = node.get("Executor Info");
-        long timestamp = node.get("Timestamp").asLong();
+    private void handleExecutorAdded(SparkEvent.ExecutorAdded event, AppState state) {
+        String appId = state.appId;
+        String execId = event.executorId();
 
         ExecutorModel executor = new ExecutorModel();
         executor.setId(appId + ":" + execId);
         executor.setAppId(appId);
         executor.setExecutorId(execId);
-        executor.setHost(info.get("Host").asText());
-        executor.setAddTime(parseTimestamp(timestamp));
-        executor.setTotalCores(info.get("Total Cores").asInt());
-        executor.setMemory(info.has("Memory") ? info.get("Memory").asLong() : 0L);
+        executor.setHost(event.host());
+        executor.setAddTime(parseTimestamp(event.timestamp()));
+        executor.setTotalCores(event.totalCores());
+        executor.setMemory(event.memory());
         executor.setIsActive(true);
-        executorService.saveOrUpdate(executor);
-    }
-
-    private void handleExecutorRemoved(JsonNode node, String appId) {
-        String execId = node.get("Executor ID").asText();
-        long timestamp = node.get("Timestamp").asLong();
-
-        ExecutorModel executor = executorService.getById(appId + ":" + execId);
-        if (executor != null) {
-            executor.setRemoveTime(parseTimestamp(timestamp));
-            executor.setIsActive(false);
-            executor.setExecLossReason(node.has("Removed Reason") ? node.get("Removed Reason").asText() : "unknown");
-            executorService.updateById(executor);
-        }
-    }
-
-    private void handleEnvUpdate(JsonNode node, String appId, List<EnvironmentConfigModel> batch) {
-        int initialSize = batch.size();
-        extractProps(node, "Spark Properties", "spark_conf", appId, batch);
-        extractProps(node, "JVM Information", "jvm_info", appId, batch);
-        extractProps(node, "Hadoop Properties", "hadoop_conf", appId, batch);
-        extractProps(node, "System Properties", "system_props", appId, batch);
-        extractProps(node, "Metrics Properties", "metrics_props", appId, batch);
-        extractProps(node, "Classpath Entries", "classpath_entries", appId, batch);
-        log.info("Extracted {} environment properties for App: {}", batch.size() - initialSize, appId);
-    }
-
-    private void extractProps(JsonNode node, String fieldName, String category, String appId, List<EnvironmentConfigModel> batch) {
-        JsonNode props = node.get(fieldName);
-        if (props == null) return;
-
-        if (props.isObject()) {
-            props.fields().forEachRemaining(entry -> {
-                addEnvConfig(appId, category, entry.getKey(), entry.getValue().asText(), batch);
-            });
-        } else if (props.isArray()) {
-            for (JsonNode item : props) {
-                if (item.isArray() && item.size() >= 2) {
-                    addEnvConfig(appId, category, item.get(0).asText(), item.get(1).asText(), batch);
-                } else if (item.isObject()) {
-                    String name = item.has("Name") ? item.get("Name").asText() : (item.has("key") ? item.get("key").asText() : null);
-                    String value = item.has("Value") ? item.get("Value").asText() : (item.has("value") ? item.get("value").asText() : "");
-                    if (name != null) {
-                        addEnvConfig(appId, category, name, value, batch);
-                    }
-                }
-            }
-        }
+        state.putExecutor(executor);
+    }
+
+    private void handleExecutorRemoved(SparkEvent.ExecutorRemoved event, AppState state) {
+        // 在之前的解析中添加的 Executor 只记录移除信息，合并时只更新已存在的行
+        ExecutorModel executor = state.executor(event.executorId(), execId -> {
+            ExecutorModel removed = new ExecutorModel();
+            removed.setId(state.appId + ":" + execId);
+            removed.setAppId(state.appId);
+            removed.setExecutorId(execId);
+            return removed;
+        });
+        executor.setRemoveTime(parseTimestamp(event.timestamp()));
+        executor.setIsActive(false);
+        executor.setExecLossReason(event.reason());
+        state.markExecutor(executor);
     }
 
-    private void addEnvConfig(String appId, String category, String key, String value, List<EnvironmentConfigModel> batch) {
-        EnvironmentConfigModel config = new EnvironmentConfigModel();
-        config.setId(appId + ":" + category + ":" + key);
-        config.setAppId(appId);
-        config.setParamKey(key);
-        config.setParamValue(value);
-        config.setCategory(category);
-        batch.add(config);
+    // 以下三个 handler 不依赖服务，包内可见以便基准测试单独测量
+    static void handleEnvUpdate(SparkEvent.EnvironmentUpdate event, String appId, List<EnvironmentConfigModel> batch) {
+        for (EnvironmentConfigModel config : event.configs()) {
+            config.setId(appId + ":" + config.getCategory() + ":" + config.getParamKey());
+            config.setAppId(appId);
+            batch.add(config);
+        }
+        log.info("Extracted {} environment properties for App: {}", event.configs().size(), appId);
     }
 
-    private void handleStageSubmitted(JsonNode node, String appId, Map<Integer, Integer> stageToJobMap) {
-        JsonNode info = node.get("Stage Info");
-        int stageId = info.get("Stage ID").asInt();
-        int attemptId = info.get("Stage Attempt ID").asInt();
-        StageModel stage = new StageModel();
-        stage.setId(appId + ":" + stageId + ":" + attemptId);
+    static void handleStageSubmitted(SparkEvent.StageSubmitted event, AppState state) {
+        String appId = state.appId;
+        StageModel stage = event.stage();
+        stage.setId(appId + ":" + stage.getStageId() + ":" + stage.getAttemptId());
         stage.setAppId(appId);
-        stage.setStageId(stageId);
-        stage.setAttemptId(attemptId);
-        stage.setJobId(stageToJobMap.get(stageId));
-        stage.setStageName(info.get("Stage Name").asText());
-        stage.setNumTasks(info.get("Number of Tasks").asInt());
-        stage.setSubmissionTime(parseTimestamp(info.get("Submission Time").asLong()));
-        stage.setStatus("RUNNING");
-
-        if (info.has("Parent IDs")) {
-            JsonNode parents = info.get("Parent IDs");
-            if (parents.isArray() && parents.size() > 0) {
-                List<String> pIds = new ArrayList<>();
-                for (JsonNode p : parents) {
-                    pIds.add(p.asText());
-                }
-                stage.setParentStageIds(String.join(",", pIds));
-            }
-        }
-
-        if (info.has("RDD Info")) {
-            JsonNode rddInfos = info.get("RDD Info");
-            stage.setRddInfo(rddInfos.toString());
-            
-            // --- 提取 RDD 存储元数据 ---
-            for (JsonNode r : rddInfos) {
-                if (r.has("Storage Level")) {
-                    String storageLevelStr = r.get("Storage Level").toString();
-                    // 只有设置了持久化的 RDD 才记录
-                    if (storageLevelStr.contains("useMemory") || storageLevelStr.contains("useDisk")) {
-                        StorageRddModel rdd = new StorageRddModel();
-                        int rddId = r.get("RDD ID").asInt();
-                        rdd.setId(appId + ":" + rddId);
-                        rdd.setAppId(appId);
-                        rdd.setRddId(rddId);
-                        rdd.setName(r.get("Name").asText());
-                        rdd.setStorageLevel(r.get("Storage Level").get("description").asText());
-                        rdd.setNumPartitions(r.get("Number of Partitions").asInt());
-                        rdd.setNumCached_partitions(r.get("Number of Cached Partitions").asInt());
-                        rdd.setMemorySize(r.get("Memory Size").asLong());
-                        rdd.setDiskSize(r.get("Disk Size").asLong());
-
-                        dbExecutor.submit(() -> {
-                            try (java.sql.Connection conn = dataSource.getConnection();
-                                 java.sql.PreparedStatement ps = conn.prepareStatement(
-                                         "INSERT OR REPLACE INTO storage_rdds (id, app_id, rdd_id, name, storage_level, num_partitions, num_cached_partitions, memory_size, disk_size) " +
-                                                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                                ps.setString(1, rdd.getId());
-                                ps.setString(2, rdd.getAppId());
-                                ps.setInt(3, rdd.getRddId());
-                                ps.setString(4, rdd.getName());
-                                ps.setString(5, rdd.getStorageLevel());
-                                ps.setInt(6, rdd.getNumPartitions());
-                                ps.setInt(7, rdd.getNumCached_partitions());
-                                ps.setLong(8, rdd.getMemorySize());
-                                ps.setLong(9, rdd.getDiskSize());
-                                ps.executeUpdate();
-                            } catch (Exception e) {
-                                log.error("Failed to save RDD info", e);
-                            }
-                        });
-                    }
-                }
-            }
+        stage.setJobId(state.stageToJobMap.get(stage.getStageId()));
+
+        // --- 提取 RDD 存储元数据 (检查点时与其他脏状态一起写入) ---
+        for (StorageRddModel rdd : event.persistedRdds()) {
+            rdd.setId(appId + ":" + rdd.getRddId());
+            rdd.setAppId(appId);
+            state.putRdd(rdd);
         }
 
-        stageService.saveOrUpdate(stage);
+        state.putStage(stage);
     }
 
-    private void handleStageCompleted(JsonNode node, String appId) {
-        JsonNode info = node.get("Stage Info");
-        int stageId = info.get("Stage ID").asInt();
-        int attemptId = info.get("Stage Attempt ID").asInt();
-        StageModel stage = stageService.getById(appId + ":" + stageId + ":" + attemptId);
+    private void handleStageCompleted(SparkEvent.StageCompleted event, AppState state) {
+        StageModel stage = state.stage(event.stageId(), event.attemptId(),
+                () -> stageService.getById(state.appId + ":" + event.stageId() + ":" + event.attemptId()));
         if (stage != null) {
-            if (info.has("Completion Time")) {
-                LocalDateTime completionTime = parseTimestamp(info.get("Completion Time").asLong());
+            if (event.completionTime() > 0) {
+                LocalDateTime completionTime = parseTimestamp(event.completionTime());
                 stage.setCompletionTime(completionTime);
 
                 if (stage.getSubmissionTime() != null && completionTime != null) {
                     stage.setDuration(java.time.Duration.between(stage.getSubmissionTime(), completionTime).toMillis());
                 }
             }
-            if (info.has("Failure Reason")) {
-                stage.setStatus("FAILED");
-            } else {
-                stage.setStatus("SUCCEEDED");
-            }
-            stageService.updateById(stage);
-        }
-    }
-
-    private void handleTaskEnd(JsonNode node, String appId, List<TaskModel> batch) {
-        JsonNode info = node.get("Task Info");
-        JsonNode metrics = node.get("Task Metrics");
-        if (info == null || info.isNull()) return;
-
-        int stageId = node.has("Stage ID") ? node.get("Stage ID").asInt() : -1;
-        int attemptId = node.has("Stage Attempt ID") ? node.get("Stage Attempt ID").asInt() : 0;
-        long taskId = info.has("Task ID") ? info.get("Task ID").asLong() : -1L;
-        int taskIndex = info.has("Index") ? info.get("Index").asInt() : -1;
-
-        long launchTime = info.has("Launch Time") ? info.get("Launch Time").asLong() : 0L;
-        long finishTime = info.has("Finish Time") ? info.get("Finish Time").asLong() : 0L;
-        long duration = info.has("Duration") ? info.get("Duration").asLong() : 0L;
-
-        if (duration <= 0 && finishTime > launchTime) {
-            duration = finishTime - launchTime;
-        }
-
-        TaskModel task = new TaskModel();
-        task.setId(appId + ":" + stageId + ":" + taskId);
-        task.setAppId(appId);
-        task.setStageId(stageId);
-        task.setAttemptId(attemptId);
-        task.setTaskId(taskId);
-        task.setTaskIndex(taskIndex);
-        task.setExecutorId(info.has("Executor ID") ? info.get("Executor ID").asText() : "unknown");
-        task.setHost(info.has("Host") ? info.get("Host").asText() : "unknown");
-        task.setLocality(info.has("Locality") ? info.get("Locality").asText() : "unknown");
-        task.setLaunchTime(launchTime);
-        task.setFinishTime(finishTime);
-        task.setDuration(duration);
-        task.setSpeculative(info.has("Speculative") ? info.get("Speculative").asBoolean() : false);
-
-        String status = "unknown";
-        if (node.has("Task End Reason")) {
-            JsonNode reason = node.get("Task End Reason");
-            if (reason.has("Reason") && reason.get("Reason").asText().equals("Success")) {
-                status = "SUCCESS";
-            } else {
-                status = "FAILED";
-            }
+            stage.setStatus(event.failed() ? "FAILED" : "SUCCEEDED");
+            state.markStage(stage);
         }
-        task.setStatus(status);
-
-        if (metrics != null && !metrics.isNull()) {
-            long executorDeserializeTime = metrics.has("Executor Deserialize Time") ? metrics.get("Executor Deserialize Time").asLong() : 0L;
-            long executorRunTime = metrics.has("Executor Run Time") ? metrics.get("Executor Run Time").asLong() : 0L;
-            long resultSerializationTime = metrics.has("Result Serialization Time") ? metrics.get("Result Serialization Time").asLong() : 0L;
-            long executorCpuTime = metrics.has("Executor CPU Time") ? metrics.get("Executor CPU Time").asLong() : 0L;
-
-            task.setExecutorDeserializeTime(executorDeserializeTime);
-            task.setExecutorRunTime(executorRunTime);
-            task.setResultSerializationTime(resultSerializationTime);
-            task.setExecutorCpuTime(executorCpuTime);
-
-            long gettingResultTime = info.has("Getting Result Time") ? info.get("Getting Result Time").asLong() : 0L;
-            task.setGettingResultTime(gettingResultTime);
-
-            long schedulerDelay = Math.max(0L, duration - executorDeserializeTime - executorRunTime - resultSerializationTime - gettingResultTime);
-            task.setSchedulerDelay(schedulerDelay);
-
-            task.setGcTime(metrics.has("JVM GC Time") ? metrics.get("JVM GC Time").asLong() : 0L);
-            task.setPeakExecutionMemory(metrics.has("Peak Execution Memory") ? metrics.get("Peak Execution Memory").asLong() : 0L);
-
-            JsonNode inputMetrics = metrics.get("Input Metrics");
-            if (inputMetrics != null && !inputMetrics.isNull()) {
-                task.setInputBytes(inputMetrics.has("Bytes Read") ? inputMetrics.get("Bytes Read").asLong() : 0L);
-                task.setInputRecords(inputMetrics.has("Records Read") ? inputMetrics.get("Records Read").asLong() : 0L);
-            }
-
-            JsonNode outputMetrics = metrics.get("Output Metrics");
-            if (outputMetrics != null && !outputMetrics.isNull()) {
-                task.setOutputBytes(outputMetrics.has("Bytes Written") ? outputMetrics.get("Bytes Written").asLong() : 0L);
-                task.setOutputRecords(outputMetrics.has("Records Written") ? outputMetrics.get("Records Written").asLong() : 0L);
-            }
-
-            task.setMemoryBytesSpilled(metrics.has("Memory Bytes Spilled") ? metrics.get("Memory Bytes Spilled").asLong() : 0L);
-            task.setDiskBytesSpilled(metrics.has("Disk Bytes Spilled") ? metrics.get("Disk Bytes Spilled").asLong() : 0L);
-
-            JsonNode srMetrics = metrics.get("Shuffle Read Metrics");
-            if (srMetrics != null && !srMetrics.isNull()) {
-                long remote = srMetrics.has("Remote Bytes Read") ? srMetrics.get("Remote Bytes Read").asLong() : 0L;
-                long local = srMetrics.has("Local Bytes Read") ? srMetrics.get("Local Bytes Read").asLong() : 0L;
-                task.setShuffleReadBytes(remote + local);
-                task.setShuffleRemoteRead(remote);
-                task.setShuffleReadRecords(srMetrics.has("Total Records Read") ? srMetrics.get("Total Records Read").asLong() : 0L);
-                task.setShuffleFetchWaitTime(srMetrics.has("Fetch Wait Time") ? srMetrics.get("Fetch Wait Time").asLong() : 0L);
-            }
+    }
 
-            JsonNode swMetrics = metrics.get("Shuffle Write Metrics");
-            if (swMetrics != null && !swMetrics.isNull()) {
-                task.setShuffleWriteBytes(swMetrics.has("Shuffle Bytes Written") ? swMetrics.get("Shuffle Bytes Written").asLong() : 0L);
-                task.setShuffleWriteRecords(swMetrics.has("Shuffle Records Written") ? swMetrics.get("Shuffle Records Written").asLong() : 0L);
-                task.setShuffleWriteTime(swMetrics.has("Shuffle Write Time") ? swMetrics.get("Shuffle Write Time").asLong() : 0L);
-            }
-        }
+    static void handleTaskEnd(SparkEvent.TaskEnd event, AppState state, List<TaskModel> batch) {
+        TaskModel task = event.task();
+        task.setAppKey(state.appKey);
+        // Parquet 分片按正式 App ID 保存，暂存解析和正式解析可以共用
+        task.setAppId(state.liveAppId);
+        state.taskEnded(task);
         batch.add(task);
     }
 
-    private void handleAppEnd(JsonNode node, String appId) {
-        ApplicationModel app = applicationService.getById(appId);
+    private void handleAppEnd(SparkEvent.ApplicationEnd event, AppState state) {
+        ApplicationModel app = loadApp(state);
         if (app != null) {
-            app.setEndTime(parseTimestamp(node.get("Timestamp").asLong()));
+            app.setEndTime(parseTimestamp(event.timestamp()));
             app.setDuration(java.time.Duration.between(app.getStartTime(), app.getEndTime()).toMillis());
             app.setStatus("FINISHED");
             applicationService.updateById(app);
         }
     }
 
-    private void handleSqlStart(JsonNode node, String appId) {
-        long executionId = node.get("executionId").asLong();
-        SqlExecutionModel sql = new SqlExecutionModel();
-        sql.setId(appId + ":" + executionId);
-        sql.setAppId(appId);
-        sql.setExecutionId(executionId);
-        sql.setDescription(node.get("description").asText());
-        sql.setDetails(node.get("details").asText());
-        sql.setPhysicalPlan(node.get("physicalPlanDescription").asText());
-        
-        if (node.has("sparkPlanInfo")) {
-            sql.setPlanInfo(node.get("sparkPlanInfo").toString());
-        }
-        
-        sql.setStartTime(parseTimestamp(node.get("time").asLong()));
-        sql.setStatus("RUNNING");
-        sqlExecutionService.saveOrUpdate(sql);
+    private void handleSqlStart(SparkEvent.SqlStart event, AppState state) {
+        SqlExecutionModel sql = event.sql();
+        sql.setId(state.appId + ":" + sql.getExecutionId());
+        sql.setAppId(state.appId);
+        state.putSql(sql);
     }
 
-    private void handleSqlEnd(JsonNode node, String appId) {
-        long executionId = node.get("executionId").asLong();
-        SqlExecutionModel sql = sqlExecutionService.getById(appId + ":" + executionId);
+    private void handleSqlEnd(SparkEvent.SqlEnd event, AppState state) {
+        SqlExecutionModel sql = state.sql(event.executionId(), () -> sqlExecutionService.getById(state.appId + ":" + event.executionId()));
         if (sql != null) {
-            LocalDateTime endTime = parseTimestamp(node.get("time").asLong());
+            LocalDateTime endTime = parseTimestamp(event.time());
             sql.setEndTime(endTime);
             if (sql.getStartTime() != null && endTime != null) {
                 sql.setDuration(java.time.Duration.between(sql.getStartTime(), endTime).toMillis());
             }
             sql.setStatus("SUCCEEDED"); // We don't easily have 'failed' here without more info
-            sqlExecutionService.updateById(sql);
-        }
-    }
-
-    private void handleBlockUpdated(JsonNode node, String appId) {
-        JsonNode blockInfo = node.get("Block Updated Info");
-        String blockId = blockInfo.get("Block ID").asText();
-        if (blockId.startsWith("rdd_")) {
-            // 解析 rdd_1_5 -> rddId=1
-            String[] parts = blockId.split("_");
-            int rddId = Integer.parseInt(parts[1]);
-            
-            StorageBlockModel block = new StorageBlockModel();
-            block.setId(appId + ":" + rddId + ":" + blockId);
-            block.setAppId(appId);
-            block.setRddId(rddId);
-            block.setBlockName(blockId);
-            block.setStorageLevel(blockInfo.get("Storage Level").get("description").asText());
-            block.setMemorySize(blockInfo.get("Memory Size").asLong());
-            block.setDiskSize(blockInfo.get("Disk Size").asLong());
-            block.setExecutorId(blockInfo.get("Block Manager ID").get("Executor ID").asText());
-            block.setHost(blockInfo.get("Block Manager ID").get("Host").asText());
-
-            dbExecutor.submit(() -> {
-                try (java.sql.Connection conn = dataSource.getConnection();
-                     java.sql.PreparedStatement ps = conn.prepareStatement(
-                             "INSERT OR REPLACE INTO storage_blocks (id, app_id, rdd_id, block_name, storage_level, memory_size, disk_size, executor_id, host) " +
-                             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                    ps.setString(1, block.getId());
-                    ps.setString(2, block.getAppId());
-                    ps.setInt(3, block.getRddId());
-                    ps.setString(4, block.getBlockName());
-                    ps.setString(5, block.getStorageLevel());
-                    ps.setLong(6, block.getMemorySize());
-                    ps.setLong(7, block.getDiskSize());
-                    ps.setString(8, block.getExecutorId());
-                    ps.setString(9, block.getHost());
-                    ps.executeUpdate();
-                    
-                    // 核心修复：先确保 storage_rdds 表中有这一行
-                    try (java.sql.PreparedStatement psInsert = conn.prepareStatement(
-                            "INSERT OR IGNORE INTO storage_rdds (id, app_id, rdd_id, name, storage_level, num_partitions, num_cached_partitions) " +
-                            "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-                        psInsert.setString(1, appId + ":" + rddId);
-                        psInsert.setString(2, appId);
-                        psInsert.setInt(3, rddId);
-                        psInsert.setString(4, "RDD " + rddId); // 默认名称，后续可通过其他事件丰富
-                        psInsert.setString(5, block.getStorageLevel());
-                        psInsert.setInt(6, 0); // 暂不可知总分区数
-                        psInsert.setInt(7, 0);
-                        psInsert.executeUpdate();
-                    }
-
-                    // 顺便更新汇总表中的缓存分区计数和大小
-                    updateRddSummary(appId, rddId);
-                } catch (Exception e) {
-                    log.error("Failed to update block info", e);
-                }
-            });
-        }
-    }
-
-    private void updateRddSummary(String appId, int rddId) {
-        // 在 DuckDB 中直接执行聚合更新
-        String sql = "UPDATE storage_rdds SET " +
-                "num_cached_partitions = (SELECT count(*) FROM storage_blocks WHERE app_id = ? AND rdd_id = ? AND (memory_size > 0 OR disk_size > 0)), " +
-                "memory_size = (SELECT COALESCE(sum(memory_size), 0) FROM storage_blocks WHERE app_id = ? AND rdd_id = ?), " +
-                "disk_size = (SELECT COALESCE(sum(disk_size), 0) FROM storage_blocks WHERE app_id = ? AND rdd_id = ?) " +
-                "WHERE app_id = ? AND rdd_id = ?";
-        try (java.sql.Connection conn = dataSource.getConnection();
-             java.sql.PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, appId); ps.setInt(2, rddId);
-            ps.setString(3, appId); ps.setInt(4, rddId);
-            ps.setString(5, appId); ps.setInt(6, rddId);
-            ps.setString(7, appId); ps.setInt(8, rddId);
-            ps.executeUpdate();
-        } catch (Exception e) {
-            log.error("Failed to update RDD summary", e);
+            state.markSql(sql);
         }
     }
 
-    private void handleUnpersistRDD(JsonNode node, String appId) {
-        int rddId = node.get("RDD ID").asInt();
-        dbExecutor.submit(() -> {
-            try (java.sql.Connection conn = dataSource.getConnection()) {
-                try (java.sql.PreparedStatement ps = conn.prepareStatement("DELETE FROM storage_blocks WHERE app_id = ? AND rdd_id = ?")) {
-                    ps.setString(1, appId); ps.setInt(2, rddId);
-                    ps.executeUpdate();
-                }
-                try (java.sql.PreparedStatement ps = conn.prepareStatement("DELETE FROM storage_rdds WHERE app_id = ? AND rdd_id = ?")) {
-                    ps.setString(1, appId); ps.setInt(2, rddId);
-                    ps.executeUpdate();
-                }
-            } catch (Exception e) {
-                log.error("Failed to unpersist RDD", e);
-            }
-        });
+    private void handleBlockUpdated(SparkEvent.BlockUpdated event, AppState state) {
+        StorageBlockModel block = event.block();
+        block.setId(state.appId + ":" + block.getRddId() + ":" + block.getBlockName());
+        block.setAppId(state.appId);
+        // 只覆盖内存中的状态，检查点时写入暂存表合并；storage_rdds 汇总在文件结束时统一刷新
+        state.putBlock(block);
     }
 
     private LocalDateTime parseTimestamp(long timestamp) {
-        if (timestamp <= 0) return null;
-        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), TimeZone.getDefault().toZoneId());
+        return SparkEventDecoder.parseTimestamp(timestamp);
     }
 
     private String formatDuration(long ms) {
@@ -0,0 +1,153 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.config.InsightProperties;
+import com.spark.insight.model.TaskModel;
+import lombok.extern.slf4j.Slf4j;
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Parquet 写入后端：解析出的 Task 先写进一个私有的内存 DuckDB，文件结束时 COPY 成 Parquet 分片，
+ * 再由 {@link DuckDbBulkLoader#merge(long, Path)} 用一条 read_parquet 语句加载进主库。
+ * <p>
+ * 写分片完全在解析线程上进行，不经过 DbWriteQueue，也不占用主库的写锁。
+ * 分片按 (日志路径, 大小, 修改时间) 命名并保留在缓存目录中，日志未变化时重新解析可以直接复用，
+ * 连 TaskEnd 事件的解码都可以跳过。
+ */
+@Slf4j
+@Component
+public class ParquetTaskSpool {
+
+    private final InsightProperties.Parser config;
+
+    public ParquetTaskSpool(InsightProperties insightProperties) {
+        this.config = insightProperties.getParser();
+    }
+
+    public boolean isEnabled() {
+        return config.getWriteBackend() == InsightProperties.WriteBackend.PARQUET;
+    }
+
+    /**
+     * 该日志文件当前内容对应的分片 (如果已经缓存)
+     */
+    public Path cachedShard(File logFile) {
+        Path shard = shardPath(logFile);
+        return Files.isRegularFile(shard) ? shard : null;
+    }
+
+    public ShardWriter open(File logFile) throws SQLException {
+        return new ShardWriter(logFile);
+    }
+
+    private Path shardPath(File logFile) {
+        return Paths.get(config.getParquetCacheDir())
+                .resolve(shardPrefix(logFile) + logFile.length() + "-" + logFile.lastModified() + ".parquet");
+    }
+
+    private static String shardPrefix(File logFile) {
+        CRC32 crc = new CRC32();
+        crc.update(logFile.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return "tasks-" + Long.toHexString(crc.getValue()) + "-";
+    }
+
+    /**
+     * 单个日志文件的 Task 分片写入器，非线程安全，只在解析线程上使用
+     */
+    public class ShardWriter implements AutoCloseable {
+        private final File logFile;
+        // 在解析开始时确定，.inprogress 日志在解析过程中可能继续增长
+        private final Path target;
+        private final Connection conn;
+        private final DuckDBAppender appender;
+        // 分片中出现过的 app_key → app_id，写出时换回 app_id
+        private final Map<Integer, String> appIds = new HashMap<>();
+        private long seq;
+        private long rows;
+
+        private ShardWriter(File logFile) throws SQLException {
+            this.logFile = logFile;
+            this.target = shardPath(logFile);
+            // 每个文件一个独立的内存库，与主库互不影响
+            this.conn = DriverManager.getConnection("jdbc:duckdb:");
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(DuckDbBulkLoader.taskStagingDdl("task_shard"));
+                stmt.execute("CREATE TABLE shard_apps (app_key INTEGER, app_id VARCHAR)");
+            }
+            this.appender = conn.unwrap(DuckDBConnection.class).createAppender(DuckDBConnection.DEFAULT_SCHEMA, "task_shard");
+        }
+
+        public void append(List<TaskModel> tasks) throws SQLException {
+            for (TaskModel t : tasks) {
+                if (!appIds.containsKey(t.getAppKey())) {
+                    appIds.put(t.getAppKey(), t.getAppId());
+                }
+                DuckDbBulkLoader.appendTaskRow(appender, 0, ++seq, t);
+            }
+            rows += tasks.size();
+        }
+
+        /**
+         * 写出 Parquet 分片并清理同一日志的旧分片
+         *
+         * @return 分片路径
+         */
+        public Path finish() throws SQLException, IOException {
+            appender.close();
+            Files.createDirectories(target.getParent());
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (Statement stmt = conn.createStatement()) {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO shard_apps VALUES (?, ?)")) {
+                    for (Map.Entry<Integer, String> e : appIds.entrySet()) {
+                        ps.setInt(1, e.getKey());
+                        ps.setString(2, e.getValue());
+                        ps.executeUpdate();
+                    }
+                }
+                stmt.execute("COPY (SELECT a.app_id, t.* EXCLUDE (app_key) FROM task_shard t JOIN shard_apps a USING (app_key)) TO '"
+                        + tmp.toAbsolutePath().toString().replace("'", "''") + "' (FORMAT PARQUET, COMPRESSION ZSTD)");
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            String prefix = shardPrefix(logFile);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(target.getParent(), prefix + "*.parquet")) {
+                for (Path p : stale) {
+                    if (!p.equals(target)) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+            log.info("Wrote {} tasks of {} to Parquet shard {}", rows, logFile.getName(), target.getFileName());
+            return target;
+        }
+
+        @Override
+        public void close() {
+            try {
+                appender.close();
+            } catch (Exception ignored) {
+                // 已经在 finish 中关闭
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close shard connection for {}: {}", logFile.getName(), e.getMessage());
+            }
+        }
+    }
+}
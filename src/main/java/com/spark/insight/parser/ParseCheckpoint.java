@@ -0,0 +1,17 @@
+package com.spark.insight.parser;
+
+import java.util.Map;
+
+/**
+ * 增量解析的断点：日志解析到的字节位置 (总是落在行边界上) 以及从该位置继续解析所需的解析器状态。
+ * Job / Stage / Executor 等对象不需要保存，继续解析时按需从数据库加载。
+ *
+ * @param offset        下一次解析的起始字节位置
+ * @param appId         当前 App ID
+ * @param sparkVersion  LogStart 中的 Spark 版本
+ * @param lineCount     已解析的行数 (用于进度显示)
+ * @param stageToJobMap Stage → Job 映射
+ */
+public record ParseCheckpoint(long offset, String appId, String sparkVersion, long lineCount,
+                              Map<Integer, Integer> stageToJobMap) {
+}
@@ -0,0 +1,195 @@
+package com.spark.insight.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数草图 (对数分桶，相对误差 {@value #RELATIVE_ACCURACY})，用于非负的 Task 指标。
+ * <p>
+ * 值 v &gt; 0 落入第 ceil(log_γ(v)) 个桶，γ = (1 + α) / (1 - α)，桶的代表值与桶内任意值的相对误差不超过 α；
+ * 0 (以及负数) 单独计数，最小值和最大值精确保存。两个草图合并只是桶计数相加，结果与把两组值放进同一个草图完全相同，
+ * 所以 Job / SQL / App 级别的分位数可以直接由各 Stage 的草图合并得到，不需要重新扫描 tasks。
+ * <p>
+ * 桶只覆盖实际出现过的下标区间，以变长整数序列化 ({@link #toBytes()})，常见的 Stage 指标只有几百字节。
+ * 非线程安全。
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final byte VERSION = 1;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private long count;
+    private long zeroCount;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    // counts[i] 为下标 offset + i 的桶
+    private long[] counts = new long[0];
+    private int offset;
+
+    public void add(long value) {
+        count++;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (value <= 0) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        ensureCovers(index, index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * 把另一个草图的计数加到本草图上
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) return;
+        count += other.count;
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.counts.length == 0) return;
+        ensureCovers(other.offset, other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.offset - offset + i] += other.counts[i];
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return 最小值，草图为空时返回 null
+     */
+    public Long min() {
+        return count == 0 ? null : min;
+    }
+
+    /**
+     * @return 最大值，草图为空时返回 null
+     */
+    public Long max() {
+        return count == 0 ? null : max;
+    }
+
+    /**
+     * @param q 0 到 1 之间的分位点
+     * @return 第 q 分位数的近似值 (限制在 [min, max] 之内)，草图为空时返回 null
+     */
+    public Long quantile(double q) {
+        if (count == 0) return null;
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) return Math.max(min, Math.min(0L, max));
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                long value = Math.round(2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1));
+                return Math.max(min, Math.min(value, max));
+            }
+        }
+        return max;
+    }
+
+    private void ensureCovers(int low, int high) {
+        if (counts.length == 0) {
+            counts = new long[high - low + 1];
+            offset = low;
+            return;
+        }
+        int end = offset + counts.length - 1;
+        if (low >= offset && high <= end) return;
+        int newOffset = Math.min(offset, low);
+        int newEnd = Math.max(end, high);
+        // 向两端各多留一些，逐个增长的值不必每次都复制
+        int slack = Math.max(8, counts.length / 2);
+        if (low < offset) newOffset -= slack;
+        if (high > end) newEnd += slack;
+        long[] grown = new long[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    // ---- 序列化 ----
+
+    /**
+     * 格式：版本、总数、0 的个数、最小值、最大值、第一个非空桶的下标、桶的个数、各桶计数 (去掉两端的空桶)，都是变长整数
+     */
+    public byte[] toBytes() {
+        int first = 0;
+        int last = counts.length - 1;
+        while (first <= last && counts[first] == 0) first++;
+        while (last >= first && counts[last] == 0) last--;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + Math.max(0, last - first + 1));
+        out.write(VERSION);
+        writeVarLong(out, count);
+        writeVarLong(out, zeroCount);
+        writeVarLong(out, zigZag(count == 0 ? 0 : min));
+        writeVarLong(out, zigZag(count == 0 ? 0 : max));
+        writeVarLong(out, zigZag(first <= last ? offset + first : 0));
+        writeVarLong(out, Math.max(0, last - first + 1));
+        for (int i = first; i <= last; i++) {
+            writeVarLong(out, counts[i]);
+        }
+        return out.toByteArray();
+    }
+
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format");
+        }
+        int[] pos = {1};
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.count = readVarLong(bytes, pos);
+        sketch.zeroCount = readVarLong(bytes, pos);
+        long min = unZigZag(readVarLong(bytes, pos));
+        long max = unZigZag(readVarLong(bytes, pos));
+        if (sketch.count > 0) {
+            sketch.min = min;
+            sketch.max = max;
+        }
+        sketch.offset = (int) unZigZag(readVarLong(bytes, pos));
+        sketch.counts = new long[(int) readVarLong(bytes, pos)];
+        for (int i = 0; i < sketch.counts.length; i++) {
+            sketch.counts[i] = readVarLong(bytes, pos);
+        }
+        return sketch;
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[pos[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", buckets=" + Arrays.stream(counts).filter(c -> c > 0).count() + "}";
+    }
+}
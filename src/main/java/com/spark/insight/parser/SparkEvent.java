@@ -0,0 +1,84 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.*;
+
+import java.util.List;
+
+/**
+ * 由 {@link SparkEventDecoder} 解码出的 Spark Listener 事件。
+ * <p>
+ * 只保留各 handler 真正用到的字段；模型对象中的 id / appId 在这里都是空的，
+ * 由 {@link JacksonEventParser} 在按顺序应用事件时补齐 (App ID 可能在日志中途才被校正)。
+ */
+public sealed interface SparkEvent {
+
+    record LogStart(String sparkVersion) implements SparkEvent {
+    }
+
+    record ApplicationStart(String appId, String appName, String user, long timestamp,
+                            String sparkVersion) implements SparkEvent {
+    }
+
+    /**
+     * @param sparkAppId   Spark Properties 中的 spark.app.id，用于校正 App ID
+     * @param sparkAppName Spark Properties 中的 spark.app.name
+     * @param sparkUser    Spark Properties 中的 spark.user.name
+     */
+    record EnvironmentUpdate(String sparkAppId, String sparkAppName, String sparkUser,
+                             List<EnvironmentConfigModel> configs) implements SparkEvent {
+    }
+
+    /**
+     * @param description 已经按 description → callSite → 首个 Stage 名称的顺序选取并截断
+     */
+    record JobStart(int jobId, long submissionTime, String description, String jobGroup,
+                    Long sqlExecutionId, List<Integer> stageIds, int numTasks) implements SparkEvent {
+    }
+
+    record JobEnd(int jobId, long completionTime, boolean succeeded) implements SparkEvent {
+    }
+
+    record ExecutorAdded(String executorId, String host, long timestamp, int totalCores,
+                         long memory) implements SparkEvent {
+    }
+
+    record ExecutorRemoved(String executorId, long timestamp, String reason) implements SparkEvent {
+    }
+
+    /**
+     * @param stage         不含 id / appId / jobId
+     * @param persistedRdds RDD Info 中设置了持久化的 RDD，不含 id / appId
+     */
+    record StageSubmitted(StageModel stage, List<StorageRddModel> persistedRdds) implements SparkEvent {
+    }
+
+    record StageCompleted(int stageId, int attemptId, long completionTime, boolean failed) implements SparkEvent {
+    }
+
+    /**
+     * @param task 不含 id / appId
+     */
+    record TaskEnd(TaskModel task) implements SparkEvent {
+    }
+
+    record ApplicationEnd(long timestamp) implements SparkEvent {
+    }
+
+    /**
+     * @param sql 不含 id / appId
+     */
+    record SqlStart(SqlExecutionModel sql) implements SparkEvent {
+    }
+
+    record SqlEnd(long executionId, long time) implements SparkEvent {
+    }
+
+    /**
+     * @param block 仅 rdd_ 开头的 Block，不含 id / appId
+     */
+    record BlockUpdated(StorageBlockModel block) implements SparkEvent {
+    }
+
+    record UnpersistRdd(int rddId) implements SparkEvent {
+    }
+}
@@ -0,0 +1,863 @@
+package com.spark.insight.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spark.insight.model.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * 基于 Jackson {@link JsonParser} 的流式事件解码器。
+ * <p>
+ * 直接在一行原始字节上按 token 解析：先读 "Event" 字段分发，再只提取各 handler 需要的字段，
+ * 其余子树 (Accumulables、Task Executor Metrics、Properties 中的无关项等) 用 {@code skipChildren()} 跳过，
+ * 不构建 JsonNode 树，也不把整行解码成 String。
+ * <p>
+ * 解码器本身无状态，可以被多个线程共享。
+ */
+public class SparkEventDecoder {
+
+    public static final String LOG_START = "SparkListenerLogStart";
+    public static final String APPLICATION_START = "SparkListenerApplicationStart";
+    public static final String APPLICATION_END = "SparkListenerApplicationEnd";
+    public static final String ENVIRONMENT_UPDATE = "SparkListenerEnvironmentUpdate";
+    public static final String JOB_START = "SparkListenerJobStart";
+    public static final String JOB_END = "SparkListenerJobEnd";
+    public static final String EXECUTOR_ADDED = "SparkListenerExecutorAdded";
+    public static final String EXECUTOR_REMOVED = "SparkListenerExecutorRemoved";
+    public static final String STAGE_SUBMITTED = "SparkListenerStageSubmitted";
+    public static final String STAGE_COMPLETED = "SparkListenerStageCompleted";
+    public static final String TASK_END = "SparkListenerTaskEnd";
+    public static final String SQL_START = "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart";
+    public static final String SQL_END = "org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd";
+    public static final String BLOCK_UPDATED = "SparkListenerBlockUpdated";
+    public static final String UNPERSIST_RDD = "SparkListenerUnpersistRDD";
+
+    /**
+     * 解析器会处理的全部事件类型
+     */
+    public static final Set<String> HANDLED_EVENTS = Set.of(
+            LOG_START, APPLICATION_START, APPLICATION_END, ENVIRONMENT_UPDATE,
+            JOB_START, JOB_END, EXECUTOR_ADDED, EXECUTOR_REMOVED,
+            STAGE_SUBMITTED, STAGE_COMPLETED, TASK_END,
+            SQL_START, SQL_END, BLOCK_UPDATED, UNPERSIST_RDD);
+
+    private final JsonFactory factory;
+    private final ObjectMapper objectMapper;
+
+    public SparkEventDecoder() {
+        this.factory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(Integer.MAX_VALUE).build())
+                .build();
+        this.objectMapper = new ObjectMapper(factory);
+    }
+
+    /**
+     * 解码一行事件
+     *
+     * @return 解码后的事件；不关心的事件类型返回 null
+     */
+    public SparkEvent decode(byte[] buf, int off, int len) throws IOException {
+        try (JsonParser p = factory.createParser(buf, off, len)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            if (p.nextToken() == JsonToken.FIELD_NAME && "Event".equals(p.currentName())) {
+                // 快速路径：Spark 总是把 "Event" 写在第一个字段
+                p.nextToken();
+                return decodeBody(p.getText(), p);
+            }
+        }
+        // 兜底：Event 不在首位时退回整行建树
+        JsonNode node = objectMapper.readTree(buf, off, len);
+        JsonNode event = node.get("Event");
+        if (event == null) {
+            return null;
+        }
+        try (JsonParser p = objectMapper.treeAsTokens(node)) {
+            p.nextToken();
+            return decodeBody(event.asText(), p);
+        }
+    }
+
+    /**
+     * @param p 位于事件对象内部，下一个 token 是剩余字段名或 END_OBJECT
+     */
+    private SparkEvent decodeBody(String eventType, JsonParser p) throws IOException {
+        return switch (eventType) {
+            case LOG_START -> decodeLogStart(p);
+            case APPLICATION_START -> decodeAppStart(p);
+            case APPLICATION_END -> decodeAppEnd(p);
+            case ENVIRONMENT_UPDATE -> decodeEnvUpdate(p);
+            case JOB_START -> decodeJobStart(p);
+            case JOB_END -> decodeJobEnd(p);
+            case EXECUTOR_ADDED -> decodeExecutorAdded(p);
+            case EXECUTOR_REMOVED -> decodeExecutorRemoved(p);
+            case STAGE_SUBMITTED -> decodeStageSubmitted(p);
+            case STAGE_COMPLETED -> decodeStageCompleted(p);
+            case TASK_END -> decodeTaskEnd(p);
+            case SQL_START -> decodeSqlStart(p);
+            case SQL_END -> decodeSqlEnd(p);
+            case BLOCK_UPDATED -> decodeBlockUpdated(p);
+            case UNPERSIST_RDD -> decodeUnpersistRdd(p);
+            default -> null;
+        };
+    }
+
+    private SparkEvent.LogStart decodeLogStart(JsonParser p) throws IOException {
+        String version = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("Spark Version".equals(field)) {
+                version = text(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new SparkEvent.LogStart(version);
+    }
+
+    private SparkEvent.ApplicationStart decodeAppStart(JsonParser p) throws IOException {
+        String appId = null, appName = null, user = null, version = null;
+        long timestamp = 0L;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "App ID" -> appId = text(p);
+                case "App Name" -> appName = text(p);
+                case "User" -> user = text(p);
+                case "Timestamp" -> timestamp = longValue(p);
+                case "Spark Version" -> version = text(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.ApplicationStart(appId, appName, user, timestamp, version);
+    }
+
+    private SparkEvent.ApplicationEnd decodeAppEnd(JsonParser p) throws IOException {
+        long timestamp = 0L;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("Timestamp".equals(field)) {
+                timestamp = longValue(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new SparkEvent.ApplicationEnd(timestamp);
+    }
+
+    private SparkEvent.EnvironmentUpdate decodeEnvUpdate(JsonParser p) throws IOException {
+        List<EnvironmentConfigModel> configs = new ArrayList<>();
+        String[] sparkProps = new String[3];
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Spark Properties" -> extractProps(p, "spark_conf", configs, sparkProps);
+                case "JVM Information" -> extractProps(p, "jvm_info", configs, null);
+                case "Hadoop Properties" -> extractProps(p, "hadoop_conf", configs, null);
+                case "System Properties" -> extractProps(p, "system_props", configs, null);
+                case "Metrics Properties" -> extractProps(p, "metrics_props", configs, null);
+                case "Classpath Entries" -> extractProps(p, "classpath_entries", configs, null);
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.EnvironmentUpdate(sparkProps[0], sparkProps[1], sparkProps[2], configs);
+    }
+
+    /**
+     * 支持两种格式：{"k": "v", ...} 以及 [["k", "v"], ...] / [{"Name": "k", "Value": "v"}, ...]
+     *
+     * @param sparkProps 非空时顺带捕获 spark.app.id / spark.app.name / spark.user.name
+     */
+    private void extractProps(JsonParser p, String category, List<EnvironmentConfigModel> configs, String[] sparkProps) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String key = p.currentName();
+                p.nextToken();
+                addEnvConfig(category, key, scalarText(p), configs, sparkProps);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_ARRAY) {
+                    String key = null, value = null;
+                    int i = 0;
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (i == 0) key = scalarText(p);
+                        else if (i == 1) value = scalarText(p);
+                        else p.skipChildren();
+                        i++;
+                    }
+                    if (i >= 2) {
+                        addEnvConfig(category, key, value, configs, sparkProps);
+                    }
+                } else if (token == JsonToken.START_OBJECT) {
+                    String name = null, key = null, value = null, lowerValue = null;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = p.currentName();
+                        p.nextToken();
+                        switch (field) {
+                            case "Name" -> name = scalarText(p);
+                            case "key" -> key = scalarText(p);
+                            case "Value" -> value = scalarText(p);
+                            case "value" -> lowerValue = scalarText(p);
+                            default -> p.skipChildren();
+                        }
+                    }
+                    String resolvedName = name != null ? name : key;
+                    String resolvedValue = value != null ? value : (lowerValue != null ? lowerValue : "");
+                    if (resolvedName != null) {
+                        addEnvConfig(category, resolvedName, resolvedValue, configs, sparkProps);
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        } else {
+            p.skipChildren();
+        }
+    }
+
+    private void addEnvConfig(String category, String key, String value, List<EnvironmentConfigModel> configs, String[] sparkProps) {
+        EnvironmentConfigModel config = new EnvironmentConfigModel();
+        config.setParamKey(key);
+        config.setParamValue(value);
+        config.setCategory(category);
+        configs.add(config);
+
+        if (sparkProps != null && key != null) {
+            switch (key) {
+                case "spark.app.id" -> sparkProps[0] = value;
+                case "spark.app.name" -> sparkProps[1] = value;
+                case "spark.user.name" -> sparkProps[2] = value;
+                default -> {
+                }
+            }
+        }
+    }
+
+    private SparkEvent.JobStart decodeJobStart(JsonParser p) throws IOException {
+        int jobId = -1;
+        long submissionTime = 0L;
+        String jobDescription = null, callSite = null, jobGroup = null, firstStageName = null;
+        Long sqlExecutionId = null;
+        List<Integer> stageIds = null;
+        int numTasks = 0;
+        int stageIndex = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Job ID" -> jobId = intValue(p);
+                case "Submission Time" -> submissionTime = longValue(p);
+                case "Stage Infos" -> {
+                    if (p.currentToken() != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        break;
+                    }
+                    stageIds = new ArrayList<>();
+                    JsonToken element;
+                    while ((element = p.nextToken()) != JsonToken.END_ARRAY && element != null) {
+                        // 不是对象的元素跳过，但仍占一个位置 (只有第一个元素的 Stage Name 可以作为描述)
+                        if (element != JsonToken.START_OBJECT) {
+                            p.skipChildren();
+                            stageIndex++;
+                            continue;
+                        }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String stageField = p.currentName();
+                            p.nextToken();
+                            switch (stageField) {
+                                case "Stage ID" -> stageIds.add(intValue(p));
+                                case "Number of Tasks" -> numTasks += intValue(p);
+                                case "Stage Name" -> {
+                                    if (stageIndex == 0) {
+                                        firstStageName = text(p);
+                                    }
+                                }
+                                default -> p.skipChildren();
+                            }
+                        }
+                        stageIndex++;
+                    }
+                }
+                case "Properties" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String prop = p.currentName();
+                        p.nextToken();
+                        switch (prop) {
+                            case "spark.job.description" -> jobDescription = scalarText(p);
+                            case "spark.job.callSite" -> callSite = scalarText(p);
+                            case "spark.jobGroup.id" -> jobGroup = scalarText(p);
+                            case "spark.sql.execution.id" -> sqlExecutionId = longValue(p);
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        String description = jobDescription != null ? jobDescription : callSite;
+        if (description == null || description.isEmpty()) {
+            description = firstStageName;
+        }
+        if (description != null && description.contains("\n")) {
+            description = description.split("\\n")[0];
+        }
+        if (description != null && description.length() > 250) {
+            description = description.substring(0, 247) + "...";
+        }
+
+        return new SparkEvent.JobStart(jobId, submissionTime, description, jobGroup, sqlExecutionId, stageIds, numTasks);
+    }
+
+    private SparkEvent.JobEnd decodeJobEnd(JsonParser p) throws IOException {
+        int jobId = -1;
+        long completionTime = 0L;
+        boolean succeeded = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Job ID" -> jobId = intValue(p);
+                case "Completion Time" -> completionTime = longValue(p);
+                case "Job Result" -> succeeded = "JobSucceeded".equals(readFieldText(p, "Result"));
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.JobEnd(jobId, completionTime, succeeded);
+    }
+
+    private SparkEvent.ExecutorAdded decodeExecutorAdded(JsonParser p) throws IOException {
+        String executorId = null, host = null;
+        long timestamp = 0L, memory = 0L;
+        int totalCores = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Executor ID" -> executorId = text(p);
+                case "Timestamp" -> timestamp = longValue(p);
+                case "Executor Info" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String infoField = p.currentName();
+                        p.nextToken();
+                        switch (infoField) {
+                            case "Host" -> host = text(p);
+                            case "Total Cores" -> totalCores = intValue(p);
+                            case "Memory" -> memory = longValue(p);
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.ExecutorAdded(executorId, host, timestamp, totalCores, memory);
+    }
+
+    private SparkEvent.ExecutorRemoved decodeExecutorRemoved(JsonParser p) throws IOException {
+        String executorId = null, reason = "unknown";
+        long timestamp = 0L;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Executor ID" -> executorId = text(p);
+                case "Timestamp" -> timestamp = longValue(p);
+                case "Removed Reason" -> reason = scalarText(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.ExecutorRemoved(executorId, timestamp, reason);
+    }
+
+    private SparkEvent.StageSubmitted decodeStageSubmitted(JsonParser p) throws IOException {
+        StageModel stage = new StageModel();
+        stage.setStatus("RUNNING");
+        List<StorageRddModel> persistedRdds = new ArrayList<>();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (!"Stage Info".equals(field) || p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String infoField = p.currentName();
+                p.nextToken();
+                switch (infoField) {
+                    case "Stage ID" -> stage.setStageId(intValue(p));
+                    case "Stage Attempt ID" -> stage.setAttemptId(intValue(p));
+                    case "Stage Name" -> stage.setStageName(text(p));
+                    case "Number of Tasks" -> stage.setNumTasks(intValue(p));
+                    case "Submission Time" -> stage.setSubmissionTime(parseTimestamp(longValue(p)));
+                    case "Parent IDs" -> {
+                        if (p.currentToken() != JsonToken.START_ARRAY) {
+                            p.skipChildren();
+                            break;
+                        }
+                        List<String> parentIds = new ArrayList<>();
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            parentIds.add(scalarText(p));
+                        }
+                        if (!parentIds.isEmpty()) {
+                            stage.setParentStageIds(String.join(",", parentIds));
+                        }
+                    }
+                    case "RDD Info" -> {
+                        // RDD Info 需要原样落库 (DAG 展示)，这里是少数需要建树的子结构
+                        JsonNode rddInfos = objectMapper.readTree(p);
+                        stage.setRddInfo(rddInfos.toString());
+                        extractPersistedRdds(rddInfos, persistedRdds);
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        if (stage.getAttemptId() == null) {
+            stage.setAttemptId(0);
+        }
+        return new SparkEvent.StageSubmitted(stage, persistedRdds);
+    }
+
+    private void extractPersistedRdds(JsonNode rddInfos, List<StorageRddModel> result) {
+        for (JsonNode r : rddInfos) {
+            JsonNode storageLevel = r.get("Storage Level");
+            if (storageLevel == null) continue;
+            String storageLevelStr = storageLevel.toString();
+            // 只有设置了持久化的 RDD 才记录
+            if (!storageLevelStr.contains("useMemory") && !storageLevelStr.contains("useDisk")) continue;
+
+            StorageRddModel rdd = new StorageRddModel();
+            rdd.setRddId(r.path("RDD ID").asInt());
+            rdd.setName(r.path("Name").asText());
+            rdd.setStorageLevel(storageLevel.path("description").asText());
+            rdd.setNumPartitions(r.path("Number of Partitions").asInt());
+            rdd.setNumCached_partitions(r.path("Number of Cached Partitions").asInt());
+            rdd.setMemorySize(r.path("Memory Size").asLong());
+            rdd.setDiskSize(r.path("Disk Size").asLong());
+            result.add(rdd);
+        }
+    }
+
+    private SparkEvent.StageCompleted decodeStageCompleted(JsonParser p) throws IOException {
+        int stageId = -1, attemptId = 0;
+        long completionTime = 0L;
+        boolean failed = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (!"Stage Info".equals(field) || p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String infoField = p.currentName();
+                p.nextToken();
+                switch (infoField) {
+                    case "Stage ID" -> stageId = intValue(p);
+                    case "Stage Attempt ID" -> attemptId = intValue(p);
+                    case "Completion Time" -> completionTime = longValue(p);
+                    case "Failure Reason" -> {
+                        failed = true;
+                        p.skipChildren();
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return new SparkEvent.StageCompleted(stageId, attemptId, completionTime, failed);
+    }
+
+    private SparkEvent.TaskEnd decodeTaskEnd(JsonParser p) throws IOException {
+        TaskModel task = new TaskModel();
+        task.setStageId(-1);
+        task.setAttemptId(0);
+        task.setTaskId(-1L);
+        task.setTaskIndex(-1);
+        task.setExecutorId("unknown");
+        task.setHost("unknown");
+        task.setLocality("unknown");
+        task.setLaunchTime(0L);
+        task.setFinishTime(0L);
+        task.setSpeculative(false);
+        task.setStatus("unknown");
+
+        boolean hasInfo = false;
+        boolean hasMetrics = false;
+        long duration = 0L;
+        long gettingResultTime = 0L;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Stage ID" -> task.setStageId(intValue(p));
+                case "Stage Attempt ID" -> task.setAttemptId(intValue(p));
+                case "Task End Reason" -> {
+                    String reason = readFieldText(p, "Reason");
+                    task.setStatus("Success".equals(reason) ? "SUCCESS" : "FAILED");
+                }
+                case "Task Info" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    hasInfo = true;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String infoField = p.currentName();
+                        p.nextToken();
+                        switch (infoField) {
+                            case "Task ID" -> task.setTaskId(longValue(p));
+                            case "Index" -> task.setTaskIndex(intValue(p));
+                            case "Launch Time" -> task.setLaunchTime(longValue(p));
+                            case "Finish Time" -> task.setFinishTime(longValue(p));
+                            case "Duration" -> duration = longValue(p);
+                            case "Getting Result Time" -> gettingResultTime = longValue(p);
+                            case "Executor ID" -> task.setExecutorId(scalarText(p));
+                            case "Host" -> task.setHost(scalarText(p));
+                            case "Locality" -> task.setLocality(scalarText(p));
+                            case "Speculative" -> task.setSpeculative(booleanValue(p));
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "Task Metrics" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    hasMetrics = true;
+                    decodeTaskMetrics(p, task);
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        if (!hasInfo) {
+            return null;
+        }
+
+        if (duration <= 0 && task.getFinishTime() > task.getLaunchTime()) {
+            duration = task.getFinishTime() - task.getLaunchTime();
+        }
+        task.setDuration(duration);
+
+        if (hasMetrics) {
+            task.setGettingResultTime(gettingResultTime);
+            long schedulerDelay = Math.max(0L, duration - task.getExecutorDeserializeTime() - task.getExecutorRunTime()
+                    - task.getResultSerializationTime() - gettingResultTime);
+            task.setSchedulerDelay(schedulerDelay);
+        }
+        return new SparkEvent.TaskEnd(task);
+    }
+
+    private void decodeTaskMetrics(JsonParser p, TaskModel task) throws IOException {
+        task.setExecutorDeserializeTime(0L);
+        task.setExecutorRunTime(0L);
+        task.setResultSerializationTime(0L);
+        task.setExecutorCpuTime(0L);
+        task.setGcTime(0L);
+        task.setPeakExecutionMemory(0L);
+        task.setMemoryBytesSpilled(0L);
+        task.setDiskBytesSpilled(0L);
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "Executor Deserialize Time" -> task.setExecutorDeserializeTime(longValue(p));
+                case "Executor Run Time" -> task.setExecutorRunTime(longValue(p));
+                case "Result Serialization Time" -> task.setResultSerializationTime(longValue(p));
+                case "Executor CPU Time" -> task.setExecutorCpuTime(longValue(p));
+                case "JVM GC Time" -> task.setGcTime(longValue(p));
+                case "Peak Execution Memory" -> task.setPeakExecutionMemory(longValue(p));
+                case "Memory Bytes Spilled" -> task.setMemoryBytesSpilled(longValue(p));
+                case "Disk Bytes Spilled" -> task.setDiskBytesSpilled(longValue(p));
+                case "Input Metrics" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    task.setInputBytes(0L);
+                    task.setInputRecords(0L);
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String m = p.currentName();
+                        p.nextToken();
+                        switch (m) {
+                            case "Bytes Read" -> task.setInputBytes(longValue(p));
+                            case "Records Read" -> task.setInputRecords(longValue(p));
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "Output Metrics" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    task.setOutputBytes(0L);
+                    task.setOutputRecords(0L);
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String m = p.currentName();
+                        p.nextToken();
+                        switch (m) {
+                            case "Bytes Written" -> task.setOutputBytes(longValue(p));
+                            case "Records Written" -> task.setOutputRecords(longValue(p));
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "Shuffle Read Metrics" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    long remote = 0L, local = 0L, records = 0L, fetchWait = 0L;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String m = p.currentName();
+                        p.nextToken();
+                        switch (m) {
+                            case "Remote Bytes Read" -> remote = longValue(p);
+                            case "Local Bytes Read" -> local = longValue(p);
+                            case "Total Records Read" -> records = longValue(p);
+                            case "Fetch Wait Time" -> fetchWait = longValue(p);
+                            default -> p.skipChildren();
+                        }
+                    }
+                    task.setShuffleReadBytes(remote + local);
+                    task.setShuffleRemoteRead(remote);
+                    task.setShuffleReadRecords(records);
+                    task.setShuffleFetchWaitTime(fetchWait);
+                }
+                case "Shuffle Write Metrics" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    long bytes = 0L, records = 0L, time = 0L;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String m = p.currentName();
+                        p.nextToken();
+                        switch (m) {
+                            case "Shuffle Bytes Written" -> bytes = longValue(p);
+                            case "Shuffle Records Written" -> records = longValue(p);
+                            case "Shuffle Write Time" -> time = longValue(p);
+                            default -> p.skipChildren();
+                        }
+                    }
+                    task.setShuffleWriteBytes(bytes);
+                    task.setShuffleWriteRecords(records);
+                    task.setShuffleWriteTime(time);
+                }
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private SparkEvent.SqlStart decodeSqlStart(JsonParser p) throws IOException {
+        SqlExecutionModel sql = new SqlExecutionModel();
+        sql.setStatus("RUNNING");
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "executionId" -> sql.setExecutionId(longValue(p));
+                case "description" -> sql.setDescription(scalarText(p));
+                case "details" -> sql.setDetails(scalarText(p));
+                case "physicalPlanDescription" -> sql.setPhysicalPlan(scalarText(p));
+                case "sparkPlanInfo" -> sql.setPlanInfo(copyStructure(p));
+                case "time" -> sql.setStartTime(parseTimestamp(longValue(p)));
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.SqlStart(sql);
+    }
+
+    private SparkEvent.SqlEnd decodeSqlEnd(JsonParser p) throws IOException {
+        long executionId = -1L, time = 0L;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "executionId" -> executionId = longValue(p);
+                case "time" -> time = longValue(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new SparkEvent.SqlEnd(executionId, time);
+    }
+
+    private SparkEvent.BlockUpdated decodeBlockUpdated(JsonParser p) throws IOException {
+        StorageBlockModel block = new StorageBlockModel();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (!"Block Updated Info".equals(field) || p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String infoField = p.currentName();
+                p.nextToken();
+                switch (infoField) {
+                    case "Block ID" -> block.setBlockName(text(p));
+                    case "Storage Level" -> block.setStorageLevel(readFieldText(p, "description"));
+                    case "Memory Size" -> block.setMemorySize(longValue(p));
+                    case "Disk Size" -> block.setDiskSize(longValue(p));
+                    case "Block Manager ID" -> {
+                        if (p.currentToken() != JsonToken.START_OBJECT) {
+                            p.skipChildren();
+                            break;
+                        }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String bmField = p.currentName();
+                            p.nextToken();
+                            switch (bmField) {
+                                case "Executor ID" -> block.setExecutorId(scalarText(p));
+                                case "Host" -> block.setHost(scalarText(p));
+                                default -> p.skipChildren();
+                            }
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+
+        String blockId = block.getBlockName();
+        if (blockId == null || !blockId.startsWith("rdd_")) {
+            return null;
+        }
+        // 解析 rdd_1_5 -> rddId=1
+        block.setRddId(Integer.parseInt(blockId.split("_")[1]));
+        return new SparkEvent.BlockUpdated(block);
+    }
+
+    private SparkEvent.UnpersistRdd decodeUnpersistRdd(JsonParser p) throws IOException {
+        int rddId = -1;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("RDD ID".equals(field)) {
+                rddId = intValue(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new SparkEvent.UnpersistRdd(rddId);
+    }
+
+    /**
+     * 读取当前对象中指定字段的文本值，跳过其余字段；当前值不是对象时返回 null
+     */
+    private String readFieldText(JsonParser p, String name) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String result = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (name.equals(field)) {
+                result = scalarText(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 与 {@code JsonNode.asLong()} 语义一致：数字字符串会被解析，null / 非数字为 0；
+     * 值是对象或数组时也返回 0，并跳过整个子树，避免把其中的字段当成外层字段读取
+     */
+    private long longValue(JsonParser p) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return 0L;
+        }
+        return p.getValueAsLong();
+    }
+
+    private int intValue(JsonParser p) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return 0;
+        }
+        return p.getValueAsInt();
+    }
+
+    private boolean booleanValue(JsonParser p) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return false;
+        }
+        return p.getValueAsBoolean();
+    }
+
+    private String text(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : scalarText(p);
+    }
+
+    /**
+     * 与 {@code JsonNode.asText()} 语义一致：标量返回文本，null 返回 "null"，对象/数组返回空串
+     */
+    private String scalarText(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return "";
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        return p.getText();
+    }
+
+    /**
+     * 把当前子树原样拷贝成紧凑的 JSON 字符串，不经过 JsonNode
+     */
+    private String copyStructure(JsonParser p) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = factory.createGenerator(writer)) {
+            gen.copyCurrentStructure(p);
+        }
+        return writer.toString();
+    }
+
+    static LocalDateTime parseTimestamp(long timestamp) {
+        if (timestamp <= 0) return null;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), TimeZone.getDefault().toZoneId());
+    }
+}
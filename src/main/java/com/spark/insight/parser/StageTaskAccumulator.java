@@ -0,0 +1,158 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.TaskModel;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 单个 Stage attempt 的 Task 指标累加器，解析时每个 TaskEnd 更新一次。
+ * <p>
+ * 保存 updateStageMetrics 需要的所有求和 / 计数 / 最大值，以及 stage_statistics 中每个指标的 {@link QuantileSketch}，
+ * 文件结束时直接写出 Stage 指标和分布统计，不再对 tasks 做聚合扫描。
+ * 和 SQL 一样忽略 null：某一列在所有 Task 上都为 null 时，求和结果也是 null。
+ * <p>
+ * 非线程安全，只在解析线程上使用。
+ */
+class StageTaskAccumulator {
+
+    /**
+     * stage_aggregates_staging 中的求和列，顺序与建表语句一致
+     */
+    static final List<Column> SUM_COLUMNS = List.of(
+            new Column("total_gc", TaskModel::getGcTime),
+            new Column("total_duration", TaskModel::getDuration),
+            new Column("total_deser", TaskModel::getExecutorDeserializeTime),
+            new Column("total_ser", TaskModel::getResultSerializationTime),
+            new Column("total_get_res", TaskModel::getGettingResultTime),
+            new Column("total_delay", TaskModel::getSchedulerDelay),
+            new Column("total_peak_mem", TaskModel::getPeakExecutionMemory),
+            new Column("total_mem_spill", TaskModel::getMemoryBytesSpilled),
+            new Column("total_disk_spill", TaskModel::getDiskBytesSpilled),
+            new Column("total_sw_time", TaskModel::getShuffleWriteTime),
+            new Column("total_fetch_wait", TaskModel::getShuffleFetchWaitTime),
+            new Column("total_cpu_time", TaskModel::getExecutorCpuTime),
+            new Column("total_run_time", TaskModel::getExecutorRunTime),
+            new Column("total_input", TaskModel::getInputBytes),
+            new Column("total_input_records", TaskModel::getInputRecords),
+            new Column("total_output", TaskModel::getOutputBytes),
+            new Column("total_output_records", TaskModel::getOutputRecords),
+            new Column("total_shuffle_read", TaskModel::getShuffleReadBytes),
+            new Column("total_shuffle_read_records", TaskModel::getShuffleReadRecords),
+            new Column("total_shuffle_write", TaskModel::getShuffleWriteBytes),
+            new Column("total_shuffle_write_records", TaskModel::getShuffleWriteRecords));
+
+    /**
+     * stage_statistics 中的指标，名称与 insertTaskStats 一致
+     */
+    static final List<Column> METRICS = List.of(
+            new Column("duration", TaskModel::getDuration),
+            new Column("gc_time", TaskModel::getGcTime),
+            new Column("memory_spill", TaskModel::getMemoryBytesSpilled),
+            new Column("disk_spill", TaskModel::getDiskBytesSpilled),
+            new Column("shuffle_read", TaskModel::getShuffleReadBytes),
+            new Column("shuffle_read_records", TaskModel::getShuffleReadRecords),
+            new Column("shuffle_write", TaskModel::getShuffleWriteBytes),
+            new Column("shuffle_write_records", TaskModel::getShuffleWriteRecords),
+            new Column("task_deserialization_time", TaskModel::getExecutorDeserializeTime),
+            new Column("result_serialization_time", TaskModel::getResultSerializationTime),
+            new Column("getting_result_time", TaskModel::getGettingResultTime),
+            new Column("scheduler_delay", TaskModel::getSchedulerDelay),
+            new Column("peak_execution_memory", TaskModel::getPeakExecutionMemory),
+            new Column("input_bytes", TaskModel::getInputBytes),
+            new Column("input_records", TaskModel::getInputRecords),
+            new Column("shuffle_write_time", TaskModel::getShuffleWriteTime));
+
+    record Column(String name, Function<TaskModel, Long> getter) {
+    }
+
+    final int stageId;
+    final int attemptId;
+
+    private long doneTasks;
+    private long failedTasks;
+    private final long[] sums = new long[SUM_COLUMNS.size()];
+    // 第 i 位表示第 i 个求和列出现过非 null 值
+    private int sumsSeen;
+    private Long maxPeakMemory;
+    private final QuantileSketch[] sketches = new QuantileSketch[METRICS.size()];
+    private final Map<String, Long> locality = new TreeMap<>();
+
+    StageTaskAccumulator(int stageId, int attemptId) {
+        this.stageId = stageId;
+        this.attemptId = attemptId;
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new QuantileSketch();
+        }
+    }
+
+    void add(TaskModel task) {
+        String status = task.getStatus();
+        if ("SUCCESS".equals(status) || "SUCCEEDED".equals(status)) doneTasks++;
+        else if ("FAILED".equals(status)) failedTasks++;
+        for (int i = 0; i < sums.length; i++) {
+            Long v = SUM_COLUMNS.get(i).getter().apply(task);
+            if (v != null) {
+                sums[i] += v;
+                sumsSeen |= 1 << i;
+            }
+        }
+        Long peak = task.getPeakExecutionMemory();
+        if (peak != null && (maxPeakMemory == null || peak > maxPeakMemory)) maxPeakMemory = peak;
+        for (int i = 0; i < sketches.length; i++) {
+            Long v = METRICS.get(i).getter().apply(task);
+            if (v != null) sketches[i].add(v);
+        }
+        if (task.getLocality() != null) locality.merge(task.getLocality(), 1L, Long::sum);
+    }
+
+    /**
+     * 当前累加结果的快照，交给 dbWriter 写入，之后本对象继续在解析线程上累加
+     */
+    Snapshot snapshot() {
+        Long[] sumValues = new Long[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            sumValues[i] = (sumsSeen & (1 << i)) != 0 ? sums[i] : null;
+        }
+        QuantileSketch duration = sketches[0];
+        List<MetricSummary> metrics = new ArrayList<>(sketches.length);
+        for (int i = 0; i < sketches.length; i++) {
+            QuantileSketch s = sketches[i];
+            metrics.add(new MetricSummary(METRICS.get(i).name(), s.count(), s.min(), s.quantile(0.25), s.quantile(0.5),
+                    s.quantile(0.75), s.quantile(0.95), s.max(), Base64.getEncoder().encodeToString(s.toBytes())));
+        }
+        return new Snapshot(stageId, attemptId, doneTasks, failedTasks, sumValues, maxPeakMemory,
+                duration.quantile(0.5), duration.quantile(0.95), duration.quantile(0.99), duration.max(),
+                localitySummary(), metrics);
+    }
+
+    // 与 updateStageMetrics 的 histogram(locality) 输出相同："NODE_LOCAL: 10, PROCESS_LOCAL: 20"
+    private String localitySummary() {
+        if (locality.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : locality.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param sums   按 {@link #SUM_COLUMNS} 顺序
+     * @param p50    Task 耗时的分位数
+     */
+    record Snapshot(int stageId, int attemptId, long doneTasks, long failedTasks, Long[] sums, Long maxPeakMemory,
+                    Long p50, Long p95, Long p99, Long maxDuration, String localitySummary, List<MetricSummary> metrics) {
+    }
+
+    /**
+     * @param sketch Base64 编码的 {@link QuantileSketch#toBytes()}
+     */
+    record MetricSummary(String name, long count, Long min, Long p25, Long p50, Long p75, Long p95, Long max,
+                         String sketch) {
+    }
+}
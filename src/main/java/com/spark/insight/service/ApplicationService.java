@@ -7,4 +7,17 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class ApplicationService extends ServiceImpl<ApplicationMapper, ApplicationModel> {
+
+    /**
+     * 重新解析已经 READY 的 App 时，数据先写在 "appId#staged" 名下，全部完成后再一次性替换正式数据
+     */
+    public static final String STAGED_SUFFIX = "#staged";
+
+    public static String stagedId(String appId) {
+        return appId + STAGED_SUFFIX;
+    }
+
+    public static boolean isStaged(String appId) {
+        return appId.endsWith(STAGED_SUFFIX);
+    }
 }
@@ -0,0 +1,182 @@
+package com.spark.insight.service;
+
+import com.spark.insight.mapper.ParsedEventLogMapper;
+import com.spark.insight.model.ParsedEventLogModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * parsed_event_logs 的内存副本。
+ * <p>
+ * 启动时用一次查询全部加载，之后的变化检测都在内存中完成，不再对每个文件做一次 selectById；
+ * 修改先写内存，再由后台线程每 {@value #FLUSH_INTERVAL_MS}ms 批量写回 (一个事务)，关闭时写回剩余的修改。
+ * 返回的记录都是副本，修改必须通过 {@link #update}。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventLogCatalog {
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final ParsedEventLogMapper parsedLogMapper;
+    private final DataSource dataSource;
+
+    private final Map<String, ParsedEventLogModel> records = new ConcurrentHashMap<>();
+    // 抽样指纹 + 文件大小 → 路径，用于查找内容相同的日志
+    private final Map<String, Set<String>> byContent = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "eventlog-catalog-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void load() {
+        long start = System.currentTimeMillis();
+        for (ParsedEventLogModel record : parsedLogMapper.selectList(null)) {
+            records.put(record.getFilePath(), record);
+            index(null, record);
+        }
+        log.info("Loaded {} parsed event log records in {}ms", records.size(), System.currentTimeMillis() - start);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 记录的副本，不存在时返回 null
+     */
+    public ParsedEventLogModel get(String filePath) {
+        ParsedEventLogModel record = records.get(filePath);
+        return record != null ? copy(record) : null;
+    }
+
+    /**
+     * 按非空字段更新记录 (与 updateById 忽略 null 字段一致)，记录不存在时新建
+     */
+    public void update(ParsedEventLogModel changes) {
+        records.compute(changes.getFilePath(), (path, old) -> {
+            ParsedEventLogModel merged = old != null ? copy(old) : new ParsedEventLogModel();
+            BeanUtils.copyProperties(changes, merged, nullProperties(changes));
+            index(old, merged);
+            return merged;
+        });
+        dirty.add(changes.getFilePath());
+    }
+
+    /**
+     * 查找内容相同 (抽样指纹和大小都相同) 且已成功解析的另一个路径
+     */
+    public ParsedEventLogModel findParsedByContent(String fileHash, long fileSize, String excludePath) {
+        Set<String> paths = byContent.get(contentKey(fileHash, fileSize));
+        if (paths == null) return null;
+        for (String path : paths) {
+            ParsedEventLogModel record = records.get(path);
+            if (!path.equals(excludePath) && record != null && "SUCCESS".equals(record.getStatus())) {
+                return copy(record);
+            }
+        }
+        return null;
+    }
+
+    private void index(ParsedEventLogModel old, ParsedEventLogModel current) {
+        if (old != null && old.getFileHash() != null) {
+            Set<String> paths = byContent.get(contentKey(old.getFileHash(), old.getFileSize()));
+            if (paths != null) paths.remove(old.getFilePath());
+        }
+        if (current.getFileHash() != null) {
+            byContent.computeIfAbsent(contentKey(current.getFileHash(), current.getFileSize()), k -> ConcurrentHashMap.newKeySet())
+                    .add(current.getFilePath());
+        }
+    }
+
+    private static String contentKey(String fileHash, Long fileSize) {
+        return fileHash + ":" + fileSize;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to write back parsed event log records, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把所有修改过的记录在一个事务中写回数据库，失败时保留脏标记下次重试
+     */
+    public synchronized void flush() throws SQLException {
+        if (dirty.isEmpty()) return;
+        List<String> paths = new ArrayList<>(dirty);
+        dirty.removeAll(paths);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT OR REPLACE INTO parsed_event_logs (file_path, last_modified, file_size, file_hash, full_hash, " +
+                            "parsed_at, status, committed_offset, parser_state, duplicate_of) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (String path : paths) {
+                    ParsedEventLogModel r = records.get(path);
+                    if (r == null) continue;
+                    ps.setString(1, r.getFilePath());
+                    ps.setObject(2, r.getLastModified(), Types.BIGINT);
+                    ps.setObject(3, r.getFileSize(), Types.BIGINT);
+                    ps.setString(4, r.getFileHash());
+                    ps.setString(5, r.getFullHash());
+                    ps.setTimestamp(6, r.getParsedAt() != null ? Timestamp.valueOf(r.getParsedAt()) : null);
+                    ps.setString(7, r.getStatus());
+                    ps.setObject(8, r.getCommittedOffset(), Types.BIGINT);
+                    ps.setString(9, r.getParserState());
+                    ps.setString(10, r.getDuplicateOf());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                dirty.addAll(paths);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws SQLException {
+        flusher.shutdown();
+        flush();
+    }
+
+    private static ParsedEventLogModel copy(ParsedEventLogModel source) {
+        ParsedEventLogModel copy = new ParsedEventLogModel();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+
+    private static String[] nullProperties(ParsedEventLogModel source) {
+        org.springframework.beans.BeanWrapper wrapper = new org.springframework.beans.BeanWrapperImpl(source);
+        List<String> names = new ArrayList<>();
+        for (java.beans.PropertyDescriptor pd : wrapper.getPropertyDescriptors()) {
+            if (wrapper.isReadableProperty(pd.getName()) && wrapper.getPropertyValue(pd.getName()) == null) {
+                names.add(pd.getName());
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+}
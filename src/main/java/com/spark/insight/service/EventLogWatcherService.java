@@ -1,20 +1,28 @@
 package com.spark.insight.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spark.insight.config.InsightProperties;
-import com.spark.insight.mapper.ParsedEventLogMapper;
 import com.spark.insight.model.ParsedEventLogModel;
 import com.spark.insight.parser.EventParser;
+import com.spark.insight.parser.ParseCheckpoint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,17 +33,40 @@ public class EventLogWatcherService {
 
     private final InsightProperties properties;
     private final EventParser eventParser;
-    private final ParsedEventLogMapper parsedLogMapper;
-
-    // Create a pool for parsing to avoid blocking the scheduler thread
-    private final ExecutorService parseExecutor = Executors.newFixedThreadPool(10);
+    private final EventLogCatalog catalog;
+    private final ObjectMapper objectMapper;
+    // 按大小 / 优先级和字节预算调度解析任务，避免阻塞扫描线程
+    private final IngestionScheduler ingestionScheduler;
 
     // Track files currently in processing to avoid concurrent parsing of the same file
     private final Set<String> processingFiles = ConcurrentHashMap.newKeySet();
 
+    // 后台计算全文件指纹，校验抽样指纹做出的跳过 / 去重判断；单线程，避免和解析抢磁盘带宽
+    private final ExecutorService hashExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "eventlog-hasher");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private final Set<String> verifyingFiles = ConcurrentHashMap.newKeySet();
+
+    // 文件系统监听：目录 → WatchKey，变化的文件 → 最后一次事件的时间 (去抖动)
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Map<Path, Long> pendingChanges = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService debouncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "eventlog-debouncer");
+        t.setDaemon(true);
+        return t;
+    });
+
     private static final Pattern APP_ID_PATTERN = Pattern.compile("(spark-[a-zA-Z0-9\\-]+)");
     private static final Pattern INDEX_PATTERN = Pattern.compile("[-_](\\d+)[-_]");
 
+    /**
+     * 对账扫描：遍历整个目录树，作为文件系统监听漏掉事件 (网络文件系统、OVERFLOW) 时的兜底。
+     * 遍历时每个文件只取一次属性，与内存中的解析记录比较，只有存在未解析或有变化的文件的 App 才会提交解析。
+     */
     @Scheduled(fixedDelayString = "${insight.scheduler.scan-interval-seconds:10}000")
     public void scan() {
         if (!properties.getScheduler().isEnabled()) return;
@@ -44,46 +75,263 @@ public class EventLogWatcherService {
         File dir = new File(logPath);
         if (!dir.exists() || !dir.isDirectory()) return;
 
-        List<File> allFiles = new ArrayList<>();
-        collectFiles(dir, allFiles);
+        long start = System.currentTimeMillis();
+        Map<File, BasicFileAttributes> allFiles = new LinkedHashMap<>();
+        collectFiles(dir.toPath(), allFiles);
 
         // Group by App ID inferred from filename
-        Map<String, List<File>> appGroups = new HashMap<>();
-        List<File> standaloneFiles = new ArrayList<>();
+        List<File> standalone = new ArrayList<>();
+        Map<String, List<File>> appGroups = groupByApp(allFiles.keySet(), standalone);
+        Set<String> changedApps = new HashSet<>();
+        int submitted = 0;
 
-        for (File f : allFiles) {
+        for (Map.Entry<File, BasicFileAttributes> entry : allFiles.entrySet()) {
+            File f = entry.getKey();
+            if (!isChanged(entry.getValue(), catalog.get(f.getAbsolutePath()))) continue;
             String appId = inferAppId(f.getName());
             if (appId != null) {
-                appGroups.computeIfAbsent(appId, k -> new ArrayList<>()).add(f);
+                changedApps.add(appId);
             } else {
-                standaloneFiles.add(f);
+                // Process Standalone
+                if (submitStandalone(f)) submitted++;
             }
         }
 
         // Process App Groups (Sorted)
-        appGroups.forEach((appId, files) -> {
-            files.sort(Comparator.comparingInt(this::getFileIndex).thenComparing(File::getName));
-            // Submit as a single task per app to ensure sequential processing of rolling logs
-            parseExecutor.submit(() -> {
+        for (String appId : changedApps) {
+            if (submitGroup(appId, appGroups.get(appId))) submitted++;
+        }
+        log.debug("Reconciliation scan of {} files took {}ms, {} parse tasks submitted",
+                allFiles.size(), System.currentTimeMillis() - start, submitted);
+    }
+
+    /**
+     * 按文件名推断的 App ID 在整个目录树范围内分组。对账扫描和文件系统监听都用它组成解析任务，
+     * 同一个 App 在两条路径上得到同样的文件组，文件总数和最后一个文件也就一致
+     *
+     * @param standalone 无法推断 App ID 的文件加入这里
+     */
+    private Map<String, List<File>> groupByApp(Collection<File> files, List<File> standalone) {
+        Map<String, List<File>> groups = new HashMap<>();
+        for (File f : files) {
+            String appId = inferAppId(f.getName());
+            if (appId != null) {
+                groups.computeIfAbsent(appId, k -> new ArrayList<>()).add(f);
+            } else {
+                standalone.add(f);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 与 processFile 的判断一致的廉价预检查 (只比较记录，不读文件内容)
+     */
+    private boolean isChanged(BasicFileAttributes attrs, ParsedEventLogModel record) {
+        return record == null || !Objects.equals(record.getLastModified(), attrs.lastModifiedTime().toMillis())
+                || !Objects.equals(record.getFileSize(), attrs.size())
+                || "PROCESSING".equals(record.getStatus()) || "STALE".equals(record.getStatus());
+    }
+
+    /**
+     * 按文件序号排序后作为一个任务提交，保证同一 App 的滚动日志按顺序解析。
+     * 没有变化的文件会被跳过，被解析的不一定包括最后一个文件，所以整组处理完后显式调用 finishGroup 收尾
+     *
+     * @return App 正在解析时不提交，返回 false
+     */
+    private boolean submitGroup(String appId, List<File> files) {
+        files.sort(Comparator.comparingInt(this::getFileIndex).thenComparing(File::getName));
+        return ingestionScheduler.submit(appId, files, () -> {
+            try {
                 int total = files.size();
                 for (int i = 0; i < total; i++) {
                     processFile(files.get(i), i + 1, total);
                 }
-            });
+            } finally {
+                eventParser.finishGroup(files);
+            }
+        });
+    }
+
+    /**
+     * 无法推断 App ID 的单个日志，以文件路径作为调度的 key
+     */
+    private boolean submitStandalone(File file) {
+        return ingestionScheduler.submit(file.getAbsolutePath(), List.of(file), () -> {
+            try {
+                processFile(file, 1, 1);
+            } finally {
+                eventParser.finishGroup(List.of(file));
+            }
         });
+    }
+
+    @PostConstruct
+    void startWatching() {
+        InsightProperties.Scheduler config = properties.getScheduler();
+        if (!config.isEnabled() || !config.isWatch()) return;
+        Path root = Paths.get(properties.getEventLogPath());
+        if (!Files.isDirectory(root)) {
+            log.warn("Event log path {} does not exist, relying on reconciliation scans", root);
+            return;
+        }
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            long start = System.currentTimeMillis();
+            registerTree(root, false);
+            log.info("Watching {} directories under {} ({}ms)", watchedDirs.size(), root, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.warn("Failed to watch {}, relying on reconciliation scans: {}", root, e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "eventlog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        long debounce = Math.max(100, config.getDebounceMillis());
+        debouncer.scheduleWithFixedDelay(this::dispatchSettled, debounce, Math.min(debounce, 500), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopWatching() throws IOException {
+        debouncer.shutdownNow();
+        if (watchService != null) watchService.close();
+    }
+
+    /**
+     * 注册目录及其所有子目录
+     *
+     * @param enqueueFiles 新建的目录里可能已经有文件 (例如整个目录被移动进来)，一并加入待解析
+     */
+    private void registerTree(Path dir, boolean enqueueFiles) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                if (d.getFileName() != null && d.getFileName().toString().startsWith(".") && !d.equals(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, d);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (enqueueFiles) enqueue(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("Cannot visit {}: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.warn("File system events overflowed, running a reconciliation scan");
+                    Thread.ofVirtual().name("eventlog-rescan").start(this::scan);
+                    continue;
+                }
+                if (dir == null) continue;
+                Path child = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        registerTree(child, true);
+                    } catch (IOException e) {
+                        log.warn("Failed to watch new directory {}: {}", child, e.getMessage());
+                    }
+                } else {
+                    enqueue(child);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
 
-        // Process Standalone
-        standaloneFiles.forEach(f -> parseExecutor.submit(() -> processFile(f, 1, 1)));
+    private void enqueue(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(".") && isValidLogFile(file.toFile())) {
+            pendingChanges.put(file, System.currentTimeMillis());
+        }
     }
 
-    private void collectFiles(File file, List<File> result) {
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (File f : files) collectFiles(f, result);
+    /**
+     * 提交已经静默超过去抖动时间的文件。滚动日志按 App 提交整组文件，分组与对账扫描相同 (整个目录树)，
+     * App 正在解析时留到下一轮
+     */
+    private void dispatchSettled() {
+        try {
+            long settledBefore = System.currentTimeMillis() - properties.getScheduler().getDebounceMillis();
+            Set<String> apps = new HashSet<>();
+            for (Map.Entry<Path, Long> entry : pendingChanges.entrySet()) {
+                if (entry.getValue() > settledBefore) continue;
+                Path file = entry.getKey();
+                String appId = inferAppId(file.getFileName().toString());
+                if (appId == null) {
+                    if (!Files.isRegularFile(file)) {
+                        pendingChanges.remove(file, entry.getValue());
+                    } else if (submitStandalone(file.toFile())) {
+                        pendingChanges.remove(file, entry.getValue());
+                    }
+                } else {
+                    apps.add(appId);
+                }
             }
-        } else if (file.isFile() && !file.getName().startsWith(".") && isValidLogFile(file)) {
-            result.add(file);
+            if (apps.isEmpty()) return;
+
+            Map<File, BasicFileAttributes> allFiles = new LinkedHashMap<>();
+            collectFiles(Paths.get(properties.getEventLogPath()), allFiles);
+            Map<String, List<File>> appGroups = groupByApp(allFiles.keySet(), new ArrayList<>());
+            for (String appId : apps) {
+                List<File> files = appGroups.get(appId);
+                if (files == null) {
+                    pendingChanges.keySet().removeIf(p -> appId.equals(inferAppId(p.getFileName().toString())));
+                    continue;
+                }
+                if (submitGroup(appId, files)) {
+                    // collectFiles 返回绝对路径，监听到的路径相对于配置的目录
+                    Set<Path> submitted = new HashSet<>();
+                    for (File f : files) submitted.add(f.toPath());
+                    pendingChanges.keySet().removeIf(p -> submitted.contains(p.toAbsolutePath()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to dispatch file system changes", e);
+        }
+    }
+
+    private void collectFiles(Path root, Map<File, BasicFileAttributes> result) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    File file = path.toFile();
+                    if (attrs.isRegularFile() && !file.getName().startsWith(".") && isValidLogFile(file)) {
+                        result.put(file.getAbsoluteFile(), attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to scan {}: {}", root, e.getMessage());
         }
     }
 
@@ -112,6 +360,23 @@ public class EventLogWatcherService {
         return name.startsWith("event");
     }
 
+    /**
+     * 上次成功解析后文件只变长了 (还在写入的日志)，从上次的断点继续；其他情况从头解析
+     */
+    private ParseCheckpoint resumePoint(ParsedEventLogModel record, long fileSize) {
+        if (record == null || !"SUCCESS".equals(record.getStatus()) || record.getFileSize() == null
+                || fileSize <= record.getFileSize() || record.getCommittedOffset() == null
+                || record.getCommittedOffset() <= 0 || record.getParserState() == null || record.getParserState().isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(record.getParserState(), ParseCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable parser state of {}: {}", record.getFilePath(), e.getMessage());
+            return null;
+        }
+    }
+
     private void processFile(File file, int currentIdx, int totalFiles) {
         String absolutePath = file.getAbsolutePath();
         
@@ -120,10 +385,17 @@ public class EventLogWatcherService {
             return;
         }
 
-        long lastModified = file.lastModified();
-        long fileSize = file.length();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            log.debug("Skipping {}: {}", absolutePath, e.getMessage());
+            return;
+        }
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        long fileSize = attrs.size();
 
-        ParsedEventLogModel record = parsedLogMapper.selectById(absolutePath);
+        ParsedEventLogModel record = catalog.get(absolutePath);
         boolean needsParse = false;
 
         if (record == null) {
@@ -131,13 +403,26 @@ public class EventLogWatcherService {
             needsParse = true;
         } else {
             // Check if file has been modified since last parse
-            if (record.getLastModified() != lastModified || record.getFileSize() != fileSize || "PROCESSING".equals(record.getStatus())) {
+            if (record.getLastModified() != lastModified || record.getFileSize() != fileSize
+                    || "PROCESSING".equals(record.getStatus()) || "STALE".equals(record.getStatus())) {
                 log.info("Log file change or retry needed: {} (Status: {}, Size: {} -> {}, Mod: {} -> {})",
                         file.getName(), record.getStatus(), record.getFileSize(), fileSize, record.getLastModified(), lastModified);
                 needsParse = true;
             }
         }
 
+        String fingerprint = null;
+        if (needsParse) {
+            try {
+                fingerprint = EventLogFingerprint.sampled(file);
+            } catch (Exception e) {
+                log.warn("Failed to fingerprint {}: {}", file.getName(), e.getMessage());
+            }
+            if (fingerprint != null && skipUnchanged(file, record, lastModified, fileSize, fingerprint)) {
+                needsParse = false;
+            }
+        }
+
         if (needsParse) {
             processingFiles.add(absolutePath);
             try {
@@ -147,14 +432,14 @@ public class EventLogWatcherService {
                 startRecord.setLastModified(lastModified);
                 startRecord.setFileSize(fileSize);
                 startRecord.setStatus("PROCESSING");
+                startRecord.setFileHash(fingerprint);
                 startRecord.setParsedAt(LocalDateTime.now());
-                if (record == null) {
-                    parsedLogMapper.insert(startRecord);
-                } else {
-                    parsedLogMapper.updateById(startRecord);
-                }
+                catalog.update(startRecord);
 
-                eventParser.parse(file, currentIdx, totalFiles);
+                ParseCheckpoint resume = resumePoint(record, fileSize);
+                ParseCheckpoint checkpoint = eventParser.parse(file, currentIdx, totalFiles, resume);
+                // 从断点继续的解析和还在写入的日志不计算全文件指纹：每次追加都重读整个文件会让 I/O 随文件变长成平方增长
+                boolean growing = resume != null || file.getName().endsWith(".inprogress");
 
                 // Update record in DB
                 ParsedEventLogModel newRecord = new ParsedEventLogModel();
@@ -163,7 +448,15 @@ public class EventLogWatcherService {
                 newRecord.setFileSize(fileSize);
                 newRecord.setParsedAt(LocalDateTime.now());
                 newRecord.setStatus("SUCCESS");
-                parsedLogMapper.updateById(newRecord);
+                newRecord.setFileHash(fingerprint);
+                // 不支持增量的日志写入 0，下次变化时从头解析
+                newRecord.setCommittedOffset(checkpoint != null ? checkpoint.offset() : 0L);
+                newRecord.setParserState(checkpoint != null ? objectMapper.writeValueAsString(checkpoint) : "");
+                // 内容已经变化，旧的全文件指纹作废 (空字符串表示没有)
+                if (growing) newRecord.setFullHash("");
+                catalog.update(newRecord);
+                // 日志写完后只记录一次新的全文件指纹
+                if (!growing) scheduleVerify(file, null, null);
             } catch (Exception e) {
                 log.error("Failed to parse " + file.getName(), e);
                 // Record failure state
@@ -173,10 +466,99 @@ public class EventLogWatcherService {
                 failedRecord.setFileSize(fileSize);
                 failedRecord.setParsedAt(LocalDateTime.now());
                 failedRecord.setStatus("FAILED");
-                parsedLogMapper.updateById(failedRecord);
+                catalog.update(failedRecord);
             } finally {
                 processingFiles.remove(absolutePath);
             }
         }
     }
+
+    /**
+     * 用抽样指纹判断这次变化能否跳过解析：
+     * <ul>
+     *     <li>只是 mtime 变化 (touch、NFS 时钟漂移)，内容与上次成功解析时相同</li>
+     *     <li>内容与另一个已成功解析的路径相同 (同一个日志被复制或链接到了别处)</li>
+     * </ul>
+     * 跳过的判断都会在后台用全文件指纹再校验一次，不一致时标记为 STALE，下次扫描重新解析。
+     */
+    private boolean skipUnchanged(File file, ParsedEventLogModel record, long lastModified, long fileSize, String fingerprint) {
+        String path = file.getAbsolutePath();
+        if (record != null && "SUCCESS".equals(record.getStatus()) && Objects.equals(record.getFileSize(), fileSize)
+                && fingerprint.equals(record.getFileHash())) {
+            log.info("{} was modified ({} -> {}) but its content is unchanged, skipping", file.getName(), record.getLastModified(), lastModified);
+            ParsedEventLogModel touched = new ParsedEventLogModel();
+            touched.setFilePath(path);
+            touched.setLastModified(lastModified);
+            catalog.update(touched);
+            scheduleVerify(file, record.getFullHash(), null);
+            return true;
+        }
+
+        ParsedEventLogModel original = catalog.findParsedByContent(fingerprint, fileSize, path);
+        if (original == null) return false;
+
+        log.info("{} has the same content as already parsed {}, skipping", path, original.getFilePath());
+        ParsedEventLogModel duplicate = new ParsedEventLogModel();
+        duplicate.setFilePath(path);
+        duplicate.setLastModified(lastModified);
+        duplicate.setFileSize(fileSize);
+        duplicate.setFileHash(fingerprint);
+        duplicate.setParsedAt(LocalDateTime.now());
+        duplicate.setStatus("DUPLICATE");
+        duplicate.setDuplicateOf(original.getFilePath());
+        catalog.update(duplicate);
+        scheduleVerify(file, null, original);
+        return true;
+    }
+
+    /**
+     * 在后台计算全文件指纹并保存，与期望值不一致时标记为 STALE
+     *
+     * @param expected 期望的全文件指纹 (跳过 touch 时为上次的全文件指纹)，为空时只保存
+     * @param original 判定为内容相同的已解析记录，与它的全文件指纹比较 (没有时顺带计算)
+     */
+    private void scheduleVerify(File file, String expected, ParsedEventLogModel original) {
+        String path = file.getAbsolutePath();
+        if (!verifyingFiles.add(path)) return;
+        hashExecutor.submit(() -> {
+            try {
+                ParsedEventLogModel record = catalog.get(path);
+                if (record == null) return;
+                long start = System.currentTimeMillis();
+                String fullHash = EventLogFingerprint.full(file);
+                log.debug("Full fingerprint of {} took {}ms", file.getName(), System.currentTimeMillis() - start);
+
+                String expectedHash = emptyToNull(expected);
+                if (original != null) {
+                    expectedHash = emptyToNull(original.getFullHash());
+                    File originalFile = new File(original.getFilePath());
+                    if (expectedHash == null && originalFile.isFile()) {
+                        expectedHash = EventLogFingerprint.full(originalFile);
+                        ParsedEventLogModel update = new ParsedEventLogModel();
+                        update.setFilePath(original.getFilePath());
+                        update.setFullHash(expectedHash);
+                        catalog.update(update);
+                    }
+                }
+
+                ParsedEventLogModel update = new ParsedEventLogModel();
+                update.setFilePath(path);
+                update.setFullHash(fullHash);
+                if (expectedHash != null && !expectedHash.equals(fullHash) && !"PROCESSING".equals(record.getStatus())) {
+                    log.warn("Full fingerprint of {} does not match the sampled check ({} != {}), scheduling a reparse",
+                            file.getName(), fullHash, expectedHash);
+                    update.setStatus("STALE");
+                }
+                catalog.update(update);
+            } catch (Exception e) {
+                log.warn("Failed to verify fingerprint of {}: {}", file.getName(), e.getMessage());
+            } finally {
+                verifyingFiles.remove(path);
+            }
+        });
+    }
+
+    private static String emptyToNull(String hash) {
+        return hash == null || hash.isEmpty() ? null : hash;
+    }
 }
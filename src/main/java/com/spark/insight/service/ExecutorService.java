@@ -5,9 +5,18 @@ import com.spark.insight.mapper.ExecutorMapper;
 import com.spark.insight.model.ExecutorModel;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class ExecutorService extends ServiceImpl<ExecutorMapper, ExecutorModel> {
     public void calculateExecutorMetrics(String appId) {
-        baseMapper.updateExecutorMetrics(appId);
+        calculateExecutorMetrics(appId, null);
+    }
+
+    /**
+     * @param executorIds 只重算这些 Executor，null 表示全部
+     */
+    public void calculateExecutorMetrics(String appId, List<String> executorIds) {
+        baseMapper.updateExecutorMetrics(appId, executorIds);
     }
 }
@@ -0,0 +1,236 @@
+package com.spark.insight.service;
+
+import com.spark.insight.model.ApplicationModel;
+import com.spark.insight.model.dto.IngestionProgress;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 解析进度登记表。
+ * <p>
+ * 解析线程每处理完一个块就更新一次内存中的进度 (字节数、行数、事件数)，不再写数据库；
+ * 一个独立的推送线程每 {@value #PUSH_INTERVAL_MS}ms 把有变化的进度通过 SSE 推给订阅者。
+ * 数据库只在状态变化 (开始解析、文件切换、READY) 时由解析器写入。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionProgressService {
+
+    public static final String PARSING = "PARSING";
+    public static final String POST_PROCESSING = "POST_PROCESSING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    private static final long PUSH_INTERVAL_MS = 500;
+    private static final long SSE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+
+    private final ApplicationService applicationService;
+    private final IngestionScheduler ingestionScheduler;
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService pusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ingestion-progress-pusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void startPusher() {
+        pusher.scheduleWithFixedDelay(this::pushChanged, PUSH_INTERVAL_MS, PUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 单个 App 的进度，由解析线程写、推送线程和请求线程读，访问时对自身加锁
+     */
+    private static class Tracker {
+        final IngestionProgress progress = new IngestionProgress();
+        long fileStartNanos;
+        long version;
+        long pushedVersion;
+
+        synchronized IngestionProgress snapshot() {
+            IngestionProgress copy = new IngestionProgress();
+            BeanUtils.copyProperties(progress, copy);
+            return copy;
+        }
+    }
+
+    /**
+     * 解析线程上调用，只更新内存
+     *
+     * @param bytesRead  当前文件已读取的字节数
+     * @param totalBytes 当前文件的总字节数
+     */
+    public void update(String appId, String fileName, int fileIndex, int totalFiles,
+                       long bytesRead, long totalBytes, long lineCount, long eventCount) {
+        Tracker tracker = trackers.computeIfAbsent(appId, k -> new Tracker());
+        synchronized (tracker) {
+            IngestionProgress p = tracker.progress;
+            if (!fileName.equals(p.getFileName())) {
+                tracker.fileStartNanos = System.nanoTime();
+            }
+            p.setAppId(appId);
+            p.setState(PARSING);
+            p.setFileName(fileName);
+            p.setFileIndex(fileIndex);
+            p.setTotalFiles(totalFiles);
+            p.setBytesRead(bytesRead);
+            p.setTotalBytes(totalBytes);
+            p.setLineCount(lineCount);
+            p.setEventCount(eventCount);
+
+            double elapsedSec = (System.nanoTime() - tracker.fileStartNanos) / 1e9;
+            p.setEventsPerSecond(elapsedSec > 0 ? eventCount / elapsedSec : 0);
+            double bytesPerSec = elapsedSec > 0 ? bytesRead / elapsedSec : 0;
+            if (totalBytes > 0 && bytesPerSec > 0) {
+                // 滚动日志的各个文件大小基本一致，剩余文件按当前文件大小估算
+                long remaining = Math.max(0, totalBytes - bytesRead) + (long) Math.max(0, totalFiles - fileIndex) * totalBytes;
+                p.setEtaSeconds((long) Math.ceil(remaining / bytesPerSec));
+            } else {
+                p.setEtaSeconds(null);
+            }
+            p.setMessage(String.format("Processing file %d/%d (Lines processed: %d)", fileIndex, totalFiles, lineCount));
+            p.setUpdatedAt(System.currentTimeMillis());
+            tracker.version++;
+        }
+    }
+
+    /**
+     * 所有文件都已读完，正在计算 Stage / Job 等汇总指标
+     */
+    public void postProcessing(String appId) {
+        Tracker tracker = trackers.get(appId);
+        if (tracker == null) return;
+        synchronized (tracker) {
+            tracker.progress.setState(POST_PROCESSING);
+            tracker.progress.setEtaSeconds(null);
+            tracker.progress.setMessage("Calculating metrics...");
+            tracker.progress.setUpdatedAt(System.currentTimeMillis());
+            tracker.version++;
+        }
+    }
+
+    /**
+     * 解析结束 (READY 或 FAILED)：推送最终状态，关闭所有订阅并移除进度
+     */
+    public void finish(String appId, boolean failed) {
+        Tracker tracker = trackers.remove(appId);
+        IngestionProgress last;
+        if (tracker != null) {
+            synchronized (tracker) {
+                tracker.progress.setState(failed ? FAILED : READY);
+                tracker.progress.setEtaSeconds(null);
+                tracker.progress.setMessage(failed ? "Parsing failed" : null);
+                tracker.progress.setUpdatedAt(System.currentTimeMillis());
+            }
+            last = tracker.snapshot();
+        } else {
+            last = new IngestionProgress();
+            last.setAppId(appId);
+            last.setState(failed ? FAILED : READY);
+            last.setUpdatedAt(System.currentTimeMillis());
+        }
+        pusher.execute(() -> {
+            List<SseEmitter> emitters = subscribers.remove(appId);
+            if (emitters != null) {
+                for (SseEmitter emitter : emitters) {
+                    if (send(emitter, last)) {
+                        emitter.complete();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 正在解析的 App 的进度副本，没有在解析时返回 null
+     */
+    public IngestionProgress get(String appId) {
+        Tracker tracker = trackers.get(appId);
+        return tracker != null ? tracker.snapshot() : null;
+    }
+
+    /**
+     * 订阅进度推送。订阅时立即推送一次当前状态；App 已经解析完成 (READY / FAILED)，
+     * 或者既不在解析也不在排队、之后不会再有推送时，推送后直接结束
+     */
+    public SseEmitter subscribe(String appId) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        subscribers.compute(appId, (k, emitters) -> {
+            if (emitters == null) emitters = new CopyOnWriteArrayList<>();
+            emitters.add(emitter);
+            return emitters;
+        });
+        Runnable remove = () -> unsubscribe(appId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        IngestionProgress current = get(appId);
+        boolean finished = false;
+        if (current == null) {
+            current = new IngestionProgress();
+            current.setAppId(appId);
+            ApplicationModel app = applicationService.getById(appId);
+            current.setState(app != null && app.getParsingStatus() != null ? app.getParsingStatus() : PARSING);
+            current.setMessage(app != null ? app.getParsingProgress() : "Waiting for event log...");
+            current.setUpdatedAt(System.currentTimeMillis());
+            finished = READY.equals(current.getState()) || FAILED.equals(current.getState())
+                    || (app == null && !ingestionScheduler.isPending(appId));
+        }
+        if (send(emitter, current) && finished) {
+            unsubscribe(appId, emitter);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * 移除一个订阅，App 的最后一个订阅移除时连同列表一起删除
+     */
+    private void unsubscribe(String appId, SseEmitter emitter) {
+        subscribers.computeIfPresent(appId, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void pushChanged() {
+        for (Map.Entry<String, List<SseEmitter>> entry : subscribers.entrySet()) {
+            Tracker tracker = trackers.get(entry.getKey());
+            if (tracker == null || entry.getValue().isEmpty()) continue;
+            IngestionProgress snapshot;
+            synchronized (tracker) {
+                if (tracker.version == tracker.pushedVersion) continue;
+                tracker.pushedVersion = tracker.version;
+                snapshot = tracker.snapshot();
+            }
+            for (SseEmitter emitter : entry.getValue()) {
+                send(emitter, snapshot);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, IngestionProgress progress) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(progress));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            log.debug("Dropping progress subscriber of {}: {}", progress.getAppId(), e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.spark.insight.service;
+
+import com.spark.insight.config.InsightProperties;
+import com.spark.insight.model.dto.IngestionQueueStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 解析任务调度。
+ * <p>
+ * 每个 App (滚动日志的一组文件) 是一个任务，在一个虚拟线程上按顺序解析整组文件，组内不会并发。
+ * 排队的任务按优先级出队：被用户打开 (bump) 的最先，其次按配置小任务优先或最近修改优先；
+ * 同时运行的任务数和日志总字节数受预算限制，超过预算的单个大任务只在没有其他任务运行时执行，
+ * 避免几个大 App 同时解析耗尽堆内存，也避免一个大 App 堵住后面成百上千个小 App。
+ */
+@Slf4j
+@Service
+public class IngestionScheduler {
+
+    private final InsightProperties.Scheduler config;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, Job> queued = new HashMap<>();
+    private final Map<String, Job> running = new LinkedHashMap<>();
+    private long bytesInFlight;
+    private long bumpSeq;
+
+    public IngestionScheduler(InsightProperties properties, MeterRegistry meterRegistry) {
+        this.config = properties.getScheduler();
+        // 排队的 App 数和最早排队的等待时间用于对解析积压告警
+        Gauge.builder("insight.ingest.queue.apps", this, s -> s.count(false)).tag("state", "queued").register(meterRegistry);
+        Gauge.builder("insight.ingest.queue.apps", this, s -> s.count(true)).tag("state", "running").register(meterRegistry);
+        Gauge.builder("insight.ingest.queue.bytes", this, IngestionScheduler::queuedBytes).tag("state", "queued")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("insight.ingest.queue.bytes", this, IngestionScheduler::inFlightBytes).tag("state", "running")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("insight.ingest.queue.oldest.wait", this, IngestionScheduler::oldestWaitSeconds)
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    private static class Job {
+        final String key;
+        final int fileCount;
+        final long bytes;
+        final long lastModified;
+        final long submittedAt = System.currentTimeMillis();
+        final Runnable work;
+        // 0 表示没有被 bump，越大越晚被 bump (越靠前)
+        long bumpedAt;
+        Long startedAt;
+
+        Job(String key, List<File> files, Runnable work) {
+            this.key = key;
+            this.fileCount = files.size();
+            this.bytes = files.stream().mapToLong(File::length).sum();
+            this.lastModified = files.stream().mapToLong(File::lastModified).max().orElse(0);
+            this.work = work;
+        }
+    }
+
+    /**
+     * 提交一个 App 的解析任务
+     *
+     * @param key 同一 key 已在排队或运行时不重复提交
+     * @return 是否提交成功
+     */
+    public synchronized boolean submit(String key, List<File> files, Runnable work) {
+        if (isPending(key)) return false;
+        queued.put(key, new Job(key, files, work));
+        dispatch();
+        return true;
+    }
+
+    /**
+     * 把排队中的 App 移到队首 (用户正在查看它)
+     *
+     * @return App 在排队时返回 true
+     */
+    public synchronized boolean bump(String key) {
+        Job job = queued.get(key);
+        if (job == null) return false;
+        job.bumpedAt = ++bumpSeq;
+        log.info("Bumped {} to the front of the ingestion queue", key);
+        dispatch();
+        return true;
+    }
+
+    /**
+     * @return 任务在排队或正在运行
+     */
+    public synchronized boolean isPending(String key) {
+        return queued.containsKey(key) || running.containsKey(key);
+    }
+
+    private Comparator<Job> order() {
+        Comparator<Job> bumped = Comparator.comparingLong((Job j) -> j.bumpedAt).reversed();
+        Comparator<Job> rest = config.getPriority() == InsightProperties.IngestionPriority.NEWEST_FIRST
+                ? Comparator.comparingLong((Job j) -> j.lastModified).reversed()
+                : Comparator.comparingLong((Job j) -> j.bytes);
+        return bumped.thenComparing(rest).thenComparingLong(j -> j.submittedAt);
+    }
+
+    private List<Job> queuedInOrder() {
+        List<Job> jobs = new ArrayList<>(queued.values());
+        jobs.sort(order());
+        return jobs;
+    }
+
+    /**
+     * 按优先级启动放得进预算的任务。队首放不下时停止，不让后面的任务插队
+     */
+    private void dispatch() {
+        long budget = Math.max(1, config.getMaxBytesInFlightMb()) * 1024L * 1024L;
+        int maxApps = Math.max(1, config.getMaxConcurrentApps());
+        for (Job job : queuedInOrder()) {
+            if (running.size() >= maxApps) return;
+            if (!running.isEmpty() && bytesInFlight + job.bytes > budget) return;
+            queued.remove(job.key);
+            running.put(job.key, job);
+            bytesInFlight += job.bytes;
+            job.startedAt = System.currentTimeMillis();
+            executor.submit(() -> run(job));
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            job.work.run();
+        } catch (Exception e) {
+            log.error("Ingestion of {} failed", job.key, e);
+        } finally {
+            synchronized (this) {
+                running.remove(job.key);
+                bytesInFlight -= job.bytes;
+                dispatch();
+            }
+        }
+    }
+
+    private synchronized double count(boolean isRunning) {
+        return isRunning ? running.size() : queued.size();
+    }
+
+    private synchronized double queuedBytes() {
+        return queued.values().stream().mapToLong(j -> j.bytes).sum();
+    }
+
+    private synchronized double inFlightBytes() {
+        return bytesInFlight;
+    }
+
+    private synchronized double oldestWaitSeconds() {
+        long oldest = queued.values().stream().mapToLong(j -> j.submittedAt).min().orElse(System.currentTimeMillis());
+        return (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    public synchronized IngestionQueueStatus status() {
+        IngestionQueueStatus status = new IngestionQueueStatus();
+        status.setPriority(config.getPriority().name());
+        status.setBytesInFlight(bytesInFlight);
+        status.setMaxBytesInFlight(Math.max(1, config.getMaxBytesInFlightMb()) * 1024L * 1024L);
+        status.setMaxConcurrentApps(Math.max(1, config.getMaxConcurrentApps()));
+        running.values().forEach(j -> status.getRunning().add(entry(j)));
+        queuedInOrder().forEach(j -> status.getQueued().add(entry(j)));
+        return status;
+    }
+
+    private static IngestionQueueStatus.Entry entry(Job job) {
+        IngestionQueueStatus.Entry e = new IngestionQueueStatus.Entry();
+        e.setKey(job.key);
+        e.setFileCount(job.fileCount);
+        e.setBytes(job.bytes);
+        e.setBumped(job.bumpedAt > 0);
+        e.setSubmittedAt(job.submittedAt);
+        e.setStartedAt(job.startedAt);
+        return e;
+    }
+}
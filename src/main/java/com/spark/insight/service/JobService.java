@@ -5,11 +5,20 @@ import com.spark.insight.mapper.JobMapper;
 import com.spark.insight.model.JobModel;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class JobService extends ServiceImpl<JobMapper, JobModel> {
 
     public void calculateJobMetrics(String appId) {
-        baseMapper.calculateJobMetrics(appId);
+        calculateJobMetrics(appId, null);
+    }
+
+    /**
+     * @param jobIds 只重算这些 Job，null 表示全部
+     */
+    public void calculateJobMetrics(String appId, List<Integer> jobIds) {
+        baseMapper.calculateJobMetrics(appId, jobIds);
     }
 
     public JobModel getJob(String appId, Integer jobId) {
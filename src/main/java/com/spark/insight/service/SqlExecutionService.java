@@ -5,9 +5,18 @@ import com.spark.insight.mapper.SqlExecutionMapper;
 import com.spark.insight.model.SqlExecutionModel;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class SqlExecutionService extends ServiceImpl<SqlExecutionMapper, SqlExecutionModel> {
     public void calculateSqlMetrics(String appId) {
-        baseMapper.calculateSqlMetrics(appId);
+        calculateSqlMetrics(appId, null, null);
+    }
+
+    /**
+     * 只重算指定的 SQL 以及指定 Job 所属的 SQL，任一列表为 null 时重算全部
+     */
+    public void calculateSqlMetrics(String appId, List<Integer> jobIds, List<Long> sqlIds) {
+        baseMapper.calculateSqlMetrics(appId, jobIds, sqlIds);
     }
 }
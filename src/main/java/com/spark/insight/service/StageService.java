@@ -6,11 +6,17 @@ import com.spark.insight.mapper.StageMapper;
 import com.spark.insight.mapper.StageStatisticsMapper;
 import com.spark.insight.model.StageModel;
 import com.spark.insight.model.StageStatisticsModel;
+import com.spark.insight.model.dto.TaskMetricDistribution;
+import com.spark.insight.parser.QuantileSketch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -27,13 +33,70 @@ public class StageService extends ServiceImpl<StageMapper, StageModel> {
      * 利用 DuckDB 的强大分析能力进行后期预计算
      */
     public void calculateStageMetrics(String appId) {
-        log.info("Calculating advanced metrics for App: {}", appId);
+        calculateStageMetrics(appId, null);
+    }
+
+    /**
+     * 只重算指定 Stage (包括它的所有 attempt) 的聚合指标和分布统计
+     *
+     * @param stageIds null 表示全部 Stage
+     */
+    public void calculateStageMetrics(String appId, List<Integer> stageIds) {
+        log.info("Calculating advanced metrics for App: {} ({} stages)", appId, stageIds == null ? "all" : stageIds.size());
         StageMapper mapper = (StageMapper) getBaseMapper();
+        long start = System.currentTimeMillis();
         // 1. 更新 Stage 表的基础聚合字段
-        mapper.updateStageMetrics(appId);
+        mapper.updateStageMetrics(appId, stageIds);
+        long metricsDone = System.currentTimeMillis();
         // 2. 清理旧统计并插入新统计
-        mapper.deleteStageStats(appId);
-        mapper.insertTaskStats(appId);
+        mapper.deleteStageStats(appId, stageIds);
+        mapper.insertTaskStats(appId, stageIds);
+        // 按 SQL 重算的 Stage 没有新的草图，旧草图可能已经过时
+        mapper.deleteStageSketches(appId, stageIds);
+        log.info("Stage metrics for App {}: updateStageMetrics {}ms, stage_statistics {}ms",
+                appId, metricsDone - start, System.currentTimeMillis() - metricsDone);
+    }
+
+    /**
+     * 写入解析时累加的 Stage 指标、分布统计和草图 (本批次的 stage_aggregates_staging / stage_sketches_staging)
+     */
+    public void applyStageAggregates(String appId, long loadId) {
+        baseMapper.applyStageAggregates(appId, loadId);
+        baseMapper.upsertStreamedStageStats(appId, loadId);
+        baseMapper.upsertStageSketches(appId, loadId);
+    }
+
+    /**
+     * Job / SQL / 整个 App 的 Task 指标分布：合并范围内各 Stage 的草图，不扫描 tasks。
+     * 有 Stage 没有草图 (按 SQL 重算过) 时退回扫描 tasks。
+     *
+     * @param jobId       不为 null 时只统计该 Job 的 Stage
+     * @param executionId 不为 null 时只统计该 SQL 的 Job 的 Stage
+     */
+    public List<TaskMetricDistribution> getTaskDistribution(String appId, Integer jobId, Long executionId) {
+        if (baseMapper.countStagesWithoutSketch(appId, jobId, executionId) > 0) {
+            return baseMapper.selectTaskDistribution(appId, jobId, executionId);
+        }
+        Map<String, QuantileSketch> merged = new LinkedHashMap<>();
+        for (Map<String, Object> row : baseMapper.selectStageSketches(appId, jobId, executionId)) {
+            QuantileSketch sketch = QuantileSketch.fromBytes(Base64.getDecoder().decode((String) row.get("sketch")));
+            merged.computeIfAbsent((String) row.get("metricName"), k -> new QuantileSketch()).merge(sketch);
+        }
+        List<TaskMetricDistribution> result = new ArrayList<>(merged.size());
+        merged.forEach((metric, sketch) -> {
+            if (sketch.count() == 0) return;
+            TaskMetricDistribution d = new TaskMetricDistribution();
+            d.setMetricName(metric);
+            d.setTaskCount(sketch.count());
+            d.setMinValue(sketch.min());
+            d.setP25(sketch.quantile(0.25));
+            d.setP50(sketch.quantile(0.5));
+            d.setP75(sketch.quantile(0.75));
+            d.setP95(sketch.quantile(0.95));
+            d.setMaxValue(sketch.max());
+            result.add(d);
+        });
+        return result;
     }
 
     public List<StageStatisticsModel> getStageStats(String appId, Integer stageId, Integer attemptId) {
@@ -139,13 +139,19 @@ CREATE TABLE IF NOT EXISTS stages (
     performance_score DOUBLE DEFAULT 0.0
 );
 
--- Task 细节
+-- App ID 字典：大表用整数 app_key 代替在每一行上重复的 app_id 字符串
+CREATE SEQUENCE IF NOT EXISTS app_key_seq START 1;
+CREATE TABLE IF NOT EXISTS app_keys (
+    app_key INTEGER PRIMARY KEY DEFAULT nextval('app_key_seq'),
+    app_id VARCHAR NOT NULL UNIQUE
+);
+
+-- Task 细节 (主键为整数组合键，App 通过 app_keys 关联)
 CREATE TABLE IF NOT EXISTS tasks (
-    id VARCHAR PRIMARY KEY,
-    app_id VARCHAR,
-    stage_id INT,
-    attempt_id INT DEFAULT 0,
-    task_id BIGINT,
+    app_key INTEGER NOT NULL,
+    stage_id INT NOT NULL,
+    attempt_id INT NOT NULL DEFAULT 0,
+    task_id BIGINT NOT NULL,
     task_index INT,
     executor_id VARCHAR,
     host VARCHAR,
@@ -175,9 +181,28 @@ CREATE TABLE IF NOT EXISTS tasks (
     shuffle_remote_read BIGINT,
     speculative BOOLEAN,
     status VARCHAR,
-    locality VARCHAR
+    locality VARCHAR,
+    PRIMARY KEY (app_key, stage_id, attempt_id, task_id)
+);
+
+-- Job → Stage 关系 (JobStart 中的 Stage 列表展开为行)，Job 汇总和按 Job 过滤 Task 时直接等值连接
+CREATE TABLE IF NOT EXISTS job_stages (
+    app_key INTEGER NOT NULL,
+    job_id INT NOT NULL,
+    stage_id INT NOT NULL,
+    PRIMARY KEY (app_key, job_id, stage_id)
 );
 
+-- 旧库中只有 jobs.stage_ids 字符串：job_stages 为空时从它一次性回填
+INSERT INTO app_keys (app_id) SELECT DISTINCT app_id FROM jobs
+WHERE app_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM job_stages) ON CONFLICT (app_id) DO NOTHING;
+INSERT OR IGNORE INTO job_stages (app_key, job_id, stage_id)
+SELECT app_key, job_id, CAST(trim(sid) AS INT) FROM (
+    SELECT k.app_key, j.job_id, unnest(string_split(j.stage_ids, ',')) AS sid
+    FROM jobs j JOIN app_keys k ON k.app_id = j.app_id
+    WHERE j.stage_ids IS NOT NULL AND j.stage_ids <> ''
+) WHERE trim(sid) <> '' AND NOT EXISTS (SELECT 1 FROM job_stages);
+
 -- 诊断建议表
 CREATE TABLE IF NOT EXISTS diagnosis_reports (
     id INTEGER PRIMARY KEY,
@@ -204,6 +229,20 @@ CREATE TABLE IF NOT EXISTS stage_statistics (
     max_value BIGINT
 );
 
+-- 每个 Stage attempt、每个指标的分位数草图 (QuantileSketch 序列化)，解析时累加得到。
+-- Job / SQL / App 级别的分布由草图合并得到，不需要重新扫描 tasks
+CREATE TABLE IF NOT EXISTS stage_sketches (
+    id VARCHAR PRIMARY KEY, -- 组合键: app_id:stage_id:attempt_id:metric_name
+    app_id VARCHAR,
+    stage_id INT,
+    attempt_id INT,
+    metric_name VARCHAR,
+    task_count BIGINT,
+    min_value BIGINT,
+    max_value BIGINT,
+    sketch BLOB
+);
+
 -- EventLog 文件解析状态记录
 CREATE TABLE IF NOT EXISTS parsed_event_logs (
     file_path VARCHAR PRIMARY KEY,
@@ -213,6 +252,13 @@ CREATE TABLE IF NOT EXISTS parsed_event_logs (
     parsed_at TIMESTAMP,
     status VARCHAR
 );
+-- 增量解析断点：已提交的字节位置和继续解析所需的解析器状态 (JSON)
+ALTER TABLE parsed_event_logs ADD COLUMN IF NOT EXISTS committed_offset BIGINT;
+ALTER TABLE parsed_event_logs ADD COLUMN IF NOT EXISTS parser_state VARCHAR;
+-- file_hash 为抽样内容指纹 (头、尾和均匀抽样的块)，full_hash 为后台计算的全文件 xxHash64
+ALTER TABLE parsed_event_logs ADD COLUMN IF NOT EXISTS full_hash VARCHAR;
+-- 内容与另一个已解析的路径相同的日志，指向那个路径，不再重复解析
+ALTER TABLE parsed_event_logs ADD COLUMN IF NOT EXISTS duplicate_of VARCHAR;
 
 -- SQL 执行详情
 CREATE TABLE IF NOT EXISTS sql_executions (
@@ -254,4 +300,213 @@ CREATE TABLE IF NOT EXISTS storage_blocks (
     disk_size BIGINT DEFAULT 0,
     executor_id VARCHAR,
     host VARCHAR
-);
\ No newline at end of file
+);
+
+-- 解析过程中的追加写暂存表 (DuckDB Appender 按列追加，文件解析结束后按主键去重合并到正式表)
+-- load_id 区分不同文件的一次解析，seq 为追加顺序，同一主键以最后一次出现为准
+CREATE TABLE IF NOT EXISTS tasks_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    app_key INTEGER,
+    stage_id INT,
+    attempt_id INT,
+    task_id BIGINT,
+    task_index INT,
+    executor_id VARCHAR,
+    host VARCHAR,
+    launch_time BIGINT,
+    finish_time BIGINT,
+    duration BIGINT,
+    gc_time BIGINT,
+    scheduler_delay BIGINT,
+    getting_result_time BIGINT,
+    executor_deserialize_time BIGINT,
+    executor_run_time BIGINT,
+    result_serialization_time BIGINT,
+    executor_cpu_time BIGINT,
+    peak_execution_memory BIGINT,
+    input_bytes BIGINT,
+    input_records BIGINT,
+    output_bytes BIGINT,
+    output_records BIGINT,
+    memory_bytes_spilled BIGINT,
+    disk_bytes_spilled BIGINT,
+    shuffle_read_bytes BIGINT,
+    shuffle_read_records BIGINT,
+    shuffle_fetch_wait_time BIGINT,
+    shuffle_write_bytes BIGINT,
+    shuffle_write_time BIGINT,
+    shuffle_write_records BIGINT,
+    shuffle_remote_read BIGINT,
+    speculative BOOLEAN,
+    status VARCHAR,
+    locality VARCHAR
+);
+
+CREATE TABLE IF NOT EXISTS environment_configs_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    param_key VARCHAR,
+    param_value VARCHAR,
+    category VARCHAR
+);
+
+CREATE TABLE IF NOT EXISTS storage_blocks_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    rdd_id INT,
+    block_name VARCHAR,
+    storage_level VARCHAR,
+    memory_size BIGINT,
+    disk_size BIGINT,
+    executor_id VARCHAR,
+    host VARCHAR
+);
+
+-- 只包含 Executor 生命周期字段，其余指标由 calculateExecutorMetrics 计算
+CREATE TABLE IF NOT EXISTS executors_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    executor_id VARCHAR,
+    host VARCHAR,
+    add_time TIMESTAMP,
+    remove_time TIMESTAMP,
+    total_cores INT,
+    memory BIGINT,
+    is_active BOOLEAN,
+    exec_loss_reason TEXT
+);
+
+-- Job / Stage / SQL 同样只包含解析得到的生命周期字段
+CREATE TABLE IF NOT EXISTS jobs_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    job_id INT,
+    submission_time TIMESTAMP,
+    completion_time TIMESTAMP,
+    duration BIGINT,
+    status VARCHAR,
+    num_stages INT,
+    num_tasks INT,
+    stage_ids TEXT,
+    description TEXT,
+    job_group VARCHAR,
+    sql_execution_id BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS job_stages_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    app_key INTEGER,
+    job_id INT,
+    stage_id INT
+);
+
+CREATE TABLE IF NOT EXISTS stages_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    stage_id INT,
+    job_id INT,
+    attempt_id INT,
+    stage_name VARCHAR,
+    num_tasks INT,
+    submission_time TIMESTAMP,
+    completion_time TIMESTAMP,
+    duration BIGINT,
+    status VARCHAR,
+    parent_stage_ids TEXT,
+    rdd_info TEXT
+);
+
+CREATE TABLE IF NOT EXISTS sql_executions_staging (
+    load_id BIGINT,
+    seq BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    execution_id BIGINT,
+    description TEXT,
+    details TEXT,
+    physical_plan TEXT,
+    plan_info TEXT,
+    start_time TIMESTAMP,
+    end_time TIMESTAMP,
+    duration BIGINT,
+    status VARCHAR
+);
+
+-- 解析时累加的 Stage 指标，列名与 updateStageMetrics 中的聚合结果相同
+CREATE TABLE IF NOT EXISTS stage_aggregates_staging (
+    load_id BIGINT,
+    app_id VARCHAR,
+    stage_id INT,
+    attempt_id INT,
+    done_tasks BIGINT,
+    failed_tasks BIGINT,
+    total_gc BIGINT,
+    total_duration BIGINT,
+    total_deser BIGINT,
+    total_ser BIGINT,
+    total_get_res BIGINT,
+    total_delay BIGINT,
+    total_peak_mem BIGINT,
+    total_mem_spill BIGINT,
+    total_disk_spill BIGINT,
+    total_sw_time BIGINT,
+    total_fetch_wait BIGINT,
+    total_cpu_time BIGINT,
+    total_run_time BIGINT,
+    total_input BIGINT,
+    total_input_records BIGINT,
+    total_output BIGINT,
+    total_output_records BIGINT,
+    total_shuffle_read BIGINT,
+    total_shuffle_read_records BIGINT,
+    total_shuffle_write BIGINT,
+    total_shuffle_write_records BIGINT,
+    max_peak_mem BIGINT,
+    p50 BIGINT,
+    p95 BIGINT,
+    p99 BIGINT,
+    max_dur BIGINT,
+    loc_summary VARCHAR
+);
+
+-- 解析时累加的各指标分布，sketch 为 Base64 编码，写入 stage_sketches 时转成 BLOB
+CREATE TABLE IF NOT EXISTS stage_sketches_staging (
+    load_id BIGINT,
+    id VARCHAR,
+    app_id VARCHAR,
+    stage_id INT,
+    attempt_id INT,
+    metric_name VARCHAR,
+    task_count BIGINT,
+    min_value BIGINT,
+    p25 BIGINT,
+    p50 BIGINT,
+    p75 BIGINT,
+    p95 BIGINT,
+    max_value BIGINT,
+    sketch VARCHAR
+);
+
+-- 上次进程退出时未合并的暂存数据已经没有意义
+DELETE FROM tasks_staging;
+DELETE FROM environment_configs_staging;
+DELETE FROM storage_blocks_staging;
+DELETE FROM executors_staging;
+DELETE FROM jobs_staging;
+DELETE FROM job_stages_staging;
+DELETE FROM stages_staging;
+DELETE FROM sql_executions_staging;
+DELETE FROM stage_aggregates_staging;
+DELETE FROM stage_sketches_staging;
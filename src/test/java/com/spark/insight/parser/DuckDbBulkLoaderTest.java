@@ -0,0 +1,169 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.service.ApplicationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内存 DuckDB 上用 schema.sql 建表，验证重新解析时暂存数据替换正式数据的事务
+ */
+class DuckDbBulkLoaderTest {
+
+    private static final String APP = "app-1";
+    private static final String STAGED = ApplicationService.stagedId(APP);
+    private static final String OTHER = "app-2";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private DuckDbBulkLoader loader;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // 所有 getConnection() 共用同一个连接，也就是同一个内存数据库
+        dataSource = new SingleConnectionDataSource("jdbc:duckdb:", true);
+        try (Connection conn = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(conn, new ClassPathResource("db/schema.sql"));
+        }
+        jdbc = new JdbcTemplate(dataSource);
+        loader = new DuckDbBulkLoader(dataSource);
+
+        jdbc.update("INSERT INTO app_keys (app_id) VALUES (?), (?), (?)", APP, STAGED, OTHER);
+
+        // 正式版本：Job 1、2，Task 1、2
+        insertApp(APP, "old name");
+        insertJob(APP, 1, "SUCCEEDED");
+        insertJob(APP, 2, "FAILED");
+        insertStage(APP, 10);
+        insertTask(APP, 10, 1, 100);
+        insertTask(APP, 10, 2, 200);
+        insertJobStage(APP, 1, 10);
+        insertJobStage(APP, 2, 10);
+
+        // 重新解析的版本：Job 1、3，Task 1 (耗时变化)、3；Job 2 和 Task 2 已不存在
+        insertApp(STAGED, "new name");
+        insertJob(STAGED, 1, "RUNNING");
+        insertJob(STAGED, 3, "SUCCEEDED");
+        insertStage(STAGED, 10);
+        insertTask(STAGED, 10, 1, 150);
+        insertTask(STAGED, 10, 3, 300);
+        insertJobStage(STAGED, 1, 10);
+        insertJobStage(STAGED, 3, 10);
+
+        // 不相关的 App
+        insertApp(OTHER, "other");
+        insertJob(OTHER, 1, "SUCCEEDED");
+        insertTask(OTHER, 10, 1, 999);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void swapInReplacesLiveDataWithStagedData() throws SQLException {
+        loader.swapIn(STAGED, APP);
+
+        // 正式数据中新版本没有的行被删除，暂存行改名为正式 App
+        assertEquals(List.of(APP + ":1", APP + ":3"), jobIds(APP));
+        assertEquals("RUNNING", jdbc.queryForObject("SELECT status FROM jobs WHERE id = ?", String.class, APP + ":1"));
+        assertEquals(List.of(APP + ":10"), jdbc.queryForList("SELECT id FROM stages WHERE app_id = ?", String.class, APP));
+        assertEquals(List.of(1L, 3L), taskIds(APP));
+        assertEquals(150L, jdbc.queryForObject("SELECT duration FROM tasks WHERE app_key = " + key(APP) + " AND task_id = 1", Long.class));
+        assertEquals(List.of(1, 3), jdbc.queryForList(
+                "SELECT job_id FROM job_stages WHERE app_key = " + key(APP) + " ORDER BY job_id", Integer.class));
+        assertEquals("new name", jdbc.queryForObject("SELECT app_name FROM applications WHERE app_id = ?", String.class, APP));
+
+        // 暂存数据全部清除
+        assertStagedGone();
+
+        // 其他 App 不受影响
+        assertEquals(List.of(OTHER + ":1"), jobIds(OTHER));
+        assertEquals(List.of(1L), taskIds(OTHER));
+        assertEquals("other", jdbc.queryForObject("SELECT app_name FROM applications WHERE app_id = ?", String.class, OTHER));
+    }
+
+    @Test
+    void swapInWithoutLiveDataMovesStagedRows() throws SQLException {
+        loader.dropApp(APP);
+        loader.swapIn(STAGED, APP);
+
+        assertEquals(List.of(APP + ":1", APP + ":3"), jobIds(APP));
+        assertEquals(List.of(1L, 3L), taskIds(APP));
+        assertStagedGone();
+    }
+
+    @Test
+    void failedSwapInRollsBackAndKeepsLiveData() {
+        // storage_blocks 在 APP_TABLES 的最后，前面的表都已改动后才失败
+        jdbc.execute("DROP TABLE storage_blocks");
+
+        assertThrows(SQLException.class, () -> loader.swapIn(STAGED, APP));
+
+        assertEquals(List.of(APP + ":1", APP + ":2"), jobIds(APP));
+        assertEquals("SUCCEEDED", jdbc.queryForObject("SELECT status FROM jobs WHERE id = ?", String.class, APP + ":1"));
+        assertEquals(List.of(1L, 2L), taskIds(APP));
+        assertEquals(100L, jdbc.queryForObject("SELECT duration FROM tasks WHERE app_key = " + key(APP) + " AND task_id = 1", Long.class));
+        assertEquals("old name", jdbc.queryForObject("SELECT app_name FROM applications WHERE app_id = ?", String.class, APP));
+
+        // 暂存数据也原样保留，可以由调用方 dropApp 清理
+        assertEquals(List.of(STAGED + ":1", STAGED + ":3"), jobIds(STAGED));
+        assertEquals(List.of(1L, 3L), taskIds(STAGED));
+    }
+
+    private void assertStagedGone() {
+        assertEquals(0, count("SELECT count(*) FROM jobs WHERE app_id = ? OR id LIKE ?", STAGED, STAGED + ":%"));
+        assertEquals(0, count("SELECT count(*) FROM stages WHERE app_id = ? OR id LIKE ?", STAGED, STAGED + ":%"));
+        assertEquals(0, count("SELECT count(*) FROM tasks WHERE app_key = " + key(STAGED)));
+        assertEquals(0, count("SELECT count(*) FROM job_stages WHERE app_key = " + key(STAGED)));
+        assertEquals(0, count("SELECT count(*) FROM applications WHERE app_id = ?", STAGED));
+    }
+
+    private void insertApp(String appId, String name) {
+        jdbc.update("INSERT INTO applications (app_id, app_name, status) VALUES (?, ?, 'FINISHED')", appId, name);
+    }
+
+    private void insertJob(String appId, int jobId, String status) {
+        jdbc.update("INSERT INTO jobs (id, app_id, job_id, status) VALUES (?, ?, ?, ?)", appId + ":" + jobId, appId, jobId, status);
+    }
+
+    private void insertStage(String appId, int stageId) {
+        jdbc.update("INSERT INTO stages (id, app_id, stage_id, attempt_id) VALUES (?, ?, ?, 0)", appId + ":" + stageId, appId, stageId);
+    }
+
+    private void insertTask(String appId, int stageId, long taskId, long duration) {
+        jdbc.update("INSERT INTO tasks (app_key, stage_id, attempt_id, task_id, task_index, duration, status) " +
+                "VALUES (" + key(appId) + ", ?, 0, ?, ?, ?, 'SUCCESS')", stageId, taskId, (int) taskId, duration);
+    }
+
+    private void insertJobStage(String appId, int jobId, int stageId) {
+        jdbc.update("INSERT INTO job_stages (app_key, job_id, stage_id) VALUES (" + key(appId) + ", ?, ?)", jobId, stageId);
+    }
+
+    private List<String> jobIds(String appId) {
+        return jdbc.queryForList("SELECT id FROM jobs WHERE app_id = ? ORDER BY id", String.class, appId);
+    }
+
+    private List<Long> taskIds(String appId) {
+        return jdbc.queryForList("SELECT task_id FROM tasks WHERE app_key = " + key(appId) + " ORDER BY task_id", Long.class);
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbc.queryForObject(sql, Integer.class, args);
+    }
+
+    private static String key(String appId) {
+        return "(SELECT app_key FROM app_keys WHERE app_id = '" + appId + "')";
+    }
+}
@@ -0,0 +1,399 @@
+package com.spark.insight.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDecodePipelineTest {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final SparkEventDecoder decoder = new SparkEventDecoder();
+    private final EventTypeFilter filter = new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS);
+    private final ExecutorService workers = Executors.newFixedThreadPool(3);
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    void streamMatchesLineByLineDecoding() throws Exception {
+        String log = String.join("\n", sampleLines(40)) + "\n";
+        assertStreamMatches(log);
+    }
+
+    @Test
+    void lineLongerThanChunkSizeGrowsTheBuffer() throws Exception {
+        List<String> lines = new ArrayList<>(sampleLines(5));
+        lines.add(2, taskEnd(99, "x".repeat(CHUNK_SIZE * 5)));
+        lines.add(taskEnd(100, "y".repeat(CHUNK_SIZE * 2 - 40)));
+        lines.add(taskEnd(101, ""));
+        Result result = assertStreamMatches(String.join("\n", lines) + "\n");
+        assertTrue(result.events.stream().anyMatch(e -> e instanceof SparkEvent.TaskEnd t && t.task().getTaskId() == 99L));
+    }
+
+    @Test
+    void finalLineWithoutTrailingNewlineIsDecoded() throws Exception {
+        List<String> lines = sampleLines(20);
+        Result result = assertStreamMatches(String.join("\n", lines));
+        assertEquals(new SparkEvent.ApplicationEnd(1704070800000L), result.events.get(result.events.size() - 1));
+    }
+
+    @Test
+    void crlfLineEndingsAreStripped() throws Exception {
+        List<String> lines = sampleLines(20);
+        Result crlf = run(String.join("\r\n", lines) + "\r\n");
+        Result lf = run(String.join("\n", lines) + "\n");
+        assertEquals(lf.events, crlf.events);
+        assertEquals(lines.size(), crlf.lines);
+        assertEquals(expectedEvents(lines), crlf.events);
+    }
+
+    @Test
+    void emptyFileProducesNothing() throws Exception {
+        Result result = run("");
+        assertTrue(result.events.isEmpty());
+        assertEquals(0L, result.stats.bytes);
+        assertEquals(0L, result.stats.chunks);
+        assertEquals(0L, result.lines);
+    }
+
+    @Test
+    void decodeFailureReachesTheApplierAndStopsTheReader() throws Exception {
+        SparkEventDecoder failing = new SparkEventDecoder() {
+            @Override
+            public SparkEvent decode(byte[] buf, int off, int len) {
+                throw new DecodeError();
+            }
+        };
+        EventDecodePipeline pipeline = new EventDecodePipeline(failing, filter, workers, 3, CHUNK_SIZE, 2);
+        byte[] line = (sampleLines(1).get(0) + "\n").getBytes(StandardCharsets.UTF_8);
+        // 永远读不完的输入：读取线程只能靠取消退出
+        InputStream endless = new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                byte b = line[pos];
+                pos = (pos + 1) % line.length;
+                return b & 0xff;
+            }
+        };
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> pipeline.run(endless, "endless.log", chunk -> fail("no chunk should be applied")));
+        assertInstanceOf(DecodeError.class, error.getCause());
+        assertFalse(readerAlive("endless.log"));
+    }
+
+    @Test
+    void applierFailureStopsTheReader() throws Exception {
+        EventDecodePipeline pipeline = pipeline();
+        String log = String.join("\n", sampleLines(200)) + "\n";
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)), "apply.log", chunk -> {
+                    throw new IllegalStateException("apply failed");
+                }));
+        assertEquals("apply failed", error.getMessage());
+        assertFalse(readerAlive("apply.log"));
+    }
+
+    @Test
+    void applierFailureClosesABlockedInput() throws Exception {
+        byte[] head = (String.join("\n", sampleLines(5)) + "\n").getBytes(StandardCharsets.UTF_8);
+        CountDownLatch closed = new CountDownLatch(1);
+        // 读完开头几行后一直阻塞 (类似还在增长的日志或很慢的远程存储)，直到被关闭
+        InputStream stalled = new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                if (pos < head.length) return head[pos++] & 0xff;
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                b[off] = (byte) read();
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+
+        long start = System.nanoTime();
+        assertThrows(IllegalStateException.class, () -> pipeline().run(stalled, "stalled.log", chunk -> {
+            throw new IllegalStateException("apply failed");
+        }));
+        assertEquals(0L, closed.getCount());
+        assertFalse(readerAlive("stalled.log"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    void mappedFailureWaitsForDecodeTasksBeforeClosingTheFile() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        SparkEventDecoder slow = new SparkEventDecoder() {
+            @Override
+            public SparkEvent decode(byte[] buf, int off, int len) throws IOException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                    return super.decode(buf, off, len);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        };
+        Path file = write((String.join("\n", sampleLines(300)) + "\n").getBytes(StandardCharsets.UTF_8));
+        EventDecodePipeline pipeline = new EventDecodePipeline(slow, filter, workers, 3, CHUNK_SIZE, 4);
+
+        assertThrows(IllegalStateException.class, () -> pipeline.runMapped(file, chunk -> {
+            throw new IllegalStateException("apply failed");
+        }));
+        assertEquals(0, active.get());
+        assertTrue(maxActive.get() > 0);
+        assertFalse(readerAlive("eventlog"));
+    }
+
+    @Test
+    void mappedWholeFileMatchesStream() throws Exception {
+        List<String> lines = new ArrayList<>(sampleLines(40));
+        lines.add(10, taskEnd(99, "x".repeat(CHUNK_SIZE * 3)));
+        byte[] log = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        Path file = write(log);
+
+        Result mapped = runMapped(file, 0, log.length);
+        assertEquals(run(log, 0, log.length).events, mapped.events);
+        assertEquals(expectedEvents(lines), mapped.events);
+        assertEquals(log.length, mapped.stats.bytes);
+
+        Result whole = new Result();
+        pipeline().runMapped(file, whole::add);
+        assertEquals(mapped.events, whole.events);
+    }
+
+    @Test
+    void mappedRangeFromANonzeroOffsetMatchesStream() throws Exception {
+        byte[] log = (String.join("\n", sampleLines(40)) + "\n").getBytes(StandardCharsets.UTF_8);
+        Path file = write(log);
+        // 从第 5 行开始 (增量解析的起点总在行首)
+        int from = lineStart(log, 5);
+        Result mapped = runMapped(file, from, log.length);
+        assertEquals(run(log, from, log.length).events, mapped.events);
+        assertEquals(log.length - from, mapped.stats.bytes);
+        assertFalse(mapped.events.isEmpty());
+    }
+
+    @Test
+    void mappedRangeEndingExactlyOnANewlineMatchesStream() throws Exception {
+        byte[] log = (String.join("\n", sampleLines(40)) + "\n").getBytes(StandardCharsets.UTF_8);
+        Path file = write(log);
+        int from = lineStart(log, 3);
+        int to = lineStart(log, 30);
+        assertEquals('\n', log[to - 1]);
+
+        Result mapped = runMapped(file, from, to);
+        Result stream = run(log, from, to);
+        assertEquals(stream.events, mapped.events);
+        assertEquals(stream.lines, mapped.lines);
+        assertEquals(27L, mapped.lines);
+        // 分块边界恰好落在换行符上时不能多出或丢掉行
+        for (int chunk = to - from - 2; chunk <= to - from + 2; chunk++) {
+            Result exact = new Result();
+            new EventDecodePipeline(decoder, filter, workers, 3, chunk, 2).runMapped(file, from, to, exact::add);
+            assertEquals(stream.events, exact.events, "chunkSize=" + chunk);
+            assertEquals(27L, exact.lines, "chunkSize=" + chunk);
+        }
+    }
+
+    @Test
+    void mappedLastRangeShorterThanChunkSizeMatchesStream() throws Exception {
+        byte[] log = (String.join("\n", sampleLines(40)) + "\n").getBytes(StandardCharsets.UTF_8);
+        Path file = write(log);
+        int from = lineStart(log, 7);
+        // 区间的长度不是 chunkSize 的整数倍，最后一段比 chunkSize 短
+        int to = lineStart(log, 60);
+        assertTrue((to - from) % CHUNK_SIZE != 0);
+
+        Result mapped = runMapped(file, from, to);
+        assertEquals(run(log, from, to).events, mapped.events);
+        assertEquals(53L, mapped.lines);
+        assertTrue(mapped.stats.chunks > 1);
+
+        // 整个区间比 chunkSize 还短 (最后的 JobEnd 和 ApplicationEnd)
+        int tail = lineStart(log, sampleLines(40).size() - 2);
+        assertTrue(log.length - tail < CHUNK_SIZE);
+        Result single = runMapped(file, tail, log.length);
+        assertEquals(run(log, tail, log.length).events, single.events);
+        assertEquals(2, single.events.size());
+        assertEquals(1L, single.stats.chunks);
+
+        // to 超出文件长度时截到文件末尾
+        Result beyond = runMapped(file, from, log.length + 1000L);
+        assertEquals(run(log, from, log.length).events, beyond.events);
+    }
+
+    private Result assertStreamMatches(String log) throws Exception {
+        List<String> lines = List.of(log.split("\n", -1));
+        long lineCount = log.endsWith("\n") ? lines.size() - 1 : lines.size();
+        Result result = run(log);
+        assertEquals(expectedEvents(lines), result.events);
+        assertEquals(lineCount, result.lines);
+        assertEquals(lineCount, result.stats.lines);
+        assertEquals(log.getBytes(StandardCharsets.UTF_8).length, result.stats.bytes);
+        assertEquals(result.skipped, countSkipped(lines));
+        return result;
+    }
+
+    private Result run(String log) throws Exception {
+        byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+        return run(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 流方式解析 log[from, to)，每次 read 最多返回 7 个字节，让块边界落在行中间
+     */
+    private Result run(byte[] log, int from, int to) throws Exception {
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(Arrays.copyOfRange(log, from, to))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        Result result = new Result();
+        result.stats = pipeline().run(in, "test.log", result::add);
+        return result;
+    }
+
+    private Result runMapped(Path file, long from, long to) throws Exception {
+        Result result = new Result();
+        result.stats = pipeline().runMapped(file, from, to, result::add);
+        return result;
+    }
+
+    private EventDecodePipeline pipeline() {
+        return new EventDecodePipeline(decoder, filter, workers, 3, CHUNK_SIZE, 2);
+    }
+
+    private Path write(byte[] log) throws IOException {
+        return Files.write(tempDir.resolve("eventlog"), log);
+    }
+
+    /**
+     * 第 line 行 (从 0 开始) 的起始偏移
+     */
+    private static int lineStart(byte[] log, int line) {
+        int pos = 0;
+        for (int i = 0; i < line; i++) {
+            while (log[pos] != '\n') pos++;
+            pos++;
+        }
+        return pos;
+    }
+
+    private List<SparkEvent> expectedEvents(List<String> lines) throws IOException {
+        List<SparkEvent> events = new ArrayList<>();
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (!filter.shouldDecode(filter.classify(bytes, 0, bytes.length))) continue;
+            SparkEvent event = decoder.decode(bytes, 0, bytes.length);
+            if (event != null) events.add(event);
+        }
+        return events;
+    }
+
+    private long countSkipped(List<String> lines) {
+        long skipped = 0;
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (!filter.shouldDecode(filter.classify(bytes, 0, bytes.length))) skipped++;
+        }
+        return skipped;
+    }
+
+    private static boolean readerAlive(String fileName) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().equals("eventlog-reader-" + fileName) && t.isAlive());
+    }
+
+    static List<String> sampleLines(int tasks) {
+        List<String> lines = new ArrayList<>();
+        lines.add("{\"Event\":\"SparkListenerLogStart\",\"Spark Version\":\"3.5.1\"}");
+        lines.add("{\"Event\":\"SparkListenerApplicationStart\",\"App Name\":\"etl\",\"App ID\":\"app-1\",\"Timestamp\":1704067200000,\"User\":\"alice\"}");
+        lines.add("{\"Event\":\"SparkListenerJobStart\",\"Job ID\":0,\"Submission Time\":1704067300000,"
+                + "\"Stage Infos\":[{\"Stage ID\":0,\"Stage Name\":\"count\",\"Number of Tasks\":" + tasks + "}],\"Stage IDs\":[0]}");
+        lines.add("{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":0,\"Stage Attempt ID\":0,\"Stage Name\":\"count\",\"Number of Tasks\":" + tasks + "}}");
+        for (int i = 0; i < tasks; i++) {
+            lines.add("{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":0,\"Task Info\":{\"Task ID\":" + i + "}}");
+            lines.add(taskEnd(i, ""));
+            if (i % 7 == 3) {
+                lines.add("{\"Event\":\"SparkListenerExecutorMetricsUpdate\",\"Executor ID\":\"1\"}");
+                lines.add("");
+            }
+        }
+        lines.add("{\"Event\":\"SparkListenerStageCompleted\",\"Stage Info\":{\"Stage ID\":0,\"Completion Time\":1704067399000}}");
+        lines.add("{\"Timestamp\":1704067400000,\"Event\":\"SparkListenerJobEnd\",\"Job ID\":0,\"Job Result\":{\"Result\":\"JobSucceeded\"}}");
+        lines.add("{\"Event\":\"SparkListenerApplicationEnd\",\"Timestamp\":1704070800000}");
+        return lines;
+    }
+
+    static String taskEnd(long taskId, String padding) {
+        return "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":0,\"Stage Attempt ID\":0,\"Task End Reason\":{\"Reason\":\"Success\"},"
+                + "\"Task Info\":{\"Task ID\":" + taskId + ",\"Index\":" + taskId + ",\"Launch Time\":1000,\"Finish Time\":" + (1100 + taskId)
+                + ",\"Executor ID\":\"1\",\"Host\":\"h\",\"Padding\":\"" + padding + "\"},"
+                + "\"Task Metrics\":{\"Executor Run Time\":" + (50 + taskId) + ",\"Input Metrics\":{\"Bytes Read\":" + (taskId * 10) + "}}}";
+    }
+
+    static class Result {
+        final List<SparkEvent> events = new ArrayList<>();
+        long lines;
+        long skipped;
+        EventDecodePipeline.Stats stats;
+
+        void add(EventDecodePipeline.DecodedChunk chunk) {
+            events.addAll(chunk.events());
+            lines += chunk.lineCount();
+            skipped += chunk.skipCounts().total();
+        }
+    }
+
+    private static class DecodeError extends Error {
+    }
+}
@@ -0,0 +1,132 @@
+package com.spark.insight.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventTypeFilterTest {
+
+    private final EventTypeFilter filter = new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS);
+
+    @Test
+    void everyHandledTypePasses() {
+        for (String name : SparkEventDecoder.HANDLED_EVENTS) {
+            int type = classify("{\"Event\":\"" + name + "\",\"Timestamp\":1}");
+            assertTrue(type >= 0, name);
+            assertEquals(name, filter.nameOf(type));
+            assertTrue(filter.shouldDecode(type), name);
+        }
+    }
+
+    @Test
+    void ignoredTypesAreCountedBySkipCounts() {
+        EventTypeFilter.SkipCounts counts = filter.newSkipCounts();
+        String[] lines = {
+                "{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":1}",
+                "{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":2}",
+                "{\"Event\":\"SparkListenerExecutorMetricsUpdate\",\"Executor ID\":\"1\"}",
+                "{\"Event\":\"com.example.CustomListenerEvent\",\"x\":1}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":1}"};
+        for (String line : lines) {
+            int type = classify(line);
+            if (!filter.shouldDecode(type)) counts.increment(type);
+        }
+
+        assertEquals(EventTypeFilter.OTHER, classify(lines[3]));
+        assertEquals(4L, counts.total());
+        assertEquals(Map.of("SparkListenerTaskStart", 2L, "SparkListenerExecutorMetricsUpdate", 1L, "Other", 1L), counts.byType());
+        // byType 按次数倒序
+        assertEquals("SparkListenerTaskStart", counts.byType().keySet().iterator().next());
+
+        EventTypeFilter.SkipCounts merged = filter.newSkipCounts();
+        merged.increment(classify(lines[0]));
+        merged.addAll(counts);
+        assertEquals(5L, merged.total());
+        assertEquals(3L, merged.byType().get("SparkListenerTaskStart"));
+    }
+
+    @Test
+    void unrecognizedLinesFallThroughToDecoding() {
+        String[] lines = {
+                // 第一个字段不是 Event
+                "{\"Timestamp\":1,\"Event\":\"SparkListenerTaskStart\"}",
+                // 多了空白
+                "{ \"Event\" : \"SparkListenerTaskStart\"}",
+                // 类型名带转义
+                "{\"Event\":\"SparkListener\\u0054askStart\"}",
+                "{\"Event\":\"SparkListener\\\"TaskStart\"}",
+                // 截断的行
+                "{\"Event\":\"SparkListenerTaskSt",
+                "{\"Event\":\"",
+                "{\"Event\"",
+                "{\"Event\":\"\"}",
+                "",
+                "[1,2]"};
+        for (String line : lines) {
+            int type = classify(line);
+            assertEquals(EventTypeFilter.UNRECOGNIZED, type, line);
+            assertTrue(filter.shouldDecode(type), line);
+        }
+    }
+
+    @Test
+    void escapedHandledNameIsStillDecoded() throws Exception {
+        byte[] line = "{\"Event\":\"SparkListener\\u0041pplicationEnd\",\"Timestamp\":5}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(filter.shouldDecode(filter.classify(line, 0, line.length)));
+        assertEquals(new SparkEvent.ApplicationEnd(5L), new SparkEventDecoder().decode(line, 0, line.length));
+    }
+
+    @Test
+    void classifiesALineInsideALargerBuffer() {
+        byte[] buf = "xx{\"Event\":\"SparkListenerTaskStart\"}\n{\"Event\":\"SparkListenerJobEnd\"}".getBytes(StandardCharsets.UTF_8);
+        int type = filter.classify(buf, 2, 34);
+        assertEquals("SparkListenerTaskStart", filter.nameOf(type));
+        assertFalse(filter.shouldDecode(type));
+        // 长度截在类型名中间
+        assertEquals(EventTypeFilter.UNRECOGNIZED, filter.classify(buf, 2, 20));
+    }
+
+    @Test
+    void hashCollisionDoesNotMatchTheOtherName() {
+        // 两个名字的 FNV-1a 哈希相同
+        String handled = "SparkListenerJaUbJbtA";
+        String unhandled = "SparkListenerAxjSjSrF";
+        assertEquals(fnv1a(handled), fnv1a(unhandled));
+
+        EventTypeFilter collisionFilter = new EventTypeFilter(Set.of(handled));
+        int handledType = classify(collisionFilter, handled);
+        assertEquals(handled, collisionFilter.nameOf(handledType));
+        assertTrue(collisionFilter.shouldDecode(handledType));
+
+        int unhandledType = classify(collisionFilter, unhandled);
+        assertEquals(EventTypeFilter.OTHER, unhandledType);
+        assertFalse(collisionFilter.shouldDecode(unhandledType));
+
+        // 两者都在表里时各自命中自己的槽位
+        EventTypeFilter both = new EventTypeFilter(Set.of(handled, unhandled));
+        assertEquals(unhandled, both.nameOf(classify(both, unhandled)));
+        assertEquals(handled, both.nameOf(classify(both, handled)));
+    }
+
+    private int classify(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return filter.classify(bytes, 0, bytes.length);
+    }
+
+    private static int classify(EventTypeFilter filter, String name) {
+        byte[] bytes = ("{\"Event\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+        return filter.classify(bytes, 0, bytes.length);
+    }
+
+    private static int fnv1a(String s) {
+        int h = 0x811c9dc5;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,138 @@
+package com.spark.insight.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量解析的断点校验、.inprogress 日志的完整行边界和断点状态的恢复
+ */
+class JacksonEventParserTest {
+
+    private static final String HEAD = "{\"Event\":\"SparkListenerLogStart\"}\n{\"Event\":\"SparkListenerJobStart\"}\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resumesFromALineBoundaryInsideTheFile() throws IOException {
+        File log = write("eventlog", HEAD + "{\"Event\":\"SparkListenerJobEnd\"}\n");
+        long offset = HEAD.length();
+        assertEquals(offset, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(offset)));
+        // 断点正好在文件末尾 (只有 mtime 变化)
+        assertEquals(log.length(), JacksonEventParser.resumeOffset(log, log.length(), checkpoint(log.length())));
+    }
+
+    @Test
+    void reparsesFromTheStartWithoutAUsableCheckpoint() throws IOException {
+        File log = write("eventlog", HEAD);
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), null));
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(0)));
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(-1)));
+        // 文件被截短或替换成了更短的内容
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(log.length() + 1)));
+        // 断点落在一行中间
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(5)));
+    }
+
+    @Test
+    void reparsesFromTheStartWhenTheContentBeforeTheCheckpointChanged() throws IOException {
+        long offset = HEAD.length();
+        // 同一个路径被写成了另一个日志，断点处不再是换行符
+        File log = write("eventlog", "{\"Event\":\"SparkListenerLogStart\",\"Spark Version\":\"3.5.0\"}\n{\"Event\":\"x\"}\n");
+        assertTrue(log.length() > offset);
+        assertEquals(0L, JacksonEventParser.resumeOffset(log, log.length(), checkpoint(offset)));
+    }
+
+    @Test
+    void inProgressLogStopsAfterTheLastCompleteLine() throws IOException {
+        File log = write("eventlog.inprogress", HEAD + "{\"Event\":\"SparkListenerJo");
+        assertEquals(HEAD.length(), JacksonEventParser.completeLinesEnd(log, log.length()));
+
+        File complete = write("complete.inprogress", HEAD);
+        assertEquals(HEAD.length(), JacksonEventParser.completeLinesEnd(complete, complete.length()));
+
+        // 还没有写完第一行
+        File partial = write("partial.inprogress", "{\"Event\":\"SparkListenerLogSt");
+        assertEquals(0L, JacksonEventParser.completeLinesEnd(partial, partial.length()));
+        File empty = write("empty.inprogress", "");
+        assertEquals(0L, JacksonEventParser.completeLinesEnd(empty, 0));
+    }
+
+    @Test
+    void inProgressLineLongerThanTheReadBufferIsFound() throws IOException {
+        // 最后一个换行符之后的半行比向前扫描的缓冲区 (8KB) 长
+        String head = HEAD + "x".repeat(10_000) + "\n";
+        File log = write("long.inprogress", head + "y".repeat(20_000));
+        assertEquals(head.length(), JacksonEventParser.completeLinesEnd(log, log.length()));
+    }
+
+    @Test
+    void finishedLogIsParsedToTheEnd() throws IOException {
+        File log = write("eventlog", HEAD + "{\"Event\":\"SparkListenerJo");
+        assertEquals(log.length(), JacksonEventParser.completeLinesEnd(log, log.length()));
+    }
+
+    @Test
+    void restoreCarriesTheParserStateOver() {
+        JacksonEventParser.ParseContext ctx = context("app-inferred");
+        Map<String, AppState> states = new HashMap<>();
+        ParseCheckpoint resume = new ParseCheckpoint(100, "app-1", "3.5.0", 42, Map.of(3, 1, 4, 2));
+
+        JacksonEventParser.restore(ctx, resume, appId -> states.computeIfAbsent(appId, JacksonEventParserTest::newState));
+
+        // 断点中的 App ID (EnvironmentUpdate 校正过的) 优先于从文件名推断的
+        assertEquals("app-1", ctx.currentAppId);
+        assertEquals("3.5.0", ctx.versionFromLogStart);
+        assertEquals(42L, ctx.lineCount);
+        assertEquals(Map.of(3, 1, 4, 2), states.get("app-1").stageToJobMap);
+        assertFalse(states.containsKey("app-inferred"));
+    }
+
+    @Test
+    void restoreToleratesMissingFields() {
+        JacksonEventParser.ParseContext ctx = context("app-inferred");
+        Map<String, AppState> states = new HashMap<>();
+        // 旧版本写入的断点可能没有 Stage → Job 映射
+        JacksonEventParser.restore(ctx, new ParseCheckpoint(100, "app-1", null, 7, null),
+                appId -> states.computeIfAbsent(appId, JacksonEventParserTest::newState));
+        assertEquals("app-1", ctx.currentAppId);
+        assertNull(ctx.versionFromLogStart);
+        assertTrue(states.isEmpty());
+
+        JacksonEventParser.ParseContext unknown = context("app-inferred");
+        JacksonEventParser.restore(unknown, new ParseCheckpoint(100, null, "3.4.1", 7, Map.of(1, 1)),
+                appId -> states.computeIfAbsent(appId, JacksonEventParserTest::newState));
+        assertEquals("app-inferred", unknown.currentAppId);
+        assertEquals(7L, unknown.lineCount);
+        assertTrue(states.isEmpty());
+    }
+
+    private static JacksonEventParser.ParseContext context(String inferredAppId) {
+        return new JacksonEventParser.ParseContext(1, inferredAppId, 1, 1,
+                new EventTypeFilter(SparkEventDecoder.HANDLED_EVENTS).newSkipCounts());
+    }
+
+    private static AppState newState(String appId) {
+        return new AppState(appId, appId, 1);
+    }
+
+    private static ParseCheckpoint checkpoint(long offset) {
+        return new ParseCheckpoint(offset, "app-1", "3.5.0", 10, Map.of());
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+}
@@ -0,0 +1,156 @@
+package com.spark.insight.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1};
+
+    @Test
+    void roundTripsThroughBytes() {
+        QuantileSketch sketch = sketchOf(randomValues(new Random(1), 5000));
+        QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+        assertSameSketch(sketch, copy);
+        assertArrayEquals(sketch.toBytes(), copy.toBytes());
+
+        // 反序列化后还能继续累加和合并
+        sketch.add(123_456L);
+        copy.add(123_456L);
+        assertSameSketch(sketch, copy);
+    }
+
+    @Test
+    void emptySketchRoundTrips() {
+        QuantileSketch empty = new QuantileSketch();
+        QuantileSketch copy = QuantileSketch.fromBytes(empty.toBytes());
+        assertEquals(0L, copy.count());
+        assertNull(copy.min());
+        assertNull(copy.max());
+        assertNull(copy.quantile(0.5));
+        assertArrayEquals(empty.toBytes(), copy.toBytes());
+
+        copy.add(42L);
+        assertEquals(42L, copy.min());
+        assertEquals(42L, copy.max());
+        assertEquals(42L, copy.quantile(0.5));
+    }
+
+    @Test
+    void zerosOnlySketchRoundTrips() {
+        QuantileSketch zeros = new QuantileSketch();
+        for (int i = 0; i < 100; i++) zeros.add(0L);
+        QuantileSketch copy = QuantileSketch.fromBytes(zeros.toBytes());
+        assertSameSketch(zeros, copy);
+        assertEquals(100L, copy.count());
+        assertEquals(0L, copy.min());
+        assertEquals(0L, copy.max());
+        for (double q : QUANTILES) {
+            assertEquals(0L, copy.quantile(q));
+        }
+
+        // 与只有正数的草图合并
+        QuantileSketch positive = sketchOf(new long[]{10, 20, 30});
+        copy.merge(positive);
+        assertEquals(103L, copy.count());
+        assertEquals(30L, copy.max());
+        assertEquals(0L, copy.quantile(0.5));
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(new byte[]{9, 0}));
+    }
+
+    @Test
+    void mergeEqualsAddingAllValuesToOneSketch() {
+        Random random = new Random(2);
+        long[] a = randomValues(random, 3000);
+        // 第二组的量级不同，合并时两端都需要扩展
+        long[] b = new long[2000];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = i % 10 == 0 ? 0 : 1_000_000L + random.nextInt(50_000_000);
+        }
+        long[] c = {1, 2, 3};
+
+        QuantileSketch merged = sketchOf(a);
+        merged.merge(sketchOf(b));
+        merged.merge(sketchOf(c));
+        merged.merge(new QuantileSketch());
+
+        long[] all = concat(a, b, c);
+        QuantileSketch single = sketchOf(all);
+        assertSameSketch(single, merged);
+        assertArrayEquals(single.toBytes(), merged.toBytes());
+
+        // 合并顺序无关，反序列化后的草图也可以合并
+        QuantileSketch reversed = new QuantileSketch();
+        reversed.merge(QuantileSketch.fromBytes(sketchOf(c).toBytes()));
+        reversed.merge(QuantileSketch.fromBytes(sketchOf(b).toBytes()));
+        reversed.merge(QuantileSketch.fromBytes(sketchOf(a).toBytes()));
+        assertArrayEquals(single.toBytes(), reversed.toBytes());
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        Random random = new Random(3);
+        long[][] datasets = {
+                randomValues(random, 10_000),
+                // 长尾分布
+                random.longs(10_000, 0, 1000).map(v -> (long) Math.exp(v / 50.0)).toArray(),
+                // 大量重复值
+                random.longs(5000, 0, 4).map(v -> v * 1000).toArray(),
+                {7},
+                {Long.MAX_VALUE / 2, 1, 0}};
+        for (long[] values : datasets) {
+            QuantileSketch sketch = sketchOf(values);
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            assertEquals(sorted[0], sketch.min());
+            assertEquals(sorted[sorted.length - 1], sketch.max());
+            for (double q : QUANTILES) {
+                long exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+                long approx = sketch.quantile(q);
+                double tolerance = QuantileSketch.RELATIVE_ACCURACY * Math.abs((double) exact) + 1;
+                assertTrue(Math.abs((double) approx - exact) <= tolerance,
+                        "q=" + q + " exact=" + exact + " approx=" + approx);
+            }
+        }
+    }
+
+    private static void assertSameSketch(QuantileSketch expected, QuantileSketch actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.min(), actual.min());
+        assertEquals(expected.max(), actual.max());
+        for (double q : QUANTILES) {
+            assertEquals(expected.quantile(q), actual.quantile(q), "q=" + q);
+        }
+    }
+
+    private static QuantileSketch sketchOf(long[] values) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long v : values) sketch.add(v);
+        return sketch;
+    }
+
+    /**
+     * 模拟 Task 耗时：大部分在几百毫秒，少量 0 和几分钟的长尾
+     */
+    private static long[] randomValues(Random random, int n) {
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++) {
+            int kind = random.nextInt(100);
+            values[i] = kind < 5 ? 0 : kind < 95 ? 100 + random.nextInt(900) : 60_000 + random.nextInt(240_000);
+        }
+        return values;
+    }
+
+    private static long[] concat(long[]... arrays) {
+        return Arrays.stream(arrays).flatMapToLong(Arrays::stream).toArray();
+    }
+}
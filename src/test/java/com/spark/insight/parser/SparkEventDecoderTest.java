@@ -0,0 +1,632 @@
+package com.spark.insight.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spark.insight.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式解码器与原先基于 readTree + asText()/asLong() 的提取结果逐字段对比。
+ * <p>
+ * {@link TreeReference} 按原 JacksonEventParser 中各 handler 的写法从 JsonNode 提取字段；
+ * 原实现在字段缺失时会直接抛 NPE (整条事件被丢弃)，这些情况下参考实现取解码器的默认值。
+ */
+class SparkEventDecoderTest {
+
+    private final SparkEventDecoder decoder = new SparkEventDecoder();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static final List<String> TYPICAL = List.of(
+            "{\"Event\":\"SparkListenerLogStart\",\"Spark Version\":\"3.5.1\"}",
+            "{\"Event\":\"SparkListenerApplicationStart\",\"App Name\":\"etl\",\"App ID\":\"app-20240101-0001\",\"Timestamp\":1704067200000,\"User\":\"alice\",\"Spark Version\":\"3.5.1\"}",
+            "{\"Event\":\"SparkListenerApplicationEnd\",\"Timestamp\":1704070800000}",
+            "{\"Event\":\"SparkListenerEnvironmentUpdate\",\"JVM Information\":{\"Java Version\":\"17.0.2\"},"
+                    + "\"Spark Properties\":{\"spark.app.id\":\"app-20240101-0001\",\"spark.app.name\":\"etl\",\"spark.user.name\":\"alice\",\"spark.executor.cores\":\"4\"},"
+                    + "\"Hadoop Properties\":[[\"fs.defaultFS\",\"hdfs://nn\"],[\"dfs.replication\",3]],"
+                    + "\"System Properties\":[{\"Name\":\"os.name\",\"Value\":\"Linux\"},{\"key\":\"user.dir\",\"value\":\"/opt\"},{\"Name\":\"empty\"}],"
+                    + "\"Metrics Properties\":{},\"Classpath Entries\":{\"/opt/spark/jars/a.jar\":\"System Classpath\"}}",
+            "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":3,\"Submission Time\":1704067300000,"
+                    + "\"Stage Infos\":[{\"Stage ID\":5,\"Stage Attempt ID\":0,\"Stage Name\":\"count at Main.scala:10\",\"Number of Tasks\":200,\"RDD Info\":[{\"RDD ID\":1}],\"Accumulables\":[]},"
+                    + "{\"Stage ID\":6,\"Stage Name\":\"map\",\"Number of Tasks\":8}],\"Stage IDs\":[5,6],"
+                    + "\"Properties\":{\"spark.jobGroup.id\":\"g1\",\"spark.sql.execution.id\":\"12\",\"spark.job.callSite\":\"count at Main.scala:10\\nmore\",\"spark.scheduler.pool\":\"default\"}}",
+            "{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":3,\"Completion Time\":1704067400000,\"Job Result\":{\"Result\":\"JobSucceeded\"}}",
+            "{\"Event\":\"SparkListenerExecutorAdded\",\"Timestamp\":1704067210000,\"Executor ID\":\"1\","
+                    + "\"Executor Info\":{\"Host\":\"worker-1\",\"Total Cores\":4,\"Log Urls\":{\"stdout\":\"http://x\"},\"Resources\":{},\"Resource Profile Id\":0}}",
+            "{\"Event\":\"SparkListenerExecutorRemoved\",\"Timestamp\":1704069000000,\"Executor ID\":\"1\",\"Removed Reason\":\"Executor killed\"}",
+            "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":5,\"Stage Attempt ID\":1,\"Stage Name\":\"count at Main.scala:10\",\"Number of Tasks\":200,"
+                    + "\"RDD Info\":[{\"RDD ID\":7,\"Name\":\"cached\",\"Storage Level\":{\"Use Disk\":false,\"useMemory\":true,\"description\":\"Memory Deserialized 1x Replicated\"},"
+                    + "\"Number of Partitions\":200,\"Number of Cached Partitions\":0,\"Memory Size\":0,\"Disk Size\":0},"
+                    + "{\"RDD ID\":8,\"Name\":\"plain\",\"Storage Level\":{\"description\":\"None\"}}],"
+                    + "\"Parent IDs\":[3,4],\"Details\":\"org.apache.spark...\",\"Submission Time\":1704067301000,\"Accumulables\":[],\"Resource Profile Id\":0},"
+                    + "\"Properties\":{\"spark.sql.execution.id\":\"12\"}}",
+            "{\"Event\":\"SparkListenerStageCompleted\",\"Stage Info\":{\"Stage ID\":5,\"Stage Attempt ID\":1,\"Completion Time\":1704067399000,\"Failure Reason\":\"boom\",\"Accumulables\":[{\"ID\":1,\"Value\":\"2\"}]}}",
+            "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":5,\"Stage Attempt ID\":1,\"Task Type\":\"ResultTask\",\"Task End Reason\":{\"Reason\":\"Success\"},"
+                    + "\"Task Info\":{\"Task ID\":1001,\"Index\":17,\"Attempt\":0,\"Partition ID\":17,\"Launch Time\":1704067302000,\"Executor ID\":\"1\",\"Host\":\"worker-1\","
+                    + "\"Locality\":\"PROCESS_LOCAL\",\"Speculative\":false,\"Getting Result Time\":3,\"Finish Time\":1704067303500,\"Failed\":false,\"Killed\":false,"
+                    + "\"Accumulables\":[{\"ID\":10,\"Name\":\"internal.metrics.executorRunTime\",\"Update\":1200,\"Value\":5000}]},"
+                    + "\"Task Executor Metrics\":{\"JVMHeapMemory\":123456,\"OnHeapExecutionMemory\":0},"
+                    + "\"Task Metrics\":{\"Executor Deserialize Time\":20,\"Executor Deserialize CPU Time\":1000,\"Executor Run Time\":1200,\"Executor CPU Time\":900000,"
+                    + "\"Peak Execution Memory\":4096,\"Result Size\":1500,\"JVM GC Time\":30,\"Result Serialization Time\":2,\"Memory Bytes Spilled\":10,\"Disk Bytes Spilled\":20,"
+                    + "\"Shuffle Read Metrics\":{\"Remote Blocks Fetched\":1,\"Local Blocks Fetched\":2,\"Fetch Wait Time\":5,\"Remote Bytes Read\":100,\"Remote Bytes Read To Disk\":0,"
+                    + "\"Local Bytes Read\":50,\"Total Records Read\":7},"
+                    + "\"Shuffle Write Metrics\":{\"Shuffle Bytes Written\":300,\"Shuffle Write Time\":40,\"Shuffle Records Written\":9},"
+                    + "\"Input Metrics\":{\"Bytes Read\":1024,\"Records Read\":11},\"Output Metrics\":{\"Bytes Written\":0,\"Records Written\":0},\"Updated Blocks\":[]}}",
+            "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart\",\"executionId\":12,\"rootExecutionId\":12,\"description\":\"select 1\","
+                    + "\"details\":\"org.apache.spark.sql.Dataset.show\",\"physicalPlanDescription\":\"== Physical Plan ==\\n*(1) Project\","
+                    + "\"sparkPlanInfo\":{\"nodeName\":\"Project\",\"simpleString\":\"Project [1 AS x#0] caf\\u00e9\",\"children\":[],\"metadata\":{},\"metrics\":[{\"name\":\"rows\",\"accumulatorId\":3,\"metricType\":\"sum\"}],\"ratio\":1.5},"
+                    + "\"time\":1704067300500,\"modifiedConfigs\":{}}",
+            "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd\",\"executionId\":12,\"time\":1704067400500,\"errorMessage\":\"\"}",
+            "{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block Manager ID\":{\"Executor ID\":\"1\",\"Host\":\"worker-1\",\"Port\":40000},"
+                    + "\"Block ID\":\"rdd_7_3\",\"Storage Level\":{\"Use Disk\":false,\"Use Memory\":true,\"Deserialized\":true,\"Replication\":1,\"description\":\"Memory Deserialized 1x Replicated\"},"
+                    + "\"Memory Size\":2048,\"Disk Size\":0}}",
+            "{\"Event\":\"SparkListenerUnpersistRDD\",\"RDD ID\":7}");
+
+    @Test
+    void decodesEveryHandledEventLikeTheTreeExtraction() throws IOException {
+        Set<String> covered = new HashSet<>();
+        for (String line : TYPICAL) {
+            assertSameAsTree(line);
+            covered.add(mapper.readTree(line).get("Event").asText());
+        }
+        assertEquals(SparkEventDecoder.HANDLED_EVENTS, covered);
+
+        SparkEvent.TaskEnd taskEnd = (SparkEvent.TaskEnd) decode(TYPICAL.get(10));
+        TaskModel task = taskEnd.task();
+        assertEquals(1001L, task.getTaskId());
+        assertEquals(17, task.getTaskIndex());
+        assertEquals("SUCCESS", task.getStatus());
+        assertEquals(1500L, task.getDuration());
+        assertEquals(150L, task.getShuffleReadBytes());
+        assertEquals(100L, task.getShuffleRemoteRead());
+        // 1500 - 20 - 1200 - 2 - 3
+        assertEquals(275L, task.getSchedulerDelay());
+
+        SparkEvent.JobStart jobStart = (SparkEvent.JobStart) decode(TYPICAL.get(4));
+        assertEquals("count at Main.scala:10", jobStart.description());
+        assertEquals(12L, jobStart.sqlExecutionId());
+        assertEquals(List.of(5, 6), jobStart.stageIds());
+        assertEquals(208, jobStart.numTasks());
+
+        SparkEvent.StageSubmitted stage = (SparkEvent.StageSubmitted) decode(TYPICAL.get(8));
+        assertEquals(1, stage.persistedRdds().size());
+        assertEquals("3,4", stage.stage().getParentStageIds());
+    }
+
+    @Test
+    void missingFieldsFallBackToDefaults() throws IOException {
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerLogStart\"}",
+                "{\"Event\":\"SparkListenerApplicationStart\"}",
+                "{\"Event\":\"SparkListenerApplicationEnd\"}",
+                "{\"Event\":\"SparkListenerEnvironmentUpdate\"}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":1}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":1,\"Stage Infos\":[{\"Number of Tasks\":4}],\"Properties\":{\"spark.job.description\":\"\"}}",
+                "{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":1}",
+                "{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":1,\"Job Result\":{}}",
+                "{\"Event\":\"SparkListenerExecutorAdded\",\"Executor ID\":\"2\"}",
+                "{\"Event\":\"SparkListenerExecutorRemoved\",\"Executor ID\":\"2\"}",
+                "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":1}}",
+                "{\"Event\":\"SparkListenerStageSubmitted\"}",
+                "{\"Event\":\"SparkListenerStageCompleted\",\"Stage Info\":{\"Stage ID\":1}}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Task Info\":{}}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":1,\"Task End Reason\":{},\"Task Info\":{\"Task ID\":5,\"Launch Time\":100,\"Finish Time\":160},\"Task Metrics\":{}}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":1,\"Task End Reason\":\"Success\",\"Task Info\":{\"Task ID\":5}}",
+                "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart\",\"executionId\":1}",
+                "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd\"}",
+                "{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block ID\":\"rdd_1_0\"}}",
+                "{\"Event\":\"SparkListenerUnpersistRDD\"}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+
+        // 没有 Task Info 的 TaskEnd 无法确定 Task，直接丢弃
+        assertNull(decode("{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":1}"));
+
+        TaskModel task = ((SparkEvent.TaskEnd) decode(lines.get(13))).task();
+        assertEquals(-1L, task.getTaskId());
+        assertEquals("unknown", task.getExecutorId());
+        assertEquals("unknown", task.getStatus());
+        assertNull(task.getExecutorRunTime());
+        assertNull(task.getSchedulerDelay());
+
+        TaskModel withMetrics = ((SparkEvent.TaskEnd) decode(lines.get(14))).task();
+        assertEquals("FAILED", withMetrics.getStatus());
+        // Duration 缺失时用 Finish Time - Launch Time
+        assertEquals(60L, withMetrics.getDuration());
+        assertEquals(60L, withMetrics.getSchedulerDelay());
+        assertEquals(0L, withMetrics.getGcTime());
+
+        SparkEvent.JobStart jobStart = (SparkEvent.JobStart) decode(lines.get(4));
+        assertNull(jobStart.stageIds());
+        assertNull(jobStart.sqlExecutionId());
+        assertNull(jobStart.description());
+
+        assertEquals("unknown", ((SparkEvent.ExecutorRemoved) decode(lines.get(9))).reason());
+        assertEquals(0, ((SparkEvent.StageSubmitted) decode(lines.get(11))).stage().getAttemptId());
+    }
+
+    @Test
+    void nullValuesKeepAsTextSemantics() throws IOException {
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerApplicationStart\",\"App Name\":null,\"App ID\":null,\"Timestamp\":null,\"User\":null}",
+                "{\"Event\":\"SparkListenerEnvironmentUpdate\",\"Spark Properties\":{\"spark.app.name\":null},\"Hadoop Properties\":[[\"a\",null]],"
+                        + "\"System Properties\":[{\"Name\":null,\"Value\":null}],\"JVM Information\":null}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":1,\"Stage Infos\":null,\"Properties\":{\"spark.job.description\":null,\"spark.sql.execution.id\":null}}",
+                "{\"Event\":\"SparkListenerExecutorRemoved\",\"Executor ID\":\"2\",\"Removed Reason\":null}",
+                "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":1,\"Stage Name\":null,\"Parent IDs\":[null],\"RDD Info\":null,\"Submission Time\":null}}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Task End Reason\":{\"Reason\":null},\"Task Info\":{\"Task ID\":1,\"Host\":null,\"Executor ID\":null,\"Speculative\":null},\"Task Metrics\":null}",
+                "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart\",\"executionId\":1,\"description\":null,\"sparkPlanInfo\":null,\"time\":null}",
+                "{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block ID\":\"rdd_2_1\",\"Storage Level\":{\"description\":null},\"Memory Size\":null,\"Block Manager ID\":null}}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+
+        // 标量字段与 asText() 一致，null 变成 "null"；用作标识的字段 (App ID 等) 为 null
+        SparkEvent.ApplicationStart appStart = (SparkEvent.ApplicationStart) decode(lines.get(0));
+        assertNull(appStart.appId());
+        assertEquals(0L, appStart.timestamp());
+        assertEquals("null", ((SparkEvent.ExecutorRemoved) decode(lines.get(3))).reason());
+        TaskModel task = ((SparkEvent.TaskEnd) decode(lines.get(5))).task();
+        assertEquals("null", task.getHost());
+        assertEquals("FAILED", task.getStatus());
+        assertEquals(false, task.getSpeculative());
+        assertEquals("null", ((SparkEvent.SqlStart) decode(lines.get(6))).sql().getPlanInfo());
+    }
+
+    @Test
+    void convertsNumbersSentAsStringsAndStringsSentAsNumbers() throws IOException {
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerApplicationStart\",\"App ID\":12345,\"App Name\":true,\"Timestamp\":\"1704067200000\",\"User\":1.5}",
+                "{\"Event\":\"SparkListenerEnvironmentUpdate\",\"Spark Properties\":{\"spark.executor.instances\":4,\"spark.dynamicAllocation.enabled\":false,\"spark.memory.fraction\":0.6}}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":\"7\",\"Submission Time\":\"1704067300000\",\"Stage Infos\":[{\"Stage ID\":\"9\",\"Number of Tasks\":\"3\",\"Stage Name\":42}],"
+                        + "\"Properties\":{\"spark.sql.execution.id\":\"15\",\"spark.jobGroup.id\":77}}",
+                "{\"Event\":\"SparkListenerExecutorAdded\",\"Executor ID\":3,\"Timestamp\":\"1704067210000\",\"Executor Info\":{\"Host\":10.5,\"Total Cores\":\"8\",\"Memory\":\"1024\"}}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":\"1\",\"Stage Attempt ID\":\"0\",\"Task End Reason\":{\"Reason\":\"Success\"},"
+                        + "\"Task Info\":{\"Task ID\":\"42\",\"Index\":\"3\",\"Launch Time\":\"1000\",\"Finish Time\":\"1600\",\"Duration\":\"not a number\",\"Executor ID\":7,"
+                        + "\"Host\":123,\"Locality\":0,\"Speculative\":\"true\"},"
+                        + "\"Task Metrics\":{\"Executor Run Time\":\"500\",\"JVM GC Time\":12.9,\"Peak Execution Memory\":true,\"Input Metrics\":{\"Bytes Read\":\"64\"}}}",
+                "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":\"4\",\"Stage Attempt ID\":\"1\",\"Number of Tasks\":\"16\",\"Parent IDs\":[\"1\",2]}}",
+                "{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd\",\"executionId\":\"12\",\"time\":\"1704067400500\"}",
+                "{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block ID\":\"rdd_3_0\",\"Memory Size\":\"2048\",\"Block Manager ID\":{\"Executor ID\":5,\"Host\":\"w\"}}}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+
+        TaskModel task = ((SparkEvent.TaskEnd) decode(lines.get(4))).task();
+        assertEquals(42L, task.getTaskId());
+        assertEquals("7", task.getExecutorId());
+        assertEquals("123", task.getHost());
+        assertEquals(600L, task.getDuration());
+        assertEquals(12L, task.getGcTime());
+        assertEquals(1L, task.getPeakExecutionMemory());
+        assertEquals(true, task.getSpeculative());
+        assertEquals(15L, ((SparkEvent.JobStart) decode(lines.get(2))).sqlExecutionId());
+        assertEquals("12345", ((SparkEvent.ApplicationStart) decode(lines.get(0))).appId());
+    }
+
+    @Test
+    void skipsNestedAndUnknownFields() throws IOException {
+        String nested = "{\"a\":[1,{\"Task ID\":999,\"b\":[[],{}]}],\"Executor ID\":\"wrong\",\"Stage ID\":999}";
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Unknown\":" + nested + ",\"Stage ID\":1,\"Task Info\":{\"Extra\":" + nested + ",\"Task ID\":5,"
+                        + "\"Accumulables\":[{\"ID\":1,\"Update\":{\"Task ID\":7}}],\"Executor ID\":\"3\"},\"Task Executor Metrics\":" + nested + ","
+                        + "\"Task Metrics\":{\"Updated Blocks\":[" + nested + "],\"Executor Run Time\":10,\"Shuffle Read Metrics\":{\"Push Based Shuffle\":" + nested + ",\"Remote Bytes Read\":1}},\"Trailing\":[" + nested + "]}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":2,\"Stage Infos\":[{\"Stage ID\":3,\"RDD Info\":[" + nested + "],\"Accumulables\":[" + nested + "]}],"
+                        + "\"Properties\":{\"spark.extra\":" + nested + ",\"spark.jobGroup.id\":\"g\"},\"Job ID Extra\":" + nested + "}",
+                "{\"Event\":\"SparkListenerStageCompleted\",\"Unknown\":" + nested + ",\"Stage Info\":{\"Accumulables\":[" + nested + "],\"Stage ID\":4}}",
+                "{\"Event\":\"SparkListenerExecutorAdded\",\"Executor ID\":\"1\",\"Executor Info\":{\"Attributes\":" + nested + ",\"Host\":\"h\"}}",
+                "{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block Manager ID\":{\"Topology\":" + nested + ",\"Host\":\"h\"},\"Block ID\":\"rdd_1_1\"}}",
+                "{\"Event\":\"SparkListenerEnvironmentUpdate\",\"Resource Profiles\":" + nested + ",\"Spark Properties\":{\"k\":" + nested + "},\"Hadoop Properties\":[[\"a\",\"b\",\"c\"],7,[\"x\"]]}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+
+        TaskModel task = ((SparkEvent.TaskEnd) decode(lines.get(0))).task();
+        assertEquals(1, task.getStageId());
+        assertEquals(5L, task.getTaskId());
+        assertEquals("3", task.getExecutorId());
+        assertEquals(1L, task.getShuffleReadBytes());
+        assertEquals(List.of(3), ((SparkEvent.JobStart) decode(lines.get(1))).stageIds());
+    }
+
+    @Test
+    void skipsContainersWhereScalarsAreExpected() throws IOException {
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerApplicationStart\",\"Timestamp\":{\"App ID\":\"inner\"},\"App ID\":\"outer\"}",
+                "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":[1,2],\"Task Info\":{\"Task ID\":{\"Index\":9},\"Index\":3,\"Speculative\":[true]},"
+                        + "\"Task Metrics\":{\"Executor Run Time\":{\"JVM GC Time\":5},\"JVM GC Time\":2}}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":{\"Job ID\":5},\"Stage Infos\":[{\"Stage ID\":{\"x\":1},\"Number of Tasks\":2}]}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+        assertEquals("outer", ((SparkEvent.ApplicationStart) decode(lines.get(0))).appId());
+        TaskModel task = ((SparkEvent.TaskEnd) decode(lines.get(1))).task();
+        assertEquals(0L, task.getTaskId());
+        assertEquals(3, task.getTaskIndex());
+        assertEquals(2L, task.getGcTime());
+    }
+
+    @Test
+    void skipsStageInfosThatAreNotObjects() throws IOException {
+        List<String> lines = List.of(
+                "{\"Event\":\"SparkListenerJobStart\",\"Stage Infos\":[1,{\"Stage ID\":4,\"Stage Name\":\"second\",\"Number of Tasks\":2},"
+                        + "[{\"Stage ID\":9}],null,\"x\",{\"Stage ID\":5,\"Number of Tasks\":3}],\"Job ID\":7,\"Submission Time\":10}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":8,\"Stage Infos\":[{\"Stage ID\":1,\"Stage Name\":\"first\"},true,{\"Stage ID\":2}],"
+                        + "\"Properties\":{\"spark.jobGroup.id\":\"g\"}}",
+                "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":9,\"Stage Infos\":[[],{}]}");
+        for (String line : lines) {
+            assertSameAsTree(line);
+        }
+
+        // 数组之后的字段照常读取
+        SparkEvent.JobStart first = (SparkEvent.JobStart) decode(lines.get(0));
+        assertEquals(7, first.jobId());
+        assertEquals(10L, first.submissionTime());
+        assertEquals(List.of(4, 5), first.stageIds());
+        assertEquals(5, first.numTasks());
+        // 第一个元素不是对象时不用后面元素的 Stage Name
+        assertNull(first.description());
+
+        SparkEvent.JobStart second = (SparkEvent.JobStart) decode(lines.get(1));
+        assertEquals(List.of(1, 2), second.stageIds());
+        assertEquals("first", second.description());
+        assertEquals("g", second.jobGroup());
+        assertEquals(List.of(), ((SparkEvent.JobStart) decode(lines.get(2))).stageIds());
+    }
+
+    @Test
+    void fallsBackToTreeWhenEventIsNotTheFirstField() throws IOException {
+        String taskEnd = TYPICAL.get(10);
+        String reordered = "{\"Stage ID\":5," + taskEnd.substring(1).replace(",\"Stage ID\":5", "");
+        assertSameAsTree(reordered);
+        assertEquals(decode(taskEnd), decode(reordered));
+
+        assertSameAsTree("{\"Timestamp\":1704070800000,\"Event\":\"SparkListenerApplicationEnd\"}");
+        assertNull(decode("{\"Timestamp\":1}"));
+        assertNull(decode("{\"Timestamp\":1,\"Event\":\"SparkListenerTaskStart\"}"));
+    }
+
+    @Test
+    void ignoresUnhandledEventsAndNonObjects() throws IOException {
+        assertNull(decode("{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":1,\"Task Info\":{\"Task ID\":1}}"));
+        assertNull(decode("{\"Event\":\"org.apache.spark.sql.execution.ui.SparkListenerDriverAccumUpdates\",\"executionId\":1}"));
+        assertNull(decode("[1,2,3]"));
+        assertNull(decode("{}"));
+        // 非 rdd_ 的 Block 不记录
+        assertNull(decode("{\"Event\":\"SparkListenerBlockUpdated\",\"Block Updated Info\":{\"Block ID\":\"broadcast_1\"}}"));
+    }
+
+    @Test
+    void decodesALineInsideALargerBuffer() throws IOException {
+        String line = TYPICAL.get(10);
+        byte[] lineBytes = line.getBytes(StandardCharsets.UTF_8);
+        byte[] chunk = ("{\"Event\":\"SparkListenerLogStart\"}\n" + line + "\n{\"Event\":").getBytes(StandardCharsets.UTF_8);
+        int off = chunk.length - lineBytes.length - "\n{\"Event\":".length();
+        assertEquals(decode(line), decoder.decode(chunk, off, lineBytes.length));
+    }
+
+    private SparkEvent decode(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return decoder.decode(bytes, 0, bytes.length);
+    }
+
+    private void assertSameAsTree(String line) throws IOException {
+        SparkEvent expected = TreeReference.decode(mapper.readTree(line));
+        SparkEvent actual = decode(line);
+        // 环境配置的顺序没有意义 (原实现按固定的分类顺序，解码器按字段出现的顺序)
+        if (expected instanceof SparkEvent.EnvironmentUpdate e && actual instanceof SparkEvent.EnvironmentUpdate a) {
+            expected = new SparkEvent.EnvironmentUpdate(e.sparkAppId(), e.sparkAppName(), e.sparkUser(), sorted(e.configs()));
+            actual = new SparkEvent.EnvironmentUpdate(a.sparkAppId(), a.sparkAppName(), a.sparkUser(), sorted(a.configs()));
+        }
+        assertEquals(expected, actual, line);
+    }
+
+    private static List<EnvironmentConfigModel> sorted(List<EnvironmentConfigModel> configs) {
+        List<EnvironmentConfigModel> copy = new ArrayList<>(configs);
+        copy.sort(Comparator.comparing(EnvironmentConfigModel::getCategory)
+                .thenComparing(EnvironmentConfigModel::getParamKey, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(EnvironmentConfigModel::getParamValue, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return copy;
+    }
+
+    /**
+     * 原 JacksonEventParser 各 handler 基于 JsonNode 的字段提取
+     */
+    private static class TreeReference {
+
+        static SparkEvent decode(JsonNode node) {
+            JsonNode event = node.get("Event");
+            if (event == null) return null;
+            return switch (event.asText()) {
+                case SparkEventDecoder.LOG_START -> new SparkEvent.LogStart(text(node.get("Spark Version")));
+                case SparkEventDecoder.APPLICATION_START -> new SparkEvent.ApplicationStart(text(node.get("App ID")),
+                        text(node.get("App Name")), text(node.get("User")), asLong(node.get("Timestamp"), 0L),
+                        text(node.get("Spark Version")));
+                case SparkEventDecoder.APPLICATION_END -> new SparkEvent.ApplicationEnd(asLong(node.get("Timestamp"), 0L));
+                case SparkEventDecoder.ENVIRONMENT_UPDATE -> envUpdate(node);
+                case SparkEventDecoder.JOB_START -> jobStart(node);
+                case SparkEventDecoder.JOB_END -> new SparkEvent.JobEnd(asInt(node.get("Job ID"), -1),
+                        asLong(node.get("Completion Time"), 0L), "JobSucceeded".equals(field(node.get("Job Result"), "Result")));
+                case SparkEventDecoder.EXECUTOR_ADDED -> {
+                    JsonNode info = object(node.get("Executor Info"));
+                    yield new SparkEvent.ExecutorAdded(text(node.get("Executor ID")), text(info.get("Host")),
+                            asLong(node.get("Timestamp"), 0L), asInt(info.get("Total Cores"), 0), asLong(info.get("Memory"), 0L));
+                }
+                case SparkEventDecoder.EXECUTOR_REMOVED -> new SparkEvent.ExecutorRemoved(text(node.get("Executor ID")),
+                        asLong(node.get("Timestamp"), 0L), node.has("Removed Reason") ? node.get("Removed Reason").asText() : "unknown");
+                case SparkEventDecoder.STAGE_SUBMITTED -> stageSubmitted(node);
+                case SparkEventDecoder.STAGE_COMPLETED -> {
+                    JsonNode info = object(node.get("Stage Info"));
+                    yield new SparkEvent.StageCompleted(asInt(info.get("Stage ID"), -1), asInt(info.get("Stage Attempt ID"), 0),
+                            asLong(info.get("Completion Time"), 0L), info.has("Failure Reason"));
+                }
+                case SparkEventDecoder.TASK_END -> taskEnd(node);
+                case SparkEventDecoder.SQL_START -> sqlStart(node);
+                case SparkEventDecoder.SQL_END -> new SparkEvent.SqlEnd(asLong(node.get("executionId"), -1L),
+                        asLong(node.get("time"), 0L));
+                case SparkEventDecoder.BLOCK_UPDATED -> blockUpdated(node);
+                case SparkEventDecoder.UNPERSIST_RDD -> new SparkEvent.UnpersistRdd(asInt(node.get("RDD ID"), -1));
+                default -> null;
+            };
+        }
+
+        private static SparkEvent envUpdate(JsonNode node) {
+            List<EnvironmentConfigModel> configs = new ArrayList<>();
+            extractProps(node, "Spark Properties", "spark_conf", configs);
+            extractProps(node, "JVM Information", "jvm_info", configs);
+            extractProps(node, "Hadoop Properties", "hadoop_conf", configs);
+            extractProps(node, "System Properties", "system_props", configs);
+            extractProps(node, "Metrics Properties", "metrics_props", configs);
+            extractProps(node, "Classpath Entries", "classpath_entries", configs);
+            String[] sparkProps = new String[3];
+            for (EnvironmentConfigModel c : configs) {
+                if (!"spark_conf".equals(c.getCategory()) || c.getParamKey() == null) continue;
+                switch (c.getParamKey()) {
+                    case "spark.app.id" -> sparkProps[0] = c.getParamValue();
+                    case "spark.app.name" -> sparkProps[1] = c.getParamValue();
+                    case "spark.user.name" -> sparkProps[2] = c.getParamValue();
+                    default -> {
+                    }
+                }
+            }
+            return new SparkEvent.EnvironmentUpdate(sparkProps[0], sparkProps[1], sparkProps[2], configs);
+        }
+
+        private static void extractProps(JsonNode node, String fieldName, String category, List<EnvironmentConfigModel> batch) {
+            JsonNode props = node.get(fieldName);
+            if (props == null) return;
+            if (props.isObject()) {
+                props.fields().forEachRemaining(entry -> add(category, entry.getKey(), entry.getValue().asText(), batch));
+            } else if (props.isArray()) {
+                for (JsonNode item : props) {
+                    if (item.isArray() && item.size() >= 2) {
+                        add(category, item.get(0).asText(), item.get(1).asText(), batch);
+                    } else if (item.isObject()) {
+                        String name = item.has("Name") ? item.get("Name").asText() : (item.has("key") ? item.get("key").asText() : null);
+                        String value = item.has("Value") ? item.get("Value").asText() : (item.has("value") ? item.get("value").asText() : "");
+                        if (name != null) add(category, name, value, batch);
+                    }
+                }
+            }
+        }
+
+        private static void add(String category, String key, String value, List<EnvironmentConfigModel> batch) {
+            EnvironmentConfigModel config = new EnvironmentConfigModel();
+            config.setParamKey(key);
+            config.setParamValue(value);
+            config.setCategory(category);
+            batch.add(config);
+        }
+
+        private static SparkEvent jobStart(JsonNode node) {
+            String description = null;
+            String jobGroup = null;
+            Long sqlExecutionId = null;
+            JsonNode props = node.get("Properties");
+            if (props != null && props.isObject()) {
+                if (props.has("spark.job.description")) {
+                    description = props.get("spark.job.description").asText();
+                } else if (props.has("spark.job.callSite")) {
+                    description = props.get("spark.job.callSite").asText();
+                }
+                if (props.has("spark.jobGroup.id")) jobGroup = props.get("spark.jobGroup.id").asText();
+                if (props.has("spark.sql.execution.id")) sqlExecutionId = props.get("spark.sql.execution.id").asLong();
+            }
+            JsonNode stageInfos = node.get("Stage Infos");
+            if (description == null || description.isEmpty()) {
+                description = null;
+                if (stageInfos != null && stageInfos.isArray() && stageInfos.size() > 0 && stageInfos.get(0).has("Stage Name")) {
+                    description = text(stageInfos.get(0).get("Stage Name"));
+                }
+            }
+            if (description != null && description.contains("\n")) description = description.split("\\n")[0];
+            if (description != null && description.length() > 250) description = description.substring(0, 247) + "...";
+
+            List<Integer> stageIds = null;
+            int totalTasks = 0;
+            if (stageInfos != null && stageInfos.isArray()) {
+                stageIds = new ArrayList<>();
+                for (JsonNode s : stageInfos) {
+                    if (s.has("Stage ID")) stageIds.add(s.get("Stage ID").asInt());
+                    if (s.has("Number of Tasks")) totalTasks += s.get("Number of Tasks").asInt();
+                }
+            }
+            return new SparkEvent.JobStart(asInt(node.get("Job ID"), -1), asLong(node.get("Submission Time"), 0L),
+                    description, jobGroup, sqlExecutionId, stageIds, totalTasks);
+        }
+
+        private static SparkEvent stageSubmitted(JsonNode node) {
+            JsonNode info = object(node.get("Stage Info"));
+            StageModel stage = new StageModel();
+            stage.setStatus("RUNNING");
+            if (info.has("Stage ID")) stage.setStageId(info.get("Stage ID").asInt());
+            stage.setAttemptId(asInt(info.get("Stage Attempt ID"), 0));
+            if (info.has("Stage Name")) stage.setStageName(text(info.get("Stage Name")));
+            if (info.has("Number of Tasks")) stage.setNumTasks(info.get("Number of Tasks").asInt());
+            if (info.has("Submission Time")) {
+                stage.setSubmissionTime(SparkEventDecoder.parseTimestamp(info.get("Submission Time").asLong()));
+            }
+            JsonNode parents = info.get("Parent IDs");
+            if (parents != null && parents.isArray() && parents.size() > 0) {
+                List<String> ids = new ArrayList<>();
+                for (JsonNode p : parents) ids.add(p.asText());
+                stage.setParentStageIds(String.join(",", ids));
+            }
+            List<StorageRddModel> persisted = new ArrayList<>();
+            if (info.has("RDD Info")) {
+                JsonNode rddInfos = info.get("RDD Info");
+                stage.setRddInfo(rddInfos.toString());
+                for (JsonNode r : rddInfos) {
+                    if (!r.has("Storage Level")) continue;
+                    String storageLevel = r.get("Storage Level").toString();
+                    if (!storageLevel.contains("useMemory") && !storageLevel.contains("useDisk")) continue;
+                    StorageRddModel rdd = new StorageRddModel();
+                    rdd.setRddId(r.path("RDD ID").asInt());
+                    rdd.setName(r.path("Name").asText());
+                    rdd.setStorageLevel(r.get("Storage Level").path("description").asText());
+                    rdd.setNumPartitions(r.path("Number of Partitions").asInt());
+                    rdd.setNumCached_partitions(r.path("Number of Cached Partitions").asInt());
+                    rdd.setMemorySize(r.path("Memory Size").asLong());
+                    rdd.setDiskSize(r.path("Disk Size").asLong());
+                    persisted.add(rdd);
+                }
+            }
+            return new SparkEvent.StageSubmitted(stage, persisted);
+        }
+
+        private static SparkEvent taskEnd(JsonNode node) {
+            JsonNode info = node.get("Task Info");
+            if (info == null || !info.isObject()) return null;
+            JsonNode metrics = node.get("Task Metrics");
+
+            long launchTime = asLong(info.get("Launch Time"), 0L);
+            long finishTime = asLong(info.get("Finish Time"), 0L);
+            long duration = asLong(info.get("Duration"), 0L);
+            if (duration <= 0 && finishTime > launchTime) duration = finishTime - launchTime;
+
+            TaskModel task = new TaskModel();
+            task.setStageId(asInt(node.get("Stage ID"), -1));
+            task.setAttemptId(asInt(node.get("Stage Attempt ID"), 0));
+            task.setTaskId(asLong(info.get("Task ID"), -1L));
+            task.setTaskIndex(asInt(info.get("Index"), -1));
+            task.setExecutorId(info.has("Executor ID") ? info.get("Executor ID").asText() : "unknown");
+            task.setHost(info.has("Host") ? info.get("Host").asText() : "unknown");
+            task.setLocality(info.has("Locality") ? info.get("Locality").asText() : "unknown");
+            task.setLaunchTime(launchTime);
+            task.setFinishTime(finishTime);
+            task.setDuration(duration);
+            task.setSpeculative(info.has("Speculative") && info.get("Speculative").asBoolean());
+
+            String status = "unknown";
+            if (node.has("Task End Reason")) {
+                status = "Success".equals(field(node.get("Task End Reason"), "Reason")) ? "SUCCESS" : "FAILED";
+            }
+            task.setStatus(status);
+
+            if (metrics != null && metrics.isObject()) {
+                long deserialize = asLong(metrics.get("Executor Deserialize Time"), 0L);
+                long run = asLong(metrics.get("Executor Run Time"), 0L);
+                long serialize = asLong(metrics.get("Result Serialization Time"), 0L);
+                long gettingResult = asLong(info.get("Getting Result Time"), 0L);
+                task.setExecutorDeserializeTime(deserialize);
+                task.setExecutorRunTime(run);
+                task.setResultSerializationTime(serialize);
+                task.setExecutorCpuTime(asLong(metrics.get("Executor CPU Time"), 0L));
+                task.setGettingResultTime(gettingResult);
+                task.setSchedulerDelay(Math.max(0L, duration - deserialize - run - serialize - gettingResult));
+                task.setGcTime(asLong(metrics.get("JVM GC Time"), 0L));
+                task.setPeakExecutionMemory(asLong(metrics.get("Peak Execution Memory"), 0L));
+                task.setMemoryBytesSpilled(asLong(metrics.get("Memory Bytes Spilled"), 0L));
+                task.setDiskBytesSpilled(asLong(metrics.get("Disk Bytes Spilled"), 0L));
+
+                JsonNode input = metrics.get("Input Metrics");
+                if (input != null && input.isObject()) {
+                    task.setInputBytes(asLong(input.get("Bytes Read"), 0L));
+                    task.setInputRecords(asLong(input.get("Records Read"), 0L));
+                }
+                JsonNode output = metrics.get("Output Metrics");
+                if (output != null && output.isObject()) {
+                    task.setOutputBytes(asLong(output.get("Bytes Written"), 0L));
+                    task.setOutputRecords(asLong(output.get("Records Written"), 0L));
+                }
+                JsonNode shuffleRead = metrics.get("Shuffle Read Metrics");
+                if (shuffleRead != null && shuffleRead.isObject()) {
+                    long remote = asLong(shuffleRead.get("Remote Bytes Read"), 0L);
+                    long local = asLong(shuffleRead.get("Local Bytes Read"), 0L);
+                    task.setShuffleReadBytes(remote + local);
+                    task.setShuffleRemoteRead(remote);
+                    task.setShuffleReadRecords(asLong(shuffleRead.get("Total Records Read"), 0L));
+                    task.setShuffleFetchWaitTime(asLong(shuffleRead.get("Fetch Wait Time"), 0L));
+                }
+                JsonNode shuffleWrite = metrics.get("Shuffle Write Metrics");
+                if (shuffleWrite != null && shuffleWrite.isObject()) {
+                    task.setShuffleWriteBytes(asLong(shuffleWrite.get("Shuffle Bytes Written"), 0L));
+                    task.setShuffleWriteRecords(asLong(shuffleWrite.get("Shuffle Records Written"), 0L));
+                    task.setShuffleWriteTime(asLong(shuffleWrite.get("Shuffle Write Time"), 0L));
+                }
+            }
+            return new SparkEvent.TaskEnd(task);
+        }
+
+        private static SparkEvent sqlStart(JsonNode node) {
+            SqlExecutionModel sql = new SqlExecutionModel();
+            sql.setStatus("RUNNING");
+            if (node.has("executionId")) sql.setExecutionId(node.get("executionId").asLong());
+            if (node.has("description")) sql.setDescription(node.get("description").asText());
+            if (node.has("details")) sql.setDetails(node.get("details").asText());
+            if (node.has("physicalPlanDescription")) sql.setPhysicalPlan(node.get("physicalPlanDescription").asText());
+            if (node.has("sparkPlanInfo")) sql.setPlanInfo(node.get("sparkPlanInfo").toString());
+            if (node.has("time")) sql.setStartTime(SparkEventDecoder.parseTimestamp(node.get("time").asLong()));
+            return new SparkEvent.SqlStart(sql);
+        }
+
+        private static SparkEvent blockUpdated(JsonNode node) {
+            JsonNode info = object(node.get("Block Updated Info"));
+            String blockId = text(info.get("Block ID"));
+            if (blockId == null || !blockId.startsWith("rdd_")) return null;
+            StorageBlockModel block = new StorageBlockModel();
+            block.setBlockName(blockId);
+            block.setRddId(Integer.parseInt(blockId.split("_")[1]));
+            if (info.has("Storage Level")) block.setStorageLevel(field(info.get("Storage Level"), "description"));
+            if (info.has("Memory Size")) block.setMemorySize(info.get("Memory Size").asLong());
+            if (info.has("Disk Size")) block.setDiskSize(info.get("Disk Size").asLong());
+            JsonNode manager = object(info.get("Block Manager ID"));
+            if (manager.has("Executor ID")) block.setExecutorId(manager.get("Executor ID").asText());
+            if (manager.has("Host")) block.setHost(manager.get("Host").asText());
+            return new SparkEvent.BlockUpdated(block);
+        }
+
+        /**
+         * 用作标识的文本字段：缺失或 JSON null 时为 null，其余与 asText() 相同
+         */
+        private static String text(JsonNode node) {
+            return node == null || node.isNull() ? null : node.asText();
+        }
+
+        private static String field(JsonNode node, String name) {
+            return node != null && node.isObject() && node.has(name) ? node.get(name).asText() : null;
+        }
+
+        private static JsonNode object(JsonNode node) {
+            return node != null && node.isObject() ? node : ObjectMapperHolder.EMPTY;
+        }
+
+        private static long asLong(JsonNode node, long defaultValue) {
+            return node == null ? defaultValue : node.asLong();
+        }
+
+        private static int asInt(JsonNode node, int defaultValue) {
+            return node == null ? defaultValue : node.asInt();
+        }
+    }
+
+    private static class ObjectMapperHolder {
+        static final JsonNode EMPTY = new ObjectMapper().createObjectNode();
+    }
+}
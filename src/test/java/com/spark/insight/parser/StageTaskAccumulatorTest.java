@@ -0,0 +1,175 @@
+package com.spark.insight.parser;
+
+import com.spark.insight.model.TaskModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 解析时累加的结果与 updateStageMetrics 在 tasks 上用 SQL 聚合的语义对比：
+ * sum / max 忽略 null (全为 null 时结果为 null)，count 按状态计数，Locality 按名称排序输出
+ */
+class StageTaskAccumulatorTest {
+
+    @Test
+    void snapshotMatchesSqlAggregation() {
+        List<TaskModel> tasks = randomTasks(new Random(1), 2000);
+        StageTaskAccumulator acc = new StageTaskAccumulator(3, 1);
+        tasks.forEach(acc::add);
+        StageTaskAccumulator.Snapshot snapshot = acc.snapshot();
+
+        assertEquals(3, snapshot.stageId());
+        assertEquals(1, snapshot.attemptId());
+        assertEquals(tasks.stream().filter(t -> "SUCCESS".equals(t.getStatus()) || "SUCCEEDED".equals(t.getStatus())).count(),
+                snapshot.doneTasks());
+        assertEquals(tasks.stream().filter(t -> "FAILED".equals(t.getStatus())).count(), snapshot.failedTasks());
+        for (int i = 0; i < StageTaskAccumulator.SUM_COLUMNS.size(); i++) {
+            StageTaskAccumulator.Column column = StageTaskAccumulator.SUM_COLUMNS.get(i);
+            assertEquals(sqlSum(tasks, column.getter()), snapshot.sums()[i], column.name());
+        }
+        assertEquals(sqlMax(tasks, TaskModel::getPeakExecutionMemory), snapshot.maxPeakMemory());
+        assertEquals(sqlMax(tasks, TaskModel::getDuration), snapshot.maxDuration());
+        assertEquals(sqlHistogram(tasks), snapshot.localitySummary());
+
+        List<Long> durations = nonNull(tasks, TaskModel::getDuration);
+        assertWithinAccuracy(exactQuantile(durations, 0.5), snapshot.p50());
+        assertWithinAccuracy(exactQuantile(durations, 0.95), snapshot.p95());
+        assertWithinAccuracy(exactQuantile(durations, 0.99), snapshot.p99());
+
+        assertEquals(StageTaskAccumulator.METRICS.size(), snapshot.metrics().size());
+        for (int i = 0; i < StageTaskAccumulator.METRICS.size(); i++) {
+            StageTaskAccumulator.Column column = StageTaskAccumulator.METRICS.get(i);
+            StageTaskAccumulator.MetricSummary summary = snapshot.metrics().get(i);
+            List<Long> values = nonNull(tasks, column.getter());
+            assertEquals(column.name(), summary.name());
+            assertEquals(values.size(), summary.count(), column.name());
+            assertEquals(sqlMin(tasks, column.getter()), summary.min(), column.name());
+            assertEquals(sqlMax(tasks, column.getter()), summary.max(), column.name());
+            if (!values.isEmpty()) {
+                assertWithinAccuracy(exactQuantile(values, 0.25), summary.p25());
+                assertWithinAccuracy(exactQuantile(values, 0.75), summary.p75());
+            }
+            QuantileSketch sketch = QuantileSketch.fromBytes(Base64.getDecoder().decode(summary.sketch()));
+            assertEquals(summary.count(), sketch.count());
+            assertEquals(summary.p50(), sketch.quantile(0.5));
+        }
+    }
+
+    @Test
+    void columnsThatAreAlwaysNullStayNull() {
+        StageTaskAccumulator acc = new StageTaskAccumulator(0, 0);
+        TaskModel task = new TaskModel();
+        task.setStatus("RUNNING");
+        task.setInputBytes(null);
+        task.setInputRecords(null);
+        task.setOutputBytes(null);
+        task.setOutputRecords(null);
+        task.setMemoryBytesSpilled(null);
+        acc.add(task);
+        acc.add(task);
+
+        StageTaskAccumulator.Snapshot snapshot = acc.snapshot();
+        assertEquals(0L, snapshot.doneTasks());
+        assertEquals(0L, snapshot.failedTasks());
+        for (Long sum : snapshot.sums()) {
+            assertNull(sum);
+        }
+        assertNull(snapshot.maxPeakMemory());
+        assertNull(snapshot.p50());
+        assertNull(snapshot.maxDuration());
+        assertNull(snapshot.localitySummary());
+        for (StageTaskAccumulator.MetricSummary summary : snapshot.metrics()) {
+            assertEquals(0L, summary.count());
+            assertNull(summary.min());
+            assertNull(summary.p50());
+        }
+    }
+
+    @Test
+    void snapshotDoesNotChangeWithLaterTasks() {
+        StageTaskAccumulator acc = new StageTaskAccumulator(0, 0);
+        acc.add(task("SUCCESS", 100L, "NODE_LOCAL"));
+        StageTaskAccumulator.Snapshot first = acc.snapshot();
+        acc.add(task("FAILED", 300L, "ANY"));
+        StageTaskAccumulator.Snapshot second = acc.snapshot();
+
+        assertEquals(1L, first.doneTasks());
+        assertEquals(100L, first.sums()[1]);
+        assertEquals("NODE_LOCAL: 1", first.localitySummary());
+        assertEquals(1L, second.failedTasks());
+        assertEquals(400L, second.sums()[1]);
+        assertEquals(300L, second.maxDuration());
+        assertEquals("ANY: 1, NODE_LOCAL: 1", second.localitySummary());
+    }
+
+    private static List<TaskModel> randomTasks(Random random, int n) {
+        String[] statuses = {"SUCCESS", "SUCCESS", "SUCCESS", "SUCCEEDED", "FAILED", "KILLED", "unknown"};
+        String[] localities = {"PROCESS_LOCAL", "NODE_LOCAL", "RACK_LOCAL", "ANY", null};
+        List<TaskModel> tasks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TaskModel task = task(statuses[random.nextInt(statuses.length)], 50L + random.nextInt(5000),
+                    localities[random.nextInt(localities.length)]);
+            task.setGcTime(random.nextInt(10) == 0 ? null : (long) random.nextInt(200));
+            task.setExecutorRunTime(random.nextInt(5) == 0 ? null : (long) random.nextInt(4000));
+            task.setPeakExecutionMemory(random.nextBoolean() ? null : (long) random.nextInt(1 << 30));
+            task.setShuffleReadBytes(random.nextInt(3) == 0 ? 0L : (long) random.nextInt(1 << 24));
+            task.setShuffleWriteTime((long) random.nextInt(1_000_000));
+            task.setInputBytes((long) random.nextInt(1 << 20));
+            task.setDiskBytesSpilled(random.nextInt(100) == 0 ? (long) random.nextInt(1 << 26) : 0L);
+            // 所有 Task 上都为 null 的列
+            task.setShuffleRemoteRead(null);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private static TaskModel task(String status, Long duration, String locality) {
+        TaskModel task = new TaskModel();
+        task.setStatus(status);
+        task.setDuration(duration);
+        task.setLocality(locality);
+        return task;
+    }
+
+    private static List<Long> nonNull(List<TaskModel> tasks, Function<TaskModel, Long> getter) {
+        return tasks.stream().map(getter).filter(Objects::nonNull).sorted().toList();
+    }
+
+    private static Long sqlSum(List<TaskModel> tasks, Function<TaskModel, Long> getter) {
+        List<Long> values = nonNull(tasks, getter);
+        return values.isEmpty() ? null : values.stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static Long sqlMax(List<TaskModel> tasks, Function<TaskModel, Long> getter) {
+        List<Long> values = nonNull(tasks, getter);
+        return values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    private static Long sqlMin(List<TaskModel> tasks, Function<TaskModel, Long> getter) {
+        List<Long> values = nonNull(tasks, getter);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    // histogram(locality) 忽略 null，按键排序
+    private static String sqlHistogram(List<TaskModel> tasks) {
+        Map<String, Long> counts = new TreeMap<>();
+        tasks.stream().map(TaskModel::getLocality).filter(Objects::nonNull).forEach(l -> counts.merge(l, 1L, Long::sum));
+        if (counts.isEmpty()) return null;
+        StringJoiner joiner = new StringJoiner(", ");
+        counts.forEach((k, v) -> joiner.add(k + ": " + v));
+        return joiner.toString();
+    }
+
+    private static long exactQuantile(List<Long> sorted, double q) {
+        return sorted.get((int) Math.floor(q * (sorted.size() - 1)));
+    }
+
+    private static void assertWithinAccuracy(long exact, Long approx) {
+        assertNotNull(approx);
+        assertTrue(Math.abs(approx - exact) <= QuantileSketch.RELATIVE_ACCURACY * exact + 1,
+                "exact=" + exact + " approx=" + approx);
+    }
+}
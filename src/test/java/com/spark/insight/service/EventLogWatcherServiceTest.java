@@ -0,0 +1,144 @@
+package com.spark.insight.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spark.insight.config.InsightProperties;
+import com.spark.insight.model.ParsedEventLogModel;
+import com.spark.insight.parser.EventParser;
+import com.spark.insight.parser.ParseCheckpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 滚动日志只有一部分文件变化时，只解析变化的文件，整组处理完后仍然调用 finishGroup 收尾
+ */
+class EventLogWatcherServiceTest {
+
+    private static final String APP = "spark-app-1";
+
+    private final BlockingQueue<String> calls = new LinkedBlockingQueue<>();
+    private final EventLogCatalog catalog = new EventLogCatalog(null, null);
+    private boolean failParse;
+
+    @TempDir
+    Path tempDir;
+
+    private EventLogWatcherService watcher;
+    private File first;
+    private File middle;
+    private File last;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        InsightProperties properties = new InsightProperties();
+        properties.setEventLogPath(tempDir.toString());
+        properties.getScheduler().setWatch(false);
+        EventParser parser = new EventParser() {
+            @Override
+            public void parse(File logFile) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ParseCheckpoint parse(File logFile, int currentFileIndex, int totalFiles, ParseCheckpoint resume) {
+                calls.add("parse " + logFile.getName() + " " + currentFileIndex + "/" + totalFiles);
+                if (failParse) throw new IllegalStateException("broken log");
+                return null;
+            }
+
+            @Override
+            public void finishGroup(List<File> files) {
+                calls.add("finish " + files.stream().map(File::getName).toList());
+            }
+
+            @Override
+            public boolean supports(String version) {
+                return true;
+            }
+        };
+        watcher = new EventLogWatcherService(properties, parser, catalog, new ObjectMapper(),
+                new IngestionScheduler(properties, new SimpleMeterRegistry()));
+
+        first = write("events_1_" + APP, "{\"Event\":\"SparkListenerLogStart\"}\n");
+        middle = write("events_2_" + APP, "{\"Event\":\"SparkListenerJobStart\"}\n");
+        last = write("events_3_" + APP, "{\"Event\":\"SparkListenerApplicationEnd\"}\n");
+        record(first, "SUCCESS");
+        record(middle, "SUCCESS");
+        record(last, "SUCCESS");
+    }
+
+    @Test
+    void middleFileReparsedWhileLaterFilesAreUnchanged() throws InterruptedException {
+        // 后台全文件指纹校验发现中间的文件不一致
+        record(middle, "STALE");
+
+        watcher.scan();
+
+        assertEquals(List.of("parse " + middle.getName() + " 2/3",
+                "finish " + List.of(first.getName(), middle.getName(), last.getName())), awaitFinish());
+        assertEquals("SUCCESS", catalog.get(middle.getAbsolutePath()).getStatus());
+    }
+
+    @Test
+    void groupIsFinishedWhenTheParseFails() throws InterruptedException {
+        record(first, "STALE");
+        failParse = true;
+
+        watcher.scan();
+
+        assertEquals(List.of("parse " + first.getName() + " 1/3",
+                "finish " + List.of(first.getName(), middle.getName(), last.getName())), awaitFinish());
+        assertEquals("FAILED", catalog.get(first.getAbsolutePath()).getStatus());
+    }
+
+    @Test
+    void unchangedGroupIsNotSubmitted() throws InterruptedException {
+        watcher.scan();
+        assertNull(calls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 收集调用直到 finishGroup
+     */
+    private List<String> awaitFinish() throws InterruptedException {
+        List<String> result = new ArrayList<>();
+        String call;
+        do {
+            call = calls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(call, "expected finishGroup after " + result);
+            result.add(call);
+        } while (!call.startsWith("finish"));
+        return result;
+    }
+
+    private void record(File file, String status) {
+        ParsedEventLogModel record = new ParsedEventLogModel();
+        record.setFilePath(file.getAbsolutePath());
+        record.setLastModified(file.lastModified());
+        record.setFileSize(file.length());
+        record.setStatus(status);
+        record.setParsedAt(LocalDateTime.now());
+        catalog.update(record);
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+}
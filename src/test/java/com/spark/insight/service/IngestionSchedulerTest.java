@@ -0,0 +1,205 @@
+package com.spark.insight.service;
+
+import com.spark.insight.config.InsightProperties;
+import com.spark.insight.model.dto.IngestionQueueStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 任务数 / 字节预算、超预算任务单独运行和 bump 之后的出队顺序
+ */
+class IngestionSchedulerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void releaseAll() {
+        gates.values().forEach(CountDownLatch::countDown);
+    }
+
+    @Test
+    void startsJobsWhileTheyFitTheBudget() throws Exception {
+        IngestionScheduler scheduler = scheduler(10, 3, InsightProperties.IngestionPriority.SMALLEST_FIRST);
+        assertTrue(submit(scheduler, "a", MB));
+        assertTrue(submit(scheduler, "b", MB));
+        assertTrue(submit(scheduler, "c", 2 * MB));
+
+        assertEquals(List.of("a", "b"), running(scheduler));
+        assertEquals(List.of("c"), queued(scheduler));
+        assertEquals(2 * MB, scheduler.status().getBytesInFlight());
+
+        finish("a");
+        assertNextStart("c");
+        assertEquals(List.of("b", "c"), running(scheduler));
+        assertEquals(3 * MB, scheduler.status().getBytesInFlight());
+    }
+
+    @Test
+    void limitsTheNumberOfRunningApps() throws Exception {
+        IngestionScheduler scheduler = scheduler(2, 1024, InsightProperties.IngestionPriority.SMALLEST_FIRST);
+        submit(scheduler, "a", 10);
+        submit(scheduler, "b", 10);
+        submit(scheduler, "c", 10);
+        assertEquals(List.of("a", "b"), running(scheduler));
+        assertEquals(List.of("c"), queued(scheduler));
+
+        finish("b");
+        assertNextStart("c");
+        assertEquals(List.of("a", "c"), running(scheduler));
+    }
+
+    @Test
+    void overBudgetJobRunsAloneAndIsNotOvertaken() throws Exception {
+        IngestionScheduler scheduler = scheduler(10, 1, InsightProperties.IngestionPriority.NEWEST_FIRST);
+        submit(scheduler, "small", MB / 2, 3_000_000L);
+        submit(scheduler, "big", 5 * MB, 2_000_000L);
+        // 放得进剩余预算，但排在 big 后面，不能插队
+        submit(scheduler, "tiny", 1024, 1_000_000L);
+        assertEquals(List.of("small"), running(scheduler));
+        assertEquals(List.of("big", "tiny"), queued(scheduler));
+
+        finish("small");
+        assertNextStart("big");
+        assertEquals(List.of("big"), running(scheduler));
+        assertEquals(List.of("tiny"), queued(scheduler));
+
+        finish("big");
+        assertNextStart("tiny");
+        assertTrue(queued(scheduler).isEmpty());
+    }
+
+    @Test
+    void overBudgetJobStartsImmediatelyWhenNothingElseRuns() throws Exception {
+        IngestionScheduler scheduler = scheduler(10, 1, InsightProperties.IngestionPriority.SMALLEST_FIRST);
+        submit(scheduler, "big", 5 * MB);
+        assertEquals(List.of("big"), running(scheduler));
+        assertEquals(5 * MB, scheduler.status().getBytesInFlight());
+    }
+
+    @Test
+    void bumpedJobsGoFirstMostRecentBumpAhead() throws Exception {
+        IngestionScheduler scheduler = scheduler(1, 1024, InsightProperties.IngestionPriority.SMALLEST_FIRST);
+        submit(scheduler, "blocker", 10);
+        submit(scheduler, "x", 1024);
+        submit(scheduler, "y", 2048);
+        submit(scheduler, "z", 4096);
+        assertEquals(List.of("x", "y", "z"), queued(scheduler));
+
+        assertTrue(scheduler.bump("z"));
+        assertEquals(List.of("z", "x", "y"), queued(scheduler));
+        assertTrue(scheduler.bump("y"));
+        assertEquals(List.of("y", "z", "x"), queued(scheduler));
+        assertTrue(scheduler.status().getQueued().get(0).isBumped());
+        assertFalse(scheduler.status().getQueued().get(2).isBumped());
+        // 正在运行或不存在的任务不能 bump
+        assertFalse(scheduler.bump("blocker"));
+        assertFalse(scheduler.bump("unknown"));
+
+        assertNextStart("blocker");
+        finish("blocker");
+        assertNextStart("y");
+        finish("y");
+        assertNextStart("z");
+        finish("z");
+        assertNextStart("x");
+    }
+
+    @Test
+    void sameKeyIsNotSubmittedTwice() throws Exception {
+        IngestionScheduler scheduler = scheduler(1, 1024, InsightProperties.IngestionPriority.SMALLEST_FIRST);
+        assertTrue(submit(scheduler, "a", 10));
+        assertTrue(submit(scheduler, "b", 10));
+        assertFalse(submit(scheduler, "a", 10));
+        assertFalse(submit(scheduler, "b", 10));
+        assertTrue(scheduler.isPending("a"));
+        assertTrue(scheduler.isPending("b"));
+        assertFalse(scheduler.isPending("c"));
+
+        assertNextStart("a");
+        finish("a");
+        assertNextStart("b");
+        assertFalse(scheduler.isPending("a"));
+        // 运行结束后可以再次提交
+        assertTrue(submit(scheduler, "a", 10));
+        assertEquals(List.of("a"), queued(scheduler));
+    }
+
+    private IngestionScheduler scheduler(int maxApps, long budgetMb, InsightProperties.IngestionPriority priority) {
+        InsightProperties properties = new InsightProperties();
+        properties.getScheduler().setMaxConcurrentApps(maxApps);
+        properties.getScheduler().setMaxBytesInFlightMb(budgetMb);
+        properties.getScheduler().setPriority(priority);
+        return new IngestionScheduler(properties, new SimpleMeterRegistry());
+    }
+
+    private boolean submit(IngestionScheduler scheduler, String key, long bytes) throws IOException {
+        return submit(scheduler, key, bytes, System.currentTimeMillis());
+    }
+
+    /**
+     * 提交一个大小为 bytes 的单文件任务，任务开始后一直运行到 finish(key)
+     */
+    private boolean submit(IngestionScheduler scheduler, String key, long bytes, long lastModified) throws IOException {
+        File file = File.createTempFile("eventlog-" + key, ".log", tempDir.toFile());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(bytes);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        CountDownLatch gate = new CountDownLatch(1);
+        boolean submitted = scheduler.submit(key, List.of(file), () -> {
+            started.add(key);
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        if (submitted) gates.put(key, gate);
+        return submitted;
+    }
+
+    private void finish(String key) {
+        gates.remove(key).countDown();
+    }
+
+    /**
+     * 等待 key 开始运行，跳过之前已经开始的任务
+     */
+    private void assertNextStart(String key) throws InterruptedException {
+        String next;
+        do {
+            next = started.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next, "expected " + key + " to start");
+        } while (!next.equals(key));
+    }
+
+    private static List<String> running(IngestionScheduler scheduler) {
+        return scheduler.status().getRunning().stream().map(IngestionQueueStatus.Entry::getKey).toList();
+    }
+
+    private static List<String> queued(IngestionScheduler scheduler) {
+        return scheduler.status().getQueued().stream().map(IngestionQueueStatus.Entry::getKey).toList();
+    }
+}